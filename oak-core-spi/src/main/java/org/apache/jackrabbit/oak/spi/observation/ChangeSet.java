@@ -18,9 +18,9 @@
  */
 package org.apache.jackrabbit.oak.spi.observation;
 
+import java.util.Objects;
 import java.util.Set;
 
-import org.apache.jackrabbit.guava.common.collect.ImmutableSet;
 import org.apache.jackrabbit.guava.common.collect.Sets;
 
 import org.apache.jackrabbit.oak.commons.PathUtils;
@@ -47,7 +47,10 @@ import org.jetbrains.annotations.Nullable;
  * 'overflown'. Downstream Observers should thus check if a particular item has
  * overflown or not - this is indicated with null as the return value of the
  * corresponding getters (while empty means: not overflown but nothing changed
- * of that type).
+ * of that type). After an overflow, the names and node types are still kept
+ * in a bloom filter, see {@link #mightContainPropertyName(String)} and
+ * similar. The bloom filters are not included in the JSON representation,
+ * so that the format stays readable by other cluster nodes.
  * <p>
  * Also, the ChangeSet carries a 'maxPathDepth' which is the depth of the path
  * up until which paths have been collected. Thus any path that is longer than
@@ -64,39 +67,47 @@ public final class ChangeSet {
     public static final String COMMIT_CONTEXT_OBSERVATION_CHANGESET = "oak.observation.changeSet";
 
     private final int maxPathDepth;
-    private final Set<String> parentPaths;
-    private final Set<String> parentNodeNames;
-    private final Set<String> parentNodeTypes;
-    private final Set<String> propertyNames;
-    private final Set<String> allNodeTypes;
+    private final CompactStringSet parentPaths;
+    private final CompactStringSet parentNodeNames;
+    private final CompactStringSet parentNodeTypes;
+    private final CompactStringSet propertyNames;
+    private final CompactStringSet allNodeTypes;
     private final boolean hitsMaxPathDepth;
 
     ChangeSet(int maxPathDepth, Set<String> parentPaths, Set<String> parentNodeNames, Set<String> parentNodeTypes,
             Set<String> propertyNames, Set<String> allNodeTypes) {
+        this(maxPathDepth, frozenCopyOf(parentPaths), frozenCopyOf(parentNodeNames), frozenCopyOf(parentNodeTypes),
+                frozenCopyOf(propertyNames), frozenCopyOf(allNodeTypes));
+    }
+
+    ChangeSet(int maxPathDepth, CompactStringSet parentPaths, CompactStringSet parentNodeNames,
+            CompactStringSet parentNodeTypes, CompactStringSet propertyNames, CompactStringSet allNodeTypes) {
         this.maxPathDepth = maxPathDepth;
-        this.parentPaths = parentPaths == null ? null : ImmutableSet.copyOf(parentPaths);
-        this.parentNodeNames = parentNodeNames == null ? null : ImmutableSet.copyOf(parentNodeNames);
-        this.parentNodeTypes = parentNodeTypes == null ? null : ImmutableSet.copyOf(parentNodeTypes);
-        this.propertyNames = propertyNames == null ? null : ImmutableSet.copyOf(propertyNames);
-        this.allNodeTypes = allNodeTypes == null ? null : ImmutableSet.copyOf(allNodeTypes);
-        
+        this.parentPaths = parentPaths.freeze();
+        this.parentNodeNames = parentNodeNames.freeze();
+        this.parentNodeTypes = parentNodeTypes.freeze();
+        this.propertyNames = propertyNames.freeze();
+        this.allNodeTypes = allNodeTypes.freeze();
+
         boolean hitsMaxPathDepth = false;
-        if (parentPaths != null) {
-            for (String aPath : parentPaths) {
-                if (PathUtils.getDepth(aPath) >= maxPathDepth) {
-                    hitsMaxPathDepth = true;
-                    break;
-                }
+        for (String aPath : this.parentPaths) {
+            if (PathUtils.getDepth(aPath) >= maxPathDepth) {
+                hitsMaxPathDepth = true;
+                break;
             }
         }
         this.hitsMaxPathDepth = hitsMaxPathDepth;
     }
 
+    private static CompactStringSet frozenCopyOf(@Nullable Set<String> values) {
+        return values == null ? CompactStringSet.frozenSaturated() : CompactStringSet.frozenCopyOf(values);
+    }
+
     @Override
     public String toString() {
-        return "ChangeSet{paths[maxDepth:" + maxPathDepth + "]=" + parentPaths + ", propertyNames=" + propertyNames
-                + ", parentNodeNames=" + parentNodeNames + ", parentNodeTypes=" + parentNodeTypes 
-                + ", allNodeTypes=" + allNodeTypes + ", any overflow: " + anyOverflow()
+        return "ChangeSet{paths[maxDepth:" + maxPathDepth + "]=" + getParentPaths() + ", propertyNames="
+                + getPropertyNames() + ", parentNodeNames=" + getParentNodeNames() + ", parentNodeTypes="
+                + getParentNodeTypes() + ", allNodeTypes=" + getAllNodeTypes() + ", any overflow: " + anyOverflow()
                 + ", hits max path depth: " + hitsMaxPathDepth + "}";
     }
 
@@ -106,22 +117,22 @@ public final class ChangeSet {
 
     @Nullable
     public Set<String> getParentPaths() {
-        return parentPaths;
+        return unlessOverflown(parentPaths);
     }
 
     @Nullable
     public Set<String> getParentNodeNames() {
-        return parentNodeNames;
+        return unlessOverflown(parentNodeNames);
     }
 
     @Nullable
     public Set<String> getParentNodeTypes() {
-        return parentNodeTypes;
+        return unlessOverflown(parentNodeTypes);
     }
 
     @Nullable
     public Set<String> getPropertyNames() {
-        return propertyNames;
+        return unlessOverflown(propertyNames);
     }
 
     public int getMaxPrefilterPathDepth() {
@@ -130,8 +141,68 @@ public final class ChangeSet {
 
     @Nullable
     public Set<String> getAllNodeTypes() {
+        return unlessOverflown(allNodeTypes);
+    }
+
+    /**
+     * Whether the given parent node name might have changed. Unlike
+     * {@link #getParentNodeNames()}, this is also answered after an overflow,
+     * with possible false positives but without false negatives.
+     */
+    public boolean mightContainParentNodeName(String name) {
+        return parentNodeNames.mightContain(name);
+    }
+
+    /**
+     * Whether the given parent node type might have changed. Unlike
+     * {@link #getParentNodeTypes()}, this is also answered after an overflow,
+     * with possible false positives but without false negatives.
+     */
+    public boolean mightContainParentNodeType(String nodeType) {
+        return parentNodeTypes.mightContain(nodeType);
+    }
+
+    /**
+     * Whether the given property name might have changed. Unlike
+     * {@link #getPropertyNames()}, this is also answered after an overflow,
+     * with possible false positives but without false negatives.
+     */
+    public boolean mightContainPropertyName(String name) {
+        return propertyNames.mightContain(name);
+    }
+
+    /**
+     * Whether the given node type might have changed. Unlike
+     * {@link #getAllNodeTypes()}, this is also answered after an overflow,
+     * with possible false positives but without false negatives.
+     */
+    public boolean mightContainNodeType(String nodeType) {
+        return allNodeTypes.mightContain(nodeType);
+    }
+
+    CompactStringSet parentPaths() {
+        return parentPaths;
+    }
+
+    CompactStringSet parentNodeNames() {
+        return parentNodeNames;
+    }
+
+    CompactStringSet parentNodeTypes() {
+        return parentNodeTypes;
+    }
+
+    CompactStringSet propertyNames() {
+        return propertyNames;
+    }
+
+    CompactStringSet allNodeTypes() {
         return allNodeTypes;
     }
+
+    private static Set<String> unlessOverflown(CompactStringSet values) {
+        return values.isOverflown() ? null : values;
+    }
     
     public boolean anyOverflow() {
         return getAllNodeTypes() == null || 
@@ -151,15 +222,15 @@ public final class ChangeSet {
         ChangeSet changeSet = (ChangeSet) o;
 
         if (maxPathDepth != changeSet.maxPathDepth) return false;
-        if (parentPaths != null ? !parentPaths.equals(changeSet.parentPaths) : changeSet.parentPaths != null)
+        if (!Objects.equals(getParentPaths(), changeSet.getParentPaths()))
             return false;
-        if (parentNodeNames != null ? !parentNodeNames.equals(changeSet.parentNodeNames) : changeSet.parentNodeNames != null)
+        if (!Objects.equals(getParentNodeNames(), changeSet.getParentNodeNames()))
             return false;
-        if (parentNodeTypes != null ? !parentNodeTypes.equals(changeSet.parentNodeTypes) : changeSet.parentNodeTypes != null)
+        if (!Objects.equals(getParentNodeTypes(), changeSet.getParentNodeTypes()))
             return false;
-        if (propertyNames != null ? !propertyNames.equals(changeSet.propertyNames) : changeSet.propertyNames != null)
+        if (!Objects.equals(getPropertyNames(), changeSet.getPropertyNames()))
             return false;
-        return allNodeTypes != null ? allNodeTypes.equals(changeSet.allNodeTypes) : changeSet.allNodeTypes == null;
+        return Objects.equals(getAllNodeTypes(), changeSet.getAllNodeTypes());
     }
 
     @Override
@@ -173,11 +244,11 @@ public final class ChangeSet {
         JsopWriter json = new JsopBuilder();
         json.object();
         json.key("maxPathDepth").value(maxPathDepth);
-        addToJson(json, "parentPaths", parentPaths);
-        addToJson(json, "parentNodeNames", parentNodeNames);
-        addToJson(json, "parentNodeTypes", parentNodeTypes);
-        addToJson(json, "propertyNames", propertyNames);
-        addToJson(json, "allNodeTypes", allNodeTypes);
+        addToJson(json, "parentPaths", getParentPaths());
+        addToJson(json, "parentNodeNames", getParentNodeNames());
+        addToJson(json, "parentNodeTypes", getParentNodeTypes());
+        addToJson(json, "propertyNames", getPropertyNames());
+        addToJson(json, "allNodeTypes", getAllNodeTypes());
         json.endObject();
         return json.toString();
     }
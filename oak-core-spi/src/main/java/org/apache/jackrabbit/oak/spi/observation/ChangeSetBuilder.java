@@ -18,34 +18,42 @@
  */
 package org.apache.jackrabbit.oak.spi.observation;
 
-import java.util.Set;
-
-import org.apache.jackrabbit.guava.common.collect.Sets;
 import org.apache.jackrabbit.oak.commons.PathUtils;
 import org.jetbrains.annotations.Nullable;
 
 /**
  * Builder of a ChangeSet - only used by ChangeCollectorProvider (and tests..)
+ * <p>
+ * The items are collected in compact, bounded sets that don't allocate per
+ * added item. Names and node types are interned in a small, lossy cache
+ * shared by all builders, so that the ChangeSets of many commits (for example
+ * while queued for observation) share the same strings. Once a set
+ * overflows, its items are kept in a bloom filter (see
+ * {@link ChangeSet#mightContainPropertyName(String)} and similar).
  */
 public class ChangeSetBuilder {
 
-    private final int maxItems;
+    /**
+     * Size of the cache of interned names (a power of 2)
+     */
+    private static final int NAME_CACHE_SIZE = 1024;
+
+    private static final String[] NAME_CACHE = new String[NAME_CACHE_SIZE];
+
     private int maxPathDepth;
-    private final Set<String> parentPaths = Sets.newHashSet();
-    private final Set<String> parentNodeNames = Sets.newHashSet();
-    private final Set<String> parentNodeTypes = Sets.newHashSet();
-    private final Set<String> propertyNames = Sets.newHashSet();
-    private final Set<String> allNodeTypes = Sets.newHashSet();
-
-    private boolean parentPathOverflow;
-    private boolean parentNodeNameOverflow;
-    private boolean parentNodeTypeOverflow;
-    private boolean propertyNameOverflow;
-    private boolean allNodeTypeOverflow;
+    private final CompactStringSet parentPaths;
+    private final CompactStringSet parentNodeNames;
+    private final CompactStringSet parentNodeTypes;
+    private final CompactStringSet propertyNames;
+    private final CompactStringSet allNodeTypes;
 
     public ChangeSetBuilder(int maxItems, int maxPathDepth) {
-        this.maxItems = maxItems;
         this.maxPathDepth = maxPathDepth;
+        this.parentPaths = new CompactStringSet(maxItems);
+        this.parentNodeNames = new CompactStringSet(maxItems);
+        this.parentNodeTypes = new CompactStringSet(maxItems);
+        this.propertyNames = new CompactStringSet(maxItems);
+        this.allNodeTypes = new CompactStringSet(maxItems);
     }
 
     @Override
@@ -56,26 +64,25 @@ public class ChangeSetBuilder {
     }
 
     public boolean isParentPathOverflown() {
-        return parentPathOverflow;
+        return parentPaths.isOverflown();
     }
 
     public ChangeSetBuilder addParentPath(String path){
-        path = getPathWithMaxDepth(path, maxPathDepth);
-        parentPathOverflow = addAndCheckOverflow(parentPaths, path, maxItems, parentPathOverflow);
+        parentPaths.add(getPathWithMaxDepth(path, maxPathDepth));
         return this;
     }
 
     public boolean isParentNodeNameOverflown() {
-        return parentNodeNameOverflow;
+        return parentNodeNames.isOverflown();
     }
 
     public ChangeSetBuilder addParentNodeName(String parentNodeName) {
-        parentNodeNameOverflow = addAndCheckOverflow(parentNodeNames, parentNodeName, maxItems, parentNodeNameOverflow);
+        parentNodeNames.add(intern(parentNodeName));
         return this;
     }
 
     public boolean isParentNodeTypeOverflown() {
-        return parentNodeTypeOverflow;
+        return parentNodeTypes.isOverflown();
     }
 
     public ChangeSetBuilder addParentNodeTypes(Iterable<String> nodeTypes){
@@ -86,20 +93,20 @@ public class ChangeSetBuilder {
     }
 
     public ChangeSetBuilder addParentNodeType(String parentNodeType) {
-        parentNodeTypeOverflow = addAndCheckOverflow(parentNodeTypes, parentNodeType, maxItems, parentNodeTypeOverflow);
+        parentNodeTypes.add(intern(parentNodeType));
         return this;
     }
 
     public boolean isPropertyNameOverflown() {
-        return propertyNameOverflow;
+        return propertyNames.isOverflown();
     }
 
     public ChangeSetBuilder addPropertyName(String propertyName) {
-        propertyNameOverflow = addAndCheckOverflow(propertyNames, propertyName, maxItems, propertyNameOverflow);
+        propertyNames.add(intern(propertyName));
         return this;
     }
     public boolean isAllNodeTypeOverflown() {
-        return allNodeTypeOverflow;
+        return allNodeTypes.isOverflown();
     }
 
     public ChangeSetBuilder addNodeTypes(Iterable<String> nodeTypes){
@@ -110,7 +117,7 @@ public class ChangeSetBuilder {
     }
 
     public ChangeSetBuilder addNodeType(String nodeType) {
-        allNodeTypeOverflow = addAndCheckOverflow(allNodeTypes, nodeType, maxItems, allNodeTypeOverflow);
+        allNodeTypes.add(intern(nodeType));
         return this;
     }
 
@@ -120,61 +127,25 @@ public class ChangeSetBuilder {
 
     public ChangeSetBuilder add(@Nullable ChangeSet cs){
         if (cs == null){
-            parentPathOverflow = true;
-            parentNodeNameOverflow = true;
-            parentNodeTypeOverflow = true;
-            propertyNameOverflow = true;
-            allNodeTypeOverflow = true;
+            parentPaths.saturate();
+            parentNodeNames.saturate();
+            parentNodeTypes.saturate();
+            propertyNames.saturate();
+            allNodeTypes.saturate();
             return this;
         }
 
-        if (cs.getParentPaths() == null){
-            parentPathOverflow = true;
-        } else {
-            addPathFromChangeSet(cs);
-        }
-
-        if (cs.getParentNodeNames() == null){
-            parentNodeNameOverflow = true;
-        } else {
-            for (String parentNodeName : cs.getParentNodeNames()){
-                addParentNodeName(parentNodeName);
-            }
-        }
-
-        if (cs.getParentNodeTypes() == null){
-            parentNodeTypeOverflow = true;
-        } else {
-            for (String parentNodeType : cs.getParentNodeTypes()){
-                addParentNodeType(parentNodeType);
-            }
-        }
-
-        if (cs.getPropertyNames() == null){
-            propertyNameOverflow = true;
-        } else {
-            for (String propertyName : cs.getPropertyNames()){
-                addPropertyName(propertyName);
-            }
-        }
-
-        if (cs.getAllNodeTypes() == null){
-            allNodeTypeOverflow = true;
-        } else {
-            for (String nodeType : cs.getAllNodeTypes()){
-                addNodeType(nodeType);
-            }
-        }
-
+        addPathFromChangeSet(cs);
+        parentNodeNames.addAll(cs.parentNodeNames());
+        parentNodeTypes.addAll(cs.parentNodeTypes());
+        propertyNames.addAll(cs.propertyNames());
+        allNodeTypes.addAll(cs.allNodeTypes());
         return this;
     }
 
     public ChangeSet build() {
-        return new ChangeSet(maxPathDepth, parentPathOverflow ? null : parentPaths,
-                parentNodeNameOverflow ? null : parentNodeNames,
-                parentNodeTypeOverflow ? null : parentNodeTypes,
-                propertyNameOverflow ? null : propertyNames,
-                allNodeTypeOverflow ? null : allNodeTypes);
+        return new ChangeSet(maxPathDepth, parentPaths.freeze(), parentNodeNames.freeze(),
+                parentNodeTypes.freeze(), propertyNames.freeze(), allNodeTypes.freeze());
     }
 
     private void addPathFromChangeSet(ChangeSet cs) {
@@ -184,15 +155,30 @@ public class ChangeSetBuilder {
         //then truncate path in current set to that depth and change
         //maxPathDepth to one from ChangeSet
         if (maxDepthInChangeSet < maxPathDepth){
-            Set<String> existingPathSet = Sets.newHashSet(parentPaths);
-            parentPaths.clear();
-            for (String existingPath : existingPathSet){
-               parentPaths.add(getPathWithMaxDepth(existingPath, maxDepthInChangeSet));
+            if (parentPaths.isOverflown()) {
+                // the overflown paths can't be truncated
+                parentPaths.saturate();
+            } else {
+                String[] existingPaths = parentPaths.toArray(new String[0]);
+                parentPaths.clear();
+                for (String existingPath : existingPaths){
+                    parentPaths.add(getPathWithMaxDepth(existingPath, maxDepthInChangeSet));
+                }
             }
             maxPathDepth = maxDepthInChangeSet;
         }
 
-        for (String pathFromChangeSet : cs.getParentPaths()){
+        CompactStringSet paths = cs.parentPaths();
+        if (paths.isOverflown()) {
+            if (maxDepthInChangeSet == maxPathDepth) {
+                parentPaths.addAll(paths);
+            } else {
+                // the paths of the overflown ChangeSet are deeper
+                parentPaths.saturate();
+            }
+            return;
+        }
+        for (String pathFromChangeSet : paths){
             addParentPath(getPathWithMaxDepth(pathFromChangeSet, maxPathDepth));
         }
     }
@@ -206,21 +192,18 @@ public class ChangeSetBuilder {
     }
 
     /**
-     * Add data to dataSet if dataSet size is less than maxSize.
-     *
-     * @return true if dataSet size is at maxSize i.e. overflow condition reached
+     * Get the cached instance of an equal string, or cache the given string.
+     * The cache is lossy: an entry is replaced by a string with the same
+     * slot. As strings are immutable, the unsynchronized access is safe.
      */
-    private static boolean addAndCheckOverflow(Set<String> dataSet, String data, int maxSize, boolean overflow) {
-        if (overflow) {
-            return true;
-        } else {
-            dataSet.add(data);
-            if (dataSet.size() > maxSize){
-                dataSet.clear();
-                return true;
-            }
-            return false;
+    private static String intern(String name) {
+        int slot = name.hashCode() & (NAME_CACHE_SIZE - 1);
+        String cached = NAME_CACHE[slot];
+        if (name.equals(cached)) {
+            return cached;
         }
+        NAME_CACHE[slot] = name;
+        return name;
     }
 
 }
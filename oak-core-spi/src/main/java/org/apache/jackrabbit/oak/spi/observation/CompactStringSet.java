@@ -0,0 +1,339 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.jackrabbit.oak.spi.observation;
+
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * A set of strings with a bounded number of entries, as collected by the
+ * {@link ChangeSetBuilder}. Entries are kept in an open addressing hash table,
+ * so that adding an entry does not allocate (except when the table grows).
+ * <p>
+ * Once more than {@code maxItems} entries are added, the set 'overflows': the
+ * entries are moved to a small bloom filter, and the set itself is empty.
+ * {@link #mightContain(String)} is then answered by the bloom filter, with
+ * false positives but without false negatives. A set that overflowed without
+ * knowing its entries (for example when merging a ChangeSet that overflowed
+ * before bloom filters were collected) is 'saturated', and might contain any
+ * entry.
+ * <p>
+ * A set is either mutable (owned by a builder), or frozen. Frozen sets are
+ * immutable: {@link #add(String)} and removal throw an
+ * {@code UnsupportedOperationException}.
+ */
+final class CompactStringSet extends AbstractSet<String> {
+
+    private static final int INITIAL_CAPACITY = 8;
+
+    /**
+     * Number of bits of the bloom filter (a power of 2)
+     */
+    static final int BLOOM_BITS = 2048;
+
+    private static final int BLOOM_HASHES = 3;
+
+    private final int maxItems;
+
+    private final boolean frozen;
+
+    private String[] table;
+
+    private int size;
+
+    private long[] bloom;
+
+    private boolean saturated;
+
+    CompactStringSet(int maxItems) {
+        this(maxItems, false, null, 0, null, false);
+    }
+
+    private CompactStringSet(int maxItems, boolean frozen, String[] table, int size, long[] bloom, boolean saturated) {
+        this.maxItems = maxItems;
+        this.frozen = frozen;
+        this.table = table;
+        this.size = size;
+        this.bloom = bloom;
+        this.saturated = saturated;
+    }
+
+    /**
+     * Create a frozen set with the given entries.
+     */
+    static CompactStringSet frozenCopyOf(Iterable<String> values) {
+        CompactStringSet set = new CompactStringSet(Integer.MAX_VALUE);
+        for (String v : values) {
+            set.add(v);
+        }
+        return set.freeze();
+    }
+
+    /**
+     * Create a frozen, saturated set: a set that overflowed, with unknown
+     * entries.
+     */
+    static CompactStringSet frozenSaturated() {
+        return new CompactStringSet(0, true, null, 0, null, true);
+    }
+
+    /**
+     * @return a frozen copy of this set, or this set if it is frozen already
+     */
+    CompactStringSet freeze() {
+        if (frozen) {
+            return this;
+        }
+        return new CompactStringSet(maxItems, true,
+                table == null || size == 0 ? null : Arrays.copyOf(table, table.length), size,
+                bloom == null ? null : Arrays.copyOf(bloom, bloom.length), saturated);
+    }
+
+    boolean isOverflown() {
+        return bloom != null || saturated;
+    }
+
+    /**
+     * Mark this set as overflown with unknown entries.
+     */
+    void saturate() {
+        checkMutable();
+        saturated = true;
+        bloom = null;
+        table = null;
+        size = 0;
+    }
+
+    /**
+     * Add all entries of the given set, including its overflow.
+     */
+    void addAll(CompactStringSet other) {
+        checkMutable();
+        if (other.saturated) {
+            saturate();
+            return;
+        }
+        if (other.bloom != null) {
+            overflow();
+            if (bloom != null) {
+                for (int i = 0; i < bloom.length; i++) {
+                    bloom[i] |= other.bloom[i];
+                }
+            }
+        }
+        if (other.table != null) {
+            for (String s : other.table) {
+                if (s != null) {
+                    add(s);
+                }
+            }
+        }
+    }
+
+    /**
+     * Whether the set might contain the given entry. If the set did not
+     * overflow, this is the same as {@link #contains(Object)}.
+     */
+    boolean mightContain(String s) {
+        if (saturated) {
+            return true;
+        }
+        if (bloom != null) {
+            return bloomContains(bloom, s);
+        }
+        return contains(s);
+    }
+
+    @Override
+    public boolean add(String s) {
+        checkMutable();
+        if (saturated) {
+            return false;
+        }
+        if (bloom != null) {
+            bloomAdd(bloom, s);
+            return false;
+        }
+        if (table == null) {
+            table = new String[INITIAL_CAPACITY];
+        }
+        int mask = table.length - 1;
+        int i = mix(s.hashCode()) & mask;
+        for (String e = table[i]; e != null; e = table[i]) {
+            if (e.equals(s)) {
+                return false;
+            }
+            i = (i + 1) & mask;
+        }
+        table[i] = s;
+        size++;
+        if (size > maxItems) {
+            overflow();
+        } else if (size * 2 > table.length) {
+            rehash(table.length * 2);
+        }
+        return true;
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        if (!(o instanceof String) || table == null) {
+            return false;
+        }
+        int mask = table.length - 1;
+        int i = mix(o.hashCode()) & mask;
+        for (String e = table[i]; e != null; e = table[i]) {
+            if (e.equals(o)) {
+                return true;
+            }
+            i = (i + 1) & mask;
+        }
+        return false;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Remove all entries, without releasing the table. An overflow is
+     * cleared as well.
+     */
+    @Override
+    public void clear() {
+        checkMutable();
+        if (table != null) {
+            Arrays.fill(table, null);
+        }
+        size = 0;
+        bloom = null;
+        saturated = false;
+    }
+
+    @NotNull
+    @Override
+    public Iterator<String> iterator() {
+        return new Iterator<String>() {
+            private final String[] entries = table;
+            private int next = advance(0);
+
+            private int advance(int i) {
+                if (entries == null) {
+                    return 0;
+                }
+                while (i < entries.length && entries[i] == null) {
+                    i++;
+                }
+                return i;
+            }
+
+            @Override
+            public boolean hasNext() {
+                return entries != null && next < entries.length;
+            }
+
+            @Override
+            public String next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                String s = entries[next];
+                next = advance(next + 1);
+                return s;
+            }
+        };
+    }
+
+    private void overflow() {
+        if (isOverflown()) {
+            return;
+        }
+        long[] b = new long[BLOOM_BITS / 64];
+        if (table != null) {
+            for (String s : table) {
+                if (s != null) {
+                    bloomAdd(b, s);
+                }
+            }
+        }
+        bloom = b;
+        table = null;
+        size = 0;
+    }
+
+    private void rehash(int capacity) {
+        String[] old = table;
+        table = new String[capacity];
+        int mask = capacity - 1;
+        for (String s : old) {
+            if (s != null) {
+                int i = mix(s.hashCode()) & mask;
+                while (table[i] != null) {
+                    i = (i + 1) & mask;
+                }
+                table[i] = s;
+            }
+        }
+    }
+
+    private void checkMutable() {
+        if (frozen) {
+            throw new UnsupportedOperationException("The set is immutable");
+        }
+    }
+
+    private static void bloomAdd(long[] bloom, String s) {
+        int h1 = mix(s.hashCode());
+        int h2 = mix(h1) | 1;
+        for (int i = 0; i < BLOOM_HASHES; i++) {
+            int bit = (h1 + i * h2) & (BLOOM_BITS - 1);
+            bloom[bit >>> 6] |= 1L << bit;
+        }
+    }
+
+    private static boolean bloomContains(long[] bloom, String s) {
+        int h1 = mix(s.hashCode());
+        int h2 = mix(h1) | 1;
+        for (int i = 0; i < BLOOM_HASHES; i++) {
+            int bit = (h1 + i * h2) & (BLOOM_BITS - 1);
+            if ((bloom[bit >>> 6] & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * The finalization step of the 32 bit murmur3 hash.
+     */
+    private static int mix(int h) {
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        h ^= h >>> 13;
+        h *= 0xc2b2ae35;
+        h ^= h >>> 16;
+        return h;
+    }
+
+}
@@ -24,8 +24,10 @@ import org.junit.Test;
 import static org.apache.jackrabbit.guava.common.collect.ImmutableSet.of;
 import static org.hamcrest.collection.IsIterableContainingInAnyOrder.containsInAnyOrder;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
 
 public class ChangeSetBuilderTest {
 
@@ -209,6 +211,33 @@ public class ChangeSetBuilderTest {
         assertNull(cs.getPropertyNames());
     }
 
+    @Test
+    public void overflowKeepsBloomFilter() throws Exception{
+        ChangeSetBuilder cb1 = new ChangeSetBuilder(5, 2);
+        add(cb1, "1");
+        for (int i = 0; i < 20; i++) {
+            cb1.addPropertyName("pn-x" + i);
+        }
+        ChangeSet cs = cb1.build();
+        assertNull(cs.getPropertyNames());
+        assertTrue(cs.mightContainPropertyName("pn-1"));
+        for (int i = 0; i < 20; i++) {
+            assertTrue(cs.mightContainPropertyName("pn-x" + i));
+        }
+        assertTrue(cs.mightContainParentNodeName("nn-1"));
+        assertFalse(cs.mightContainParentNodeName("nn-2"));
+
+        // the bloom filter is merged
+        ChangeSet merged = new ChangeSetBuilder(50, 2).add(cs).build();
+        assertNull(merged.getPropertyNames());
+        assertTrue(merged.mightContainPropertyName("pn-x7"));
+
+        // a ChangeSet read from json has no bloom filter: anything might be contained
+        ChangeSet fromJson = ChangeSet.fromString(cs.asString());
+        assertEquals(cs, fromJson);
+        assertTrue(fromJson.mightContainPropertyName("unknown"));
+    }
+
     private static void add(ChangeSetBuilder cb, String suffix){
         cb.addNodeType("nt-"+suffix)
                 .addParentPath("p-"+suffix)
@@ -35,9 +35,15 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReference;
 
 import javax.management.openmbean.CompositeData;
@@ -205,6 +211,28 @@ public class AsyncIndexUpdate implements Runnable, Closeable {
     private final boolean traverseNodesIfLaneNotPresentInIndex
             = !Boolean.getBoolean("oak.async.traverseNodesIfLanePresentInIndex");
 
+    /**
+     * The number of threads used for parallel diffs of a lane.
+     */
+    private static final int PARALLEL_DIFF_THREADS = Integer.getInteger(
+            "oak.async.parallelDiffThreads", Runtime.getRuntime().availableProcessors());
+
+    /**
+     * The executor for parallel diffs, created when first used, and shut down
+     * when closed (guarded by parallelDiffLock, as run() holds the monitor of
+     * this object while indexing).
+     */
+    private ExecutorService parallelDiffExecutor;
+
+    private final Object parallelDiffLock = new Object();
+
+    /**
+     * The depth at which the subtrees of the diff are processed concurrently,
+     * for the index editors of the lane that support it. 0 (the default)
+     * disables parallel diffs.
+     */
+    private int parallelDiffDepth = Integer.getInteger("oak.async.parallelDiffDepth", 0);
+
     /**
      * The time in minutes since the epoch when the last checkpoint cleanup ran.
      */
@@ -484,6 +512,16 @@ public class AsyncIndexUpdate implements Runnable, Closeable {
             log.info("[{}] Closed", name);
         }
         closed = true;
+        shutDownParallelDiffExecutor();
+    }
+
+    private void shutDownParallelDiffExecutor() {
+        synchronized (parallelDiffLock) {
+            if (parallelDiffExecutor != null) {
+                parallelDiffExecutor.shutdown();
+                parallelDiffExecutor = null;
+            }
+        }
     }
 
     private void runWhenPermitted() {
@@ -811,9 +849,22 @@ public class AsyncIndexUpdate implements Runnable, Closeable {
             indexUpdate =
                     new IndexUpdate(provider, name, after, builder, callback, callback, info, corruptIndexHandler)
                             .withMissingProviderStrategy(missingStrategy);
+            if (parallelDiffDepth > 0) {
+                indexUpdate.withParallelDiff(getParallelDiffExecutor(), parallelDiffDepth,
+                        4 * PARALLEL_DIFF_THREADS);
+            }
             configureRateEstimator(indexUpdate);
-            CommitFailedException exception =
-                    EditorDiff.process(VisibleEditor.wrap(indexUpdate), before, after);
+            CommitFailedException exception = null;
+            boolean diffCompleted = false;
+            try {
+                exception = EditorDiff.process(VisibleEditor.wrap(indexUpdate), before, after);
+                diffCompleted = exception == null;
+            } finally {
+                if (!diffCompleted) {
+                    // the subtree diffs must not change the builder any longer
+                    indexUpdate.cancelParallelDiff();
+                }
+            }
             if (exception != null) {
                 throw exception;
             }
@@ -981,6 +1032,39 @@ public class AsyncIndexUpdate implements Runnable, Closeable {
         return this;
     }
 
+    /**
+     * The depth at which the subtrees of the diff are processed concurrently,
+     * or 0 to disable.
+     */
+    protected AsyncIndexUpdate setParallelDiffDepth(int parallelDiffDepth) {
+        this.parallelDiffDepth = parallelDiffDepth;
+        return this;
+    }
+
+    private Executor getParallelDiffExecutor() {
+        synchronized (parallelDiffLock) {
+            if (parallelDiffExecutor == null) {
+                ThreadPoolExecutor executor = new ThreadPoolExecutor(PARALLEL_DIFF_THREADS, PARALLEL_DIFF_THREADS,
+                        60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), new ThreadFactory() {
+                    private final AtomicInteger counter = new AtomicInteger();
+
+                    @Override
+                    public Thread newThread(@NotNull Runnable r) {
+                        Thread thread = new Thread(r, "oak-async-index-diff-" + name + "-" + counter.incrementAndGet());
+                        thread.setDaemon(true);
+                        return thread;
+                    }
+                }, (r, e) -> {
+                    // once closed, run the remaining subtree diffs in the calling thread
+                    r.run();
+                });
+                executor.allowCoreThreadTimeOut(true);
+                parallelDiffExecutor = executor;
+            }
+            return parallelDiffExecutor;
+        }
+    }
+
     public void setValidatorProviders(List<ValidatorProvider> validatorProviders) {
         this.validatorProviders = checkNotNull(validatorProviders);
     }
@@ -0,0 +1,34 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.oak.plugins.index;
+
+/**
+ * An index editor that supports processing different subtrees concurrently,
+ * see {@link IndexUpdate#withParallelDiff}. Other index editors are processed
+ * by the calling thread, at the same time.
+ * <p>
+ * The child editors of different subtrees may be called by different threads
+ * at the same time, so state that is shared between them (for example the
+ * counts of a parent editor, or the index content) needs to be synchronized.
+ * All calls for one node ({@code enter}, the property and child node
+ * callbacks, and {@code leave}) are made by the same thread, and child
+ * editors are left before their parent. Each call on a node builder is
+ * atomic, but a sequence of calls is not.
+ */
+public interface ConcurrentIndexEditor extends IndexEditor {
+
+}
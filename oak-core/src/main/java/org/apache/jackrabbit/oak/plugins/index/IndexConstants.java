@@ -56,6 +56,34 @@ public interface IndexConstants {
     String ENTRY_COUNT_PROPERTY_NAME = "entryCount";
 
     String KEY_COUNT_PROPERTY_NAME = "keyCount";
+
+    /**
+     * Names of the properties for which selectivity statistics (number of
+     * entries, number of distinct values, most frequent values) are collected.
+     * The statistics are rebuilt when the index is reindexed, and otherwise
+     * only maintained by the async indexer: for async indexes by their lane,
+     * and for synchronous indexes by the "async" lane. Relative property names
+     * are not supported.
+     */
+    String STATISTICS_PROPERTIES = "statisticsProperties";
+
+    /**
+     * Hidden node under the index definition where the statistics are stored.
+     */
+    String STATISTICS_NODE_NAME = ":statistics";
+
+    /**
+     * How the content of a (non-unique) property index is stored. By default,
+     * the index content mirrors the repository tree. Changing this setting
+     * causes the index to be rebuilt. Other index types ignore it.
+     */
+    String STORAGE_STRATEGY = "storageStrategy";
+
+    /**
+     * Store the indexed paths of each value as sorted lists, in buckets of
+     * limited size, instead of mirroring the repository tree.
+     */
+    String STORAGE_STRATEGY_COMPACT = "compact";
     
     /**
      * The regular expression pattern of the values to be indexes.
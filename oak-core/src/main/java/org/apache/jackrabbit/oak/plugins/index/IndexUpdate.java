@@ -17,6 +17,7 @@
 package org.apache.jackrabbit.oak.plugins.index;
 
 import static org.apache.jackrabbit.guava.common.base.Preconditions.checkNotNull;
+import static org.apache.jackrabbit.guava.common.base.Preconditions.checkState;
 import static org.apache.jackrabbit.guava.common.collect.Lists.newArrayList;
 import static org.apache.jackrabbit.guava.common.collect.Lists.newArrayListWithCapacity;
 import static org.apache.jackrabbit.guava.common.collect.Sets.newHashSet;
@@ -31,6 +32,8 @@ import static org.apache.jackrabbit.oak.plugins.index.IndexConstants.INDEX_DEFIN
 import static org.apache.jackrabbit.oak.plugins.index.IndexConstants.REINDEX_ASYNC_PROPERTY_NAME;
 import static org.apache.jackrabbit.oak.plugins.index.IndexConstants.REINDEX_COUNT;
 import static org.apache.jackrabbit.oak.plugins.index.IndexConstants.REINDEX_PROPERTY_NAME;
+import static org.apache.jackrabbit.oak.plugins.index.IndexConstants.STATISTICS_NODE_NAME;
+import static org.apache.jackrabbit.oak.plugins.index.IndexConstants.STORAGE_STRATEGY;
 import static org.apache.jackrabbit.oak.plugins.index.IndexConstants.TYPE_DISABLED;
 import static org.apache.jackrabbit.oak.plugins.index.IndexConstants.TYPE_PROPERTY_NAME;
 import static org.apache.jackrabbit.oak.plugins.index.IndexUtils.getAsyncLaneName;
@@ -42,7 +45,10 @@ import static org.apache.jackrabbit.oak.spi.commit.VisibleEditor.wrap;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
 
 import org.apache.jackrabbit.guava.common.collect.Iterables;
@@ -57,8 +63,11 @@ import org.apache.jackrabbit.oak.plugins.index.NodeTraversalCallback.PathSource;
 import org.apache.jackrabbit.oak.plugins.index.progress.IndexingProgressReporter;
 import org.apache.jackrabbit.oak.plugins.index.progress.NodeCountEstimator;
 import org.apache.jackrabbit.oak.plugins.index.progress.TraversalRateEstimator;
+import org.apache.jackrabbit.oak.plugins.index.property.PropertyIndexEditorProvider;
+import org.apache.jackrabbit.oak.plugins.index.statistics.PropertyStatisticsEditor;
 import org.apache.jackrabbit.oak.plugins.index.upgrade.IndexDisabler;
 import org.apache.jackrabbit.oak.spi.commit.CommitInfo;
+import org.apache.jackrabbit.oak.spi.commit.CompositeEditor;
 import org.apache.jackrabbit.oak.spi.commit.Editor;
 import org.apache.jackrabbit.oak.spi.state.NodeBuilder;
 import org.apache.jackrabbit.oak.spi.state.NodeState;
@@ -109,6 +118,13 @@ public class IndexUpdate implements Editor, PathSource {
     static final boolean IGNORE_REINDEX_FLAGS = Boolean
             .getBoolean("oak.indexUpdate.ignoreReindexFlags");
 
+    /**
+     * The async lane that maintains the statistics of synchronous indexes
+     * (see {@link IndexConstants#STATISTICS_PROPERTIES}).
+     */
+    static final String SYNC_INDEX_STATISTICS_LANE = System.getProperty(
+            "oak.indexUpdate.syncIndexStatisticsLane", "async");
+
     static {
         if (IGNORE_REINDEX_FLAGS) {
             log.warn("Reindexing is disabled by configuration. This value is configurable via the 'oak.indexUpdate.ignoreReindexFlags' system property.");
@@ -117,7 +133,7 @@ public class IndexUpdate implements Editor, PathSource {
 
     private final IndexUpdateRootState rootState;
 
-    private final NodeBuilder builder;
+    private NodeBuilder builder;
 
     /** Parent updater, or {@code null} if this is the root updater. */
     private final IndexUpdate parent;
@@ -133,11 +149,24 @@ public class IndexUpdate implements Editor, PathSource {
      */
     private final List<Editor> editors = newArrayList();
 
+    /**
+     * Editors for indexes that will be normally updated, and that process
+     * the subtrees concurrently (only used if parallel diff is enabled).
+     */
+    private final List<Editor> concurrentEditors = newArrayList();
+
     /**
      * Editors for indexes that need to be re-indexed.
      */
     private final Map<String, Editor> reindex = new HashMap<String, Editor>();
 
+    /**
+     * The parallel diff, and the subtrees that are processed concurrently, if
+     * this is the root updater and parallel diff is enabled.
+     */
+    private ParallelDiff parallelDiff;
+    private ParallelDiff.Subtrees subtrees;
+
     public IndexUpdate(
             IndexEditorProvider provider, String async,
             NodeState root, NodeBuilder builder,
@@ -194,6 +223,46 @@ public class IndexUpdate implements Editor, PathSource {
         for (Editor editor : editors) {
             editor.enter(before, after);
         }
+        for (Editor editor : concurrentEditors) {
+            editor.enter(before, after);
+        }
+    }
+
+    /**
+     * Process the subtrees at the given depth concurrently, using the given
+     * executor. This is only done for the index editors that support it (see
+     * {@link ConcurrentIndexEditor}); the other editors are processed by the
+     * calling thread, at the same time. The node builder is synchronized, so
+     * that editors can update the index content from different threads.
+     * <p>
+     * This needs to be called before the diff is started. If the diff fails,
+     * {@link #cancelParallelDiff()} needs to be called.
+     *
+     * @param executor the executor for the subtree diffs
+     * @param depth the depth of the subtrees (1 for the child nodes of the
+     *            root), or 0 to disable
+     * @param maxPendingSubtrees the maximum number of pending subtrees per node
+     * @return this
+     */
+    public IndexUpdate withParallelDiff(@NotNull Executor executor, int depth, int maxPendingSubtrees) {
+        checkState(parent == null, "Parallel diff is only supported for the root");
+        if (depth > 0) {
+            builder = new SynchronizedNodeBuilder(builder);
+            rootState.enableParallelDiff(builder);
+            parallelDiff = new ParallelDiff(executor, depth, maxPendingSubtrees);
+            subtrees = parallelDiff.root();
+        }
+        return this;
+    }
+
+    /**
+     * Stop the subtree diffs after the diff failed, and wait until none is
+     * running any longer. This does nothing if parallel diff is not enabled.
+     */
+    public void cancelParallelDiff() {
+        if (parallelDiff != null) {
+            parallelDiff.cancel();
+        }
     }
 
     public boolean isReindexingPerformed(){
@@ -243,6 +312,16 @@ public class IndexUpdate implements Editor, PathSource {
         if (ps != null && ps.getValue(BOOLEAN)) {
             return !rootState.ignoreReindexFlags;
         }
+        // the content of a property index needs to be rebuilt
+        // if the storage strategy was changed
+        NodeState beforeDefinition = before.getChildNode(INDEX_DEFINITIONS_NAME).getChildNode(name);
+        if (PropertyIndexEditorProvider.TYPE.equals(type.getValue(Type.STRING))
+                && beforeDefinition.exists()
+                && !Objects.equals(beforeDefinition.getString(STORAGE_STRATEGY),
+                        definition.getString(STORAGE_STRATEGY))) {
+            log.info("Storage strategy of index [{}] changed. Reindexing is requested", name);
+            return !rootState.ignoreReindexFlags;
+        }
         // reindex in the case this is a new node, even though the reindex flag
         // might be set to 'false' (possible via content import).
         // However, if its already indexed i.e. has some hidden nodes (containing hidden data)
@@ -329,6 +408,12 @@ public class IndexUpdate implements Editor, PathSource {
                             "and reindex after correction. Additional Info : {}", indexPath, e.getMessage(), e);
                     continue;
                 }
+                Editor statistics = null;
+                if (editor != null && (shouldReindex || rootState.async != null)) {
+                    // statistics are only maintained by the async indexer,
+                    // and rebuilt on reindexing, to avoid writing them on every commit
+                    statistics = PropertyStatisticsEditor.create(definition, shouldReindex);
+                }
                 if (editor == null) {
                     // if this isn't an async cycle AND definition has "async" property
                     // (and implicitly isIncluded method allows async def in non-async cycle only for nrt/sync defs)
@@ -362,7 +447,8 @@ public class IndexUpdate implements Editor, PathSource {
                         removeIndexState(definition);
 
                         clearCorruptFlag(definition, indexPath);
-                        reindex.put(concat(getPath(), INDEX_DEFINITIONS_NAME, name), editor);
+                        reindex.put(concat(getPath(), INDEX_DEFINITIONS_NAME, name),
+                                statistics == null ? editor : new CompositeEditor(editor, statistics));
                     }
 
                     rootState.indexDisabler.markDisableFlagIfRequired(indexPath, definition);
@@ -371,12 +457,52 @@ public class IndexUpdate implements Editor, PathSource {
                     if (getAsyncLaneName(definition.getNodeState(), indexPath) == null || rootState.async != null) {
                         rootState.indexDisabler.disableOldIndexes(indexPath, definition);
                     }
-                    editors.add(editor);
+                    addEditor(editor);
+                    if (statistics != null) {
+                        // kept separate, as the index editor may not
+                        // support concurrent subtrees
+                        addEditor(statistics);
+                    }
                 }
+            } else if (SYNC_INDEX_STATISTICS_LANE.equals(rootState.async)
+                    && !definition.hasProperty(ASYNC_PROPERTY_NAME)) {
+                addSyncIndexStatistics(definition,
+                        before.getChildNode(INDEX_DEFINITIONS_NAME).getChildNode(name));
             }
         }
     }
 
+    /**
+     * Synchronous commits don't update the statistics of synchronous indexes,
+     * to avoid writing them on every commit. Instead, the async indexer of
+     * the {@link #SYNC_INDEX_STATISTICS_LANE} lane updates them with the
+     * changes of its cycle. If the index was created or rebuilt during the
+     * cycle, the statistics were rebuilt as well, and are not updated.
+     */
+    private void addSyncIndexStatistics(NodeBuilder definition, NodeState beforeDefinition) {
+        String type = definition.getString(TYPE_PROPERTY_NAME);
+        if (type == null || TYPE_DISABLED.equals(type)
+                || !definition.hasChildNode(STATISTICS_NODE_NAME)
+                || !beforeDefinition.exists()
+                || definition.getBoolean(REINDEX_PROPERTY_NAME)
+                || beforeDefinition.getLong(REINDEX_COUNT)
+                        != definition.getNodeState().getLong(REINDEX_COUNT)) {
+            return;
+        }
+        Editor statistics = PropertyStatisticsEditor.create(definition, false);
+        if (statistics != null) {
+            addEditor(statistics);
+        }
+    }
+
+    private void addEditor(Editor editor) {
+        if (subtrees != null && editor instanceof ConcurrentIndexEditor) {
+            concurrentEditors.add(editor);
+        } else {
+            editors.add(editor);
+        }
+    }
+
     private void removeIndexState(NodeBuilder definition) {
         // as we don't know the index content node name
         // beforehand, we'll remove all child nodes
@@ -458,9 +584,15 @@ public class IndexUpdate implements Editor, PathSource {
     @Override
     public void leave(NodeState before, NodeState after)
             throws CommitFailedException {
+        if (subtrees != null) {
+            subtrees.await();
+        }
         for (Editor editor : editors) {
             editor.leave(before, after);
         }
+        for (Editor editor : concurrentEditors) {
+            editor.leave(before, after);
+        }
 
         if (parent == null){
             rootState.progressReporter.logReport();
@@ -474,6 +606,9 @@ public class IndexUpdate implements Editor, PathSource {
         for (Editor editor : editors) {
             editor.propertyAdded(after);
         }
+        for (Editor editor : concurrentEditors) {
+            editor.propertyAdded(after);
+        }
     }
 
     @Override
@@ -483,6 +618,9 @@ public class IndexUpdate implements Editor, PathSource {
         for (Editor editor : editors) {
             editor.propertyChanged(before, after);
         }
+        for (Editor editor : concurrentEditors) {
+            editor.propertyChanged(before, after);
+        }
     }
 
     @Override
@@ -492,9 +630,12 @@ public class IndexUpdate implements Editor, PathSource {
         for (Editor editor : editors) {
             editor.propertyDeleted(before);
         }
+        for (Editor editor : concurrentEditors) {
+            editor.propertyDeleted(before);
+        }
     }
 
-    @Override @NotNull
+    @Override @Nullable
     public Editor childNodeAdded(String name, NodeState after)
             throws CommitFailedException {
         List<Editor> children = newArrayListWithCapacity(1 + editors.size());
@@ -505,10 +646,17 @@ public class IndexUpdate implements Editor, PathSource {
                 children.add(child);
             }
         }
-        return compose(children);
+        List<Editor> concurrentChildren = newArrayListWithCapacity(concurrentEditors.size());
+        for (Editor editor : concurrentEditors) {
+            Editor child = editor.childNodeAdded(name, after);
+            if (child != null) {
+                concurrentChildren.add(child);
+            }
+        }
+        return subtree(compose(children), concurrentChildren, MISSING_NODE, after);
     }
 
-    @Override @NotNull
+    @Override @Nullable
     public Editor childNodeChanged(
             String name, NodeState before, NodeState after)
             throws CommitFailedException {
@@ -520,7 +668,14 @@ public class IndexUpdate implements Editor, PathSource {
                 children.add(child);
             }
         }
-        return compose(children);
+        List<Editor> concurrentChildren = newArrayListWithCapacity(concurrentEditors.size());
+        for (Editor editor : concurrentEditors) {
+            Editor child = editor.childNodeChanged(name, before, after);
+            if (child != null) {
+                concurrentChildren.add(child);
+            }
+        }
+        return subtree(compose(children), concurrentChildren, before, after);
     }
 
     @Override @Nullable
@@ -533,7 +688,23 @@ public class IndexUpdate implements Editor, PathSource {
                 children.add(child);
             }
         }
-        return compose(children);
+        List<Editor> concurrentChildren = newArrayListWithCapacity(concurrentEditors.size());
+        for (Editor editor : concurrentEditors) {
+            Editor child = editor.childNodeDeleted(name, before);
+            if (child != null) {
+                concurrentChildren.add(child);
+            }
+        }
+        return subtree(compose(children), concurrentChildren, before, MISSING_NODE);
+    }
+
+    private Editor subtree(Editor child, List<Editor> concurrentChildren,
+            NodeState before, NodeState after) throws CommitFailedException {
+        // concurrent editors are only used by the root, if parallel diff is enabled
+        if (concurrentChildren.isEmpty()) {
+            return child;
+        }
+        return subtrees.child(child, compose(concurrentChildren), before, after);
     }
 
     public void commitProgress(IndexProgress indexProgress) {
@@ -623,13 +794,13 @@ public class IndexUpdate implements Editor, PathSource {
         final String async;
         final NodeState root;
         final CommitInfo commitInfo;
-        final IndexDisabler indexDisabler;
+        IndexDisabler indexDisabler;
         private boolean ignoreReindexFlags = IGNORE_REINDEX_FLAGS;
         final Set<IndexCommitCallback> indexCommitCallbacks = newIdentityHashSet();
         final CorruptIndexHandler corruptIndexHandler;
         final IndexingProgressReporter progressReporter;
-        private int changedNodeCount;
-        private int changedPropertyCount;
+        private final AtomicInteger changedNodeCount = new AtomicInteger();
+        private final AtomicInteger changedPropertyCount = new AtomicInteger();
         private MissingIndexProviderStrategy missingProvider = new MissingIndexProviderStrategy();
 
         private IndexUpdateRootState(IndexEditorProvider provider, String async, NodeState root,
@@ -654,18 +825,22 @@ public class IndexUpdate implements Editor, PathSource {
             return async != null;
         }
 
+        void enableParallelDiff(NodeBuilder builder) {
+            indexDisabler = new IndexDisabler(builder);
+        }
+
         public void nodeRead(PathSource pathSource) throws CommitFailedException {
-            changedNodeCount++;
+            changedNodeCount.incrementAndGet();
             progressReporter.traversedNode(pathSource);
         }
 
         public void propertyChanged(String name){
-            changedPropertyCount++;
+            changedPropertyCount.incrementAndGet();
         }
 
         public String getIndexingStats() {
             return String.format("changedNodeCount %d, changedPropertyCount %d",
-                    changedNodeCount, changedPropertyCount);
+                    changedNodeCount.get(), changedPropertyCount.get());
         }
 
         public void setMissingProvider(MissingIndexProviderStrategy missingProvider) {
@@ -676,11 +851,11 @@ public class IndexUpdate implements Editor, PathSource {
             this.ignoreReindexFlags = ignoreReindexFlags;
         }
 
-        void registerIndexCommitCallbackInternal(IndexCommitCallback callback) {
+        synchronized void registerIndexCommitCallbackInternal(IndexCommitCallback callback) {
             indexCommitCallbacks.add(callback);
         }
 
-        public void commitProgress(IndexProgress indexProgress) {
+        public synchronized void commitProgress(IndexProgress indexProgress) {
             for (IndexCommitCallback icc : indexCommitCallbacks) {
                 try {
                     icc.commitProgress(indexProgress);
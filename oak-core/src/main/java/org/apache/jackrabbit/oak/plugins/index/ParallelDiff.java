@@ -0,0 +1,390 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.oak.plugins.index;
+
+import static org.apache.jackrabbit.guava.common.base.Preconditions.checkArgument;
+import static org.apache.jackrabbit.guava.common.base.Preconditions.checkNotNull;
+import static org.apache.jackrabbit.oak.plugins.memory.EmptyNodeState.MISSING_NODE;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+
+import org.apache.jackrabbit.oak.api.CommitFailedException;
+import org.apache.jackrabbit.oak.api.PropertyState;
+import org.apache.jackrabbit.oak.spi.commit.Editor;
+import org.apache.jackrabbit.oak.spi.commit.EditorDiff;
+import org.apache.jackrabbit.oak.spi.commit.VisibleEditor;
+import org.apache.jackrabbit.oak.spi.state.NodeState;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Processes the subtrees at a given depth of a diff concurrently, for the
+ * editors that support it (the concurrent editors). The nodes above that
+ * depth are processed by the calling thread; for each of their child nodes,
+ * the diff of the subtree is done by the executor, with the concurrent
+ * editors only. The other (sequential) editors are processed by the calling
+ * thread, which continues the diff of the subtree at the same time. Before a
+ * node is left, the diffs of all its subtrees are completed, so that editors
+ * still see the child nodes before the parent is left.
+ * <p>
+ * If the diff of the calling thread fails, {@link #cancel()} needs to be
+ * called, so that no subtree diff is still running once the changes are
+ * discarded.
+ */
+class ParallelDiff {
+
+    private final Executor executor;
+
+    private final int depth;
+
+    private final int maxPending;
+
+    private volatile boolean cancelled;
+
+    /**
+     * The number of subtree diffs that were submitted, and are not finished
+     * yet (guarded by this).
+     */
+    private int unfinished;
+
+    /**
+     * @param executor the executor for the subtree diffs
+     * @param depth the depth of the subtrees (1 for the child nodes of the root)
+     * @param maxPending the maximum number of pending subtrees per node
+     */
+    ParallelDiff(@NotNull Executor executor, int depth, int maxPending) {
+        checkArgument(depth > 0, "depth must be positive: %s", depth);
+        this.executor = checkNotNull(executor);
+        this.depth = depth;
+        this.maxPending = Math.max(1, maxPending);
+    }
+
+    /**
+     * Get the pending subtrees of the root node.
+     *
+     * @return the subtrees
+     */
+    Subtrees root() {
+        return new Subtrees(0);
+    }
+
+    /**
+     * Stop the subtree diffs: the diffs that didn't start yet are skipped,
+     * and the running ones stop at the next node. This method waits until
+     * none is running any longer.
+     */
+    void cancel() {
+        cancelled = true;
+        synchronized (this) {
+            while (unfinished > 0) {
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    private synchronized void submitted() {
+        unfinished++;
+    }
+
+    private synchronized void finished() {
+        if (--unfinished == 0) {
+            notifyAll();
+        }
+    }
+
+    /**
+     * The subtree diffs of one node.
+     */
+    class Subtrees {
+
+        private final int nodeDepth;
+
+        private final ArrayDeque<FutureTask<CommitFailedException>> pending = new ArrayDeque<>();
+
+        Subtrees(int nodeDepth) {
+            this.nodeDepth = nodeDepth;
+        }
+
+        /**
+         * Process the child node. If the child is at the configured depth, its
+         * subtree is processed by the executor for the concurrent editors.
+         *
+         * @param sequential the editor of the sequential editors for the child
+         *            node, or null
+         * @param concurrent the editor of the concurrent editors for the child
+         *            node, or null
+         * @param before the before state of the child node
+         * @param after the after state of the child node
+         * @return the editor to use by the calling thread, or null
+         */
+        @Nullable
+        Editor child(@Nullable Editor sequential, @Nullable Editor concurrent,
+                NodeState before, NodeState after) throws CommitFailedException {
+            if (concurrent == null) {
+                return sequential;
+            }
+            if (nodeDepth + 1 < depth) {
+                return new SubtreeEditor(sequential, concurrent, new Subtrees(nodeDepth + 1));
+            }
+            if (pending.size() >= maxPending) {
+                if (completedNormally(pending.getFirst())) {
+                    pending.removeFirst();
+                } else {
+                    // throws the exception, after waiting for the other subtrees
+                    await();
+                }
+            }
+            // hidden nodes are skipped, as in the calling thread
+            Editor editor = VisibleEditor.wrap(new CancelableEditor(concurrent));
+            FutureTask<CommitFailedException> task = new FutureTask<>(
+                    () -> cancelled ? null : EditorDiff.process(editor, before, after));
+            pending.add(task);
+            submitted();
+            try {
+                executor.execute(() -> {
+                    try {
+                        task.run();
+                    } finally {
+                        finished();
+                    }
+                });
+            } catch (RuntimeException e) {
+                pending.removeLast();
+                finished();
+                throw e;
+            }
+            return sequential;
+        }
+
+        /**
+         * Wait for all subtrees of this node.
+         *
+         * @throws CommitFailedException the first exception of a subtree diff
+         */
+        void await() throws CommitFailedException {
+            Exception first = null;
+            while (!pending.isEmpty()) {
+                try {
+                    CommitFailedException e = get(pending.removeFirst());
+                    if (first == null) {
+                        first = e;
+                    }
+                } catch (CommitFailedException | RuntimeException e) {
+                    if (first == null) {
+                        first = e;
+                    }
+                }
+            }
+            if (first instanceof RuntimeException) {
+                throw (RuntimeException) first;
+            } else if (first != null) {
+                throw (CommitFailedException) first;
+            }
+        }
+
+        private boolean completedNormally(FutureTask<CommitFailedException> task) {
+            try {
+                return task.get() == null;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            } catch (ExecutionException e) {
+                return false;
+            }
+        }
+
+        private CommitFailedException get(FutureTask<CommitFailedException> task)
+                throws CommitFailedException {
+            try {
+                return task.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new CommitFailedException("IndexUpdate", 2,
+                        "Interrupted while waiting for a subtree diff", e);
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof RuntimeException) {
+                    throw (RuntimeException) cause;
+                } else if (cause instanceof Error) {
+                    throw (Error) cause;
+                }
+                throw new IllegalStateException(cause);
+            }
+        }
+
+    }
+
+    /**
+     * The editor for a node above the configured depth.
+     */
+    private static class SubtreeEditor implements Editor {
+
+        private final Editor sequential;
+
+        private final Editor concurrent;
+
+        private final Subtrees subtrees;
+
+        SubtreeEditor(@Nullable Editor sequential, @NotNull Editor concurrent, Subtrees subtrees) {
+            this.sequential = sequential;
+            this.concurrent = concurrent;
+            this.subtrees = subtrees;
+        }
+
+        @Override
+        public void enter(NodeState before, NodeState after) throws CommitFailedException {
+            if (sequential != null) {
+                sequential.enter(before, after);
+            }
+            concurrent.enter(before, after);
+        }
+
+        @Override
+        public void leave(NodeState before, NodeState after) throws CommitFailedException {
+            subtrees.await();
+            if (sequential != null) {
+                sequential.leave(before, after);
+            }
+            concurrent.leave(before, after);
+        }
+
+        @Override
+        public void propertyAdded(PropertyState after) throws CommitFailedException {
+            if (sequential != null) {
+                sequential.propertyAdded(after);
+            }
+            concurrent.propertyAdded(after);
+        }
+
+        @Override
+        public void propertyChanged(PropertyState before, PropertyState after)
+                throws CommitFailedException {
+            if (sequential != null) {
+                sequential.propertyChanged(before, after);
+            }
+            concurrent.propertyChanged(before, after);
+        }
+
+        @Override
+        public void propertyDeleted(PropertyState before) throws CommitFailedException {
+            if (sequential != null) {
+                sequential.propertyDeleted(before);
+            }
+            concurrent.propertyDeleted(before);
+        }
+
+        @Override
+        @Nullable
+        public Editor childNodeAdded(String name, NodeState after) throws CommitFailedException {
+            return subtrees.child(
+                    sequential == null ? null : sequential.childNodeAdded(name, after),
+                    concurrent.childNodeAdded(name, after), MISSING_NODE, after);
+        }
+
+        @Override
+        @Nullable
+        public Editor childNodeChanged(String name, NodeState before, NodeState after)
+                throws CommitFailedException {
+            return subtrees.child(
+                    sequential == null ? null : sequential.childNodeChanged(name, before, after),
+                    concurrent.childNodeChanged(name, before, after), before, after);
+        }
+
+        @Override
+        @Nullable
+        public Editor childNodeDeleted(String name, NodeState before) throws CommitFailedException {
+            return subtrees.child(
+                    sequential == null ? null : sequential.childNodeDeleted(name, before),
+                    concurrent.childNodeDeleted(name, before), before, MISSING_NODE);
+        }
+
+    }
+
+    /**
+     * The editor of a subtree diff, which stops the diff once cancelled.
+     */
+    private class CancelableEditor implements Editor {
+
+        private final Editor editor;
+
+        CancelableEditor(Editor editor) {
+            this.editor = editor;
+        }
+
+        @Override
+        public void enter(NodeState before, NodeState after) throws CommitFailedException {
+            if (cancelled) {
+                throw new CommitFailedException("IndexUpdate", 3, "The subtree diff was cancelled");
+            }
+            editor.enter(before, after);
+        }
+
+        @Override
+        public void leave(NodeState before, NodeState after) throws CommitFailedException {
+            editor.leave(before, after);
+        }
+
+        @Override
+        public void propertyAdded(PropertyState after) throws CommitFailedException {
+            editor.propertyAdded(after);
+        }
+
+        @Override
+        public void propertyChanged(PropertyState before, PropertyState after)
+                throws CommitFailedException {
+            editor.propertyChanged(before, after);
+        }
+
+        @Override
+        public void propertyDeleted(PropertyState before) throws CommitFailedException {
+            editor.propertyDeleted(before);
+        }
+
+        @Override
+        @Nullable
+        public Editor childNodeAdded(String name, NodeState after) throws CommitFailedException {
+            return wrap(editor.childNodeAdded(name, after));
+        }
+
+        @Override
+        @Nullable
+        public Editor childNodeChanged(String name, NodeState before, NodeState after)
+                throws CommitFailedException {
+            return wrap(editor.childNodeChanged(name, before, after));
+        }
+
+        @Override
+        @Nullable
+        public Editor childNodeDeleted(String name, NodeState before) throws CommitFailedException {
+            return wrap(editor.childNodeDeleted(name, before));
+        }
+
+        private Editor wrap(@Nullable Editor child) {
+            return child == null ? null : new CancelableEditor(child);
+        }
+
+    }
+
+}
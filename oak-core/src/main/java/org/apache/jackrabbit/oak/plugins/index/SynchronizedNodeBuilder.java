@@ -0,0 +1,301 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.oak.plugins.index;
+
+import static org.apache.jackrabbit.guava.common.base.Preconditions.checkNotNull;
+import static org.apache.jackrabbit.guava.common.collect.Lists.newArrayList;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+import org.apache.jackrabbit.oak.api.Blob;
+import org.apache.jackrabbit.oak.api.PropertyState;
+import org.apache.jackrabbit.oak.api.Type;
+import org.apache.jackrabbit.oak.spi.state.NodeBuilder;
+import org.apache.jackrabbit.oak.spi.state.NodeState;
+import org.apache.jackrabbit.oak.spi.state.ReadOnlyBuilder;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * A node builder that synchronizes all calls on the builder tree, so that
+ * different threads can modify different subtrees. Child builders share the
+ * lock of the root builder. The iterables that are returned are copies.
+ * <p>
+ * Read-only builders are returned as is, as they are immutable.
+ */
+class SynchronizedNodeBuilder implements NodeBuilder {
+
+    private final NodeBuilder builder;
+
+    private final Object lock;
+
+    SynchronizedNodeBuilder(@NotNull NodeBuilder builder) {
+        this(builder, new Object());
+    }
+
+    private SynchronizedNodeBuilder(NodeBuilder builder, Object lock) {
+        this.builder = checkNotNull(builder);
+        this.lock = lock;
+    }
+
+    private NodeBuilder wrap(NodeBuilder child) {
+        if (child instanceof ReadOnlyBuilder) {
+            return child;
+        }
+        return new SynchronizedNodeBuilder(child, lock);
+    }
+
+    @Override
+    @NotNull
+    public NodeState getNodeState() {
+        synchronized (lock) {
+            return builder.getNodeState();
+        }
+    }
+
+    @Override
+    @NotNull
+    public NodeState getBaseState() {
+        synchronized (lock) {
+            return builder.getBaseState();
+        }
+    }
+
+    @Override
+    public boolean exists() {
+        synchronized (lock) {
+            return builder.exists();
+        }
+    }
+
+    @Override
+    public boolean isNew() {
+        synchronized (lock) {
+            return builder.isNew();
+        }
+    }
+
+    @Override
+    public boolean isNew(String name) {
+        synchronized (lock) {
+            return builder.isNew(name);
+        }
+    }
+
+    @Override
+    public boolean isModified() {
+        synchronized (lock) {
+            return builder.isModified();
+        }
+    }
+
+    @Override
+    public boolean isReplaced() {
+        synchronized (lock) {
+            return builder.isReplaced();
+        }
+    }
+
+    @Override
+    public boolean isReplaced(String name) {
+        synchronized (lock) {
+            return builder.isReplaced(name);
+        }
+    }
+
+    @Override
+    public long getChildNodeCount(long max) {
+        synchronized (lock) {
+            return builder.getChildNodeCount(max);
+        }
+    }
+
+    @Override
+    @NotNull
+    public Iterable<String> getChildNodeNames() {
+        synchronized (lock) {
+            return newArrayList(builder.getChildNodeNames());
+        }
+    }
+
+    @Override
+    public boolean hasChildNode(@NotNull String name) {
+        synchronized (lock) {
+            return builder.hasChildNode(name);
+        }
+    }
+
+    @Override
+    @NotNull
+    public NodeBuilder child(@NotNull String name) throws IllegalArgumentException {
+        synchronized (lock) {
+            return wrap(builder.child(name));
+        }
+    }
+
+    @Override
+    @NotNull
+    public NodeBuilder getChildNode(@NotNull String name) throws IllegalArgumentException {
+        synchronized (lock) {
+            return wrap(builder.getChildNode(name));
+        }
+    }
+
+    @Override
+    @NotNull
+    public NodeBuilder setChildNode(@NotNull String name) throws IllegalArgumentException {
+        synchronized (lock) {
+            return wrap(builder.setChildNode(name));
+        }
+    }
+
+    @Override
+    @NotNull
+    public NodeBuilder setChildNode(@NotNull String name, @NotNull NodeState nodeState)
+            throws IllegalArgumentException {
+        synchronized (lock) {
+            return wrap(builder.setChildNode(name, nodeState));
+        }
+    }
+
+    @Override
+    public boolean remove() {
+        synchronized (lock) {
+            return builder.remove();
+        }
+    }
+
+    @Override
+    public boolean moveTo(@NotNull NodeBuilder newParent, @NotNull String newName)
+            throws IllegalArgumentException {
+        if (newParent instanceof SynchronizedNodeBuilder) {
+            newParent = ((SynchronizedNodeBuilder) newParent).builder;
+        }
+        synchronized (lock) {
+            return builder.moveTo(newParent, newName);
+        }
+    }
+
+    @Override
+    public long getPropertyCount() {
+        synchronized (lock) {
+            return builder.getPropertyCount();
+        }
+    }
+
+    @Override
+    @NotNull
+    public Iterable<? extends PropertyState> getProperties() {
+        synchronized (lock) {
+            return newArrayList(builder.getProperties());
+        }
+    }
+
+    @Override
+    public boolean hasProperty(String name) {
+        synchronized (lock) {
+            return builder.hasProperty(name);
+        }
+    }
+
+    @Override
+    @Nullable
+    public PropertyState getProperty(String name) {
+        synchronized (lock) {
+            return builder.getProperty(name);
+        }
+    }
+
+    @Override
+    public boolean getBoolean(@NotNull String name) {
+        synchronized (lock) {
+            return builder.getBoolean(name);
+        }
+    }
+
+    @Override
+    @Nullable
+    public String getString(String name) {
+        synchronized (lock) {
+            return builder.getString(name);
+        }
+    }
+
+    @Override
+    @Nullable
+    public String getName(@NotNull String name) {
+        synchronized (lock) {
+            return builder.getName(name);
+        }
+    }
+
+    @Override
+    @NotNull
+    public Iterable<String> getNames(@NotNull String name) {
+        synchronized (lock) {
+            return newArrayList(builder.getNames(name));
+        }
+    }
+
+    @Override
+    @NotNull
+    public NodeBuilder setProperty(@NotNull PropertyState property) throws IllegalArgumentException {
+        synchronized (lock) {
+            builder.setProperty(property);
+        }
+        return this;
+    }
+
+    @Override
+    @NotNull
+    public <T> NodeBuilder setProperty(String name, @NotNull T value) throws IllegalArgumentException {
+        synchronized (lock) {
+            builder.setProperty(name, value);
+        }
+        return this;
+    }
+
+    @Override
+    @NotNull
+    public <T> NodeBuilder setProperty(String name, @NotNull T value, Type<T> type)
+            throws IllegalArgumentException {
+        synchronized (lock) {
+            builder.setProperty(name, value, type);
+        }
+        return this;
+    }
+
+    @Override
+    @NotNull
+    public NodeBuilder removeProperty(String name) {
+        synchronized (lock) {
+            builder.removeProperty(name);
+        }
+        return this;
+    }
+
+    /**
+     * Blobs are written to the blob store, and not to the builder tree, so
+     * this is not synchronized.
+     */
+    @Override
+    public Blob createBlob(InputStream stream) throws IOException {
+        return builder.createBlob(stream);
+    }
+
+}
@@ -22,6 +22,7 @@ import org.apache.jackrabbit.oak.api.CommitFailedException;
 import org.apache.jackrabbit.oak.api.PropertyState;
 import org.apache.jackrabbit.oak.api.Type;
 import org.apache.jackrabbit.oak.commons.PathUtils;
+import org.apache.jackrabbit.oak.plugins.index.ConcurrentIndexEditor;
 import org.apache.jackrabbit.oak.plugins.index.IndexUpdateCallback;
 import org.apache.jackrabbit.oak.plugins.index.counter.jmx.NodeCounter;
 import org.apache.jackrabbit.oak.plugins.index.property.Multiplexers;
@@ -40,8 +41,12 @@ import java.util.Map;
 
 /**
  * An approximate descendant node counter mechanism.
+ * <p>
+ * Different subtrees may be processed concurrently: the counts are
+ * propagated to the parent editors, and written, while holding the lock of
+ * the (shared) root data.
  */
-public class NodeCounterEditor implements Editor {
+public class NodeCounterEditor implements ConcurrentIndexEditor {
 
     public static final String DATA_NODE_NAME = ":index";
 
@@ -149,11 +154,13 @@ public class NodeCounterEditor implements Editor {
     @Override
     public void leave(NodeState before, NodeState after)
             throws CommitFailedException {
-        if (NodeCounter.COUNT_HASH) {
-            leaveNew();
-            return;
+        synchronized (root) {
+            if (NodeCounter.COUNT_HASH) {
+                leaveNew();
+                return;
+            }
+            leaveOld(before, after);
         }
-        leaveOld(before, after);
     }
 
     private void leaveOld(NodeState before, NodeState after)
@@ -303,9 +310,10 @@ public class NodeCounterEditor implements Editor {
     }
 
     private void count(int offset, Mount mount) {
-        countOffsets.compute(mount, (m, v) -> v == null ? offset : v + offset);
-        if (parent != null) {
-            parent.count(offset, mount);
+        synchronized (root) {
+            for (NodeCounterEditor e = this; e != null; e = e.parent) {
+                e.countOffsets.compute(mount, (m, v) -> v == null ? offset : v + offset);
+            }
         }
     }
 
@@ -21,6 +21,7 @@ package org.apache.jackrabbit.oak.plugins.index.counter;
 import org.apache.jackrabbit.oak.api.CommitFailedException;
 import org.apache.jackrabbit.oak.api.PropertyState;
 import org.apache.jackrabbit.oak.api.Type;
+import org.apache.jackrabbit.oak.plugins.index.IndexConstants;
 import org.apache.jackrabbit.oak.plugins.index.IndexEditorProvider;
 import org.apache.jackrabbit.oak.plugins.index.IndexUpdateCallback;
 import org.apache.jackrabbit.oak.plugins.index.counter.jmx.NodeCounter;
@@ -72,6 +73,21 @@ public class NodeCounterEditorProvider implements IndexEditorProvider {
         } else {
             resolution = s.getValue(Type.LONG).intValue();
         }
+        if (definition.getBoolean(NodeCounterSketchEditor.SKETCH)
+                && definition.hasProperty(IndexConstants.ASYNC_PROPERTY_NAME)) {
+            // sketches are only kept by async indexing, where most
+            // index updates don't need to write
+            int sketchDepth;
+            s = definition.getProperty(NodeCounterSketchEditor.SKETCH_DEPTH);
+            if (s == null) {
+                sketchDepth = NodeCounterSketchEditor.DEFAULT_SKETCH_DEPTH;
+            } else {
+                sketchDepth = s.getValue(Type.LONG).intValue();
+            }
+            NodeCounterSketchEditor.SketchRoot rootData = new NodeCounterSketchEditor.SketchRoot(
+                    sketchDepth, definition, callback, mountInfoProvider, statisticsProvider);
+            return new NodeCounterSketchEditor(rootData);
+        }
         long seed;
         s = definition.getProperty(SEED);
         if (s != null) {
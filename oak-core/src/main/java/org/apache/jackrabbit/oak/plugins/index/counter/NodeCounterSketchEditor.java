@@ -0,0 +1,451 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.jackrabbit.oak.plugins.index.counter;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.jackrabbit.oak.api.CommitFailedException;
+import org.apache.jackrabbit.oak.api.PropertyState;
+import org.apache.jackrabbit.oak.api.Type;
+import org.apache.jackrabbit.oak.commons.PathUtils;
+import org.apache.jackrabbit.oak.plugins.index.ConcurrentIndexEditor;
+import org.apache.jackrabbit.oak.plugins.index.IndexUpdateCallback;
+import org.apache.jackrabbit.oak.plugins.index.property.Multiplexers;
+import org.apache.jackrabbit.oak.plugins.index.statistics.HyperLogLog;
+import org.apache.jackrabbit.oak.spi.commit.Editor;
+import org.apache.jackrabbit.oak.spi.mount.Mount;
+import org.apache.jackrabbit.oak.spi.mount.MountInfoProvider;
+import org.apache.jackrabbit.oak.spi.state.NodeBuilder;
+import org.apache.jackrabbit.oak.spi.state.NodeState;
+import org.apache.jackrabbit.oak.stats.CounterStats;
+import org.apache.jackrabbit.oak.stats.StatisticsProvider;
+import org.apache.jackrabbit.oak.stats.StatsOptions;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * A descendant node counter that keeps a HyperLogLog sketch of the added (and
+ * one of the removed) node paths for each subtree, up to a configured depth.
+ * <p>
+ * This mode is used if the counter index definition is asynchronous and has
+ * the property {@code sketch} set to true. Unlike the {@link NodeCounterEditor},
+ * which samples nodes and updates the {@code :cnt} property of all ancestors
+ * of a sampled node, a sketch is only written if one of its registers changed.
+ * Once a subtree contains many nodes, this is rarely the case, so that most
+ * index updates do not write to the index content at all. The counts are
+ * also more accurate for small subtrees.
+ * <p>
+ * The estimated count is the difference of the two sketches. If a node is
+ * removed and later added again at the same path, it is counted in both
+ * sketches of its ancestors, so that the difference is too low. Because of
+ * that, each subtree with a sketch also has a sampled, signed counter (the
+ * {@code :cnt} property, updated for about one in
+ * {@link ApproximateCounter#COUNT_RESOLUTION} added or removed nodes, based on
+ * the hash of the path). Once more than a tenth of the added nodes were
+ * removed, the sampled count is used instead of the sketches. The sketch of a
+ * removed subtree is removed together with it.
+ */
+public class NodeCounterSketchEditor implements ConcurrentIndexEditor {
+
+    /**
+     * The index definition property to enable sketch based counting.
+     */
+    public static final String SKETCH = "sketch";
+
+    /**
+     * The index definition property for the maximum depth of a subtree that
+     * has its own sketch. Counts of deeper paths are not known.
+     */
+    public static final String SKETCH_DEPTH = "sketchDepth";
+
+    public static final int DEFAULT_SKETCH_DEPTH = 3;
+
+    // the sketch of the paths of the added descendant nodes
+    public static final String SKETCH_PROPERTY_NAME = ":hll";
+
+    // the sketch of the paths of the removed descendant nodes
+    public static final String SKETCH_REMOVED_PROPERTY_NAME = ":hllRemoved";
+
+    // the sketch estimate is only used while at most 1 / REMOVED_RATIO
+    // of the added nodes were removed
+    private static final int REMOVED_RATIO = 10;
+
+    // the name of the metric that is logged to the jmx console
+    private static final String NODE_COUNT_FROM_ROOT = "NODE_COUNT_FROM_ROOT";
+
+    private final SketchRoot root;
+    private final NodeCounterSketchEditor parent;
+    private final String name;
+    private final String path;
+    private final int depth;
+    private final Mount currentMount;
+    private final boolean mountCanChange;
+
+    /**
+     * The editor that keeps the sketches of this subtree: this editor, or the
+     * closest ancestor that is not deeper than the sketch depth.
+     */
+    private final NodeCounterSketchEditor sketchOwner;
+
+    private Map<Mount, HyperLogLog> added;
+    private Map<Mount, HyperLogLog> removed;
+    private Map<Mount, Long> countOffsets;
+
+    NodeCounterSketchEditor(SketchRoot root) {
+        this.root = root;
+        this.parent = null;
+        this.name = "/";
+        this.path = "/";
+        this.depth = 0;
+        this.currentMount = root.mountInfoProvider.getDefaultMount();
+        this.mountCanChange = true;
+        this.sketchOwner = this;
+    }
+
+    private NodeCounterSketchEditor(NodeCounterSketchEditor parent, String name) {
+        this.root = parent.root;
+        this.parent = parent;
+        this.name = name;
+        this.path = PathUtils.concat(parent.path, name);
+        this.depth = parent.depth + 1;
+        if (parent.mountCanChange) {
+            this.currentMount = root.mountInfoProvider.getMountByPath(path);
+            this.mountCanChange = currentMount.isDefault() && supportMounts(path);
+        } else {
+            this.currentMount = parent.currentMount;
+            this.mountCanChange = false;
+        }
+        this.sketchOwner = depth <= root.sketchDepth ? this : parent.sketchOwner;
+    }
+
+    @Override
+    public void enter(NodeState before, NodeState after)
+            throws CommitFailedException {
+        // nothing to do
+    }
+
+    @Override
+    public void leave(NodeState before, NodeState after)
+            throws CommitFailedException {
+        if (sketchOwner != this) {
+            return;
+        }
+        synchronized (root) {
+            if (parent != null && !after.exists()) {
+                // the subtree was removed: so is its sketch
+                removeSketches();
+                return;
+            }
+            boolean updated = false;
+            updated |= writeSketches(added, SKETCH_PROPERTY_NAME);
+            updated |= writeSketches(removed, SKETCH_REMOVED_PROPERTY_NAME);
+            updated |= writeCount();
+            if (updated) {
+                root.callback.indexUpdate();
+                if (parent == null) {
+                    updateMetric();
+                }
+            }
+        }
+    }
+
+    private void removeSketches() throws CommitFailedException {
+        boolean updated = false;
+        for (Mount mount : root.mountInfoProvider.getMountsPlacedUnder(path)) {
+            updated |= removeSketch(mount);
+        }
+        updated |= removeSketch(root.mountInfoProvider.getMountByPath(path));
+        if (updated) {
+            root.callback.indexUpdate();
+        }
+    }
+
+    private boolean removeSketch(Mount mount) {
+        if (mount.isReadOnly()) {
+            return false;
+        }
+        NodeBuilder builder = getExistingBuilder(mount);
+        if (!builder.exists()) {
+            return false;
+        }
+        builder.remove();
+        return true;
+    }
+
+    private boolean writeSketches(Map<Mount, HyperLogLog> sketches, String propertyName) {
+        if (sketches == null) {
+            return false;
+        }
+        boolean updated = false;
+        for (Map.Entry<Mount, HyperLogLog> e : sketches.entrySet()) {
+            Mount mount = e.getKey();
+            if (mount.isReadOnly()) {
+                continue;
+            }
+            NodeBuilder builder = getBuilder(mount);
+            HyperLogLog sketch = e.getValue();
+            PropertyState p = builder.getProperty(propertyName);
+            String old = p == null ? null : p.getValue(Type.STRING);
+            if (old != null) {
+                sketch.merge(HyperLogLog.deserialize(old));
+            }
+            String s = sketch.serialize();
+            if (!s.equals(old)) {
+                builder.setProperty(propertyName, s);
+                updated = true;
+            }
+        }
+        return updated;
+    }
+
+    private boolean writeCount() {
+        if (countOffsets == null) {
+            return false;
+        }
+        boolean updated = false;
+        for (Map.Entry<Mount, Long> e : countOffsets.entrySet()) {
+            Mount mount = e.getKey();
+            if (mount.isReadOnly() || e.getValue() == 0) {
+                continue;
+            }
+            NodeBuilder builder = getBuilder(mount);
+            PropertyState p = builder.getProperty(NodeCounterEditor.COUNT_HASH_PROPERTY_NAME);
+            long count = (p == null ? 0 : p.getValue(Type.LONG)) + e.getValue();
+            if (count <= 0) {
+                builder.removeProperty(NodeCounterEditor.COUNT_HASH_PROPERTY_NAME);
+            } else {
+                builder.setProperty(NodeCounterEditor.COUNT_HASH_PROPERTY_NAME, count);
+            }
+            updated = true;
+        }
+        return updated;
+    }
+
+    private void updateMetric() {
+        long count = getEstimatedCount(root.definition.getNodeState(), "/");
+        if (count >= 0) {
+            root.nodeCounterMetric.inc(count - root.nodeCounterMetric.getCount());
+        }
+    }
+
+    private NodeBuilder getBuilder(Mount mount) {
+        if (parent == null) {
+            return root.definition.child(Multiplexers.getNodeForMount(mount, NodeCounterEditor.DATA_NODE_NAME));
+        } else {
+            return parent.getBuilder(mount).child(name);
+        }
+    }
+
+    private NodeBuilder getExistingBuilder(Mount mount) {
+        if (parent == null) {
+            return root.definition.getChildNode(Multiplexers.getNodeForMount(mount, NodeCounterEditor.DATA_NODE_NAME));
+        } else {
+            return parent.getExistingBuilder(mount).getChildNode(name);
+        }
+    }
+
+    @Override
+    public void propertyAdded(PropertyState after) throws CommitFailedException {
+        // nothing to do
+    }
+
+    @Override
+    public void propertyChanged(PropertyState before, PropertyState after)
+            throws CommitFailedException {
+        // nothing to do
+    }
+
+    @Override
+    public void propertyDeleted(PropertyState before)
+            throws CommitFailedException {
+        // nothing to do
+    }
+
+    @Override
+    @Nullable
+    public Editor childNodeChanged(String name, NodeState before, NodeState after)
+            throws CommitFailedException {
+        return new NodeCounterSketchEditor(this, name);
+    }
+
+    @Override
+    @Nullable
+    public Editor childNodeAdded(String name, NodeState after)
+            throws CommitFailedException {
+        NodeCounterSketchEditor child = new NodeCounterSketchEditor(this, name);
+        record(HyperLogLog.hash(child.path), false);
+        return child;
+    }
+
+    @Override
+    @Nullable
+    public Editor childNodeDeleted(String name, NodeState before)
+            throws CommitFailedException {
+        NodeCounterSketchEditor child = new NodeCounterSketchEditor(this, name);
+        record(HyperLogLog.hash(child.path), true);
+        return child;
+    }
+
+    private void record(long hash, boolean remove) {
+        // the same paths are sampled when adding and when removing nodes
+        long offset = 0;
+        if (Long.remainderUnsigned(HyperLogLog.mix64(hash), ApproximateCounter.COUNT_RESOLUTION) == 0) {
+            offset = remove ? -ApproximateCounter.COUNT_RESOLUTION : ApproximateCounter.COUNT_RESOLUTION;
+        }
+        synchronized (root) {
+            for (NodeCounterSketchEditor e = sketchOwner; e != null; e = e.parent) {
+                if (offset != 0) {
+                    if (e.countOffsets == null) {
+                        e.countOffsets = new HashMap<>();
+                    }
+                    e.countOffsets.merge(currentMount, offset, Long::sum);
+                }
+                Map<Mount, HyperLogLog> sketches;
+                if (remove) {
+                    if (e.removed == null) {
+                        e.removed = new HashMap<>();
+                    }
+                    sketches = e.removed;
+                } else {
+                    if (e.added == null) {
+                        e.added = new HashMap<>();
+                    }
+                    sketches = e.added;
+                }
+                sketches.computeIfAbsent(currentMount, m -> new HyperLogLog()).addHash(hash);
+            }
+        }
+    }
+
+    private boolean supportMounts(String path) {
+        return root.mountInfoProvider
+                .getNonDefaultMounts()
+                .stream()
+                .anyMatch(m -> m.isSupportFragmentUnder(path) || m.isUnder(path));
+    }
+
+    /**
+     * Get the estimated number of descendant nodes of the given path, as
+     * recorded in the sketches of a counter index.
+     *
+     * @param indexDefinition the counter index definition
+     * @param path the path
+     * @return -1 if there are no sketches (the index does not use sketches,
+     *         or was not built yet), or if the path is deeper than the sketch
+     *         depth; otherwise the estimated count (from the sketches, or
+     *         the sampled count if many nodes were removed)
+     */
+    public static long getEstimatedCount(NodeState indexDefinition, String path) {
+        if (!indexDefinition.getBoolean(SKETCH)) {
+            return -1;
+        }
+        if (PathUtils.getDepth(path) > getSketchDepth(indexDefinition)) {
+            return -1;
+        }
+        HyperLogLog added = null;
+        HyperLogLog removed = null;
+        long sampledCount = 0;
+        boolean found = false;
+        for (String dataNodeName : indexDefinition.getChildNodeNames()) {
+            if (!isDataNodeName(dataNodeName)) {
+                continue;
+            }
+            NodeState s = indexDefinition.getChildNode(dataNodeName);
+            found |= s.hasProperty(SKETCH_PROPERTY_NAME);
+            for (String p : PathUtils.elements(path)) {
+                s = s.getChildNode(p);
+            }
+            added = merge(added, s.getProperty(SKETCH_PROPERTY_NAME));
+            removed = merge(removed, s.getProperty(SKETCH_REMOVED_PROPERTY_NAME));
+            PropertyState p = s.getProperty(NodeCounterEditor.COUNT_HASH_PROPERTY_NAME);
+            sampledCount += p == null ? 0 : p.getValue(Type.LONG);
+        }
+        if (!found) {
+            return -1;
+        }
+        if (added == null) {
+            return 0;
+        }
+        long addedCount = added.estimate();
+        long removedCount = removed == null ? 0 : removed.estimate();
+        if (removedCount * REMOVED_RATIO > addedCount) {
+            // paths that were removed and then added again are in both
+            // sketches, so the difference could be much too low
+            return Math.max(0, sampledCount);
+        }
+        return Math.max(0, addedCount - removedCount);
+    }
+
+    /**
+     * Get the (longest) ancestor path, or the path itself, that has a sketch
+     * in the given counter index.
+     *
+     * @param indexDefinition the counter index definition
+     * @param path the path
+     * @return the path, or its ancestor at the sketch depth
+     */
+    public static String getSketchPath(NodeState indexDefinition, String path) {
+        int depth = PathUtils.getDepth(path);
+        int sketchDepth = getSketchDepth(indexDefinition);
+        if (depth <= sketchDepth) {
+            return path;
+        }
+        return PathUtils.getAncestorPath(path, depth - sketchDepth);
+    }
+
+    private static int getSketchDepth(NodeState indexDefinition) {
+        PropertyState p = indexDefinition.getProperty(SKETCH_DEPTH);
+        return p == null ? DEFAULT_SKETCH_DEPTH : p.getValue(Type.LONG).intValue();
+    }
+
+    private static HyperLogLog merge(HyperLogLog sketch, PropertyState p) {
+        if (p == null) {
+            return sketch;
+        }
+        HyperLogLog s = HyperLogLog.deserialize(p.getValue(Type.STRING));
+        if (sketch != null) {
+            s.merge(sketch);
+        }
+        return s;
+    }
+
+    private static boolean isDataNodeName(String name) {
+        return NodeCounterEditor.DATA_NODE_NAME.equals(name)
+                || (name.startsWith(":") && name.endsWith("-" + Multiplexers.stripStartingColon(NodeCounterEditor.DATA_NODE_NAME)));
+    }
+
+    public static class SketchRoot {
+        final int sketchDepth;
+        final NodeBuilder definition;
+        final IndexUpdateCallback callback;
+        final MountInfoProvider mountInfoProvider;
+        final CounterStats nodeCounterMetric;
+
+        SketchRoot(int sketchDepth, NodeBuilder definition, IndexUpdateCallback callback,
+                MountInfoProvider mountInfoProvider, StatisticsProvider statisticsProvider) {
+            this.sketchDepth = sketchDepth;
+            this.definition = definition;
+            this.callback = callback;
+            this.mountInfoProvider = mountInfoProvider;
+            this.nodeCounterMetric = statisticsProvider.getCounterStats(
+                    NODE_COUNT_FROM_ROOT, StatsOptions.DEFAULT);
+        }
+    }
+
+}
@@ -31,6 +31,7 @@ import org.apache.jackrabbit.oak.commons.PathUtils;
 import org.apache.jackrabbit.oak.commons.jmx.AnnotatedStandardMBean;
 import org.apache.jackrabbit.oak.plugins.index.IndexConstants;
 import org.apache.jackrabbit.oak.plugins.index.counter.NodeCounterEditor;
+import org.apache.jackrabbit.oak.plugins.index.counter.NodeCounterSketchEditor;
 import org.apache.jackrabbit.oak.plugins.index.property.Multiplexers;
 import org.apache.jackrabbit.oak.spi.state.ChildNodeEntry;
 import org.apache.jackrabbit.oak.spi.state.NodeState;
@@ -143,6 +144,10 @@ public class NodeCounter extends AnnotatedStandardMBean implements NodeCounterMB
             // no index data (not yet indexed, or very few nodes)
             return -1;
         }
+        Long sketchCount = getSketchCount(s, path, max);
+        if (sketchCount != null) {
+            return sketchCount;
+        }
 
         long sum = getIndexingData(s, path)
                 .map(n -> n.getProperty(NodeCounterEditor.COUNT_PROPERTY_NAME))
@@ -174,6 +179,10 @@ public class NodeCounter extends AnnotatedStandardMBean implements NodeCounterMB
             // no index data (not yet indexed, or very few nodes)
             return -1;
         }
+        Long sketchCount = getSketchCount(s, path, max);
+        if (sketchCount != null) {
+            return sketchCount;
+        }
 
         long sum = getIndexingData(s, path)
                 .map(NodeCounter::getCombinedCountIfAvailable)
@@ -187,6 +196,33 @@ public class NodeCounter extends AnnotatedStandardMBean implements NodeCounterMB
         }
     }
     
+    /**
+     * Get the count from the sketches of the counter index, if the index uses
+     * sketches.
+     *
+     * @param indexDefinition the counter index definition
+     * @param path the path
+     * @param max whether to get the maximum expected number of nodes
+     * @return null if there are no sketches, -1 if unknown (the path is below
+     *         the sketch depth and max is false), or the (maximum) estimated
+     *         number of descendant nodes
+     */
+    private static Long getSketchCount(NodeState indexDefinition, String path, boolean max) {
+        if (!indexDefinition.getBoolean(NodeCounterSketchEditor.SKETCH)) {
+            return null;
+        }
+        String sketchPath = NodeCounterSketchEditor.getSketchPath(indexDefinition, path);
+        long count = NodeCounterSketchEditor.getEstimatedCount(indexDefinition, sketchPath);
+        if (count < 0) {
+            return null;
+        }
+        if (!sketchPath.equals(path)) {
+            // only the count of an ancestor is known
+            return max ? count + ApproximateCounter.COUNT_RESOLUTION : -1L;
+        }
+        return count + (max ? ApproximateCounter.COUNT_RESOLUTION : 0);
+    }
+
     private static Long getCombinedCountIfAvailable(NodeState s) {
         boolean found = false;
         long x = 0;
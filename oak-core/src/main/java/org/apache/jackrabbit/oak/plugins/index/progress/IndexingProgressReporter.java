@@ -70,7 +70,7 @@ public class IndexingProgressReporter implements NodeTraversalCallback {
      * indexing cycle
      * @param path
      */
-    public void reindexingTraversalStart(String path) {
+    public synchronized void reindexingTraversalStart(String path) {
         estimatedCount = nodeCountEstimator.getEstimatedNodeCount(path, getReindexedIndexPaths());
         if (estimatedCount >= 0) {
             log.info("Estimated node count to be traversed for reindexing under {} is [{}]", path, estimatedCount);
@@ -82,7 +82,7 @@ public class IndexingProgressReporter implements NodeTraversalCallback {
      * Invoked to indicate that reindexing phase has ended in current
      * indexing cycle
      */
-    public void reindexingTraversalEnd() {
+    public synchronized void reindexingTraversalEnd() {
         messagePrefix = INDEX_MSG;
     }
 
@@ -90,7 +90,7 @@ public class IndexingProgressReporter implements NodeTraversalCallback {
         this.messagePrefix = messagePrefix;
     }
 
-    public void traversedNode(PathSource pathSource) throws CommitFailedException {
+    public synchronized void traversedNode(PathSource pathSource) throws CommitFailedException {
         if (++traversalCount % 10000 == 0) {
             double rate = traversalRateEstimator.getNodesTraversedPerSecond();
             String formattedRate = String.format("%1.2f nodes/s, %1.2f nodes/hr", rate, rate * 3600);
@@ -109,14 +109,14 @@ public class IndexingProgressReporter implements NodeTraversalCallback {
      * @param estimatedCount an estimate of count of number of entries in the index. If less
      *                       than zero then it indicates that estimation cannot be done
      */
-    public void registerIndex(String indexPath, boolean reindexing, long estimatedCount) {
+    public synchronized void registerIndex(String indexPath, boolean reindexing, long estimatedCount) {
         indexUpdateStates.put(indexPath, new IndexUpdateState(indexPath, reindexing, estimatedCount));
     }
 
     /**
      * Callback to indicate that index at give path has got an update
      */
-    public void indexUpdate(String indexPath) throws CommitFailedException {
+    public synchronized void indexUpdate(String indexPath) throws CommitFailedException {
         indexUpdateStates.get(indexPath).indexUpdate();
     }
 
@@ -19,10 +19,14 @@
 package org.apache.jackrabbit.oak.plugins.index.property;
 
 import static org.apache.jackrabbit.oak.plugins.index.IndexConstants.INDEX_CONTENT_NODE_NAME;
+import static org.apache.jackrabbit.oak.plugins.index.IndexConstants.STORAGE_STRATEGY;
+import static org.apache.jackrabbit.oak.plugins.index.IndexConstants.STORAGE_STRATEGY_COMPACT;
+import static org.apache.jackrabbit.oak.plugins.index.IndexConstants.TYPE_PROPERTY_NAME;
 
 import java.util.HashSet;
 import java.util.Set;
 
+import org.apache.jackrabbit.oak.plugins.index.property.strategy.CompactStoreStrategy;
 import org.apache.jackrabbit.oak.plugins.index.property.strategy.ContentMirrorStoreStrategy;
 import org.apache.jackrabbit.oak.plugins.index.property.strategy.FilteringIndexStoreStrategy;
 import org.apache.jackrabbit.oak.plugins.index.property.strategy.IndexStoreStrategy;
@@ -58,23 +62,46 @@ public class Multiplexers {
     private static final IndexStoreStrategy MIRROR = new ContentMirrorStoreStrategy(
             INDEX_CONTENT_NODE_NAME);
 
+    /** Index storage strategy */
+    private static final IndexStoreStrategy COMPACT = new CompactStoreStrategy(
+            INDEX_CONTENT_NODE_NAME);
+
     public static Set<IndexStoreStrategy> getStrategies(boolean unique,
             MountInfoProvider mountInfoProvider, NodeBuilder definition,
             String defaultName) {
         Iterable<String> children = definition.getChildNodeNames();
-        return getStrategies(unique, mountInfoProvider, children, defaultName);
+        boolean compact = isCompact(definition.getString(TYPE_PROPERTY_NAME),
+                definition.getString(STORAGE_STRATEGY));
+        return getStrategies(unique, compact, mountInfoProvider, children, defaultName);
     }
 
     public static Set<IndexStoreStrategy> getStrategies(boolean unique,
             MountInfoProvider mountInfoProvider, NodeState definition,
             String defaultName) {
         Iterable<String> children = definition.getChildNodeNames();
-        return getStrategies(unique, mountInfoProvider, children, defaultName);
+        boolean compact = isCompact(definition.getString(TYPE_PROPERTY_NAME),
+                definition.getString(STORAGE_STRATEGY));
+        return getStrategies(unique, compact, mountInfoProvider, children, defaultName);
+    }
+
+    /**
+     * Whether the compact storage strategy is used. This is only supported
+     * for property indexes, as only for those a change of the storage
+     * strategy triggers a reindex (see IndexUpdate). Other index types that
+     * use these strategies, such as the reference index, ignore the setting.
+     *
+     * @param type the index type
+     * @param storageStrategy the configured storage strategy, or null
+     * @return true if the compact strategy is used
+     */
+    private static boolean isCompact(String type, String storageStrategy) {
+        return PropertyIndexEditorProvider.TYPE.equals(type)
+                && STORAGE_STRATEGY_COMPACT.equals(storageStrategy);
     }
 
     private static Set<IndexStoreStrategy> getStrategies(boolean unique,
-            MountInfoProvider mountInfoProvider, Iterable<String> children,
-            String defaultName) {
+            boolean compact, MountInfoProvider mountInfoProvider,
+            Iterable<String> children, String defaultName) {
         if (mountInfoProvider.hasNonDefaultMounts()) {
             Set<String> names = new HashSet<String>();
             // TODO should this be collected from the index def?
@@ -88,20 +115,23 @@ public class Multiplexers {
             for (Mount m : mountInfoProvider.getNonDefaultMounts()) {
                 String n = getNodeForMount(m, defaultName);
                 names.remove(n);
-                strategies.add(newStrategy(unique, false, n, m));
+                strategies.add(newStrategy(unique, compact, false, n, m));
             }
 
             Mount defMount = mountInfoProvider.getDefaultMount();
             // TODO what to do with non-default names that are not covered by
             // the mount?
             for (String n : names) {
-                strategies.add(newStrategy(unique, true, n, defMount));
+                strategies.add(newStrategy(unique, compact, true, n, defMount));
             }
             // default mount
-            strategies.add(newStrategy(unique, true, defaultName, defMount));
+            strategies.add(newStrategy(unique, compact, true, defaultName, defMount));
             return strategies;
         } else {
-            return unique ? ImmutableSet.of(newUniqueStrategy(defaultName))
+            if (unique) {
+                return ImmutableSet.of(newUniqueStrategy(defaultName));
+            }
+            return compact ? ImmutableSet.of(newCompactStrategy(defaultName))
                     : ImmutableSet.of(newMirrorStrategy(defaultName));
         }
     }
@@ -122,14 +152,24 @@ public class Multiplexers {
         }
     }
 
-    private static IndexStoreStrategy newStrategy(boolean unique,
+    private static IndexStoreStrategy newCompactStrategy(String defaultName) {
+        if (INDEX_CONTENT_NODE_NAME.equals(defaultName)) {
+            return COMPACT;
+        } else {
+            return new CompactStoreStrategy(defaultName);
+        }
+    }
+
+    private static IndexStoreStrategy newStrategy(boolean unique, boolean compact,
             boolean defaultMount, String name, Mount m) {
         Predicate<String> filter = newFilter(m);
         boolean readOnly = unique && !m.isDefault() && RO_PRIVATE_UNIQUE_INDEX;
-        return unique ? new FilteringIndexStoreStrategy(
-                new UniqueEntryStoreStrategy(name), filter, readOnly)
-                : new FilteringIndexStoreStrategy(
-                        new ContentMirrorStoreStrategy(name), filter);
+        if (unique) {
+            return new FilteringIndexStoreStrategy(
+                    new UniqueEntryStoreStrategy(name), filter, readOnly);
+        }
+        return new FilteringIndexStoreStrategy(compact ? new CompactStoreStrategy(name)
+                : new ContentMirrorStoreStrategy(name), filter);
     }
 
     private static Predicate<String> newFilter(final Mount m) {
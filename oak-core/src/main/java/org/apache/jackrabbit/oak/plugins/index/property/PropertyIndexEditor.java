@@ -17,6 +17,7 @@
 package org.apache.jackrabbit.oak.plugins.index.property;
 
 import static org.apache.jackrabbit.guava.common.base.Suppliers.memoize;
+import static org.apache.jackrabbit.guava.common.collect.Sets.newConcurrentHashSet;
 import static org.apache.jackrabbit.guava.common.collect.Sets.newHashSet;
 import static java.util.Collections.singleton;
 import static org.apache.jackrabbit.JcrConstants.JCR_MIXINTYPES;
@@ -42,7 +43,7 @@ import org.apache.jackrabbit.guava.common.base.Supplier;
 import org.apache.jackrabbit.oak.api.CommitFailedException;
 import org.apache.jackrabbit.oak.api.PropertyState;
 import org.apache.jackrabbit.oak.plugins.index.IndexConstants;
-import org.apache.jackrabbit.oak.plugins.index.IndexEditor;
+import org.apache.jackrabbit.oak.plugins.index.ConcurrentIndexEditor;
 import org.apache.jackrabbit.oak.plugins.index.IndexUpdateCallback;
 import org.apache.jackrabbit.oak.plugins.index.property.strategy.IndexStoreStrategy;
 import org.apache.jackrabbit.oak.plugins.memory.PropertyValues;
@@ -60,7 +61,7 @@ import org.jetbrains.annotations.NotNull;
  * @see PropertyIndex
  * @see PropertyIndexLookup
  */
-class PropertyIndexEditor implements IndexEditor {
+class PropertyIndexEditor implements ConcurrentIndexEditor {
 
     /** Parent editor, or {@code null} if this is the root editor. */
     private final PropertyIndexEditor parent;
@@ -146,7 +147,7 @@ class PropertyIndexEditor implements IndexEditor {
 
         // keep track of modified keys for uniqueness checks
         if (definition.getBoolean(IndexConstants.UNIQUE_PROPERTY_NAME)) {
-            this.keysToCheckForUniqueness = newHashSet();
+            this.keysToCheckForUniqueness = newConcurrentHashSet();
         } else {
             this.keysToCheckForUniqueness = null;
         }
@@ -290,21 +291,24 @@ class PropertyIndexEditor implements IndexEditor {
                 updateCallback.indexUpdate();
                 String properties = definition.getString(PROPERTY_NAMES);
                 boolean uniqueIndex = keysToCheckForUniqueness != null;
-                for (IndexStoreStrategy strategy : getStrategies(uniqueIndex)) {
-                    String indexNodeName = strategy.getIndexNodeName();
-                    Supplier<NodeBuilder> index = memoize(() -> definition.child(indexNodeName));
-                    if (uniqueIndex) {
-                        Supplier<NodeBuilder> roBuilder;
-                        if (definition.hasChildNode(indexNodeName)) {
-                            roBuilder = index;
-                        } else {
-                            roBuilder = () -> EMPTY_NODE.builder();
+                // different subtrees may be processed concurrently
+                synchronized (definition) {
+                    for (IndexStoreStrategy strategy : getStrategies(uniqueIndex)) {
+                        String indexNodeName = strategy.getIndexNodeName();
+                        Supplier<NodeBuilder> index = memoize(() -> definition.child(indexNodeName));
+                        if (uniqueIndex) {
+                            Supplier<NodeBuilder> roBuilder;
+                            if (definition.hasChildNode(indexNodeName)) {
+                                roBuilder = index;
+                            } else {
+                                roBuilder = () -> EMPTY_NODE.builder();
+                            }
+                            keysToCheckForUniqueness.addAll(getExistingKeys(
+                                    afterKeys, roBuilder, strategy));
                         }
-                        keysToCheckForUniqueness.addAll(getExistingKeys(
-                                afterKeys, roBuilder, strategy));
+                        strategy.update(index, getPath(), properties, definition,
+                                beforeKeys, afterKeys);
                     }
-                    strategy.update(index, getPath(), properties, definition,
-                            beforeKeys, afterKeys);
                 }
             }
         }
@@ -32,6 +32,7 @@ import org.apache.jackrabbit.oak.plugins.index.IndexConstants;
 import org.apache.jackrabbit.oak.plugins.index.IndexUtils;
 import org.apache.jackrabbit.oak.plugins.index.cursor.Cursors;
 import org.apache.jackrabbit.oak.plugins.index.property.strategy.IndexStoreStrategy;
+import org.apache.jackrabbit.oak.plugins.index.statistics.PropertyStatistics;
 import org.apache.jackrabbit.oak.spi.filter.PathFilter;
 import org.apache.jackrabbit.oak.spi.mount.MountInfoProvider;
 import org.apache.jackrabbit.oak.spi.mount.Mounts;
@@ -167,11 +168,22 @@ public class PropertyIndexPlan {
                             continue;
                         }
                     }
-                    values = PropertyIndexUtil.encode(values);
-                    double cost = strategies.isEmpty() ? MAX_COST : 0;
-                    for (IndexStoreStrategy strategy : strategies) {
-                        cost += strategy.count(filter, root, definition,
-                                values, MAX_COST);
+                    // the statistics are for the whole repository, while the
+                    // strategy count takes the path restriction into account
+                    PropertyStatistics statistics = depth == 1 && !hasPathRestriction(filter) ?
+                            PropertyStatistics.read(definition, property) : null;
+                    double cost;
+                    if (statistics != null) {
+                        // use the collected statistics instead of sampling the index content
+                        cost = values == null ? statistics.getCount() : statistics.estimateCount(values);
+                        values = PropertyIndexUtil.encode(values);
+                    } else {
+                        values = PropertyIndexUtil.encode(values);
+                        cost = strategies.isEmpty() ? MAX_COST : 0;
+                        for (IndexStoreStrategy strategy : strategies) {
+                            cost += strategy.count(filter, root, definition,
+                                    values, MAX_COST);
+                        }
                     }
                     if (unique && cost <= 1) {
                         // for unique index, for the normal case
@@ -234,6 +246,13 @@ public class PropertyIndexPlan {
                 definition, INDEX_CONTENT_NODE_NAME);
     }
 
+    private static boolean hasPathRestriction(Filter filter) {
+        // all children of the root is the same as no restriction
+        return filter.getPathRestriction() != Filter.PathRestriction.NO_RESTRICTION
+                && !(filter.getPathRestriction() == Filter.PathRestriction.ALL_CHILDREN
+                        && PathUtils.denotesRoot(filter.getPath()));
+    }
+
     //------------------------------------------------------------< Object >--
 
     @Override
@@ -0,0 +1,506 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.jackrabbit.oak.plugins.index.property.strategy;
+
+import static org.apache.jackrabbit.oak.plugins.index.IndexConstants.ENTRY_COUNT_PROPERTY_NAME;
+import static org.apache.jackrabbit.oak.plugins.index.IndexConstants.INDEX_CONTENT_NODE_NAME;
+import static org.apache.jackrabbit.oak.plugins.index.IndexConstants.STORAGE_STRATEGY;
+import static org.apache.jackrabbit.oak.plugins.index.IndexConstants.STORAGE_STRATEGY_COMPACT;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+
+import org.apache.jackrabbit.guava.common.base.Supplier;
+import org.apache.jackrabbit.guava.common.collect.AbstractIterator;
+import org.apache.jackrabbit.guava.common.collect.Iterators;
+import org.apache.jackrabbit.guava.common.collect.Sets;
+import org.apache.jackrabbit.guava.common.hash.Hashing;
+import org.apache.jackrabbit.oak.api.PropertyState;
+import org.apache.jackrabbit.oak.api.Type;
+import org.apache.jackrabbit.oak.commons.PathUtils;
+import org.apache.jackrabbit.oak.plugins.index.IndexUtils;
+import org.apache.jackrabbit.oak.plugins.index.counter.ApproximateCounter;
+import org.apache.jackrabbit.oak.query.FilterIterators;
+import org.apache.jackrabbit.oak.spi.query.Filter;
+import org.apache.jackrabbit.oak.spi.state.NodeBuilder;
+import org.apache.jackrabbit.oak.spi.state.NodeState;
+import org.apache.jackrabbit.oak.spi.state.NodeStateUtils;
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * An IndexStoreStrategy implementation that stores the paths of each key as
+ * a sorted list, split into buckets of limited size.<br>
+ * Compared to the {@link ContentMirrorStoreStrategy}, this needs far fewer
+ * nodes, and adding or removing an entry only changes one bucket. Path
+ * restrictions are resolved with a binary search. On the other hand,
+ * concurrent updates of entries of the same key are more likely to conflict.
+ * <br>
+ * The first bucket is stored in the key node itself. If a bucket gets too
+ * large, its upper half is moved to a new child node of the key node; the
+ * lowest path of each such bucket is stored in the key node, and the name of
+ * the child node is a hash of that path:
+ *
+ * <pre>
+ * {@code
+ * /
+ *   oak:index
+ *     index
+ *       :index (storageStrategy = compact)
+ *         key (entries = [/a, /b], bounds = [/m])
+ *           4f0c6b1e2d3a5978 (entries = [/m, /x])
+ * }
+ * </pre>
+ *
+ * If the index content was not (yet) rebuilt using this strategy, the
+ * content mirror layout is read instead.
+ */
+public class CompactStoreStrategy implements IndexStoreStrategy {
+
+    static final Logger LOG = LoggerFactory.getLogger(CompactStoreStrategy.class);
+
+    /**
+     * The maximum number of paths per bucket. Larger buckets are split. The
+     * DocumentNodeStore keeps a copy of a multi-valued property for each
+     * change, so that buckets are kept small.
+     */
+    public static final int MAX_BUCKET_SIZE = Integer.getInteger("oak.compactIndex.bucketSize", 100);
+
+    static final String ENTRIES = "entries";
+    static final String BOUNDS = "bounds";
+
+    private final String indexName;
+
+    private final ContentMirrorStoreStrategy mirror;
+
+    public CompactStoreStrategy() {
+        this(INDEX_CONTENT_NODE_NAME);
+    }
+
+    public CompactStoreStrategy(String indexName) {
+        this.indexName = indexName;
+        this.mirror = new ContentMirrorStoreStrategy(indexName);
+    }
+
+    @Override
+    public void update(
+            Supplier<NodeBuilder> index, String path,
+            @Nullable final String indexName,
+            @Nullable final NodeBuilder indexMeta,
+            Set<String> beforeKeys, Set<String> afterKeys) {
+        for (String key : beforeKeys) {
+            remove(index.get(), key, path);
+        }
+        if (!afterKeys.isEmpty()) {
+            NodeBuilder builder = index.get();
+            if (!builder.hasProperty(STORAGE_STRATEGY)) {
+                builder.setProperty(STORAGE_STRATEGY, STORAGE_STRATEGY_COMPACT);
+            }
+            for (String key : afterKeys) {
+                insert(builder, key, path);
+            }
+        }
+    }
+
+    private static void remove(NodeBuilder index, String key, String path) {
+        NodeBuilder k = index.getChildNode(key);
+        if (!k.exists()) {
+            return;
+        }
+        List<String> bounds = getStrings(k.getProperty(BOUNDS));
+        int b = findBucket(bounds, path);
+        NodeBuilder bucket = b == 0 ? k : k.getChildNode(getBucketName(bounds.get(b - 1)));
+        List<String> entries = getStrings(bucket.getProperty(ENTRIES));
+        int pos = Collections.binarySearch(entries, path);
+        if (pos < 0) {
+            return;
+        }
+        // only count entries that are actually removed
+        ApproximateCounter.adjustCountSync(index, -1);
+        ApproximateCounter.adjustCountSync(k, -1);
+        entries.remove(pos);
+        if (!entries.isEmpty()) {
+            bucket.setProperty(ENTRIES, entries, Type.STRINGS);
+            return;
+        }
+        if (b > 0) {
+            bucket.remove();
+            bounds.remove(b - 1);
+            setBounds(k, bounds);
+        } else {
+            k.setProperty(ENTRIES, entries, Type.STRINGS);
+        }
+        PropertyState first = k.getProperty(ENTRIES);
+        if (bounds.isEmpty() && (first == null || first.count() == 0)) {
+            k.remove();
+        }
+    }
+
+    private static void insert(NodeBuilder index, String key, String path) {
+        NodeBuilder k = index.child(key);
+        List<String> bounds = getStrings(k.getProperty(BOUNDS));
+        int b = findBucket(bounds, path);
+        NodeBuilder bucket = b == 0 ? k : k.getChildNode(getBucketName(bounds.get(b - 1)));
+        List<String> entries = getStrings(bucket.getProperty(ENTRIES));
+        int pos = Collections.binarySearch(entries, path);
+        if (pos >= 0) {
+            return;
+        }
+        ApproximateCounter.adjustCountSync(index, 1);
+        ApproximateCounter.adjustCountSync(k, 1);
+        entries.add(-pos - 1, path);
+        if (entries.size() <= MAX_BUCKET_SIZE) {
+            bucket.setProperty(ENTRIES, entries, Type.STRINGS);
+            return;
+        }
+        // split: the upper half is moved to a new bucket,
+        // so that buckets are at least half full
+        int mid = entries.size() / 2;
+        List<String> upper = new ArrayList<>(entries.subList(mid, entries.size()));
+        List<String> lower = new ArrayList<>(entries.subList(0, mid));
+        String name = getBucketName(upper.get(0));
+        if (k.hasChildNode(name)) {
+            // hash collision with another bucket of this key: keep the
+            // bucket, it is split at a different path later on
+            LOG.debug("Bucket {} of key {} exists, not splitting", name, key);
+            bucket.setProperty(ENTRIES, entries, Type.STRINGS);
+            return;
+        }
+        k.child(name).setProperty(ENTRIES, upper, Type.STRINGS);
+        bucket.setProperty(ENTRIES, lower, Type.STRINGS);
+        bounds.add(b, upper.get(0));
+        setBounds(k, bounds);
+    }
+
+    /**
+     * Get the name of the child node that stores the bucket with the given
+     * lowest path. The name is derived from the path, so that the names don't
+     * need to be stored in the key node.
+     *
+     * @param bound the lowest path of the bucket
+     * @return the node name
+     */
+    static String getBucketName(String bound) {
+        long hash = Hashing.murmur3_128().hashString(bound, StandardCharsets.UTF_8).asLong();
+        return String.format("%016x", hash);
+    }
+
+    private static void setBounds(NodeBuilder key, List<String> bounds) {
+        if (bounds.isEmpty()) {
+            key.removeProperty(BOUNDS);
+        } else {
+            key.setProperty(BOUNDS, bounds, Type.STRINGS);
+        }
+    }
+
+    /**
+     * Get the bucket that contains the given path.
+     *
+     * @param bounds the lowest paths of the buckets (except the first)
+     * @param path the path
+     * @return the bucket number (0 for the first bucket)
+     */
+    static int findBucket(List<String> bounds, String path) {
+        int pos = Collections.binarySearch(bounds, path);
+        return pos >= 0 ? pos + 1 : -pos - 1;
+    }
+
+    /**
+     * Get the position of the first entry that is equal or larger than the
+     * given path.
+     *
+     * @param entries the sorted entries
+     * @param path the path
+     * @return the position (the number of entries if all are smaller)
+     */
+    static int lowerBound(PropertyState entries, String path) {
+        int low = 0;
+        int high = entries.count();
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (entries.getValue(Type.STRING, mid).compareTo(path) < 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private static List<String> getStrings(@Nullable PropertyState property) {
+        List<String> list = new ArrayList<>();
+        if (property != null) {
+            for (String s : property.getValue(Type.STRINGS)) {
+                list.add(s);
+            }
+        }
+        return list;
+    }
+
+    private static boolean isCompact(NodeState index) {
+        return STORAGE_STRATEGY_COMPACT.equals(index.getString(STORAGE_STRATEGY));
+    }
+
+    /**
+     * Get the common prefix of all paths that can match the path restriction
+     * of the filter.
+     *
+     * @param filter the filter (may be null)
+     * @return the prefix, or null if there is no restriction
+     */
+    @Nullable
+    static String getPathPrefix(@Nullable Filter filter) {
+        if (filter == null || PathUtils.denotesRoot(filter.getPath())) {
+            return null;
+        }
+        switch (filter.getPathRestriction()) {
+        case EXACT:
+            return filter.getPath();
+        case DIRECT_CHILDREN:
+        case ALL_CHILDREN:
+            return filter.getPath() + "/";
+        default:
+            return null;
+        }
+    }
+
+    @Override
+    public Iterable<String> query(final Filter filter, final String indexName,
+            final NodeState indexMeta, final Iterable<String> values) {
+        final NodeState index = indexMeta.getChildNode(this.indexName);
+        if (!isCompact(index)) {
+            return mirror.query(filter, indexName, indexMeta, values);
+        }
+        return new Iterable<String>() {
+            @Override
+            public Iterator<String> iterator() {
+                if (values == null) {
+                    Iterator<String> keys = Iterators.filter(
+                            index.getChildNodeNames().iterator(),
+                            name -> !NodeStateUtils.isHidden(name));
+                    return new EntryIterator(filter, indexName, index, keys, true);
+                }
+                return new EntryIterator(filter, indexName, index, values.iterator(), false);
+            }
+        };
+    }
+
+    @Override
+    public boolean exists(Supplier<NodeBuilder> index, String key) {
+        return index.get().hasChildNode(key);
+    }
+
+    @Override
+    public long count(NodeState root, NodeState indexMeta, Set<String> values, int max) {
+        return count(null, root, indexMeta, values, max);
+    }
+
+    @Override
+    public long count(Filter filter, NodeState root, NodeState indexMeta, Set<String> values, int max) {
+        NodeState index = indexMeta.getChildNode(indexName);
+        PropertyState ec = indexMeta.getProperty(ENTRY_COUNT_PROPERTY_NAME);
+        long entryCount = ec == null ? -1 : ec.getValue(Type.LONG);
+        if (!isCompact(index) || (values != null && entryCount >= 0)) {
+            // only the configured entry count is used (if set)
+            return mirror.count(filter, root, indexMeta, values, max);
+        }
+        String prefix = getPathPrefix(filter);
+        if (values != null) {
+            // the entries of each key are counted within the path restriction,
+            // so that scaling the count is not needed
+            long count = 0;
+            for (String v : values) {
+                NodeState k = index.getChildNode(v);
+                if (k.exists()) {
+                    long a = prefix == null ? ApproximateCounter.getCountSync(k) : -1;
+                    count += a != -1 ? a : countEntries(k, prefix);
+                }
+            }
+            return count;
+        }
+        long count = entryCount;
+        if (count < 0) {
+            count = ApproximateCounter.getCountSync(index);
+        }
+        if (count < 0) {
+            count = 0;
+            for (String name : index.getChildNodeNames()) {
+                if (!NodeStateUtils.isHidden(name)) {
+                    count += countEntries(index.getChildNode(name), null);
+                    if (count >= max) {
+                        // "is not null" queries typically read more data
+                        count *= 10;
+                        break;
+                    }
+                }
+            }
+        }
+        return ContentMirrorStoreStrategy.scaleToPathRestriction(filter, root, count);
+    }
+
+    /**
+     * Count (or, if many buckets are affected, estimate) the entries of a key
+     * that start with the given prefix.
+     *
+     * @param key the key node
+     * @param prefix the prefix, or null to count all entries
+     * @return the (estimated) number of entries
+     */
+    static long countEntries(NodeState key, @Nullable String prefix) {
+        List<String> bounds = getStrings(key.getProperty(BOUNDS));
+        int first = prefix == null ? 0 : findBucket(bounds, prefix);
+        int last = prefix == null ? bounds.size() : findBucket(bounds, prefix + Character.MAX_VALUE);
+        if (last - first > 1) {
+            // buckets are at least half full after a split
+            return (long) (last - first + 1) * MAX_BUCKET_SIZE / 2;
+        }
+        long count = 0;
+        for (int b = first; b <= last; b++) {
+            NodeState bucket = b == 0 ? key : key.getChildNode(getBucketName(bounds.get(b - 1)));
+            PropertyState entries = bucket.getProperty(ENTRIES);
+            if (entries == null) {
+                continue;
+            }
+            if (prefix == null) {
+                count += entries.count();
+            } else {
+                for (int i = lowerBound(entries, prefix); i < entries.count(); i++) {
+                    if (!entries.getValue(Type.STRING, i).startsWith(prefix)) {
+                        break;
+                    }
+                    count++;
+                }
+            }
+        }
+        return count;
+    }
+
+    @Override
+    public String getIndexNodeName() {
+        return indexName;
+    }
+
+    /**
+     * An iterator over the paths of a number of keys, restricted to the range
+     * of paths that can match the path restriction of the filter.
+     */
+    static class EntryIterator extends AbstractIterator<String> {
+
+        private final Filter filter;
+        private final String indexName;
+        private final NodeState index;
+        private final Iterator<String> keys;
+        private final String prefix;
+
+        /**
+         * The returned paths, to avoid returning duplicate entries (only if
+         * paths of multiple keys are returned).
+         */
+        private final Set<String> knownPaths;
+
+        private NodeState key;
+        private List<String> bounds;
+        private int bucket;
+        private PropertyState entries;
+        private int pos;
+        private int readCount;
+
+        EntryIterator(Filter filter, String indexName, NodeState index,
+                Iterator<String> keys, boolean distinct) {
+            this.filter = filter;
+            this.indexName = indexName;
+            this.index = index;
+            this.keys = keys;
+            this.prefix = getPathPrefix(filter);
+            this.knownPaths = distinct ? Sets.newHashSet() : null;
+        }
+
+        @Override
+        protected String computeNext() {
+            while (true) {
+                String path = nextEntry();
+                if (path == null) {
+                    return endOfData();
+                }
+                if (knownPaths == null || knownPaths.add(path)) {
+                    return path;
+                }
+            }
+        }
+
+        @Nullable
+        private String nextEntry() {
+            while (true) {
+                if (entries != null && pos < entries.count()) {
+                    String path = entries.getValue(Type.STRING, pos++);
+                    if (prefix == null || path.startsWith(prefix)) {
+                        checkReadLimit();
+                        return path;
+                    }
+                    // sorted: no more matches for this key
+                    key = null;
+                } else if (key != null && bucket < bounds.size()) {
+                    bucket++;
+                    entries = key.getChildNode(getBucketName(bounds.get(bucket - 1))).getProperty(ENTRIES);
+                    pos = 0;
+                } else if (!nextKey()) {
+                    return null;
+                }
+                if (key == null) {
+                    entries = null;
+                }
+            }
+        }
+
+        private boolean nextKey() {
+            while (keys.hasNext()) {
+                NodeState k = index.getChildNode(keys.next());
+                if (!k.exists()) {
+                    continue;
+                }
+                key = k;
+                bounds = getStrings(k.getProperty(BOUNDS));
+                bucket = prefix == null ? 0 : findBucket(bounds, prefix);
+                NodeState b = bucket == 0 ? k : k.getChildNode(getBucketName(bounds.get(bucket - 1)));
+                entries = b.getProperty(ENTRIES);
+                pos = entries == null || prefix == null ? 0 : lowerBound(entries, prefix);
+                return true;
+            }
+            key = null;
+            return false;
+        }
+
+        private void checkReadLimit() {
+            readCount++;
+            if (readCount % ContentMirrorStoreStrategy.TRAVERSING_WARN == 0) {
+                FilterIterators.checkReadLimit(readCount, filter.getQueryLimits());
+                String caller = IndexUtils.getCaller(filter.getQueryLimits().getIgnoredClassNamesInCallTrace());
+                LOG.warn("Index-Traversed {} index entries using index {} with filter {}, caller {}",
+                        readCount, indexName, filter, caller);
+            }
+        }
+
+    }
+
+}
@@ -304,6 +304,20 @@ public class ContentMirrorStoreStrategy implements IndexStoreStrategy {
             }
         }
 
+        return scaleToPathRestriction(filter, root, count);
+    }
+
+    /**
+     * Scale down the estimated number of entries of an index according to
+     * the path restriction of the filter, using the approximate number of
+     * nodes in the repository and in the subtree.
+     *
+     * @param filter the filter (may be null)
+     * @param root the root node
+     * @param count the estimated number of entries in the whole index
+     * @return the estimated number of entries in the subtree
+     */
+    static long scaleToPathRestriction(@Nullable Filter filter, NodeState root, long count) {
         String filterRootPath = null;
         if (filter != null &&
                 filter.getPathRestriction().equals(Filter.PathRestriction.ALL_CHILDREN)) {
@@ -0,0 +1,194 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.jackrabbit.oak.plugins.index.statistics;
+
+import java.util.Base64;
+
+/**
+ * A HyperLogLog sketch, to estimate the number of distinct values. The
+ * sketch uses one byte per register; with the default of 1024 registers,
+ * the standard error is about 3%.
+ */
+public class HyperLogLog {
+
+    public static final int DEFAULT_PRECISION = 10;
+
+    private final int precision;
+    private final byte[] registers;
+
+    public HyperLogLog() {
+        this(DEFAULT_PRECISION);
+    }
+
+    /**
+     * Create a new sketch.
+     *
+     * @param precision the number of bits used to select the register
+     *            (4 to 16)
+     */
+    public HyperLogLog(int precision) {
+        if (precision < 4 || precision > 16) {
+            throw new IllegalArgumentException("Unsupported precision: " + precision);
+        }
+        this.precision = precision;
+        this.registers = new byte[1 << precision];
+    }
+
+    private HyperLogLog(byte[] registers) {
+        int p = Integer.numberOfTrailingZeros(registers.length);
+        if (registers.length != 1 << p || p < 4 || p > 16) {
+            throw new IllegalArgumentException("Unsupported register count: " + registers.length);
+        }
+        this.precision = p;
+        this.registers = registers;
+    }
+
+    /**
+     * Add a value.
+     *
+     * @param value the value
+     */
+    public void add(String value) {
+        addHash(hash(value));
+    }
+
+    /**
+     * Add a (well distributed) 64 bit hash of a value.
+     *
+     * @param hash the hash
+     */
+    public void addHash(long hash) {
+        int index = (int) (hash >>> (64 - precision));
+        // the guard bit ensures the rank is at most 64 - precision + 1
+        long w = (hash << precision) | (1L << (precision - 1));
+        byte rank = (byte) (Long.numberOfLeadingZeros(w) + 1);
+        if (rank > registers[index]) {
+            registers[index] = rank;
+        }
+    }
+
+    /**
+     * Merge the registers of another sketch into this sketch.
+     *
+     * @param other the other sketch (must have the same precision)
+     */
+    public void merge(HyperLogLog other) {
+        if (other.precision != precision) {
+            throw new IllegalArgumentException("Precision mismatch: " + precision + " " + other.precision);
+        }
+        for (int i = 0; i < registers.length; i++) {
+            if (other.registers[i] > registers[i]) {
+                registers[i] = other.registers[i];
+            }
+        }
+    }
+
+    /**
+     * Estimate the number of distinct values added so far.
+     *
+     * @return the estimated count
+     */
+    public long estimate() {
+        int m = registers.length;
+        double sum = 0;
+        int zeros = 0;
+        for (byte r : registers) {
+            sum += 1.0 / (1L << r);
+            if (r == 0) {
+                zeros++;
+            }
+        }
+        double estimate = alpha(m) * m * m / sum;
+        if (estimate <= 2.5 * m && zeros > 0) {
+            // small range correction (linear counting)
+            estimate = m * Math.log((double) m / zeros);
+        }
+        return Math.round(estimate);
+    }
+
+    public boolean isEmpty() {
+        for (byte r : registers) {
+            if (r != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Serialize the sketch as a (base64 encoded) string.
+     *
+     * @return the string
+     */
+    public String serialize() {
+        return Base64.getEncoder().encodeToString(registers);
+    }
+
+    /**
+     * Read a sketch that was serialized using {@link #serialize()}.
+     *
+     * @param s the string
+     * @return the sketch
+     * @throws IllegalArgumentException if the string is not a valid sketch
+     */
+    public static HyperLogLog deserialize(String s) {
+        return new HyperLogLog(Base64.getDecoder().decode(s));
+    }
+
+    /**
+     * Calculate a 64 bit hash of a string.
+     *
+     * @param value the string
+     * @return the hash
+     */
+    public static long hash(String value) {
+        long h = 0;
+        for (int i = 0, len = value.length(); i < len; i++) {
+            h = (h + value.charAt(i)) * 0x9e3779b97f4a7c15L;
+        }
+        return mix64(h ^ value.length());
+    }
+
+    /**
+     * The finalization step of the 64 bit MurmurHash3, which spreads the
+     * bits of the input over the whole value.
+     *
+     * @param x the input
+     * @return the mixed value
+     */
+    public static long mix64(long x) {
+        x = (x ^ (x >>> 33)) * 0xff51afd7ed558ccdL;
+        x = (x ^ (x >>> 33)) * 0xc4ceb9fe1a85ec53L;
+        return x ^ (x >>> 33);
+    }
+
+    private static double alpha(int m) {
+        switch (m) {
+        case 16:
+            return 0.673;
+        case 32:
+            return 0.697;
+        case 64:
+            return 0.709;
+        default:
+            return 0.7213 / (1 + 1.079 / m);
+        }
+    }
+
+}
@@ -0,0 +1,218 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.jackrabbit.oak.plugins.index.statistics;
+
+import static org.apache.jackrabbit.oak.plugins.index.IndexConstants.STATISTICS_NODE_NAME;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import org.apache.jackrabbit.oak.api.PropertyState;
+import org.apache.jackrabbit.oak.api.Type;
+import org.apache.jackrabbit.oak.spi.state.NodeBuilder;
+import org.apache.jackrabbit.oak.spi.state.NodeState;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Selectivity statistics of one property: the number of values, a sketch of
+ * the number of distinct values, and the most frequent values. The statistics
+ * are stored in the hidden {@code :statistics} child node of the index
+ * definition, one child node per property.
+ */
+public class PropertyStatistics {
+
+    private static final Logger LOG = LoggerFactory.getLogger(PropertyStatistics.class);
+
+    static final String COUNT = "count";
+    static final String DISTINCT = "distinct";
+    static final String SKETCH = "sketch";
+    static final String TOP_VALUES = "topValues";
+    static final String TOP_COUNTS = "topCounts";
+
+    private long count;
+    private final HyperLogLog distinct;
+    private final TopKValues topValues;
+
+    public PropertyStatistics() {
+        this(0, new HyperLogLog(), new TopKValues());
+    }
+
+    private PropertyStatistics(long count, HyperLogLog distinct, TopKValues topValues) {
+        this.count = count;
+        this.distinct = distinct;
+        this.topValues = topValues;
+    }
+
+    public void add(String value) {
+        count++;
+        distinct.add(value);
+        topValues.add(value);
+    }
+
+    /**
+     * Remove a value. The distinct value sketch is not changed, so that the
+     * number of distinct values may be over-estimated after values were
+     * removed, until the statistics are rebuilt (on reindexing).
+     *
+     * @param value the value
+     */
+    public void remove(String value) {
+        count = Math.max(0, count - 1);
+        topValues.remove(value);
+    }
+
+    /**
+     * The number of values (that is, index entries).
+     *
+     * @return the count
+     */
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * The estimated number of distinct values.
+     *
+     * @return the estimated distinct count (at least 1 if there are values)
+     */
+    public long getDistinctCount() {
+        long d = distinct.estimate();
+        return count > 0 ? Math.max(1, Math.min(d, count)) : d;
+    }
+
+    public TopKValues getTopValues() {
+        return topValues;
+    }
+
+    /**
+     * Estimate the number of entries with the given value. For frequent
+     * values, the tracked count is used; for other values, the entries are
+     * assumed to be evenly distributed over the distinct values (but such
+     * values can not be more frequent than the least frequent tracked value).
+     *
+     * @param value the value
+     * @return the estimated number of entries
+     */
+    public long estimateCount(String value) {
+        long c = topValues.getCount(value);
+        if (c >= 0) {
+            return c;
+        }
+        if (count == 0) {
+            return 0;
+        }
+        long average = (long) Math.ceil((double) count / getDistinctCount());
+        if (topValues.isFull()) {
+            average = Math.min(average, topValues.getMinCount());
+        }
+        return Math.max(1, average);
+    }
+
+    /**
+     * Estimate the number of entries with any of the given values.
+     *
+     * @param values the values
+     * @return the estimated number of entries
+     */
+    public long estimateCount(Set<String> values) {
+        long sum = 0;
+        for (String v : values) {
+            sum += estimateCount(v);
+        }
+        return Math.min(sum, count);
+    }
+
+    /**
+     * Read the statistics of the given property from an index definition.
+     *
+     * @param definition the index definition
+     * @param propertyName the property name
+     * @return the statistics, or null if not available
+     */
+    @Nullable
+    public static PropertyStatistics read(@NotNull NodeState definition, @NotNull String propertyName) {
+        if (!isSupported(propertyName)) {
+            return null;
+        }
+        NodeState node = definition.getChildNode(STATISTICS_NODE_NAME).getChildNode(propertyName);
+        PropertyState c = node.getProperty(COUNT);
+        PropertyState s = node.getProperty(SKETCH);
+        if (c == null || s == null) {
+            return null;
+        }
+        HyperLogLog sketch;
+        try {
+            sketch = HyperLogLog.deserialize(s.getValue(Type.STRING));
+        } catch (IllegalArgumentException e) {
+            LOG.warn("Invalid statistics for property {}: {}", propertyName, e.getMessage());
+            return null;
+        }
+        TopKValues top = new TopKValues();
+        PropertyState tv = node.getProperty(TOP_VALUES);
+        PropertyState tc = node.getProperty(TOP_COUNTS);
+        if (tv != null && tc != null && tv.count() == tc.count()) {
+            for (int i = 0; i < tv.count(); i++) {
+                top.set(tv.getValue(Type.STRING, i), tc.getValue(Type.LONG, i));
+            }
+        }
+        return new PropertyStatistics(c.getValue(Type.LONG), sketch, top);
+    }
+
+    /**
+     * Write the statistics of the given property to an index definition.
+     *
+     * @param definition the index definition
+     * @param propertyName the property name
+     */
+    public void write(@NotNull NodeBuilder definition, @NotNull String propertyName) {
+        NodeBuilder node = definition.child(STATISTICS_NODE_NAME).child(propertyName);
+        node.setProperty(COUNT, count);
+        node.setProperty(DISTINCT, getDistinctCount());
+        node.setProperty(SKETCH, distinct.serialize());
+        List<String> values = topValues.getValues();
+        List<Long> counts = new ArrayList<>(values.size());
+        for (String v : values) {
+            counts.add(topValues.getCount(v));
+        }
+        node.setProperty(TOP_VALUES, values, Type.STRINGS);
+        node.setProperty(TOP_COUNTS, counts, Type.LONGS);
+    }
+
+    /**
+     * Whether statistics can be collected for the given property. Relative
+     * property names (such as "jcr:content/x") are not supported.
+     *
+     * @param propertyName the property name
+     * @return true if supported
+     */
+    public static boolean isSupported(@NotNull String propertyName) {
+        return !propertyName.isEmpty() && propertyName.indexOf('/') < 0;
+    }
+
+    @Override
+    public String toString() {
+        return "count: " + count + ", distinct: " + getDistinctCount() +
+                ", top: " + topValues.getValues();
+    }
+
+}
@@ -0,0 +1,160 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.jackrabbit.oak.plugins.index.statistics;
+
+import static org.apache.jackrabbit.oak.plugins.index.IndexConstants.STATISTICS_NODE_NAME;
+import static org.apache.jackrabbit.oak.plugins.index.IndexConstants.STATISTICS_PROPERTIES;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.jackrabbit.oak.api.CommitFailedException;
+import org.apache.jackrabbit.oak.api.PropertyState;
+import org.apache.jackrabbit.oak.api.Type;
+import org.apache.jackrabbit.oak.plugins.index.ConcurrentIndexEditor;
+import org.apache.jackrabbit.oak.spi.commit.DefaultEditor;
+import org.apache.jackrabbit.oak.spi.commit.Editor;
+import org.apache.jackrabbit.oak.spi.state.NodeBuilder;
+import org.apache.jackrabbit.oak.spi.state.NodeState;
+import org.apache.jackrabbit.oak.spi.state.NodeStateUtils;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Maintains the {@link PropertyStatistics} of the properties listed in the
+ * {@code statisticsProperties} of an index definition. The statistics are
+ * updated incrementally with the changes, and written to the index definition
+ * once the whole diff was processed.
+ * <p>
+ * Different subtrees may be processed concurrently: the statistics of a
+ * property are synchronized.
+ */
+public class PropertyStatisticsEditor extends DefaultEditor implements ConcurrentIndexEditor {
+
+    private final PropertyStatisticsEditor parent;
+    private final NodeBuilder definition;
+    private final Map<String, PropertyStatistics> statistics;
+
+    private PropertyStatisticsEditor(NodeBuilder definition,
+            Map<String, PropertyStatistics> statistics) {
+        this.parent = null;
+        this.definition = definition;
+        this.statistics = statistics;
+    }
+
+    private PropertyStatisticsEditor(PropertyStatisticsEditor parent) {
+        this.parent = parent;
+        this.definition = parent.definition;
+        this.statistics = parent.statistics;
+    }
+
+    /**
+     * Create an editor for the given index definition, if statistics are
+     * configured.
+     *
+     * @param definition the index definition
+     * @param reindex whether the index is rebuilt, in which case the
+     *            statistics are also rebuilt
+     * @return the editor, or null if no statistics are configured
+     */
+    @Nullable
+    public static Editor create(NodeBuilder definition, boolean reindex) {
+        PropertyState names = definition.getProperty(STATISTICS_PROPERTIES);
+        if (names == null || names.count() == 0) {
+            return null;
+        }
+        NodeState before = definition.getNodeState();
+        Map<String, PropertyStatistics> statistics = new HashMap<>();
+        for (String name : names.getValue(Type.STRINGS)) {
+            if (!PropertyStatistics.isSupported(name)) {
+                continue;
+            }
+            PropertyStatistics s = reindex ? null : PropertyStatistics.read(before, name);
+            statistics.put(name, s == null ? new PropertyStatistics() : s);
+        }
+        if (statistics.isEmpty()) {
+            return null;
+        }
+        return new PropertyStatisticsEditor(definition, statistics);
+    }
+
+    @Override
+    public void leave(NodeState before, NodeState after) throws CommitFailedException {
+        if (parent == null) {
+            NodeBuilder node = definition.child(STATISTICS_NODE_NAME);
+            // remove statistics of properties that are no longer configured
+            for (String name : node.getChildNodeNames()) {
+                if (!statistics.containsKey(name)) {
+                    node.getChildNode(name).remove();
+                }
+            }
+            for (Map.Entry<String, PropertyStatistics> e : statistics.entrySet()) {
+                e.getValue().write(definition, e.getKey());
+            }
+        }
+    }
+
+    @Override
+    public void propertyAdded(PropertyState after) {
+        PropertyStatistics s = statistics.get(after.getName());
+        if (s != null && after.getType().tag() != Type.BINARY.tag()) {
+            synchronized (s) {
+                for (int i = 0; i < after.count(); i++) {
+                    s.add(after.getValue(Type.STRING, i));
+                }
+            }
+        }
+    }
+
+    @Override
+    public void propertyChanged(PropertyState before, PropertyState after) {
+        propertyDeleted(before);
+        propertyAdded(after);
+    }
+
+    @Override
+    public void propertyDeleted(PropertyState before) {
+        PropertyStatistics s = statistics.get(before.getName());
+        if (s != null && before.getType().tag() != Type.BINARY.tag()) {
+            synchronized (s) {
+                for (int i = 0; i < before.count(); i++) {
+                    s.remove(before.getValue(Type.STRING, i));
+                }
+            }
+        }
+    }
+
+    @Override
+    public Editor childNodeAdded(String name, NodeState after) {
+        return childNodeChanged(name, null, after);
+    }
+
+    @Override
+    public Editor childNodeChanged(String name, NodeState before, NodeState after) {
+        if (NodeStateUtils.isHidden(name)) {
+            return null;
+        }
+        return new PropertyStatisticsEditor(this);
+    }
+
+    @Override
+    public Editor childNodeDeleted(String name, NodeState before) {
+        return childNodeChanged(name, before, null);
+    }
+
+}
@@ -0,0 +1,158 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.jackrabbit.oak.plugins.index.statistics;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Tracks the most frequent values, using the "space saving" algorithm: at
+ * most "capacity" values are kept; if a new value is added while the list is
+ * full, the least frequent value is replaced, and the new value inherits its
+ * count. Counts of frequent values are therefore over-estimated by at most
+ * the count of the least frequent tracked value.
+ */
+public class TopKValues {
+
+    public static final int DEFAULT_CAPACITY = 32;
+
+    /**
+     * Longer values are not tracked, to keep the stored statistics small.
+     */
+    public static final int MAX_VALUE_LENGTH = 128;
+
+    private final int capacity;
+    private final HashMap<String, Long> counts;
+
+    public TopKValues() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public TopKValues(int capacity) {
+        this.capacity = capacity;
+        this.counts = new HashMap<>(capacity * 2);
+    }
+
+    /**
+     * Add a value.
+     *
+     * @param value the value
+     */
+    public void add(String value) {
+        if (value.length() > MAX_VALUE_LENGTH) {
+            return;
+        }
+        Long old = counts.get(value);
+        if (old != null) {
+            counts.put(value, old + 1);
+        } else if (counts.size() < capacity) {
+            counts.put(value, 1L);
+        } else {
+            String min = null;
+            long minCount = Long.MAX_VALUE;
+            for (Map.Entry<String, Long> e : counts.entrySet()) {
+                if (e.getValue() < minCount) {
+                    min = e.getKey();
+                    minCount = e.getValue();
+                }
+            }
+            counts.remove(min);
+            counts.put(value, minCount + 1);
+        }
+    }
+
+    /**
+     * Remove a value. If the value is tracked, its count is decremented.
+     *
+     * @param value the value
+     */
+    public void remove(String value) {
+        Long old = counts.get(value);
+        if (old == null) {
+            return;
+        }
+        if (old <= 1) {
+            counts.remove(value);
+        } else {
+            counts.put(value, old - 1);
+        }
+    }
+
+    /**
+     * Get the (over-estimated) count of a value.
+     *
+     * @param value the value
+     * @return the count, or -1 if the value is not tracked
+     */
+    public long getCount(String value) {
+        Long c = counts.get(value);
+        return c == null ? -1 : c;
+    }
+
+    public int size() {
+        return counts.size();
+    }
+
+    /**
+     * Whether the maximum number of values is tracked. If yes, values that
+     * are not tracked have a count of at most {@link #getMinCount()}.
+     *
+     * @return true if full
+     */
+    public boolean isFull() {
+        return counts.size() >= capacity;
+    }
+
+    /**
+     * Get the lowest count of all tracked values.
+     *
+     * @return the lowest count, or 0 if no values are tracked
+     */
+    public long getMinCount() {
+        long min = Long.MAX_VALUE;
+        for (long c : counts.values()) {
+            min = Math.min(min, c);
+        }
+        return counts.isEmpty() ? 0 : min;
+    }
+
+    /**
+     * Get the tracked values, most frequent first.
+     *
+     * @return the list of values
+     */
+    public List<String> getValues() {
+        List<String> list = new ArrayList<>(counts.keySet());
+        Collections.sort(list, (a, b) -> {
+            int comp = Long.compare(counts.get(b), counts.get(a));
+            return comp != 0 ? comp : a.compareTo(b);
+        });
+        return list;
+    }
+
+    void set(String value, long count) {
+        if (count > 0 && counts.size() < capacity) {
+            counts.put(value, count);
+        }
+    }
+
+}
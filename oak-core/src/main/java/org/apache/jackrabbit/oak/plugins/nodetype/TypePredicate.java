@@ -69,7 +69,7 @@ public class TypePredicate implements Predicate<NodeState> {
 
     private final Iterable<String> names;
 
-    private boolean initialized;
+    private volatile boolean initialized;
 
     private Set<String> primaryTypes;
 
@@ -145,14 +145,19 @@ public class TypePredicate implements Predicate<NodeState> {
 
     private void init() {
         if (!initialized) {
-            // lazy initialization of the sets of matching type names
-            NodeState types = checkNotNull(root)
-                    .getChildNode(JCR_SYSTEM)
-                    .getChildNode(JCR_NODE_TYPES);
-            for (String name : checkNotNull(names)) {
-                addNodeType(types, name);
+            // lazy initialization of the sets of matching type names;
+            // the predicate may be used by concurrent index editors
+            synchronized (this) {
+                if (!initialized) {
+                    NodeState types = checkNotNull(root)
+                            .getChildNode(JCR_SYSTEM)
+                            .getChildNode(JCR_NODE_TYPES);
+                    for (String name : checkNotNull(names)) {
+                        addNodeType(types, name);
+                    }
+                    initialized = true;
+                }
             }
-            initialized = true;
         }
     }
 
@@ -36,6 +36,7 @@ import org.apache.jackrabbit.oak.spi.state.NodeState;
 import org.apache.jackrabbit.oak.spi.state.NodeStateDiff;
 import org.apache.jackrabbit.oak.commons.PerfLogger;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 import org.slf4j.LoggerFactory;
 
 /**
@@ -75,11 +76,25 @@ public class EventGenerator {
 
     private final LinkedList<Continuation> continuations = newLinkedList();
 
+    @Nullable
+    private final SharedDiff sharedDiff;
+
     /**
      * Creates a new generator instance. Changes to process need to be added
      * through {@link #addHandler(NodeState, NodeState, EventHandler)}
      */
-    public EventGenerator() {}
+    public EventGenerator() {
+        this((SharedDiff) null);
+    }
+
+    /**
+     * Creates a new generator instance that compares the node states using
+     * the given shared diff. Changes to process need to be added through
+     * {@link #addHandler(NodeState, NodeState, EventHandler)}
+     */
+    public EventGenerator(@Nullable SharedDiff sharedDiff) {
+        this.sharedDiff = sharedDiff;
+    }
 
     /**
      * Creates a new generator instance for processing the given changes.
@@ -87,6 +102,7 @@ public class EventGenerator {
     public EventGenerator(
             @NotNull NodeState before, @NotNull NodeState after,
             @NotNull EventHandler handler) {
+        this.sharedDiff = null;
         continuations.addFirst(new Continuation(handler, before, after, 0));
     }
 
@@ -168,7 +184,10 @@ public class EventGenerator {
                 // the MAX_CHANGES_PER_CONTINUATION limit before
                 handler.enter(before, after);
             }
-            if (after.compareAgainstBaseState(before, this)) {
+            boolean done = sharedDiff == null
+                    ? after.compareAgainstBaseState(before, this)
+                    : sharedDiff.compare(before, after, this);
+            if (done) {
                 // Only call leave if this continuation exists normally and not
                 // as a result of hitting the MAX_CHANGES_PER_CONTINUATION limit
                 handler.leave(before, after);
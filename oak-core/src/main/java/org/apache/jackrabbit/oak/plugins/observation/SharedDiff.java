@@ -0,0 +1,419 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.jackrabbit.oak.plugins.observation;
+
+import static org.apache.jackrabbit.oak.plugins.memory.EmptyNodeState.MISSING_NODE;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.jackrabbit.guava.common.base.Ticker;
+import org.apache.jackrabbit.guava.common.cache.Cache;
+import org.apache.jackrabbit.guava.common.cache.CacheBuilder;
+import org.apache.jackrabbit.guava.common.cache.Weigher;
+import org.apache.jackrabbit.guava.common.util.concurrent.UncheckedExecutionException;
+import org.apache.jackrabbit.oak.api.PropertyState;
+import org.apache.jackrabbit.oak.spi.state.NodeState;
+import org.apache.jackrabbit.oak.spi.state.NodeStateDiff;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * A diff of node states that is shared between observation listeners. The
+ * changes of a node are recorded when the first listener compares the node,
+ * and replayed to the other listeners that compare the same node of the same
+ * revisions. As only nodes are compared that at least one listener descends
+ * into, the shared diff is bounded by the union of the listener filters.
+ * <p>
+ * Node states are identified by identity: the listeners are notified with
+ * the same root states, and the child states passed to a listener are the
+ * ones recorded for its parent, so that all listeners see the same
+ * instances. Nodes with more than {@link #MAX_CHANGES_PER_NODE} changes are
+ * not recorded, and compared by each listener.
+ * <p>
+ * The maximum number of recorded changes can be set with the system property
+ * {@code oak.observation.sharedDiffSize}; 0 disables the shared diff. As the
+ * recorded diffs reference the node states of old revisions, they are
+ * discarded once they were not used for some time (by default 60 seconds, see
+ * the system property {@code oak.observation.sharedDiffExpiry}). A listener
+ * that is further behind computes the diff itself.
+ */
+public class SharedDiff {
+
+    /**
+     * The maximum number of changes of one node that are recorded.
+     */
+    static final int MAX_CHANGES_PER_NODE = 10000;
+
+    /**
+     * The default number of seconds after which a recorded diff that was not
+     * used is discarded.
+     */
+    static final long DEFAULT_EXPIRY_SECONDS = 60;
+
+    private static final SharedDiff INSTANCE = new SharedDiff(
+            Integer.getInteger("oak.observation.sharedDiffSize", 100000),
+            TimeUnit.SECONDS.toMillis(Long.getLong("oak.observation.sharedDiffExpiry", DEFAULT_EXPIRY_SECONDS)),
+            Ticker.systemTicker());
+
+    /**
+     * Marker for a node that has too many changes to be recorded.
+     */
+    private static final RecordedDiff NOT_RECORDED = new RecordedDiff(new ArrayList<>());
+
+    @Nullable
+    private final Cache<Key, RecordedDiff> cache;
+
+    @Nullable
+    private final SharedDiff parent;
+
+    private final AtomicLong computed = new AtomicLong();
+
+    private final AtomicLong shared = new AtomicLong();
+
+    /**
+     * @param maxChanges the maximum number of recorded changes, 0 to disable
+     *                   sharing
+     */
+    public SharedDiff(long maxChanges) {
+        this(maxChanges, TimeUnit.SECONDS.toMillis(DEFAULT_EXPIRY_SECONDS), Ticker.systemTicker());
+    }
+
+    /**
+     * @param maxChanges the maximum number of recorded changes, 0 to disable
+     *                   sharing
+     * @param expiryMillis the time after which a recorded diff that was not
+     *                     used is discarded
+     * @param ticker the time source for the expiry
+     */
+    SharedDiff(long maxChanges, long expiryMillis, Ticker ticker) {
+        if (maxChanges > 0) {
+            this.cache = CacheBuilder.newBuilder()
+                    .maximumWeight(maxChanges)
+                    .expireAfterAccess(expiryMillis, TimeUnit.MILLISECONDS)
+                    .ticker(ticker)
+                    .weigher(new Weigher<Key, RecordedDiff>() {
+                        @Override
+                        public int weigh(@NotNull Key key, @NotNull RecordedDiff value) {
+                            return 1 + value.changes.size();
+                        }
+                    })
+                    .build();
+        } else {
+            this.cache = null;
+        }
+        this.parent = null;
+    }
+
+    private SharedDiff(SharedDiff parent) {
+        this.cache = parent.cache;
+        this.parent = parent;
+    }
+
+    /**
+     * The shared diff of this repository.
+     *
+     * @return the instance
+     */
+    @NotNull
+    public static SharedDiff getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Create a view of this shared diff, with its own statistics, for example
+     * for one listener. The statistics of this shared diff still include the
+     * ones of the view.
+     *
+     * @return a new view
+     */
+    @NotNull
+    public SharedDiff newView() {
+        return new SharedDiff(this);
+    }
+
+    /**
+     * Compare the states, like {@code after.compareAgainstBaseState(before,
+     * diff)} does, using the recorded changes if available.
+     *
+     * @param before the before state
+     * @param after the after state
+     * @param diff the diff handler
+     * @return {@code true} if the full diff was performed, or
+     *         {@code false} if it was aborted
+     */
+    public boolean compare(@NotNull NodeState before, @NotNull NodeState after,
+                           @NotNull NodeStateDiff diff) {
+        RecordedDiff recorded = getRecordedDiff(before, after);
+        if (recorded == null) {
+            return after.compareAgainstBaseState(before, diff);
+        }
+        return recorded.replay(diff);
+    }
+
+    /**
+     * Get the before and after state of a child node, as recorded in the diff
+     * of the parent node, so that the diff of the child can be shared as well.
+     *
+     * @param before the before state of the parent
+     * @param after the after state of the parent
+     * @param name the name of the child node
+     * @return the before and after state of the child, or {@code null} if the
+     *         child node is known not to have changed
+     */
+    @Nullable
+    public NodeState[] getChildNodes(@NotNull NodeState before, @NotNull NodeState after,
+                                     @NotNull String name) {
+        RecordedDiff recorded = getRecordedDiff(before, after);
+        if (recorded == null) {
+            NodeState childBefore = before.getChildNode(name);
+            NodeState childAfter = after.getChildNode(name);
+            return childBefore.exists() || childAfter.exists()
+                    ? new NodeState[] {childBefore, childAfter} : null;
+        }
+        return recorded.getChildNodes(name);
+    }
+
+    /**
+     * @return the number of node diffs that were computed
+     */
+    public long getComputedCount() {
+        return computed.get();
+    }
+
+    /**
+     * @return the number of node diffs that were replayed from a diff
+     *         computed before
+     */
+    public long getSharedCount() {
+        return shared.get();
+    }
+
+    /**
+     * @return the ratio of the shared node diffs to all node diffs, or 0 if
+     *         there were none
+     */
+    public double getSharingRatio() {
+        long s = shared.get();
+        long total = s + computed.get();
+        return total == 0 ? 0 : (double) s / total;
+    }
+
+    @Nullable
+    private RecordedDiff getRecordedDiff(NodeState before, NodeState after) {
+        if (cache == null) {
+            count(computed);
+            return null;
+        }
+        Key key = new Key(before, after);
+        RecordedDiff recorded = cache.getIfPresent(key);
+        if (recorded == null) {
+            boolean[] loaded = new boolean[1];
+            try {
+                recorded = cache.get(key, () -> {
+                    loaded[0] = true;
+                    return RecordedDiff.record(before, after);
+                });
+            } catch (ExecutionException | UncheckedExecutionException e) {
+                throw new IllegalStateException("Failed to compare the node states", e.getCause());
+            }
+            if (loaded[0]) {
+                count(computed);
+                return recorded == NOT_RECORDED ? null : recorded;
+            }
+        }
+        if (recorded == NOT_RECORDED) {
+            count(computed);
+            return null;
+        }
+        count(shared);
+        return recorded;
+    }
+
+    private void count(AtomicLong counter) {
+        counter.incrementAndGet();
+        if (parent != null) {
+            parent.count(counter == computed ? parent.computed : parent.shared);
+        }
+    }
+
+    /**
+     * Node states, compared by identity.
+     */
+    private static final class Key {
+
+        private final NodeState before;
+
+        private final NodeState after;
+
+        Key(NodeState before, NodeState after) {
+            this.before = before;
+            this.after = after;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * System.identityHashCode(before) + System.identityHashCode(after);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) obj;
+            return before == other.before && after == other.after;
+        }
+
+    }
+
+    /**
+     * The changes of one node.
+     */
+    private static final class RecordedDiff {
+
+        private final List<Change> changes;
+
+        RecordedDiff(List<Change> changes) {
+            this.changes = changes;
+        }
+
+        static RecordedDiff record(NodeState before, NodeState after) {
+            Recorder recorder = new Recorder();
+            if (!after.compareAgainstBaseState(before, recorder)) {
+                return NOT_RECORDED;
+            }
+            return new RecordedDiff(recorder.changes);
+        }
+
+        boolean replay(NodeStateDiff diff) {
+            for (Change change : changes) {
+                if (!change.replay(diff)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        NodeState[] getChildNodes(String name) {
+            for (Change change : changes) {
+                if (change.beforeNode != null && name.equals(change.name)) {
+                    return new NodeState[] {change.beforeNode, change.afterNode};
+                }
+            }
+            return null;
+        }
+
+    }
+
+    /**
+     * A change of a property or child node. For child nodes, the missing
+     * state of an added or deleted node is {@code MISSING_NODE}.
+     */
+    private static final class Change {
+
+        private final String name;
+
+        private final PropertyState beforeProperty;
+
+        private final PropertyState afterProperty;
+
+        private final NodeState beforeNode;
+
+        private final NodeState afterNode;
+
+        Change(PropertyState beforeProperty, PropertyState afterProperty) {
+            this.name = null;
+            this.beforeProperty = beforeProperty;
+            this.afterProperty = afterProperty;
+            this.beforeNode = null;
+            this.afterNode = null;
+        }
+
+        Change(String name, NodeState beforeNode, NodeState afterNode) {
+            this.name = name;
+            this.beforeProperty = null;
+            this.afterProperty = null;
+            this.beforeNode = beforeNode;
+            this.afterNode = afterNode;
+        }
+
+        boolean replay(NodeStateDiff diff) {
+            if (name == null) {
+                if (beforeProperty == null) {
+                    return diff.propertyAdded(afterProperty);
+                } else if (afterProperty == null) {
+                    return diff.propertyDeleted(beforeProperty);
+                }
+                return diff.propertyChanged(beforeProperty, afterProperty);
+            } else if (!beforeNode.exists()) {
+                return diff.childNodeAdded(name, afterNode);
+            } else if (!afterNode.exists()) {
+                return diff.childNodeDeleted(name, beforeNode);
+            }
+            return diff.childNodeChanged(name, beforeNode, afterNode);
+        }
+
+    }
+
+    private static final class Recorder implements NodeStateDiff {
+
+        private final List<Change> changes = new ArrayList<>();
+
+        @Override
+        public boolean propertyAdded(PropertyState after) {
+            return add(new Change(null, after));
+        }
+
+        @Override
+        public boolean propertyChanged(PropertyState before, PropertyState after) {
+            return add(new Change(before, after));
+        }
+
+        @Override
+        public boolean propertyDeleted(PropertyState before) {
+            return add(new Change(before, null));
+        }
+
+        @Override
+        public boolean childNodeAdded(String name, NodeState after) {
+            return add(new Change(name, MISSING_NODE, after));
+        }
+
+        @Override
+        public boolean childNodeChanged(String name, NodeState before, NodeState after) {
+            return add(new Change(name, before, after));
+        }
+
+        @Override
+        public boolean childNodeDeleted(String name, NodeState before) {
+            return add(new Change(name, before, MISSING_NODE));
+        }
+
+        private boolean add(Change change) {
+            changes.add(change);
+            return changes.size() <= MAX_CHANGES_PER_NODE;
+        }
+
+    }
+
+}
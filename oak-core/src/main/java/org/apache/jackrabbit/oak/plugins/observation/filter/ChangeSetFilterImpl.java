@@ -18,12 +18,12 @@
  */
 package org.apache.jackrabbit.oak.plugins.observation.filter;
 
-import static java.util.Collections.disjoint;
 import static org.apache.jackrabbit.oak.commons.PathUtils.concat;
 
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.Set;
+import java.util.function.Predicate;
 import java.util.regex.Pattern;
 
 import org.apache.jackrabbit.oak.commons.PathUtils;
@@ -39,6 +39,13 @@ public class ChangeSetFilterImpl implements ChangeSetFilter {
     
     private static final int MAX_EXCLUDED_PATHS = 11;
     private static final int MAX_EXCLUDE_PATH_CUTOFF_LEVEL = 6;
+
+    /**
+     * Whether change sets with overflown names or node types are still
+     * prefiltered, using the bloom filters collected on overflow. By default,
+     * a change set with any overflow is included.
+     */
+    private static final boolean PREFILTER_ON_OVERFLOW = Boolean.getBoolean("oak.observation.prefilterOnOverflow");
     
     private final Set<String> rootIncludePaths;
     private final Set<String> firstLevelIncludeNames;
@@ -48,6 +55,8 @@ public class ChangeSetFilterImpl implements ChangeSetFilter {
     private final Set<String> parentNodeNames;
     private final Set<String> parentNodeTypes;
     private final Set<String> propertyNames;
+
+    private boolean prefilterOnOverflow = PREFILTER_ON_OVERFLOW;
     
     @Override
     public String toString() {
@@ -178,6 +187,11 @@ public class ChangeSetFilterImpl implements ChangeSetFilter {
         return result;
     }
 
+    /** for testing only **/
+    void setPrefilterOnOverflow(boolean prefilterOnOverflow) {
+        this.prefilterOnOverflow = prefilterOnOverflow;
+    }
+
     /** for testing only **/
     public Set<String> getRootIncludePaths() {
         return rootIncludePaths;
@@ -203,9 +217,13 @@ public class ChangeSetFilterImpl implements ChangeSetFilter {
             // in case of an overflow we could
             // either try to still determine include/exclude based on non-overflown
             // sets - or we can do a fail-stop and determine this as too complex
-            // to try-to-exclude, and just include
-            //TODO: optimize this later
-            return false;
+            // to try-to-exclude, and just include.
+            // names and node types can still be checked against the bloom
+            // filters of the change set, but overflown paths can't be matched
+            // against the path patterns
+            if (!prefilterOnOverflow || changeSet.getParentPaths() == null) {
+                return false;
+            }
         }
         if (changeSet.doesHitMaxPathDepth()) {
             // then we might or might not include this - but without
@@ -296,7 +314,7 @@ public class ChangeSetFilterImpl implements ChangeSetFilter {
         }
 
         if (this.propertyNames != null && this.propertyNames.size() != 0) {
-            if (disjoint(changeSet.getPropertyNames(), this.propertyNames)) {
+            if (noneMightBeContained(this.propertyNames, changeSet::mightContainPropertyName)) {
                 // if propertyNames are defined then if we can't find any
                 // at this stage (if !included) then this equals to filtering out
                 return true;
@@ -307,7 +325,7 @@ public class ChangeSetFilterImpl implements ChangeSetFilter {
         }
 
         if (this.parentNodeTypes != null && this.parentNodeTypes.size() != 0) {
-            if (disjoint(changeSet.getParentNodeTypes(), this.parentNodeTypes)) {
+            if (noneMightBeContained(this.parentNodeTypes, changeSet::mightContainParentNodeType)) {
                 // same story here: if nodeTypes is defined and we can't find any
                 // match
                 // then we're done now
@@ -319,7 +337,7 @@ public class ChangeSetFilterImpl implements ChangeSetFilter {
         if (this.parentNodeNames != null && this.parentNodeNames.size() != 0) {
             // and a 3rd time, if we can't find any nodeName match
             // here, then we're filtering out
-            if (disjoint(changeSet.getParentNodeNames(), this.parentNodeNames)) {
+            if (noneMightBeContained(this.parentNodeNames, changeSet::mightContainParentNodeName)) {
                 return true;
             }
         }
@@ -328,6 +346,15 @@ public class ChangeSetFilterImpl implements ChangeSetFilter {
         return false;
     }
 
+    private static boolean noneMightBeContained(Set<String> names, Predicate<String> mightContain) {
+        for (String name : names) {
+            if (mightContain.test(name)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
     private static boolean patternsMatch(Set<Pattern> pathPatterns, String path) {
         if (path == null) {
             return false;
@@ -0,0 +1,228 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.jackrabbit.oak.query;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.apache.jackrabbit.oak.query.index.FilterImpl;
+import org.apache.jackrabbit.oak.query.stats.QueryStatsReporter;
+import org.apache.jackrabbit.oak.spi.query.QueryIndex;
+import org.apache.jackrabbit.oak.spi.query.QueryIndex.AdvancedQueryIndex;
+import org.apache.jackrabbit.oak.spi.query.QueryIndex.IndexPlan;
+import org.apache.jackrabbit.oak.spi.query.QueryIndex.OrderEntry;
+import org.apache.jackrabbit.oak.spi.state.NodeState;
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Collects the plans (for advanced query indexes) or the cost (for other
+ * indexes) of a list of indexes for a given filter. The indexes are sorted by
+ * minimum cost, and are asked in this order, as the caller may skip the
+ * remaining indexes once the minimum cost of the next index is higher than the
+ * best cost found so far.
+ * <p>
+ * If an executor is available, the indexes that are certain to be asked (the
+ * index whose result is requested, and the following indexes with the same
+ * minimum cost) are asked concurrently, and the result of each index is
+ * awaited at most for the configured timeout. Otherwise, each index is asked
+ * when its result is requested. Each concurrent task uses its own copy of the
+ * filter.
+ */
+class IndexPlanCollector {
+
+    private static final Logger LOG = LoggerFactory.getLogger(IndexPlanCollector.class);
+
+    /**
+     * Minimum costs that differ less than this are the same (as in QueryImpl).
+     */
+    private static final double SAME_COST = .00001;
+
+    private final List<? extends QueryIndex> indexes;
+    private final FilterImpl filter;
+    private final List<OrderEntry> sortOrder;
+    private final NodeState rootState;
+    private final QueryStatsReporter statsReporter;
+    private final long timeoutMillis;
+    private final List<Future<IndexCost>> futures;
+    private ExecutorService executor;
+
+    IndexPlanCollector(List<? extends QueryIndex> indexes, FilterImpl filter,
+            List<OrderEntry> sortOrder, NodeState rootState,
+            QueryStatsReporter statsReporter,
+            @Nullable ExecutorService executor, long timeoutMillis) {
+        this.indexes = indexes;
+        this.filter = filter;
+        this.sortOrder = sortOrder;
+        this.rootState = rootState;
+        this.statsReporter = statsReporter;
+        this.timeoutMillis = timeoutMillis;
+        this.executor = executor;
+        this.futures = new ArrayList<>(Collections.nCopies(indexes.size(), null));
+    }
+
+    /**
+     * Ask the index at the given position, and the following indexes with
+     * the same minimum cost, concurrently. The caller asks all of them: if
+     * the minimum cost of the first one is not higher than the best cost (or
+     * the same as the minimum cost of the best index), then this is also
+     * true for the others.
+     *
+     * @param i the index position
+     */
+    private void submit(int i) {
+        double minCost = indexes.get(i).getMinimumCost();
+        int end = i + 1;
+        while (end < indexes.size() && futures.get(end) == null
+                && Math.abs(indexes.get(end).getMinimumCost() - minCost) < SAME_COST) {
+            end++;
+        }
+        if (end - i < 2) {
+            return;
+        }
+        try {
+            for (int j = i; j < end; j++) {
+                QueryIndex index = indexes.get(j);
+                FilterImpl f = filter.copy();
+                futures.set(j, executor.submit(() -> compute(index, f)));
+            }
+        } catch (RejectedExecutionException e) {
+            // the executor was shut down concurrently
+            LOG.debug("Could not collect plans concurrently", e);
+            executor = null;
+            for (int j = i; j < end; j++) {
+                Future<IndexCost> f = futures.get(j);
+                if (f != null) {
+                    f.cancel(false);
+                    futures.set(j, null);
+                }
+            }
+        }
+    }
+
+    /**
+     * Get the plans of the index at the given position. For indexes that are
+     * not advanced query indexes, or that timed out, the list is empty.
+     *
+     * @param i the index position
+     * @return the plans
+     */
+    List<IndexPlan> getPlans(int i) {
+        return get(i).plans;
+    }
+
+    /**
+     * Get the cost of the index at the given position. For advanced query
+     * indexes, this is not computed.
+     *
+     * @param i the index position
+     * @return the cost, or infinity if the index timed out
+     */
+    double getCost(int i) {
+        return get(i).cost;
+    }
+
+    /**
+     * Cancel collecting the plans for all indexes that were not needed.
+     * Indexes that are already asked are not interrupted (interrupting could
+     * for example close file channels that are in use).
+     */
+    void cancel() {
+        for (Future<IndexCost> f : futures) {
+            if (f != null) {
+                f.cancel(false);
+            }
+        }
+    }
+
+    private IndexCost get(int i) {
+        if (futures.get(i) == null && executor != null) {
+            submit(i);
+        }
+        Future<IndexCost> f = futures.get(i);
+        if (f == null) {
+            return compute(indexes.get(i), filter);
+        }
+        String indexName = indexes.get(i).getIndexName();
+        try {
+            return f.get(timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException | CancellationException e) {
+            f.cancel(false);
+            LOG.warn("Index {} did not return a plan within {} ms for filter {}; the index is ignored",
+                    indexName, timeoutMillis, filter);
+            statsReporter.recordIndexPlanning(indexName,
+                    TimeUnit.MILLISECONDS.toNanos(timeoutMillis), true);
+            return IndexCost.TIMED_OUT;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            cancel();
+            throw new IllegalStateException("Interrupted while collecting the plans of index " + indexName, e);
+        } catch (ExecutionException e) {
+            // same behavior as if the index was called directly
+            cancel();
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IllegalStateException(cause);
+        }
+    }
+
+    private IndexCost compute(QueryIndex index, FilterImpl filter) {
+        long start = System.nanoTime();
+        IndexCost result;
+        if (index instanceof AdvancedQueryIndex) {
+            AdvancedQueryIndex advIndex = (AdvancedQueryIndex) index;
+            result = new IndexCost(advIndex.getPlans(filter, sortOrder, rootState),
+                    Double.POSITIVE_INFINITY);
+        } else {
+            result = new IndexCost(Collections.emptyList(),
+                    index.getCost(filter, rootState));
+        }
+        statsReporter.recordIndexPlanning(index.getIndexName(), System.nanoTime() - start, false);
+        return result;
+    }
+
+    private static class IndexCost {
+
+        static final IndexCost TIMED_OUT = new IndexCost(
+                Collections.emptyList(), Double.POSITIVE_INFINITY);
+
+        final List<IndexPlan> plans;
+        final double cost;
+
+        IndexCost(List<IndexPlan> plans, double cost) {
+            this.plans = plans;
+            this.cost = cost;
+        }
+
+    }
+
+}
@@ -19,7 +19,12 @@
 package org.apache.jackrabbit.oak.query;
 
 import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
+import org.apache.jackrabbit.guava.common.util.concurrent.ThreadFactoryBuilder;
 import org.apache.jackrabbit.oak.api.StrictPathRestriction;
 import org.apache.jackrabbit.oak.api.jmx.QueryEngineSettingsMBean;
 import org.apache.jackrabbit.oak.query.stats.QueryStatsMBean;
@@ -69,6 +74,40 @@ public class QueryEngineSettings implements QueryEngineSettingsMBean, QueryLimit
     private static final boolean DEFAULT_FAIL_TRAVERSAL =
             Boolean.getBoolean(OAK_QUERY_FAIL_TRAVERSAL);
 
+    /**
+     * The number of threads used to collect index plans concurrently. If 0
+     * (the default), the indexes are asked for plans sequentially.
+     * {@code -Doak.query.planningThreads}
+     */
+    public static final String OAK_QUERY_PLANNING_THREADS = "oak.query.planningThreads";
+
+    public static final int DEFAULT_PLANNING_THREADS =
+            Integer.getInteger(OAK_QUERY_PLANNING_THREADS, 0);
+
+    /**
+     * The maximum time to wait for the plans of a single index, when plans
+     * are collected concurrently. Indexes that take longer are ignored for
+     * the given query.
+     * {@code -Doak.query.planningTimeoutMillis}
+     */
+    public static final String OAK_QUERY_PLANNING_TIMEOUT = "oak.query.planningTimeoutMillis";
+
+    public static final long DEFAULT_PLANNING_TIMEOUT_MILLIS =
+            Long.getLong(OAK_QUERY_PLANNING_TIMEOUT, 10000);
+
+    private static final int PLANNING_QUEUE_SIZE = 1024;
+
+    /**
+     * Whether column values that only depend on the node (and not on data
+     * provided by the index) are read when first accessed, instead of when
+     * the row is read.
+     * {@code -Doak.query.lazyRowValues}
+     */
+    public static final String OAK_QUERY_LAZY_ROW_VALUES = "oak.query.lazyRowValues";
+
+    public static final boolean DEFAULT_LAZY_ROW_VALUES =
+            Boolean.getBoolean(OAK_QUERY_LAZY_ROW_VALUES);
+
     private static final boolean DEFAULT_FULL_TEXT_COMPARISON_WITHOUT_INDEX =
             Boolean.getBoolean("oak.queryFullTextComparisonWithoutIndex");
     
@@ -79,6 +118,14 @@ public class QueryEngineSettings implements QueryEngineSettingsMBean, QueryLimit
     private int prefetchCount = DEFAULT_PREFETCH_COUNT;
 
     private boolean failTraversal = DEFAULT_FAIL_TRAVERSAL;
+
+    private int planningThreads = DEFAULT_PLANNING_THREADS;
+
+    private long planningTimeoutMillis = DEFAULT_PLANNING_TIMEOUT_MILLIS;
+
+    private ExecutorService planningExecutor;
+
+    private boolean lazyRowValues = DEFAULT_LAZY_ROW_VALUES;
     
     private boolean fullTextComparisonWithoutIndex = 
             DEFAULT_FULL_TEXT_COMPARISON_WITHOUT_INDEX;
@@ -205,6 +252,67 @@ public class QueryEngineSettings implements QueryEngineSettingsMBean, QueryLimit
         System.setProperty(OAK_FAST_QUERY_SIZE, String.valueOf(fastQuerySize));
     }
 
+    public int getPlanningThreads() {
+        return planningThreads;
+    }
+
+    /**
+     * Set the number of threads used to collect index plans concurrently.
+     * A value of 0 or less disables concurrent planning.
+     *
+     * @param planningThreads the number of threads
+     */
+    public synchronized void setPlanningThreads(int planningThreads) {
+        if (this.planningThreads == planningThreads) {
+            return;
+        }
+        this.planningThreads = planningThreads;
+        if (planningExecutor != null) {
+            planningExecutor.shutdown();
+            planningExecutor = null;
+        }
+    }
+
+    public long getPlanningTimeoutMillis() {
+        return planningTimeoutMillis;
+    }
+
+    public void setPlanningTimeoutMillis(long planningTimeoutMillis) {
+        this.planningTimeoutMillis = planningTimeoutMillis;
+    }
+
+    /**
+     * Get the executor used to collect index plans concurrently. The executor
+     * is bounded both in the number of threads and the number of queued
+     * tasks; if the queue is full, the plans are collected by the calling
+     * thread.
+     *
+     * @return the executor, or null if concurrent planning is disabled
+     */
+    @Nullable
+    public synchronized ExecutorService getPlanningExecutor() {
+        if (planningThreads <= 0) {
+            return null;
+        }
+        if (planningExecutor == null) {
+            ThreadPoolExecutor executor = new ThreadPoolExecutor(planningThreads, planningThreads,
+                    60L, TimeUnit.SECONDS, new LinkedBlockingQueue<>(PLANNING_QUEUE_SIZE),
+                    new ThreadFactoryBuilder().setNameFormat("oak-query-planner-%d").setDaemon(true).build(),
+                    new ThreadPoolExecutor.CallerRunsPolicy());
+            executor.allowCoreThreadTimeOut(true);
+            planningExecutor = executor;
+        }
+        return planningExecutor;
+    }
+
+    public boolean isLazyRowValues() {
+        return lazyRowValues;
+    }
+
+    public void setLazyRowValues(boolean lazyRowValues) {
+        this.lazyRowValues = lazyRowValues;
+    }
+
     public String getStrictPathRestriction() {
         return strictPathRestriction.name();
     }
@@ -269,6 +377,9 @@ public class QueryEngineSettings implements QueryEngineSettingsMBean, QueryLimit
                 ", sql2Optimisation=" + sql2Optimisation +
                 ", fastQuerySize=" + fastQuerySize +
                 ", prefetchCount=" + prefetchCount +
+                ", planningThreads=" + planningThreads +
+                ", planningTimeoutMillis=" + planningTimeoutMillis +
+                ", lazyRowValues=" + lazyRowValues +
                 ", classNamesIgnoredInCallTrace=" + Arrays.toString(classNamesIgnoredInCallTrace) +
                 '}';
     }
@@ -170,6 +170,13 @@ public class QueryImpl implements Query {
      * except for "jcr:score".
      */
     private boolean[] distinctColumns;
+
+    /**
+     * The columns that are read lazily, from the tree of the row, on first
+     * access (null entries are read eagerly). If null, all columns are read
+     * eagerly.
+     */
+    private ColumnImpl[] lazyColumns;
     
     private boolean explain, measure;
     private boolean distinct;
@@ -463,6 +470,17 @@ public class QueryImpl implements Query {
             }
             distinctColumns[i] = distinct;
         }
+        lazyColumns = null;
+        if (settings.isLazyRowValues()) {
+            ColumnImpl[] lazy = new ColumnImpl[columns.length];
+            for (int i = 0; i < columns.length; i++) {
+                ColumnImpl c = columns[i];
+                if (c.isTreeProperty()) {
+                    lazy[i] = c;
+                    lazyColumns = lazy;
+                }
+            }
+        }
         
         init = true;
     }
@@ -913,8 +931,19 @@ public class QueryImpl implements Query {
         private boolean started, end;
         private long rowIndex;
 
+        /**
+         * The (converted) sort key of option(after), or null if not set.
+         */
+        private final PropertyValue[] sortAfter;
+
         RowIterator(NodeState rootState) {
             this.rootState = rootState;
+            List<String> after = queryOptions.after;
+            if (after.isEmpty() || orderings == null || orderings.length < after.size()) {
+                sortAfter = null;
+            } else {
+                sortAfter = new PropertyValue[after.size()];
+            }
         }
 
         public long getReadCount() {
@@ -934,6 +963,9 @@ public class QueryImpl implements Query {
             while (true) {
                 if (source.next()) {
                     if (constraint == null || constraint.evaluate()) {
+                        if (sortAfter != null && !isAfterSortKey()) {
+                            continue;
+                        }
                         current = currentRow();
                         rowIndex++;
                         break;
@@ -953,6 +985,43 @@ public class QueryImpl implements Query {
             stats.read(rowIndex - oldIndex, rowIndex, nanos);
         }
 
+        /**
+         * Whether the current row is sorted after the sort key of
+         * option(after). Rows with the same sort key are skipped.
+         *
+         * @return true if the row should be returned
+         */
+        private boolean isAfterSortKey() {
+            for (int i = 0; i < sortAfter.length; i++) {
+                PropertyValue a = orderings[i].getOperand().currentProperty();
+                int comp;
+                if (a == null) {
+                    // null values are sorted first
+                    comp = -1;
+                } else {
+                    comp = a.compareTo(getSortAfterValue(i, a.getType().tag()));
+                }
+                if (comp != 0) {
+                    return orderings[i].isDescending() ? comp < 0 : comp > 0;
+                }
+            }
+            return false;
+        }
+
+        private PropertyValue getSortAfterValue(int index, int type) {
+            PropertyValue v = sortAfter[index];
+            if (v == null || v.getType().tag() != type) {
+                v = PropertyValues.newString(queryOptions.after.get(index));
+                try {
+                    v = ValueConverter.convert(v, type, namePathMapper);
+                } catch (IllegalArgumentException e) {
+                    // compare as strings
+                }
+                sortAfter[index] = v;
+            }
+            return v;
+        }
+
         @Override
         public boolean hasNext() {
             if (end) {
@@ -987,15 +1056,24 @@ public class QueryImpl implements Query {
     ResultRowImpl currentRow() {
         int selectorCount = selectors.size();
         Tree[] trees = new Tree[selectorCount];
+        ColumnImpl[] lazy = lazyColumns;
         for (int i = 0; i < selectorCount; i++) {
             SelectorImpl s = selectors.get(i);
             trees[i] = s.currentTree();
+            if (s.isVirtualRow()) {
+                // virtual rows don't have a tree to read from
+                lazy = null;
+            }
         }
         int columnCount = columns.length;
         PropertyValue[] values = new PropertyValue[columnCount];
         for (int i = 0; i < columnCount; i++) {
-            ColumnImpl c = columns[i];
-            values[i] = c.currentProperty();
+            if (lazy != null && lazy[i] != null) {
+                values[i] = ResultRowImpl.PENDING;
+            } else {
+                ColumnImpl c = columns[i];
+                values[i] = c.currentProperty();
+            }
         }
         PropertyValue[] orderValues;
         if (orderings == null) {
@@ -1007,7 +1085,7 @@ public class QueryImpl implements Query {
                 orderValues[i] = orderings[i].getOperand().currentProperty();
             }
         }
-        return new ResultRowImpl(this, trees, values, distinctColumns, orderValues);
+        return new ResultRowImpl(this, trees, values, distinctColumns, orderValues, lazy);
     }
 
     @Override
@@ -1098,6 +1176,9 @@ public class QueryImpl implements Query {
         List<? extends QueryIndex> queryIndexes = MINIMAL_COST_ORDERING
                 .sortedCopy(indexProvider.getQueryIndexes(rootState));
         List<OrderEntry> sortOrder = getSortOrder(filter); 
+        IndexPlanCollector planCollector = new IndexPlanCollector(queryIndexes,
+                filter, sortOrder, rootState, getSettings().getQueryStatsReporter(),
+                getSettings().getPlanningExecutor(), getSettings().getPlanningTimeoutMillis());
         for (int i = 0; i < queryIndexes.size(); i++) {
             QueryIndex index = queryIndexes.get(i);
             double minCost = index.getMinimumCost();
@@ -1118,8 +1199,7 @@ public class QueryImpl implements Query {
             if (index instanceof AdvancedQueryIndex) {
                 AdvancedQueryIndex advIndex = (AdvancedQueryIndex) index;
 
-                List<IndexPlan> ipList = advIndex.getPlans(
-                        filter, sortOrder, rootState);
+                List<IndexPlan> ipList = planCollector.getPlans(i);
                 cost = Double.POSITIVE_INFINITY;
                 for (IndexPlan p : ipList) {
                     
@@ -1159,7 +1239,7 @@ public class QueryImpl implements Query {
                     indexName += "[" + indexPlan.getPlanName() + "]";
                 }
             } else {
-                cost = index.getCost(filter, rootState);
+                cost = planCollector.getCost(i);
             }
             if (LOG.isDebugEnabled()) {
                 logDebug("cost for " + indexName + " is " + cost);
@@ -1180,6 +1260,7 @@ public class QueryImpl implements Query {
                 almostBestIndex = index;
             }
         }
+        planCollector.cancel();
 
         if (LOG.isDebugEnabled() && Math.abs(bestCost - almostBestCost) <= 0.1) {
             String msg = (bestPlan != null && almostBestPlan != null) ? String.format("selected index %s with plan %s and %s with plan %s have similar costs %s and %s for query %s - " +
@@ -31,9 +31,16 @@ import org.apache.jackrabbit.oak.spi.query.QueryConstants;
 
 /**
  * A query result row that keeps all data (for this row only) in memory.
+ * Column values that only depend on the tree of the row may be read lazily,
+ * on first access.
  */
 public class ResultRowImpl implements ResultRow {
 
+    /**
+     * Marker for a column value that was not read yet.
+     */
+    static final PropertyValue PENDING = PropertyValues.newString("");
+
     private final Query query;
     private final Tree[] trees;
 
@@ -53,12 +60,42 @@ public class ResultRowImpl implements ResultRow {
      */
     private final PropertyValue[] orderValues;
 
+    /**
+     * The columns of the query, used to read values that are
+     * {@link #PENDING}. If null, all values were read.
+     */
+    private final ColumnImpl[] lazyColumns;
+
     ResultRowImpl(Query query, Tree[] trees, PropertyValue[] values, boolean[] distinctValues, PropertyValue[] orderValues) {
+        this(query, trees, values, distinctValues, orderValues, null);
+    }
+
+    ResultRowImpl(Query query, Tree[] trees, PropertyValue[] values, boolean[] distinctValues,
+            PropertyValue[] orderValues, ColumnImpl[] lazyColumns) {
         this.query = query;
         this.trees = trees;
         this.values = values;
         this.distinctValues = distinctValues;
         this.orderValues = orderValues;
+        this.lazyColumns = lazyColumns;
+    }
+
+    /**
+     * Get the value of the column at the given index, reading it from the
+     * tree if this was not done yet.
+     *
+     * @param index the column index
+     * @return the value (possibly null)
+     */
+    private PropertyValue getColumnValue(int index) {
+        PropertyValue v = values[index];
+        if (v == PENDING) {
+            ColumnImpl c = lazyColumns[index];
+            Tree t = trees[query.getSelectorIndex(c.getSelector().getSelectorName())];
+            v = c.getTreeProperty(t);
+            values[index] = v;
+        }
+        return v;
     }
 
     PropertyValue[] getOrderValues() {
@@ -101,7 +138,7 @@ public class ResultRowImpl implements ResultRow {
     public PropertyValue getValue(String columnName) {
         int index = query.getColumnIndex(columnName);
         if (index >= 0) {
-            return values[index];
+            return getColumnValue(index);
         }
         if (JcrConstants.JCR_PATH.equals(columnName)) {
             return PropertyValues.newString(getPath());
@@ -113,7 +150,7 @@ public class ResultRowImpl implements ResultRow {
             int columnIndex = query.getColumnIndex(QueryConstants.REP_EXCERPT);
             PropertyValue indexExcerptValue = null;
             if (columnIndex >= 0) {
-                indexExcerptValue = values[columnIndex];
+                indexExcerptValue = getColumnValue(columnIndex);
                 if (indexExcerptValue != null) {
                     if (QueryConstants.REP_EXCERPT.equals(columnName) || SimpleExcerptProvider.REP_EXCERPT_FN.equals(columnName)) {
                         return SimpleExcerptProvider.getExcerpt(indexExcerptValue);
@@ -139,7 +176,9 @@ public class ResultRowImpl implements ResultRow {
     @Override
     public PropertyValue[] getValues() {
         PropertyValue[] v2 = new PropertyValue[values.length];
-        System.arraycopy(values, 0, v2, 0, values.length);
+        for (int i = 0; i < values.length; i++) {
+            v2[i] = getColumnValue(i);
+        }
         return v2;
     }
 
@@ -157,7 +196,7 @@ public class ResultRowImpl implements ResultRow {
             ColumnImpl c = cols[i];
             String n = c.getColumnName();
             if (n != null) {
-                buff.append(n).append(": ").append(values[i]).append(" ");
+                buff.append(n).append(": ").append(getColumnValue(i)).append(" ");
             }
         }
         return buff.toString();
@@ -176,7 +215,7 @@ public class ResultRowImpl implements ResultRow {
         int result = 1;
         for (int i = 0; i < values.length; i++) {
             if (distinctValues == null || distinctValues[i]) {
-                PropertyValue v = values[i];
+                PropertyValue v = getColumnValue(i);
                 result = 31 * result + (v == null ? 0 : v.hashCode());
             }
         }
@@ -202,8 +241,8 @@ public class ResultRowImpl implements ResultRow {
         // is also equal
         for (int i = 0; i < values.length; i++) {
             if (distinctValues == null || distinctValues[i]) {
-                Object o1 = values[i];
-                Object o2 = other.values[i];
+                Object o1 = getColumnValue(i);
+                Object o2 = other.getColumnValue(i);
                 if (!(o1 == null ? o2 == null : o1.equals(o2))) {
                     return false;
                 }
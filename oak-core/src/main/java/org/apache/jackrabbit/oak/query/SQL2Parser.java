@@ -206,6 +206,17 @@ public class SQL2Parser {
                     } while (readIf(","));
                     read(")");
                     options.prefetch = list;
+                } else if (readIf("AFTER")) {
+                    ArrayList<String> list = new ArrayList<String>();
+                    if (readIf("(")) {
+                        do {
+                            list.add(readString().getValue(Type.STRING));
+                        } while (readIf(","));
+                        read(")");
+                    } else {
+                        list.add(readString().getValue(Type.STRING));
+                    }
+                    options.after = list;
                 } else {
                     break;
                 }
@@ -216,6 +227,10 @@ public class SQL2Parser {
         if (!currentToken.isEmpty()) {
             throw getSyntaxError("<end>");
         }
+        if (options.after.size() > (orderings == null ? 0 : orderings.length)) {
+            // the sort key of option(after) needs one order by term per value
+            throw getSyntaxError("order by");
+        }
         q.setOrderings(orderings);
         q.setExplain(explain);
         q.setMeasure(measure);
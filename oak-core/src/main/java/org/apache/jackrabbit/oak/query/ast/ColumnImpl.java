@@ -21,6 +21,7 @@ package org.apache.jackrabbit.oak.query.ast;
 import static org.apache.jackrabbit.guava.common.base.Preconditions.checkNotNull;
 
 import org.apache.jackrabbit.oak.api.PropertyValue;
+import org.apache.jackrabbit.oak.api.Tree;
 
 /**
  * A result column expression.
@@ -59,6 +60,26 @@ public class ColumnImpl extends AstElement {
         return selector.currentProperty(propertyName);
     }
 
+    /**
+     * Whether the value of this column can be read from the tree of the row
+     * at a later time, see {@link SelectorImpl#isTreeProperty(String)}.
+     *
+     * @return true if the value only depends on the tree
+     */
+    public boolean isTreeProperty() {
+        return selector.isTreeProperty(propertyName);
+    }
+
+    /**
+     * The value of this column for the given tree.
+     *
+     * @param tree the tree of the selector of this column (may be null)
+     * @return the property value (possibly null)
+     */
+    public PropertyValue getTreeProperty(Tree tree) {
+        return selector.getTreeProperty(tree, propertyName);
+    }
+
     public void bindSelector(SourceImpl source) {
         selector = source.getExistingSelector(selectorName);
     }
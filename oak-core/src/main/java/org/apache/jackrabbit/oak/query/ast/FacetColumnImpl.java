@@ -33,4 +33,9 @@ public class FacetColumnImpl extends ColumnImpl {
         return this.getSelector().currentOakProperty(getPropertyName());
     }
 
+    @Override
+    public boolean isTreeProperty() {
+        return false;
+    }
+
 }
\ No newline at end of file
@@ -29,6 +29,8 @@ import java.util.Optional;
 import java.util.Set;
 import java.util.concurrent.TimeUnit;
 
+import javax.jcr.PropertyType;
+
 import org.apache.jackrabbit.oak.api.PropertyState;
 import org.apache.jackrabbit.oak.api.PropertyValue;
 import org.apache.jackrabbit.oak.api.Result.SizePrecision;
@@ -45,11 +47,13 @@ import org.apache.jackrabbit.oak.query.QueryEngineSettings;
 import org.apache.jackrabbit.oak.query.QueryImpl;
 import org.apache.jackrabbit.oak.query.QueryOptions;
 import org.apache.jackrabbit.oak.query.RuntimeNodeTraversalException;
+import org.apache.jackrabbit.oak.query.ValueConverter;
 import org.apache.jackrabbit.oak.spi.query.fulltext.FullTextExpression;
 import org.apache.jackrabbit.oak.query.index.FilterImpl;
 import org.apache.jackrabbit.oak.query.plan.ExecutionPlan;
 import org.apache.jackrabbit.oak.query.plan.SelectorExecutionPlan;
 import org.apache.jackrabbit.oak.spi.query.Cursor;
+import org.apache.jackrabbit.oak.spi.query.Filter.PropertyRestriction;
 import org.apache.jackrabbit.oak.plugins.index.IndexConstants;
 import org.apache.jackrabbit.oak.plugins.index.cursor.Cursors;
 import org.apache.jackrabbit.oak.spi.query.IndexRow;
@@ -511,10 +515,64 @@ public class SelectorImpl extends SourceImpl {
                 f.restrictProperty(IndexConstants.INDEX_TAG_OPTION, 
                         Operator.EQUAL, PropertyValues.newString(options.indexTag));
             }
+            if (!options.after.isEmpty()) {
+                restrictSortAfter(f, options.after.get(0));
+            }
         }
         return f;
     }
 
+    /**
+     * Keyset pagination: if the result is sorted in ascending order, only
+     * values equal or larger than the sort key of option(after) are needed,
+     * so that the index can skip the preceding entries. For descending order,
+     * the condition is not added, as null values are sorted last in this case.
+     * <p>
+     * The condition only narrows down an existing condition on the sort
+     * property, so that the index selection doesn't change, and is only added
+     * if the type of the sort property is known (declared, or from the
+     * existing condition). Otherwise, the rows are only filtered by the query
+     * engine.
+     * 
+     * @param f the filter
+     * @param after the first value of the sort key
+     */
+    private void restrictSortAfter(FilterImpl f, String after) {
+        OrderingImpl[] orderings = query.getOrderings();
+        if (orderings == null || orderings.length == 0 || orderings[0].isDescending()) {
+            return;
+        }
+        DynamicOperandImpl operand = orderings[0].getOperand();
+        if (!(operand instanceof PropertyValueImpl)) {
+            return;
+        }
+        PropertyValueImpl p = (PropertyValueImpl) operand;
+        if (QueryConstants.JCR_SCORE.equals(p.getPropertyName())) {
+            // the score is not known before the query is run
+            return;
+        }
+        PropertyRestriction existing = f.getPropertyRestriction(normalizePropertyName(p.getPropertyName()));
+        if (existing == null) {
+            return;
+        }
+        int type = p.getPropertyType();
+        if (type == PropertyType.UNDEFINED) {
+            PropertyValue bound = existing.first != null ? existing.first : existing.last;
+            if (bound == null) {
+                return;
+            }
+            type = bound.getType().tag();
+        }
+        PropertyValue v;
+        try {
+            v = ValueConverter.convert(PropertyValues.newString(after), type, query.getNamePathMapper());
+        } catch (IllegalArgumentException e) {
+            // not a valid value of this type: only filtered by the query engine
+            return;
+        }
+        p.restrict(f, Operator.GREATER_OR_EQUAL, v);
+    }
+
     @Override
     public boolean next() {
         long start = startTimer();
@@ -710,16 +768,59 @@ public class SelectorImpl extends SourceImpl {
         return currentOakProperty(oakPropertyName, null);
     }
 
+    /**
+     * Whether the value of the given property only depends on the tree of
+     * the row, and not on data that is provided by the index (such as the
+     * score, excerpt, or facets) or on the path of the current row. Such
+     * values can be read from the tree after the cursor has moved on.
+     *
+     * @param propertyName the JCR (not normalized) property name
+     * @return true if the value can be read from the tree
+     */
+    public boolean isTreeProperty(String propertyName) {
+        String pn = normalizePropertyName(propertyName);
+        if (pn.startsWith(QueryConstants.REP_FACET + "(")
+                || pn.startsWith(QueryConstants.REP_EXCERPT + "(")) {
+            return false;
+        }
+        String name = PathUtils.getName(pn);
+        return !name.equals(QueryConstants.JCR_PATH)
+                && !name.equals(QueryConstants.JCR_SCORE)
+                && !name.equals(QueryConstants.REP_EXCERPT)
+                && !name.equals(QueryConstants.OAK_SCORE_EXPLANATION)
+                && !name.equals(QueryConstants.REP_SPELLCHECK)
+                && !name.equals(QueryConstants.REP_SUGGEST);
+    }
+
+    /**
+     * The value of the given property for the given (non-virtual) tree. This
+     * is only supported for properties where
+     * {@link #isTreeProperty(String)} returns true.
+     *
+     * @param tree the tree of a row of this selector (may be null)
+     * @param propertyName the JCR (not normalized) property name
+     * @return the property value (possibly null)
+     */
+    public PropertyValue getTreeProperty(@Nullable Tree tree, String propertyName) {
+        String pn = normalizePropertyName(propertyName);
+        return readOakProperty(tree, false, pn, null);
+    }
+
     private PropertyValue currentOakProperty(String oakPropertyName, Integer propertyType) {
+        return readOakProperty(currentTree(), isVirtualRow(), oakPropertyName, propertyType);
+    }
+
+    private PropertyValue readOakProperty(Tree tree, boolean virtualRow,
+            String oakPropertyName, Integer propertyType) {
         boolean asterisk = oakPropertyName.indexOf('*') >= 0;
         if (asterisk) {
-            Tree t = currentTree();
+            Tree t = tree;
             if (t != null) {
                 LOG.trace("currentOakProperty() - '*' case. looking for '{}' in '{}'",
                     oakPropertyName, t.getPath());
             }
             ArrayList<PropertyValue> list = new ArrayList<PropertyValue>();
-            readOakProperties(list, t, oakPropertyName, propertyType);
+            readOakProperties(list, t, virtualRow, oakPropertyName, propertyType);
             if (list.size() == 0) {
                 return null;
             } else if (list.size() == 1) {
@@ -760,7 +861,7 @@ public class SelectorImpl extends SourceImpl {
         boolean relative = !oakPropertyName.startsWith(QueryConstants.REP_FACET + "(")
                 && !oakPropertyName.startsWith(QueryConstants.REP_EXCERPT + "(")
                 && oakPropertyName.indexOf('/') >= 0;
-        Tree t = currentTree();
+        Tree t = tree;
         if (relative) {
             for (String p : PathUtils.elements(PathUtils.getParentPath(oakPropertyName))) {
                 if (t == null) {
@@ -776,12 +877,12 @@ public class SelectorImpl extends SourceImpl {
             }
             oakPropertyName = PathUtils.getName(oakPropertyName);
         }
-        return currentOakProperty(t, oakPropertyName, propertyType);
+        return currentOakProperty(t, virtualRow, oakPropertyName, propertyType);
     }
     
-    private PropertyValue currentOakProperty(Tree t, String oakPropertyName, Integer propertyType) {
+    private PropertyValue currentOakProperty(Tree t, boolean virtualRow, String oakPropertyName, Integer propertyType) {
         PropertyValue result;
-        if ((t == null || !t.exists()) && (currentRow == null || !currentRow.isVirtualRow())) {
+        if ((t == null || !t.exists()) && !virtualRow) {
             return null;
         }
         if (oakPropertyName.equals(QueryConstants.JCR_PATH)) {
@@ -817,7 +918,8 @@ public class SelectorImpl extends SourceImpl {
         return result;
     }
     
-    private void readOakProperties(ArrayList<PropertyValue> target, Tree t, String oakPropertyName, Integer propertyType) {
+    private void readOakProperties(ArrayList<PropertyValue> target, Tree t, boolean virtualRow,
+            String oakPropertyName, Integer propertyType) {
         boolean skipCurrentNode = false;
 
         while (!skipCurrentNode) {
@@ -838,7 +940,7 @@ public class SelectorImpl extends SourceImpl {
                 // same node
             } else if (parent.equals("*")) {
                 for (Tree child : t.getChildren()) {
-                    readOakProperties(target, child, oakPropertyName, propertyType);
+                    readOakProperties(target, child, virtualRow, oakPropertyName, propertyType);
                 }
                 skipCurrentNode = true;
             } else {
@@ -849,7 +951,7 @@ public class SelectorImpl extends SourceImpl {
             return;
         }
         if (!"*".equals(oakPropertyName)) {
-            PropertyValue value = currentOakProperty(t, oakPropertyName, propertyType);
+            PropertyValue value = currentOakProperty(t, virtualRow, oakPropertyName, propertyType);
             if (value != null) {
                 LOG.trace("readOakProperties() - adding: '{}' from '{}'", value, t.getPath());
                 target.add(value);
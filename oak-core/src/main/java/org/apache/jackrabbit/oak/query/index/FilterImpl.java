@@ -180,6 +180,29 @@ public class FilterImpl implements Filter {
         this.settings = filter.getQueryLimits();
     }
 
+    /**
+     * Create a copy of this filter. The copy has its own lists of
+     * restrictions and conditions, so that changes to this filter are not
+     * visible in the copy. The restrictions themselves are not copied, as they
+     * are not changed once added.
+     *
+     * @return the copy
+     */
+    public FilterImpl copy() {
+        FilterImpl f = new FilterImpl(selector, queryStatement, settings);
+        f.alwaysFalse = alwaysFalse;
+        f.matchesAllTypes = matchesAllTypes;
+        f.path = path;
+        f.pathRestriction = pathRestriction;
+        f.pathPlan = pathPlan;
+        f.fulltextConditions.addAll(fulltextConditions);
+        f.fullTextConstraint = fullTextConstraint;
+        f.propertyRestrictions.putAll(propertyRestrictions);
+        f.distinct = distinct;
+        f.preparing = preparing;
+        return f;
+    }
+
     public void setPreparing(boolean preparing) {
         this.preparing = preparing;
     }
@@ -38,6 +38,16 @@ public interface QueryStatsMBean {
     @Description("Get the popular queries (those that take most of the time).")
     TabularData getPopularQueries();
 
+    /**
+     * Get the indexes that were slow to return their plans (or their cost).
+     * Those are the ones that took more than 100 ms, or the configured limit,
+     * or that timed out while the plans were collected concurrently.
+     *
+     * @return the slow index planners table
+     */
+    @Description("Get the indexes that were slow to return their query plans (or that timed out).")
+    TabularData getSlowIndexPlanners();
+
     @Description("Get all data as Json.")
     String asJson();
    
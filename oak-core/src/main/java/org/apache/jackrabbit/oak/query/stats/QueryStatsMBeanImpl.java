@@ -19,7 +19,10 @@ package org.apache.jackrabbit.oak.query.stats;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 import javax.management.openmbean.CompositeDataSupport;
 import javax.management.openmbean.CompositeType;
@@ -48,8 +51,14 @@ public class QueryStatsMBeanImpl extends AnnotatedStandardMBean
             Integer.getInteger("oak.query.slowLimit", 100);
     private final int MAX_QUERY_SIZE =
             Integer.getInteger("oak.query.maxQuerySize", 2048);
+    private final long SLOW_PLANNING_LIMIT_NANOS = TimeUnit.MILLISECONDS.toNanos(
+            Long.getLong("oak.query.slowPlanningMillis", 100));
+    private final int MAX_SLOW_PLANNERS =
+            Integer.getInteger("oak.query.maxSlowPlanners", 1000);
     private final ConcurrentSkipListMap<String, QueryStatsData> statistics = 
             new ConcurrentSkipListMap<String, QueryStatsData>();
+    private final ConcurrentHashMap<String, IndexPlanningStats> planningStatistics =
+            new ConcurrentHashMap<String, IndexPlanningStats>();
     private final QueryEngineSettings settings;
     private boolean captureStackTraces;
     private int evictionCount;
@@ -92,9 +101,37 @@ public class QueryStatsMBeanImpl extends AnnotatedStandardMBean
         return asTabularData(list);
     }
 
+    @Override
+    public TabularData getSlowIndexPlanners() {
+        ArrayList<IndexPlanningStats> list = new ArrayList<IndexPlanningStats>(planningStatistics.values());
+        Collections.sort(list, new Comparator<IndexPlanningStats>() {
+            @Override
+            public int compare(IndexPlanningStats o1, IndexPlanningStats o2) {
+                return -Long.compare(o1.maxTimeNanos.get(), o2.maxTimeNanos.get());
+            }
+        });
+        TabularDataSupport tds = null;
+        try {
+            CompositeType ct = IndexPlanningCompositeTypeFactory.getCompositeType();
+            TabularType tt = new TabularType(IndexPlanningStats.class.getName(),
+                    "Slow Index Planners", ct, IndexPlanningCompositeTypeFactory.index);
+            tds = new TabularDataSupport(tt);
+            for (IndexPlanningStats p : list) {
+                tds.put(new CompositeDataSupport(ct,
+                        IndexPlanningCompositeTypeFactory.names,
+                        IndexPlanningCompositeTypeFactory.getValues(p)));
+            }
+            return tds;
+        } catch (Exception e) {
+            log.debug("Error", e);
+            return null;
+        }
+    }
+
     @Override
     public void resetStats() {
         statistics.clear();
+        planningStatistics.clear();
     }
     
     @Override
@@ -152,6 +189,29 @@ public class QueryStatsMBeanImpl extends AnnotatedStandardMBean
         return stats.new QueryExecutionStats();
     }
 
+    @Override
+    public void recordIndexPlanning(String indexName, long timeNanos, boolean timedOut) {
+        if (!timedOut && timeNanos < SLOW_PLANNING_LIMIT_NANOS) {
+            return;
+        }
+        if (log.isDebugEnabled()) {
+            log.debug("Slow planning for index {}: {} ms, timed out: {}", indexName,
+                    TimeUnit.NANOSECONDS.toMillis(timeNanos), timedOut);
+        }
+        IndexPlanningStats stats = planningStatistics.get(indexName);
+        if (stats == null) {
+            if (planningStatistics.size() >= MAX_SLOW_PLANNERS) {
+                return;
+            }
+            stats = new IndexPlanningStats(indexName);
+            IndexPlanningStats s2 = planningStatistics.putIfAbsent(indexName, stats);
+            if (s2 != null) {
+                stats = s2;
+            }
+        }
+        stats.record(timeNanos, timedOut);
+    }
+
     private void evict() {
         evictionCount++;
         // retain 50% of the slowest entries
@@ -202,6 +262,59 @@ public class QueryStatsMBeanImpl extends AnnotatedStandardMBean
         }
     }
     
+    private static class IndexPlanningStats {
+
+        private final String indexName;
+        private final AtomicLong count = new AtomicLong();
+        private final AtomicLong timeouts = new AtomicLong();
+        private final AtomicLong totalTimeNanos = new AtomicLong();
+        private final AtomicLong maxTimeNanos = new AtomicLong();
+        private volatile long lastSlowMillis;
+
+        IndexPlanningStats(String indexName) {
+            this.indexName = indexName;
+        }
+
+        void record(long timeNanos, boolean timedOut) {
+            count.incrementAndGet();
+            if (timedOut) {
+                timeouts.incrementAndGet();
+            }
+            totalTimeNanos.addAndGet(timeNanos);
+            maxTimeNanos.accumulateAndGet(timeNanos, Math::max);
+            lastSlowMillis = System.currentTimeMillis();
+        }
+
+    }
+
+    private static class IndexPlanningCompositeTypeFactory {
+
+        private final static String[] index = { "indexName" };
+
+        private final static String[] names = { "indexName",
+                "slowCount", "timeoutCount", "maxTimeMillis", "totalTimeMillis",
+                "lastSlow"};
+
+        private final static String[] descriptions = names;
+
+        @SuppressWarnings("rawtypes")
+        private final static OpenType[] types = {SimpleType.STRING,
+                    SimpleType.LONG, SimpleType.LONG, SimpleType.LONG, SimpleType.LONG,
+                    SimpleType.STRING};
+
+        public static CompositeType getCompositeType() throws OpenDataException {
+            return new CompositeType(IndexPlanningStats.class.getName(),
+                    "Index planning statistics", names, descriptions, types);
+        }
+
+        public static Object[] getValues(IndexPlanningStats p) {
+            return new Object[] { p.indexName,
+                    p.count.get(), p.timeouts.get(),
+                    p.maxTimeNanos.get() / 1000000, p.totalTimeNanos.get() / 1000000,
+                    QueryStatsData.getTimeString(p.lastSlowMillis)};
+        }
+    }
+
     private static class QueryStatsCompositeTypeFactory {
 
         private final static String[] index = { "position" };
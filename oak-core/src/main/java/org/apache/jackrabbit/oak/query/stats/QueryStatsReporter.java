@@ -21,5 +21,14 @@ import org.apache.jackrabbit.oak.query.stats.QueryStatsData.QueryExecutionStats;
 public interface QueryStatsReporter {
 
     QueryExecutionStats getQueryExecution(String statement, String language);
+
+    /**
+     * Record the time an index took to return its plans (or its cost).
+     *
+     * @param indexName the index name
+     * @param timeNanos the time taken, in nanoseconds
+     * @param timedOut whether planning was aborted because it took too long
+     */
+    void recordIndexPlanning(String indexName, long timeNanos, boolean timedOut);
     
 }
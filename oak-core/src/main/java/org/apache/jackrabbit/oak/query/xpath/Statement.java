@@ -382,6 +382,12 @@ public class Statement {
                             SQL2Parser::escapeStringLiteral));
             optionValues.add("prefetch (" + list + ")");
         }
+        if (!queryOptions.after.isEmpty()) {
+            String list = String.join(", ",
+                    Lists.transform(queryOptions.after,
+                            SQL2Parser::escapeStringLiteral));
+            optionValues.add("after (" + list + ")");
+        }
         buff.append(String.join(", ", optionValues));
         buff.append(")");
     }
@@ -429,6 +429,17 @@ public class XPathToSQL2Converter {
                     } while (readIf(","));
                     read(")");
                     options.prefetch = list;
+                } else if (readIf("after")) {
+                    ArrayList<String> list = new ArrayList<String>();
+                    if (readIf("(")) {
+                        do {
+                            list.add(readString());
+                        } while (readIf(","));
+                        read(")");
+                    } else {
+                        list.add(readString());
+                    }
+                    options.after = list;
                 } else {
                     break;
                 }
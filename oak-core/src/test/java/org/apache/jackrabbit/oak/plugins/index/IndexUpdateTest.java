@@ -18,12 +18,14 @@ package org.apache.jackrabbit.oak.plugins.index;
 
 import static org.apache.jackrabbit.guava.common.base.Preconditions.checkNotNull;
 import static java.util.Arrays.asList;
+import static org.apache.jackrabbit.JcrConstants.JCR_PRIMARYTYPE;
 import static org.apache.jackrabbit.JcrConstants.NT_BASE;
 import static org.apache.jackrabbit.oak.plugins.index.IndexConstants.ASYNC_PROPERTY_NAME;
 import static org.apache.jackrabbit.oak.plugins.index.IndexConstants.ASYNC_REINDEX_VALUE;
 import static org.apache.jackrabbit.oak.plugins.index.IndexConstants.INDEXING_MODE_NRT;
 import static org.apache.jackrabbit.oak.plugins.index.IndexConstants.INDEX_CONTENT_NODE_NAME;
 import static org.apache.jackrabbit.oak.plugins.index.IndexConstants.INDEX_DEFINITIONS_NAME;
+import static org.apache.jackrabbit.oak.plugins.index.IndexConstants.INDEX_DEFINITIONS_NODE_TYPE;
 import static org.apache.jackrabbit.oak.plugins.index.IndexConstants.REINDEX_ASYNC_PROPERTY_NAME;
 import static org.apache.jackrabbit.oak.plugins.index.IndexConstants.REINDEX_COUNT;
 import static org.apache.jackrabbit.oak.plugins.index.IndexConstants.REINDEX_PROPERTY_NAME;
@@ -45,6 +47,8 @@ import static org.junit.Assert.fail;
 import java.util.Calendar;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import ch.qos.logback.classic.Level;
@@ -70,9 +74,12 @@ import org.apache.jackrabbit.oak.query.ast.NodeTypeInfoProvider;
 import org.apache.jackrabbit.oak.query.ast.SelectorImpl;
 import org.apache.jackrabbit.oak.query.index.FilterImpl;
 import org.apache.jackrabbit.oak.spi.commit.CommitInfo;
+import org.apache.jackrabbit.oak.spi.commit.DefaultEditor;
 import org.apache.jackrabbit.oak.spi.commit.Editor;
+import org.apache.jackrabbit.oak.spi.commit.EditorDiff;
 import org.apache.jackrabbit.oak.spi.commit.EditorHook;
 import org.apache.jackrabbit.oak.spi.commit.EditorProvider;
+import org.apache.jackrabbit.oak.spi.commit.VisibleEditor;
 import org.apache.jackrabbit.oak.spi.filter.PathFilter;
 import org.apache.jackrabbit.oak.spi.query.Filter;
 import org.apache.jackrabbit.oak.spi.state.NodeBuilder;
@@ -1078,6 +1085,184 @@ public class IndexUpdateTest {
  
     }    
 
+    @Test
+    public void parallelDiff() throws Exception {
+        createIndexDefinition(builder.child(INDEX_DEFINITIONS_NAME),
+                "rootIndex", true, false, ImmutableSet.of("foo"), null);
+        NodeState before = HOOK.processCommit(root, builder.getNodeState(), CommitInfo.EMPTY);
+
+        NodeBuilder b = before.builder();
+        for (int i = 0; i < 20; i++) {
+            for (int j = 0; j < 20; j++) {
+                b.child("a").child("x" + i).child("y" + j).setProperty("foo", "v" + (j % 3));
+            }
+        }
+        NodeState after = b.getNodeState();
+
+        NodeState sequential = indexWithParallelDiff(new PropertyIndexEditorProvider(), before, after, null, 0);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        NodeState parallel;
+        try {
+            parallel = indexWithParallelDiff(new PropertyIndexEditorProvider(), before, after, executor, 2);
+        } finally {
+            executor.shutdown();
+        }
+        assertEquals(sequential.getChildNode(INDEX_DEFINITIONS_NAME).getChildNode("rootIndex"),
+                parallel.getChildNode(INDEX_DEFINITIONS_NAME).getChildNode("rootIndex"));
+        PropertyIndexLookup lookup = new PropertyIndexLookup(parallel);
+        assertEquals(140, find(lookup, "foo", "v0").size());
+    }
+
+    @Test
+    public void parallelDiffFallback() throws Exception {
+        createIndexDefinition(builder.child(INDEX_DEFINITIONS_NAME),
+                "rootIndex", true, false, ImmutableSet.of("foo"), null);
+        builder = HOOK.processCommit(root, builder.getNodeState(), CommitInfo.EMPTY).builder();
+        builder.child(INDEX_DEFINITIONS_NAME).child("threads")
+                .setProperty(JCR_PRIMARYTYPE, INDEX_DEFINITIONS_NODE_TYPE, Type.NAME)
+                .setProperty(TYPE_PROPERTY_NAME, "threads");
+        NodeState before = builder.getNodeState();
+        for (int i = 0; i < 20; i++) {
+            builder.child("a").child("x" + i).setProperty("foo", "bar");
+        }
+        NodeState after = builder.getNodeState();
+
+        // the editor doesn't support a parallel diff
+        Set<Thread> threads = Sets.newConcurrentHashSet();
+        IndexEditorProvider provider = new IndexEditorProvider() {
+            @Override
+            public Editor getIndexEditor(@NotNull String type, @NotNull NodeBuilder definition,
+                    @NotNull NodeState root, @NotNull IndexUpdateCallback callback) {
+                if ("property".equals(type)) {
+                    return new PropertyIndexEditorProvider().getIndexEditor(type, definition, root, callback);
+                } else if (!"threads".equals(type)) {
+                    return null;
+                }
+                return new DefaultEditor() {
+                    @Override
+                    public void enter(NodeState before, NodeState after) {
+                        threads.add(Thread.currentThread());
+                    }
+
+                    @Override
+                    public Editor childNodeAdded(String name, NodeState after) {
+                        return this;
+                    }
+
+                    @Override
+                    public Editor childNodeChanged(String name, NodeState before, NodeState after) {
+                        return this;
+                    }
+                };
+            }
+        };
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        NodeState indexed;
+        try {
+            indexed = indexWithParallelDiff(provider, before, after, executor, 1);
+        } finally {
+            executor.shutdown();
+        }
+        assertEquals(ImmutableSet.of(Thread.currentThread()), threads);
+        // the property index (which supports it) still uses a parallel diff
+        PropertyIndexLookup lookup = new PropertyIndexLookup(indexed);
+        assertEquals(20, find(lookup, "foo", "bar").size());
+    }
+
+    @Test
+    public void parallelDiffCancel() throws Exception {
+        builder.child(INDEX_DEFINITIONS_NAME).child("concurrent")
+                .setProperty(JCR_PRIMARYTYPE, INDEX_DEFINITIONS_NODE_TYPE, Type.NAME)
+                .setProperty(TYPE_PROPERTY_NAME, "concurrent");
+        builder.child(INDEX_DEFINITIONS_NAME).child("failing")
+                .setProperty(JCR_PRIMARYTYPE, INDEX_DEFINITIONS_NODE_TYPE, Type.NAME)
+                .setProperty(TYPE_PROPERTY_NAME, "failing");
+        NodeState before = builder.getNodeState();
+        for (int i = 0; i < 20; i++) {
+            builder.child("x" + i).child("y").setProperty("foo", "bar");
+        }
+        NodeState after = builder.getNodeState();
+
+        AtomicInteger entered = new AtomicInteger();
+        AtomicInteger children = new AtomicInteger();
+        IndexEditorProvider provider = new IndexEditorProvider() {
+            @Override
+            public Editor getIndexEditor(@NotNull String type, @NotNull NodeBuilder definition,
+                    @NotNull NodeState root, @NotNull IndexUpdateCallback callback) {
+                if ("concurrent".equals(type)) {
+                    return new SlowConcurrentEditor(entered, true);
+                } else if ("failing".equals(type)) {
+                    return new DefaultEditor() {
+                        @Override
+                        public Editor childNodeAdded(String name, NodeState after)
+                                throws CommitFailedException {
+                            if (children.incrementAndGet() > 10) {
+                                throw new CommitFailedException("Test", 1, "failed");
+                            }
+                            return null;
+                        }
+                    };
+                }
+                return null;
+            }
+        };
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            IndexUpdate update = new IndexUpdate(provider, null, after, after.builder(), NOOP);
+            update.withParallelDiff(executor, 1, 4);
+            assertNotNull(EditorDiff.process(VisibleEditor.wrap(update), before, after));
+            update.cancelParallelDiff();
+            // no subtree diff is running any longer
+            int count = entered.get();
+            Thread.sleep(50);
+            assertEquals(count, entered.get());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private static class SlowConcurrentEditor extends DefaultEditor implements ConcurrentIndexEditor {
+
+        private final AtomicInteger entered;
+
+        private final boolean root;
+
+        SlowConcurrentEditor(AtomicInteger entered, boolean root) {
+            this.entered = entered;
+            this.root = root;
+        }
+
+        @Override
+        public void enter(NodeState before, NodeState after) {
+            if (root) {
+                return;
+            }
+            entered.incrementAndGet();
+            try {
+                Thread.sleep(10);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        @Override
+        public Editor childNodeAdded(String name, NodeState after) {
+            return new SlowConcurrentEditor(entered, false);
+        }
+
+    }
+
+    private static NodeState indexWithParallelDiff(IndexEditorProvider provider, NodeState before,
+            NodeState after, ExecutorService executor, int depth) throws CommitFailedException {
+        NodeBuilder builder = after.builder();
+        IndexUpdate update = new IndexUpdate(provider, null, after, builder, NOOP);
+        if (executor != null) {
+            update.withParallelDiff(executor, depth, 4);
+        }
+        assertNull(EditorDiff.process(VisibleEditor.wrap(update), before, after));
+        return builder.getNodeState();
+    }
+
     private static void markCorrupt(NodeBuilder builder, String indexName) {
         builder.getChildNode(INDEX_DEFINITIONS_NAME).getChildNode(indexName)
                 .setProperty(IndexConstants.CORRUPT_PROPERTY_NAME, ISO8601.format(Calendar.getInstance()));
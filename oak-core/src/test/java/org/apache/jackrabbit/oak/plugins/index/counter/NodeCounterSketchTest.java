@@ -0,0 +1,192 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.jackrabbit.oak.plugins.index.counter;
+
+import static org.apache.jackrabbit.oak.plugins.index.IndexConstants.ASYNC_PROPERTY_NAME;
+import static org.apache.jackrabbit.oak.plugins.index.IndexConstants.INDEX_DEFINITIONS_NAME;
+import static org.apache.jackrabbit.oak.plugins.index.IndexConstants.INDEX_DEFINITIONS_NODE_TYPE;
+import static org.apache.jackrabbit.oak.plugins.index.IndexConstants.TYPE_PROPERTY_NAME;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.apache.jackrabbit.JcrConstants;
+import org.apache.jackrabbit.oak.api.CommitFailedException;
+import org.apache.jackrabbit.oak.api.PropertyState;
+import org.apache.jackrabbit.oak.api.Type;
+import org.apache.jackrabbit.oak.commons.PathUtils;
+import org.apache.jackrabbit.oak.plugins.index.AsyncIndexUpdate;
+import org.apache.jackrabbit.oak.plugins.index.counter.jmx.NodeCounter;
+import org.apache.jackrabbit.oak.plugins.memory.MemoryNodeStore;
+import org.apache.jackrabbit.oak.spi.commit.CommitInfo;
+import org.apache.jackrabbit.oak.spi.commit.EmptyHook;
+import org.apache.jackrabbit.oak.spi.state.NodeBuilder;
+import org.apache.jackrabbit.oak.spi.state.NodeState;
+import org.apache.jackrabbit.oak.spi.state.NodeStateUtils;
+import org.apache.jackrabbit.oak.spi.state.NodeStore;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests the sketch based mode of the node counter index.
+ */
+public class NodeCounterSketchTest {
+
+    private NodeStore store;
+
+    private AsyncIndexUpdate async;
+
+    @Before
+    public void before() throws Exception {
+        store = new MemoryNodeStore();
+        NodeBuilder builder = store.getRoot().builder();
+        builder.child(INDEX_DEFINITIONS_NAME).child("counter")
+                .setProperty(JcrConstants.JCR_PRIMARYTYPE, INDEX_DEFINITIONS_NODE_TYPE, Type.NAME)
+                .setProperty(TYPE_PROPERTY_NAME, NodeCounterEditorProvider.TYPE)
+                .setProperty(ASYNC_PROPERTY_NAME, "async")
+                .setProperty(NodeCounterSketchEditor.SKETCH, true);
+        merge(builder);
+        async = new AsyncIndexUpdate("async", store, new NodeCounterEditorProvider());
+    }
+
+    @Test
+    public void estimate() throws Exception {
+        NodeBuilder builder = store.getRoot().builder();
+        addChildren(builder.child("content").child("a"), 500);
+        addChildren(builder.child("content").child("b"), 3);
+        merge(builder);
+        async.run();
+
+        NodeState root = store.getRoot();
+        assertEquals(500, NodeCounter.getEstimatedNodeCount(root, "/content/a", false), 25);
+        assertEquals(3, NodeCounter.getEstimatedNodeCount(root, "/content/b", false));
+        assertEquals(0, NodeCounter.getEstimatedNodeCount(root, "/content/b/n0", false));
+        assertEquals(505, NodeCounter.getEstimatedNodeCount(root, "/content", false), 25);
+        assertTrue(NodeCounter.getEstimatedNodeCount(root, "/content", true) >=
+                NodeCounter.getEstimatedNodeCount(root, "/content", false));
+    }
+
+    @Test
+    public void belowSketchDepth() throws Exception {
+        NodeBuilder builder = store.getRoot().builder();
+        addChildren(builder.child("content").child("a").child("b").child("c").child("d"), 10);
+        merge(builder);
+        async.run();
+
+        NodeState root = store.getRoot();
+        assertEquals(11, NodeCounter.getEstimatedNodeCount(root, "/content/a/b/c", false), 1);
+        // only the count of the ancestor is known
+        assertEquals(-1, NodeCounter.getEstimatedNodeCount(root, "/content/a/b/c/d", false));
+        assertTrue(NodeCounter.getEstimatedNodeCount(root, "/content/a/b/c/d", true) >= 10);
+    }
+
+    @Test
+    public void unchangedSketchNotWritten() throws Exception {
+        NodeBuilder builder = store.getRoot().builder();
+        addChildren(builder.child("content").child("a"), 100);
+        merge(builder);
+        async.run();
+        PropertyState before = getSketch("content/a");
+        assertNotNull(before);
+
+        builder = store.getRoot().builder();
+        builder.child("content").child("a").child("n0").setProperty("x", 1);
+        builder.child("content").child("b").child("n0");
+        merge(builder);
+        async.run();
+
+        // no nodes were added below /content/a
+        assertEquals(before, getSketch("content/a"));
+        assertNull(getSketch("content/a/n0"));
+        assertEquals(1, NodeCounter.getEstimatedNodeCount(store.getRoot(), "/content/b", false));
+    }
+
+    @Test
+    public void remove() throws Exception {
+        NodeBuilder builder = store.getRoot().builder();
+        addChildren(builder.child("content").child("a"), 200);
+        addChildren(builder.child("content").child("b"), 5);
+        merge(builder);
+        async.run();
+
+        builder = store.getRoot().builder();
+        NodeBuilder a = builder.child("content").child("a");
+        for (int i = 0; i < 10; i++) {
+            a.getChildNode("n" + i).remove();
+        }
+        builder.child("content").child("b").remove();
+        merge(builder);
+        async.run();
+
+        NodeState root = store.getRoot();
+        assertEquals(190, NodeCounter.getEstimatedNodeCount(root, "/content/a", false), 15);
+        assertEquals(0, NodeCounter.getEstimatedNodeCount(root, "/content/b", false));
+        // the sketch of the removed subtree is removed
+        assertFalse(getDataNode("content/b").exists());
+    }
+
+    @Test
+    public void removeAndAddAgain() throws Exception {
+        NodeBuilder builder = store.getRoot().builder();
+        addChildren(builder.child("content").child("a"), 2000);
+        merge(builder);
+        async.run();
+        assertEquals(2000, NodeCounter.getEstimatedNodeCount(store.getRoot(), "/content/a", false), 100);
+
+        builder = store.getRoot().builder();
+        NodeBuilder a = builder.child("content").child("a");
+        for (int i = 0; i < 2000; i++) {
+            a.getChildNode("n" + i).remove();
+        }
+        merge(builder);
+        async.run();
+
+        // the same paths are added again: they are in both sketches
+        builder = store.getRoot().builder();
+        addChildren(builder.child("content").child("a"), 2000);
+        merge(builder);
+        async.run();
+
+        assertTrue(getDataNode("content/a").hasProperty(NodeCounterEditor.COUNT_HASH_PROPERTY_NAME));
+        long count = NodeCounter.getEstimatedNodeCount(store.getRoot(), "/content/a", false);
+        assertTrue("count: " + count, count >= 1000 && count <= 3000);
+    }
+
+    private PropertyState getSketch(String path) {
+        return getDataNode(path).getProperty(NodeCounterSketchEditor.SKETCH_PROPERTY_NAME);
+    }
+
+    private NodeState getDataNode(String path) {
+        return NodeStateUtils.getNode(store.getRoot(), PathUtils.concat(
+                "/oak:index/counter", NodeCounterEditor.DATA_NODE_NAME, path));
+    }
+
+    private static void addChildren(NodeBuilder builder, int count) {
+        for (int i = 0; i < count; i++) {
+            builder.child("n" + i);
+        }
+    }
+
+    private void merge(NodeBuilder builder) throws CommitFailedException {
+        store.merge(builder, EmptyHook.INSTANCE, CommitInfo.EMPTY);
+    }
+
+}
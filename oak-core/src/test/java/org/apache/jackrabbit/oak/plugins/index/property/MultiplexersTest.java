@@ -20,13 +20,23 @@
 package org.apache.jackrabbit.oak.plugins.index.property;
 
 import static org.apache.jackrabbit.oak.plugins.index.IndexConstants.INDEX_CONTENT_NODE_NAME;
+import static org.apache.jackrabbit.oak.plugins.index.IndexConstants.STORAGE_STRATEGY;
+import static org.apache.jackrabbit.oak.plugins.index.IndexConstants.STORAGE_STRATEGY_COMPACT;
+import static org.apache.jackrabbit.oak.plugins.index.IndexConstants.TYPE_PROPERTY_NAME;
+import static org.apache.jackrabbit.oak.plugins.index.property.Multiplexers.getStrategies;
 import static org.apache.jackrabbit.oak.plugins.index.property.Multiplexers.getIndexNodeName;
 import static org.apache.jackrabbit.oak.plugins.index.property.Multiplexers.getNodeForMount;
+import static org.apache.jackrabbit.oak.plugins.memory.EmptyNodeState.EMPTY_NODE;
 import static org.junit.Assert.assertEquals;
 
+import org.apache.jackrabbit.oak.plugins.index.property.strategy.CompactStoreStrategy;
+import org.apache.jackrabbit.oak.plugins.index.property.strategy.ContentMirrorStoreStrategy;
+import org.apache.jackrabbit.oak.plugins.index.property.strategy.IndexStoreStrategy;
+import org.apache.jackrabbit.oak.plugins.index.reference.NodeReferenceConstants;
 import org.apache.jackrabbit.oak.spi.mount.Mount;
 import org.apache.jackrabbit.oak.spi.mount.MountInfoProvider;
 import org.apache.jackrabbit.oak.spi.mount.Mounts;
+import org.apache.jackrabbit.oak.spi.state.NodeBuilder;
 import org.junit.Before;
 import org.junit.Test;
 
@@ -65,5 +75,20 @@ public class MultiplexersTest {
                 getIndexNodeName(mip, "/a", INDEX_CONTENT_NODE_NAME));
         assertEquals(":" + m.getPathFragmentName() + "-index",
                 getNodeForMount(m, INDEX_CONTENT_NODE_NAME));
+    
+    @Test
+    public void compactOnlyForPropertyIndexes() throws Exception {
+        NodeBuilder definition = EMPTY_NODE.builder();
+        definition.setProperty(TYPE_PROPERTY_NAME, PropertyIndexEditorProvider.TYPE);
+        definition.setProperty(STORAGE_STRATEGY, STORAGE_STRATEGY_COMPACT);
+        IndexStoreStrategy s = getStrategies(false, mip, definition, INDEX_CONTENT_NODE_NAME)
+                .iterator().next();
+        assertEquals(CompactStoreStrategy.class, s.getClass());
+
+        // changing the storage strategy only rebuilds property indexes
+        definition.setProperty(TYPE_PROPERTY_NAME, NodeReferenceConstants.TYPE);
+        s = getStrategies(false, mip, definition, INDEX_CONTENT_NODE_NAME).iterator().next();
+        assertEquals(ContentMirrorStoreStrategy.class, s.getClass());
     }
+}
 }
\ No newline at end of file
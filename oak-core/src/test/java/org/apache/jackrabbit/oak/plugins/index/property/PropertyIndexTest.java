@@ -23,6 +23,8 @@ import static org.apache.jackrabbit.JcrConstants.NT_FILE;
 import static org.apache.jackrabbit.JcrConstants.NT_UNSTRUCTURED;
 import static org.apache.jackrabbit.oak.plugins.index.IndexConstants.INDEX_CONTENT_NODE_NAME;
 import static org.apache.jackrabbit.oak.plugins.index.IndexConstants.INDEX_DEFINITIONS_NAME;
+import static org.apache.jackrabbit.oak.plugins.index.IndexConstants.STATISTICS_NODE_NAME;
+import static org.apache.jackrabbit.oak.plugins.index.IndexConstants.STATISTICS_PROPERTIES;
 import static org.apache.jackrabbit.oak.plugins.index.IndexUtils.createIndexDefinition;
 import static org.apache.jackrabbit.oak.plugins.index.counter.NodeCounterEditor.COUNT_PROPERTY_NAME;
 import static org.apache.jackrabbit.oak.plugins.memory.EmptyNodeState.EMPTY_NODE;
@@ -803,6 +805,36 @@ public class PropertyIndexTest {
         assertTrue(Double.POSITIVE_INFINITY == plan.getCost());
     }
 
+    @Test
+    public void statisticsNotUsedWithPathRestriction() throws Exception {
+        NodeState root = INITIAL_CONTENT;
+        NodeBuilder builder = root.builder();
+        NodeBuilder index = createIndexDefinition(builder.child(INDEX_DEFINITIONS_NAME), "foo",
+                true, false, ImmutableSet.of("foo"), null);
+        index.setProperty(STATISTICS_PROPERTIES, Arrays.asList("foo"), Type.STRINGS);
+        NodeState before = builder.getNodeState();
+        for (int i = 0; i < 100; i++) {
+            builder.child("a").child("n" + i).setProperty("foo", "x");
+        }
+        builder.child("b").child("n").setProperty("foo", "x");
+        NodeState indexed = HOOK.processCommit(before, builder.getNodeState(), CommitInfo.EMPTY);
+        NodeState definition = indexed.getChildNode(INDEX_DEFINITIONS_NAME).getChildNode("foo");
+        NodeBuilder withoutStatistics = definition.builder();
+        withoutStatistics.getChildNode(STATISTICS_NODE_NAME).remove();
+
+        FilterImpl f = createFilter(indexed, NT_BASE);
+        f.restrictProperty("foo", Operator.EQUAL, PropertyValues.newString("x"));
+        PropertyIndexPlan plan = new PropertyIndexPlan("plan", indexed, definition, f);
+        assertEquals(PropertyIndexPlan.COST_OVERHEAD + 101, plan.getCost(), 0);
+
+        // the statistics are for the whole repository
+        f.restrictPath("/b", Filter.PathRestriction.ALL_CHILDREN);
+        plan = new PropertyIndexPlan("plan", indexed, definition, f);
+        PropertyIndexPlan expected = new PropertyIndexPlan("plan", indexed,
+                withoutStatistics.getNodeState(), f);
+        assertEquals(expected.getCost(), plan.getCost(), 0);
+    }
+
     @Test
     public void testPathIncludeExclude() throws Exception {
         NodeState root = INITIAL_CONTENT;
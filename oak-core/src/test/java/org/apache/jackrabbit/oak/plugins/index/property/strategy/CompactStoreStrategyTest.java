@@ -0,0 +1,197 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.jackrabbit.oak.plugins.index.property.strategy;
+
+import static org.apache.jackrabbit.guava.common.collect.Sets.newHashSet;
+import static org.apache.jackrabbit.oak.InitialContentHelper.INITIAL_CONTENT;
+import static org.apache.jackrabbit.oak.plugins.index.IndexConstants.INDEX_CONTENT_NODE_NAME;
+import static org.apache.jackrabbit.oak.plugins.index.IndexConstants.INDEX_DEFINITIONS_NAME;
+import static org.apache.jackrabbit.oak.plugins.index.IndexConstants.STORAGE_STRATEGY;
+import static org.apache.jackrabbit.oak.plugins.index.IndexConstants.STORAGE_STRATEGY_COMPACT;
+import static org.apache.jackrabbit.oak.plugins.index.IndexUtils.createIndexDefinition;
+import static org.apache.jackrabbit.oak.plugins.memory.EmptyNodeState.EMPTY_NODE;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+import org.apache.jackrabbit.guava.common.base.Supplier;
+import org.apache.jackrabbit.guava.common.collect.ImmutableSet;
+import org.apache.jackrabbit.guava.common.collect.Lists;
+import org.apache.jackrabbit.oak.api.Type;
+import org.apache.jackrabbit.oak.plugins.index.IndexUpdateProvider;
+import org.apache.jackrabbit.oak.plugins.index.property.PropertyIndexEditorProvider;
+import org.apache.jackrabbit.oak.plugins.index.property.PropertyIndexLookup;
+import org.apache.jackrabbit.oak.plugins.memory.PropertyValues;
+import org.apache.jackrabbit.oak.query.index.FilterImpl;
+import org.apache.jackrabbit.oak.spi.commit.CommitInfo;
+import org.apache.jackrabbit.oak.spi.commit.EditorHook;
+import org.apache.jackrabbit.oak.spi.query.Filter;
+import org.apache.jackrabbit.oak.spi.state.NodeBuilder;
+import org.apache.jackrabbit.oak.spi.state.NodeState;
+import org.junit.Test;
+
+public class CompactStoreStrategyTest {
+
+    private static final Set<String> EMPTY = newHashSet();
+
+    private static final Set<String> KEY = newHashSet("key");
+
+    private static final EditorHook HOOK = new EditorHook(
+            new IndexUpdateProvider(new PropertyIndexEditorProvider()));
+
+    @Test
+    public void bucketSplit() {
+        IndexStoreStrategy store = new CompactStoreStrategy();
+        NodeBuilder indexMeta = EMPTY_NODE.builder();
+        Supplier<NodeBuilder> index = () -> indexMeta.child(INDEX_CONTENT_NODE_NAME);
+
+        int count = CompactStoreStrategy.MAX_BUCKET_SIZE * 3;
+        List<String> expected = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            String path = "/content/n" + (i * 7919 % count);
+            store.update(index, path, null, null, EMPTY, KEY);
+            expected.add(path);
+        }
+        Collections.sort(expected);
+        NodeBuilder key = index.get().getChildNode("key");
+        List<String> bounds = Lists.newArrayList(key.getProperty(CompactStoreStrategy.BOUNDS).getValue(Type.STRINGS));
+        assertEquals(bounds.size(), key.getChildNodeCount(Long.MAX_VALUE));
+        for (String bound : bounds) {
+            assertTrue(key.hasChildNode(CompactStoreStrategy.getBucketName(bound)));
+        }
+        assertEquals(expected, query(store, indexMeta, null, KEY));
+
+        // remove all but the first and last entry
+        for (String path : expected.subList(1, count - 1)) {
+            store.update(index, path, null, null, KEY, EMPTY);
+        }
+        assertEquals(Lists.newArrayList(expected.get(0), expected.get(count - 1)),
+                query(store, indexMeta, null, KEY));
+        store.update(index, expected.get(0), null, null, KEY, EMPTY);
+        store.update(index, expected.get(count - 1), null, null, KEY, EMPTY);
+        assertFalse(index.get().hasChildNode("key"));
+    }
+
+    @Test
+    public void pathRestriction() {
+        IndexStoreStrategy store = new CompactStoreStrategy();
+        NodeBuilder indexMeta = EMPTY_NODE.builder();
+        Supplier<NodeBuilder> index = () -> indexMeta.child(INDEX_CONTENT_NODE_NAME);
+        for (int i = 0; i < CompactStoreStrategy.MAX_BUCKET_SIZE * 2; i++) {
+            store.update(index, "/content/a/n" + i, null, null, EMPTY, KEY);
+            store.update(index, "/content/b/n" + i, null, null, EMPTY, KEY);
+        }
+        store.update(index, "/content/a", null, null, EMPTY, KEY);
+        store.update(index, "/content/a-b", null, null, EMPTY, KEY);
+
+        FilterImpl filter = FilterImpl.newTestInstance();
+        filter.restrictPath("/content/b", Filter.PathRestriction.ALL_CHILDREN);
+        List<String> result = query(store, indexMeta, filter, KEY);
+        assertEquals(CompactStoreStrategy.MAX_BUCKET_SIZE * 2, result.size());
+        for (String path : result) {
+            assertTrue(path, path.startsWith("/content/b/"));
+        }
+
+        filter = FilterImpl.newTestInstance();
+        filter.restrictPath("/content/a-b", Filter.PathRestriction.EXACT);
+        assertEquals(Collections.singletonList("/content/a-b"), query(store, indexMeta, filter, KEY));
+        assertEquals(1, store.count(filter, EMPTY_NODE, indexMeta.getNodeState(), KEY, 100));
+    }
+
+    @Test
+    public void removeMissingEntryKeepsCount() {
+        IndexStoreStrategy store = new CompactStoreStrategy();
+        NodeBuilder indexMeta = EMPTY_NODE.builder();
+        Supplier<NodeBuilder> index = () -> indexMeta.child(INDEX_CONTENT_NODE_NAME);
+        store.update(index, "/a", null, null, EMPTY, KEY);
+        NodeState before = index.get().getNodeState();
+        // the counters are sampled: repeat often enough that
+        // a wrong adjustment would almost certainly be recorded
+        for (int i = 0; i < 10000; i++) {
+            store.update(index, "/b", null, null, KEY, EMPTY);
+            store.update(index, "/a", null, null, newHashSet("missing"), EMPTY);
+            store.update(index, "/a", null, null, EMPTY, KEY);
+        }
+        assertEquals(before, index.get().getNodeState());
+        assertEquals(Collections.singletonList("/a"), query(store, indexMeta, null, KEY));
+    }
+
+    @Test
+    public void multipleKeys() {
+        IndexStoreStrategy store = new CompactStoreStrategy();
+        NodeBuilder indexMeta = EMPTY_NODE.builder();
+        Supplier<NodeBuilder> index = () -> indexMeta.child(INDEX_CONTENT_NODE_NAME);
+        store.update(index, "/a", null, null, EMPTY, newHashSet("x", "y"));
+        store.update(index, "/b", null, null, EMPTY, newHashSet("y"));
+        store.update(index, "/c", null, null, EMPTY, newHashSet("z"));
+
+        // "is not null" returns each path once
+        List<String> result = query(store, indexMeta, null, null);
+        Collections.sort(result);
+        assertEquals(Lists.newArrayList("/a", "/b", "/c"), result);
+        assertEquals(Lists.newArrayList("/a", "/b"), query(store, indexMeta, null, newHashSet("y")));
+        assertEquals(2, store.count(EMPTY_NODE, indexMeta.getNodeState(), newHashSet("y"), 100));
+        assertTrue(store.exists(index, "z"));
+        assertFalse(store.exists(index, "w"));
+    }
+
+    @Test
+    public void reindexOnStorageChange() throws Exception {
+        NodeBuilder builder = INITIAL_CONTENT.builder();
+        createIndexDefinition(builder.child(INDEX_DEFINITIONS_NAME), "foo",
+                true, false, ImmutableSet.of("foo"), null);
+        for (int i = 0; i < 10; i++) {
+            builder.child("n" + i).setProperty("foo", "x" + i % 2);
+        }
+        NodeState indexed = HOOK.processCommit(INITIAL_CONTENT, builder.getNodeState(), CommitInfo.EMPTY);
+        NodeState content = indexed.getChildNode(INDEX_DEFINITIONS_NAME).getChildNode("foo")
+                .getChildNode(INDEX_CONTENT_NODE_NAME);
+        assertTrue(content.getChildNode("x0").hasChildNode("n0"));
+
+        builder = indexed.builder();
+        builder.child(INDEX_DEFINITIONS_NAME).child("foo")
+                .setProperty(STORAGE_STRATEGY, STORAGE_STRATEGY_COMPACT);
+        indexed = HOOK.processCommit(indexed, builder.getNodeState(), CommitInfo.EMPTY);
+        content = indexed.getChildNode(INDEX_DEFINITIONS_NAME).getChildNode("foo")
+                .getChildNode(INDEX_CONTENT_NODE_NAME);
+        assertEquals(STORAGE_STRATEGY_COMPACT, content.getString(STORAGE_STRATEGY));
+        assertFalse(content.getChildNode("x0").hasChildNode("n0"));
+        assertEquals(5, content.getChildNode("x0").getProperty(CompactStoreStrategy.ENTRIES).count());
+
+        FilterImpl filter = FilterImpl.newTestInstance();
+        List<String> paths = Lists.newArrayList(new PropertyIndexLookup(indexed)
+                .query(filter, "foo", PropertyValues.newString("x1")));
+        Collections.sort(paths);
+        assertEquals(Lists.newArrayList("/n1", "/n3", "/n5", "/n7", "/n9"), paths);
+    }
+
+    private static List<String> query(IndexStoreStrategy store, NodeBuilder indexMeta,
+            FilterImpl filter, Set<String> values) {
+        if (filter == null) {
+            filter = FilterImpl.newTestInstance();
+        }
+        return Lists.newArrayList(store.query(filter, "test", indexMeta.getNodeState(), values));
+    }
+
+}
@@ -0,0 +1,80 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.jackrabbit.oak.plugins.index.statistics;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class HyperLogLogTest {
+
+    @Test
+    public void empty() {
+        HyperLogLog hll = new HyperLogLog();
+        assertTrue(hll.isEmpty());
+        assertEquals(0, hll.estimate());
+    }
+
+    @Test
+    public void smallCounts() {
+        HyperLogLog hll = new HyperLogLog();
+        for (int i = 0; i < 10; i++) {
+            // duplicates are not counted
+            hll.add("v" + i);
+            hll.add("v" + i);
+        }
+        long est = hll.estimate();
+        assertTrue("estimated " + est, est >= 9 && est <= 11);
+    }
+
+    @Test
+    public void largeCounts() {
+        for (int count : new int[] { 1000, 10000, 100000, 1000000 }) {
+            HyperLogLog hll = new HyperLogLog();
+            for (int i = 0; i < count; i++) {
+                hll.add("/content/node-" + i);
+            }
+            long est = hll.estimate();
+            double error = Math.abs(est - count) / (double) count;
+            assertTrue("count " + count + " estimated " + est, error < 0.1);
+        }
+    }
+
+    @Test
+    public void serializeAndMerge() {
+        HyperLogLog a = new HyperLogLog();
+        HyperLogLog b = new HyperLogLog();
+        for (int i = 0; i < 5000; i++) {
+            a.add("a" + i);
+            b.add("b" + i);
+        }
+        HyperLogLog a2 = HyperLogLog.deserialize(a.serialize());
+        assertEquals(a.estimate(), a2.estimate());
+        a2.merge(b);
+        long est = a2.estimate();
+        assertTrue("estimated " + est, Math.abs(est - 10000) < 1000);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void invalidSerialization() {
+        HyperLogLog.deserialize("AAAA");
+    }
+
+}
@@ -0,0 +1,162 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.jackrabbit.oak.plugins.index.statistics;
+
+import static org.apache.jackrabbit.oak.InitialContentHelper.INITIAL_CONTENT;
+import static org.apache.jackrabbit.oak.plugins.index.IndexConstants.INDEX_DEFINITIONS_NAME;
+import static org.apache.jackrabbit.oak.plugins.index.IndexConstants.STATISTICS_PROPERTIES;
+import static org.apache.jackrabbit.oak.plugins.index.IndexUtils.createIndexDefinition;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.apache.jackrabbit.guava.common.collect.ImmutableSet;
+import org.apache.jackrabbit.oak.api.Type;
+import org.apache.jackrabbit.oak.plugins.index.IndexUpdateProvider;
+import org.apache.jackrabbit.oak.plugins.index.property.PropertyIndexEditorProvider;
+import org.apache.jackrabbit.oak.spi.commit.CommitInfo;
+import org.apache.jackrabbit.oak.spi.commit.EditorHook;
+import org.apache.jackrabbit.oak.spi.state.NodeBuilder;
+import org.apache.jackrabbit.oak.spi.state.NodeState;
+import org.junit.Test;
+
+public class PropertyStatisticsTest {
+
+    private static final EditorHook HOOK = new EditorHook(
+            new IndexUpdateProvider(new PropertyIndexEditorProvider()));
+
+    private static final EditorHook ASYNC_HOOK = new EditorHook(
+            new IndexUpdateProvider(new PropertyIndexEditorProvider(), "async", false));
+
+    @Test
+    public void topValues() {
+        TopKValues top = new TopKValues(2);
+        top.add("a");
+        top.add("a");
+        top.add("b");
+        assertEquals(Arrays.asList("a", "b"), top.getValues());
+        // replaces "b", and inherits its count
+        top.add("c");
+        assertEquals(-1, top.getCount("b"));
+        assertEquals(2, top.getCount("c"));
+        top.remove("a");
+        top.remove("a");
+        assertEquals(-1, top.getCount("a"));
+        assertEquals(1, top.size());
+    }
+
+    @Test
+    public void estimate() {
+        PropertyStatistics stats = new PropertyStatistics();
+        for (int i = 0; i < 1000; i++) {
+            stats.add("common");
+        }
+        for (int i = 0; i < 1000; i++) {
+            stats.add("v" + i % 100);
+        }
+        assertEquals(2000, stats.getCount());
+        assertEquals(1000, stats.estimateCount("common"));
+        // about 2000 entries over about 101 distinct values
+        long rare = stats.estimateCount("unknown");
+        assertTrue("estimated " + rare, rare >= 15 && rare <= 25);
+        long some = stats.estimateCount(ImmutableSet.of("common", "v1", "v2", "v3", "v4"));
+        assertTrue("estimated " + some, some >= 1000 && some <= 2000);
+    }
+
+    @Test
+    public void collectedOnReindex() throws Exception {
+        NodeBuilder builder = INITIAL_CONTENT.builder();
+        NodeBuilder index = createIndexDefinition(builder.child(INDEX_DEFINITIONS_NAME), "foo",
+                true, false, ImmutableSet.of("foo"), null);
+        index.setProperty(STATISTICS_PROPERTIES, Collections.singletonList("foo"), Type.STRINGS);
+        NodeState before = builder.getNodeState();
+
+        for (int i = 0; i < 100; i++) {
+            builder.child("n" + i).setProperty("foo", "x" + i % 20);
+        }
+        for (int i = 0; i < 50; i++) {
+            builder.child("c" + i).setProperty("foo", "common");
+        }
+        NodeState indexed = HOOK.processCommit(before, builder.getNodeState(), CommitInfo.EMPTY);
+
+        NodeState definition = indexed.getChildNode(INDEX_DEFINITIONS_NAME).getChildNode("foo");
+        PropertyStatistics stats = PropertyStatistics.read(definition, "foo");
+        assertEquals(150, stats.getCount());
+        long distinct = stats.getDistinctCount();
+        assertTrue("distinct " + distinct, distinct >= 20 && distinct <= 22);
+        assertEquals(50, stats.estimateCount("common"));
+        assertEquals(5, stats.estimateCount("x1"));
+        assertNull(PropertyStatistics.read(definition, "bar"));
+
+        // unrelated synchronous commits keep the statistics
+        builder = indexed.builder();
+        builder.child("n0").setProperty("bar", "y");
+        indexed = HOOK.processCommit(indexed, builder.getNodeState(), CommitInfo.EMPTY);
+        definition = indexed.getChildNode(INDEX_DEFINITIONS_NAME).getChildNode("foo");
+        assertEquals(150, PropertyStatistics.read(definition, "foo").getCount());
+
+        // synchronous commits don't update the statistics
+        NodeState beforeCycle = indexed;
+        builder = indexed.builder();
+        builder.child("n0").remove();
+        builder.child("n1").setProperty("foo", "common");
+        indexed = HOOK.processCommit(indexed, builder.getNodeState(), CommitInfo.EMPTY);
+        definition = indexed.getChildNode(INDEX_DEFINITIONS_NAME).getChildNode("foo");
+        assertEquals(150, PropertyStatistics.read(definition, "foo").getCount());
+        assertEquals(50, PropertyStatistics.read(definition, "foo").estimateCount("common"));
+
+        // the async indexer updates them with the changes of its cycle
+        indexed = ASYNC_HOOK.processCommit(beforeCycle, indexed, CommitInfo.EMPTY);
+        definition = indexed.getChildNode(INDEX_DEFINITIONS_NAME).getChildNode("foo");
+        assertEquals(149, PropertyStatistics.read(definition, "foo").getCount());
+        assertEquals(51, PropertyStatistics.read(definition, "foo").estimateCount("common"));
+
+        // but not if the index was rebuilt during the cycle
+        beforeCycle = indexed;
+        builder = indexed.builder();
+        builder.child("n2").remove();
+        builder.child(INDEX_DEFINITIONS_NAME).child("foo").setProperty("reindex", true);
+        indexed = HOOK.processCommit(indexed, builder.getNodeState(), CommitInfo.EMPTY);
+        definition = indexed.getChildNode(INDEX_DEFINITIONS_NAME).getChildNode("foo");
+        assertEquals(148, PropertyStatistics.read(definition, "foo").getCount());
+        indexed = ASYNC_HOOK.processCommit(beforeCycle, indexed, CommitInfo.EMPTY);
+        definition = indexed.getChildNode(INDEX_DEFINITIONS_NAME).getChildNode("foo");
+        assertEquals(148, PropertyStatistics.read(definition, "foo").getCount());
+    }
+
+    @Test
+    public void relativePropertyIgnored() throws Exception {
+        NodeBuilder builder = INITIAL_CONTENT.builder();
+        NodeBuilder index = createIndexDefinition(builder.child(INDEX_DEFINITIONS_NAME), "foo",
+                true, false, ImmutableSet.of("foo"), null);
+        index.setProperty(STATISTICS_PROPERTIES, Arrays.asList("jcr:content/foo", "foo"), Type.STRINGS);
+        NodeState before = builder.getNodeState();
+        builder.child("n").setProperty("foo", "x");
+        builder.child("n").child("jcr:content").setProperty("foo", "y");
+        NodeState indexed = HOOK.processCommit(before, builder.getNodeState(), CommitInfo.EMPTY);
+
+        NodeState definition = indexed.getChildNode(INDEX_DEFINITIONS_NAME).getChildNode("foo");
+        assertNull(PropertyStatistics.read(definition, "jcr:content/foo"));
+        assertEquals(2, PropertyStatistics.read(definition, "foo").getCount());
+    }
+
+}
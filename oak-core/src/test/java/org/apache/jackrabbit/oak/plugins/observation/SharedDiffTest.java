@@ -0,0 +1,223 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.jackrabbit.oak.plugins.observation;
+
+import static org.apache.jackrabbit.oak.plugins.memory.EmptyNodeState.EMPTY_NODE;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.jackrabbit.guava.common.base.Ticker;
+import org.apache.jackrabbit.oak.api.PropertyState;
+import org.apache.jackrabbit.oak.spi.state.NodeBuilder;
+import org.apache.jackrabbit.oak.spi.state.NodeState;
+import org.apache.jackrabbit.oak.spi.state.NodeStateDiff;
+import org.junit.Test;
+
+public class SharedDiffTest {
+
+    private final NodeState before;
+
+    private final NodeState after;
+
+    {
+        NodeBuilder builder = EMPTY_NODE.builder();
+        builder.setProperty("p", 1);
+        builder.setProperty("q", 1);
+        builder.child("a").setProperty("p", 1);
+        builder.child("b").setProperty("p", 1);
+        builder.child("c");
+        before = builder.getNodeState();
+
+        builder = before.builder();
+        builder.setProperty("p", 2);
+        builder.removeProperty("q");
+        builder.setProperty("r", 1);
+        builder.child("a").setProperty("p", 2);
+        builder.child("b").remove();
+        builder.child("d").setProperty("p", 1);
+        after = builder.getNodeState();
+    }
+
+    @Test
+    public void shared() {
+        SharedDiff sharedDiff = new SharedDiff(1000);
+        SharedDiff view1 = sharedDiff.newView();
+        SharedDiff view2 = sharedDiff.newView();
+
+        RecordingDiff diff1 = new RecordingDiff();
+        RecordingDiff diff2 = new RecordingDiff();
+        view1.compare(before, after, diff1);
+        view2.compare(before, after, diff2);
+
+        RecordingDiff expected = new RecordingDiff();
+        after.compareAgainstBaseState(before, expected);
+        assertEquals(expected.changes, diff1.changes);
+        assertEquals(expected.changes, diff2.changes);
+
+        // the child states are the same, so that their diff is shared as well
+        assertSame(diff1.children.get("a"), diff2.children.get("a"));
+
+        assertEquals(1, view1.getComputedCount());
+        assertEquals(0, view1.getSharedCount());
+        assertEquals(0, view2.getComputedCount());
+        assertEquals(1, view2.getSharedCount());
+        assertEquals(0.5, sharedDiff.getSharingRatio(), 0.001);
+    }
+
+    @Test
+    public void abort() {
+        SharedDiff sharedDiff = new SharedDiff(1000);
+        sharedDiff.compare(before, after, new RecordingDiff());
+
+        RecordingDiff diff = new RecordingDiff() {
+            @Override
+            public boolean propertyChanged(PropertyState before, PropertyState after) {
+                super.propertyChanged(before, after);
+                return false;
+            }
+        };
+        assertFalse(sharedDiff.compare(before, after, diff));
+        // no changes are replayed after the aborted one
+        assertTrue(diff.changes.get(diff.changes.size() - 1).startsWith("^p"));
+        assertTrue(diff.changes.size() < 6);
+    }
+
+    @Test
+    public void childNodes() {
+        SharedDiff sharedDiff = new SharedDiff(1000);
+        RecordingDiff diff = new RecordingDiff();
+        sharedDiff.compare(before, after, diff);
+
+        NodeState[] a = sharedDiff.getChildNodes(before, after, "a");
+        assertNotNull(a);
+        assertSame(diff.children.get("a"), a[1]);
+        NodeState[] b = sharedDiff.getChildNodes(before, after, "b");
+        assertNotNull(b);
+        assertFalse(b[1].exists());
+        assertNull(sharedDiff.getChildNodes(before, after, "c"));
+    }
+
+    @Test
+    public void disabled() {
+        SharedDiff sharedDiff = new SharedDiff(0);
+        RecordingDiff diff = new RecordingDiff();
+        sharedDiff.compare(before, after, diff);
+        sharedDiff.compare(before, after, diff);
+        assertEquals(2, sharedDiff.getComputedCount());
+        assertEquals(0, sharedDiff.getSharedCount());
+        assertNotNull(sharedDiff.getChildNodes(before, after, "c"));
+    }
+
+    @Test
+    public void tooManyChanges() {
+        NodeBuilder builder = before.builder();
+        for (int i = 0; i <= SharedDiff.MAX_CHANGES_PER_NODE; i++) {
+            builder.setProperty("x" + i, i);
+        }
+        NodeState large = builder.getNodeState();
+
+        SharedDiff sharedDiff = new SharedDiff(100000);
+        RecordingDiff diff1 = new RecordingDiff();
+        RecordingDiff diff2 = new RecordingDiff();
+        sharedDiff.compare(before, large, diff1);
+        sharedDiff.compare(before, large, diff2);
+        assertEquals(SharedDiff.MAX_CHANGES_PER_NODE + 1, diff2.changes.size());
+        assertEquals(2, sharedDiff.getComputedCount());
+    }
+
+    @Test
+    public void expiry() {
+        AtomicLong nanos = new AtomicLong();
+        Ticker ticker = new Ticker() {
+            @Override
+            public long read() {
+                return nanos.get();
+            }
+        };
+        SharedDiff sharedDiff = new SharedDiff(1000, 1000, ticker);
+        sharedDiff.compare(before, after, new RecordingDiff());
+        nanos.addAndGet(TimeUnit.MILLISECONDS.toNanos(500));
+        sharedDiff.compare(before, after, new RecordingDiff());
+        assertEquals(1, sharedDiff.getSharedCount());
+
+        // not used for longer than the expiry time
+        nanos.addAndGet(TimeUnit.MILLISECONDS.toNanos(1500));
+        sharedDiff.compare(before, after, new RecordingDiff());
+        assertEquals(1, sharedDiff.getSharedCount());
+        assertEquals(2, sharedDiff.getComputedCount());
+    }
+
+    private static class RecordingDiff implements NodeStateDiff {
+
+        final List<String> changes = new ArrayList<>();
+
+        final Map<String, NodeState> children = new HashMap<>();
+
+        @Override
+        public boolean propertyAdded(PropertyState after) {
+            changes.add("+" + after);
+            return true;
+        }
+
+        @Override
+        public boolean propertyChanged(PropertyState before, PropertyState after) {
+            changes.add("^" + after);
+            return true;
+        }
+
+        @Override
+        public boolean propertyDeleted(PropertyState before) {
+            changes.add("-" + before);
+            return true;
+        }
+
+        @Override
+        public boolean childNodeAdded(String name, NodeState after) {
+            changes.add("+" + name);
+            children.put(name, after);
+            return true;
+        }
+
+        @Override
+        public boolean childNodeChanged(String name, NodeState before, NodeState after) {
+            changes.add("^" + name);
+            children.put(name, after);
+            return true;
+        }
+
+        @Override
+        public boolean childNodeDeleted(String name, NodeState before) {
+            changes.add("-" + name);
+            return true;
+        }
+
+    }
+
+}
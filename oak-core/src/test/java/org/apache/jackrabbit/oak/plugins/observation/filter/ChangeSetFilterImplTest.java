@@ -252,6 +252,29 @@ public class ChangeSetFilterImplTest {
         assertFalse(prefilter.excludes(builder.build()));
     }
     
+    @Test
+    public void testPrefilterOnOverflow() throws Exception {
+        ChangeSetFilterImpl prefilter = new ChangeSetFilterImpl(s("/"), true, null, s("/excluded"), s("foo", "bars"), s("nt:file"), s());
+        prefilter.setPrefilterOnOverflow(true);
+
+        ChangeSetBuilder builder = sampleBuilder();
+        overflowAllNodeTypes(builder);
+        assertTrue(prefilter.excludes(builder.build()));
+
+        // none of the overflown names is "foo" or "bars"
+        overflowParentNodeNames(builder);
+        assertTrue(builder.isParentNodeNameOverflown());
+        assertTrue(prefilter.excludes(builder.build()));
+
+        builder.addParentNodeName("bars");
+        assertFalse(prefilter.excludes(builder.build()));
+
+        // paths can't be prefiltered once overflown
+        builder = sampleBuilder();
+        overflowParentPaths(builder);
+        assertFalse(prefilter.excludes(builder.build()));
+    }
+
     @Test
     public void testUnpreciseInclude() throws Exception {
         ChangeSetBuilder builder = newBuilder(5, 5);
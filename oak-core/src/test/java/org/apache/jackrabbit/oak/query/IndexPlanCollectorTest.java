@@ -0,0 +1,224 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.oak.query;
+
+import static org.apache.jackrabbit.oak.plugins.memory.EmptyNodeState.EMPTY_NODE;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import javax.management.openmbean.CompositeData;
+import javax.management.openmbean.TabularData;
+
+import org.apache.jackrabbit.guava.common.collect.ImmutableList;
+import org.apache.jackrabbit.oak.query.index.FilterImpl;
+import org.apache.jackrabbit.oak.spi.query.Cursor;
+import org.apache.jackrabbit.oak.spi.query.Filter;
+import org.apache.jackrabbit.oak.spi.query.QueryIndex;
+import org.apache.jackrabbit.oak.spi.state.NodeState;
+import org.junit.After;
+import org.junit.Test;
+
+public class IndexPlanCollectorTest {
+
+    private final QueryEngineSettings settings = new QueryEngineSettings();
+    private final FilterImpl filter = new FilterImpl(null, "SELECT * FROM [nt:base]", settings);
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    @After
+    public void tearDown() {
+        release.countDown();
+        settings.setPlanningThreads(0);
+    }
+
+    @Test
+    public void sequentialByDefault() {
+        assertNull(settings.getPlanningExecutor());
+        TestIndex a = new TestIndex("a", 0);
+        TestIndex b = new TestIndex("b", 0);
+        IndexPlanCollector collector = collector(ImmutableList.of(a, b));
+        assertEquals(0, a.calls);
+        assertEquals(1, collector.getPlans(0).size());
+        assertEquals(1, a.calls);
+        assertEquals(0, b.calls);
+        collector.cancel();
+        assertEquals(0, b.calls);
+    }
+
+    @Test
+    public void concurrentPlanning() {
+        settings.setPlanningThreads(4);
+        TestIndex a = new TestIndex("a", 0);
+        TestIndex b = new TestIndex("b", 0);
+        IndexPlanCollector collector = collector(ImmutableList.of(a, b));
+        assertEquals(1, collector.getPlans(0).size());
+        assertEquals(1, collector.getPlans(1).size());
+        assertEquals(1, a.calls);
+        assertEquals(1, b.calls);
+    }
+
+    @Test
+    public void slowPlannerTimesOut() {
+        settings.setPlanningThreads(2);
+        settings.setPlanningTimeoutMillis(50);
+        TestIndex fast = new TestIndex("fast", 0);
+        TestIndex slow = new TestIndex("slow", -1);
+        IndexPlanCollector collector = collector(ImmutableList.of(slow, fast));
+        assertTrue(collector.getPlans(0).isEmpty());
+        assertEquals(1, collector.getPlans(1).size());
+
+        TabularData data = settings.getQueryStats().getSlowIndexPlanners();
+        assertEquals(1, data.size());
+        CompositeData row = (CompositeData) data.values().iterator().next();
+        assertEquals("slow", row.get("indexName"));
+        assertEquals(1L, row.get("timeoutCount"));
+    }
+
+    @Test
+    public void onlySameMinimumCostConcurrently() {
+        settings.setPlanningThreads(4);
+        TestIndex a = new TestIndex("a", 0, 1);
+        TestIndex b = new TestIndex("b", 0, 1);
+        TestIndex c = new TestIndex("c", 0, 5);
+        IndexPlanCollector collector = collector(ImmutableList.of(a, b, c));
+        assertEquals(1, collector.getPlans(0).size());
+        // b has the same minimum cost, so it is asked as well
+        assertEquals(1, collector.getPlans(1).size());
+        assertEquals(1, b.calls);
+        // c might be skipped by the caller
+        collector.cancel();
+        assertEquals(0, c.calls);
+    }
+
+    @Test
+    public void timeoutDoesNotInterrupt() throws Exception {
+        settings.setPlanningThreads(2);
+        settings.setPlanningTimeoutMillis(50);
+        TestIndex slow = new TestIndex("slow", -1);
+        TestIndex fast = new TestIndex("fast", 0);
+        IndexPlanCollector collector = collector(ImmutableList.of(slow, fast));
+        assertTrue(collector.getPlans(0).isEmpty());
+        collector.cancel();
+        release.countDown();
+        assertTrue(slow.done.await(10, TimeUnit.SECONDS));
+        assertFalse(slow.interrupted);
+    }
+
+    @Test
+    public void slowPlannerReported() {
+        TestIndex slow = new TestIndex("slow", 150);
+        IndexPlanCollector collector = collector(ImmutableList.of(slow));
+        assertEquals(1, collector.getPlans(0).size());
+
+        TabularData data = settings.getQueryStats().getSlowIndexPlanners();
+        assertEquals(1, data.size());
+        CompositeData row = (CompositeData) data.values().iterator().next();
+        assertEquals(1L, row.get("slowCount"));
+        assertEquals(0L, row.get("timeoutCount"));
+    }
+
+    private IndexPlanCollector collector(List<? extends QueryIndex> indexes) {
+        return new IndexPlanCollector(indexes, filter, null, EMPTY_NODE,
+                settings.getQueryStatsReporter(), settings.getPlanningExecutor(),
+                settings.getPlanningTimeoutMillis());
+    }
+
+    private class TestIndex implements QueryIndex, QueryIndex.AdvancedQueryIndex {
+
+        private final String name;
+        private final long delayMillis;
+        private final double minCost;
+        private final CountDownLatch done = new CountDownLatch(1);
+        private volatile int calls;
+        private volatile boolean interrupted;
+
+        /**
+         * @param name the index name
+         * @param delayMillis the planning delay; -1 to block until the test ends
+         */
+        TestIndex(String name, long delayMillis) {
+            this(name, delayMillis, 1);
+        }
+
+        TestIndex(String name, long delayMillis, double minCost) {
+            this.name = name;
+            this.delayMillis = delayMillis;
+            this.minCost = minCost;
+        }
+
+        @Override
+        public List<IndexPlan> getPlans(Filter filter, List<OrderEntry> sortOrder, NodeState rootState) {
+            calls++;
+            try {
+                if (delayMillis < 0) {
+                    release.await(10, TimeUnit.SECONDS);
+                } else if (delayMillis > 0) {
+                    Thread.sleep(delayMillis);
+                }
+            } catch (InterruptedException e) {
+                interrupted = true;
+                Thread.currentThread().interrupt();
+            } finally {
+                done.countDown();
+            }
+            return Collections.singletonList(new IndexPlan.Builder()
+                    .setEstimatedEntryCount(10).setPlanName(name).setFilter(filter).build());
+        }
+
+        @Override
+        public double getMinimumCost() {
+            return minCost;
+        }
+
+        @Override
+        public double getCost(Filter filter, NodeState rootState) {
+            return Double.POSITIVE_INFINITY;
+        }
+
+        @Override
+        public Cursor query(Filter filter, NodeState rootState) {
+            return null;
+        }
+
+        @Override
+        public String getPlan(Filter filter, NodeState rootState) {
+            return null;
+        }
+
+        @Override
+        public String getIndexName() {
+            return name;
+        }
+
+        @Override
+        public String getPlanDescription(IndexPlan plan, NodeState root) {
+            return null;
+        }
+
+        @Override
+        public Cursor query(IndexPlan plan, NodeState rootState) {
+            return null;
+        }
+    }
+
+}
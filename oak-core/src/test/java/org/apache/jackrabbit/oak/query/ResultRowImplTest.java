@@ -19,7 +19,10 @@ package org.apache.jackrabbit.oak.query;
 
 import org.apache.jackrabbit.guava.common.collect.Maps;
 import org.apache.jackrabbit.oak.api.PropertyValue;
+import org.apache.jackrabbit.oak.api.Tree;
 import org.apache.jackrabbit.oak.api.Type;
+import org.apache.jackrabbit.oak.query.ast.ColumnImpl;
+import org.apache.jackrabbit.oak.query.ast.SelectorImpl;
 import org.junit.Test;
 
 import java.util.Map;
@@ -28,6 +31,9 @@ import static org.apache.jackrabbit.oak.plugins.memory.PropertyValues.newString;
 import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 public class ResultRowImplTest {
@@ -53,4 +59,31 @@ public class ResultRowImplTest {
         assertEquals("origVal", mappedVals[0].getValue(Type.STRING));
         assertEquals("val1", mappedVals[1].getValue(Type.STRING));
     }
+
+    @Test
+    public void lazyGetValue() {
+        Query query = mock(Query.class);
+        when(query.getColumnIndex("eager")).thenReturn(0);
+        when(query.getColumnIndex("lazy")).thenReturn(1);
+        when(query.getSelectorIndex("s")).thenReturn(0);
+
+        SelectorImpl selector = mock(SelectorImpl.class);
+        when(selector.getSelectorName()).thenReturn("s");
+        Tree tree = mock(Tree.class);
+        ColumnImpl column = mock(ColumnImpl.class);
+        when(column.getSelector()).thenReturn(selector);
+        when(column.getTreeProperty(tree)).thenReturn(newString("lazyVal"));
+
+        PropertyValue[] vals = new PropertyValue[]{newString("eagerVal"), ResultRowImpl.PENDING};
+        ResultRowImpl row = new ResultRowImpl(query, new Tree[]{tree}, vals, null, null,
+                new ColumnImpl[]{null, column});
+
+        assertEquals("eagerVal", row.getValue("eager").getValue(Type.STRING));
+        verify(column, never()).getTreeProperty(tree);
+
+        assertEquals("lazyVal", row.getValue("lazy").getValue(Type.STRING));
+        assertEquals("lazyVal", row.getValues()[1].getValue(Type.STRING));
+        // read only once
+        verify(column, times(1)).getTreeProperty(tree);
+    }
 }
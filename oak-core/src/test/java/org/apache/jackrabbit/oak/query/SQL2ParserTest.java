@@ -22,6 +22,8 @@ import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
 import java.text.ParseException;
+import java.util.Arrays;
+import java.util.Collections;
 
 import org.apache.jackrabbit.oak.namepath.NamePathMapper;
 import org.apache.jackrabbit.oak.query.ast.NodeTypeInfoProvider;
@@ -135,6 +137,23 @@ public class SQL2ParserTest {
         assertFalse(parsedOffsetOnly.getLimit().isPresent());
     }
 
+    @Test
+    public void testSortAfter() throws ParseException {
+        QueryImpl parsed = (QueryImpl) p.parse(
+                "SELECT * FROM [nt:base] ORDER BY [a], [b] OPTION(AFTER ('x', 'y'), LIMIT 10)");
+        assertEquals(Arrays.asList("x", "y"), parsed.getQueryOptions().after);
+        assertEquals(10L, parsed.getLimit().get().longValue());
+
+        QueryImpl parsedXPath = (QueryImpl) p.parse(new XPathToSQL2Converter()
+                .convert("/jcr:root/test//*[@a] order by @a option(after 'x')"));
+        assertEquals(Collections.singletonList("x"), parsedXPath.getQueryOptions().after);
+    }
+
+    @Test(expected = ParseException.class)
+    public void testSortAfterNeedsOrderBy() throws ParseException {
+        p.parse("SELECT * FROM [nt:base] ORDER BY [a] OPTION(AFTER ('x', 'y'))");
+    }
+
     @Test(expected = ParseException.class)
     public void testOffsetNotDouble() throws ParseException {
         p.parse("SELECT * FROM [nt:base] WHERE b=2 OPTION(OFFSET 10.0, LIMIT 100)");
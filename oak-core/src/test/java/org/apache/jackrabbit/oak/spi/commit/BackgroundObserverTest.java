@@ -402,6 +402,73 @@ public class BackgroundObserverTest {
         executor.shutdownNow();
     }
 
+    @Test
+    public void deliveryStatistics() throws Exception {
+        ExecutorService executor = newSingleThreadExecutor();
+        BackgroundObserver observer = new BackgroundObserver(new Observer() {
+            @Override
+            public void contentChanged(@NotNull NodeState root, @NotNull CommitInfo info) {
+                try {
+                    Thread.sleep(2);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }, executor, 100);
+        BackgroundObserverMBean mbean = observer.getMBean();
+        assertEquals(0, mbean.getDeliveredCount());
+        assertEquals(0, mbean.getAverageQueueTimeMillis());
+
+        for (int i = 0; i < 10; i++) {
+            contentChanged(observer, i);
+        }
+        assertTrue(observer.waitUntilStopped(5, TimeUnit.SECONDS));
+        executor.shutdown();
+
+        assertEquals(10, mbean.getDeliveredCount());
+        assertTrue(mbean.getAverageProcessingTimeMillis() >= 1);
+        assertTrue(mbean.getMaxQueueTimeMillis() >= mbean.getAverageQueueTimeMillis());
+    }
+
+    @Test
+    public void adaptiveCompaction() throws Exception {
+        System.setProperty("oak.observation.adaptiveCompaction", "true");
+        System.setProperty("oak.observation.maxMergedChanges", "3");
+        BackgroundObserver observer;
+        List<CommitInfo> delivered = Lists.newArrayList();
+        List<Runnable> tasks = Lists.newArrayList();
+        try {
+            observer = new BackgroundObserver(new Observer() {
+                @Override
+                public void contentChanged(@NotNull NodeState root, @NotNull CommitInfo info) {
+                    delivered.add(info);
+                }
+            }, tasks::add, 10);
+        } finally {
+            System.clearProperty("oak.observation.adaptiveCompaction");
+            System.clearProperty("oak.observation.maxMergedChanges");
+        }
+        BackgroundObserverMBean mbean = observer.getMBean();
+
+        // the queue is half full after 5 changes, then each queued change
+        // covers 3 commits: 5 + 2 + 5 * 3 commits until the queue is full
+        for (int i = 0; i < 22; i++) {
+            contentChanged(observer, i);
+        }
+        assertEquals(10, mbean.getQueueSize());
+        assertEquals(12, mbean.getMergedCount());
+        assertEquals(4, mbean.getLocalEventCount());
+        assertEquals(6, mbean.getExternalEventCount());
+
+        // deliver the queued changes
+        while (!tasks.isEmpty()) {
+            tasks.remove(0).run();
+        }
+        assertEquals(10, delivered.size());
+        assertSame(COMMIT_INFO, delivered.get(3));
+        assertTrue(delivered.get(4).isExternal());
+    }
+
     private void doTestExcludeSomeCommits(int cnt, Executor executor) throws Exception {
         MyFilter filter = new MyFilter();
         Recorder recorder = new Recorder();
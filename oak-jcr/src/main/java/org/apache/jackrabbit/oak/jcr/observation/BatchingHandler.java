@@ -0,0 +1,112 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.jackrabbit.oak.jcr.observation;
+
+import static javax.jcr.observation.Event.NODE_ADDED;
+import static javax.jcr.observation.Event.NODE_MOVED;
+import static javax.jcr.observation.Event.NODE_REMOVED;
+import static javax.jcr.observation.Event.PROPERTY_ADDED;
+import static javax.jcr.observation.Event.PROPERTY_CHANGED;
+import static javax.jcr.observation.Event.PROPERTY_REMOVED;
+
+import org.apache.jackrabbit.oak.api.PropertyState;
+import org.apache.jackrabbit.oak.namepath.NamePathMapper;
+import org.apache.jackrabbit.oak.namepath.PathTracker;
+import org.apache.jackrabbit.oak.plugins.observation.DefaultEventHandler;
+import org.apache.jackrabbit.oak.plugins.observation.EventHandler;
+import org.apache.jackrabbit.oak.spi.state.NodeState;
+
+/**
+ * Event handler that adds the events to an {@link EventBatchImpl}, instead
+ * of creating an event object per change as the {@link QueueingHandler}.
+ * The id of the parent path is looked up once per node.
+ */
+class BatchingHandler extends DefaultEventHandler {
+
+    private final EventBatchImpl batch;
+
+    private final NamePathMapper mapper;
+
+    private final PathTracker pathTracker;
+
+    private int parentPathId;
+
+    private int generation = -1;
+
+    BatchingHandler(EventBatchImpl batch, NamePathMapper mapper) {
+        this(batch, mapper, new PathTracker());
+    }
+
+    private BatchingHandler(EventBatchImpl batch, NamePathMapper mapper, PathTracker pathTracker) {
+        this.batch = batch;
+        this.mapper = mapper;
+        this.pathTracker = pathTracker;
+    }
+
+    private int parentPathId() {
+        if (generation != batch.getGeneration()) {
+            parentPathId = batch.getParentPathId(pathTracker.getPath());
+            generation = batch.getGeneration();
+        }
+        return parentPathId;
+    }
+
+    //-----------------------------------------------------< ChangeHandler >--
+
+    @Override
+    public EventHandler getChildHandler(String name, NodeState before, NodeState after) {
+        return new BatchingHandler(batch, mapper, pathTracker.getChildTracker(name));
+    }
+
+    @Override
+    public void propertyAdded(PropertyState after) {
+        batch.add(PROPERTY_ADDED, parentPathId(), after.getName(), null);
+    }
+
+    @Override
+    public void propertyChanged(PropertyState before, PropertyState after) {
+        batch.add(PROPERTY_CHANGED, parentPathId(), after.getName(), null);
+    }
+
+    @Override
+    public void propertyDeleted(PropertyState before) {
+        batch.add(PROPERTY_REMOVED, parentPathId(), before.getName(), null);
+    }
+
+    @Override
+    public void nodeAdded(String name, NodeState after) {
+        batch.add(NODE_ADDED, parentPathId(), name, null);
+    }
+
+    @Override
+    public void nodeDeleted(String name, NodeState before) {
+        batch.add(NODE_REMOVED, parentPathId(), name, null);
+    }
+
+    @Override
+    public void nodeMoved(String sourcePath, String name, NodeState moved) {
+        batch.add(NODE_MOVED, parentPathId(), name, mapper.getJcrPath(sourcePath));
+    }
+
+    @Override
+    public void nodeReordered(String destName, String name, NodeState reordered) {
+        batch.add(NODE_MOVED, parentPathId(), name, destName == null ? null : mapper.getJcrName(destName));
+    }
+
+}
@@ -29,6 +29,7 @@ import static org.apache.jackrabbit.oak.spi.whiteboard.WhiteboardUtils.registerM
 import static org.apache.jackrabbit.oak.spi.whiteboard.WhiteboardUtils.scheduleWithFixedDelay;
 
 import java.util.Map;
+import java.util.concurrent.Executor;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReference;
@@ -42,12 +43,18 @@ import org.apache.jackrabbit.commons.observation.ListenerTracker;
 import org.apache.jackrabbit.oak.api.ContentSession;
 import org.apache.jackrabbit.oak.api.blob.BlobAccessProvider;
 import org.apache.jackrabbit.oak.commons.PerfLogger;
+import org.apache.jackrabbit.oak.commons.concurrent.VirtualThreads;
+import org.apache.jackrabbit.oak.jcr.observation.batch.BatchEventListener;
 import org.apache.jackrabbit.oak.namepath.NamePathMapper;
 import org.apache.jackrabbit.oak.plugins.observation.CommitRateLimiter;
+import org.apache.jackrabbit.oak.plugins.observation.EventGenerator;
+import org.apache.jackrabbit.oak.plugins.observation.EventHandler;
 import org.apache.jackrabbit.oak.plugins.observation.Filter;
 import org.apache.jackrabbit.oak.plugins.observation.FilteringAwareObserver;
 import org.apache.jackrabbit.oak.plugins.observation.FilteringDispatcher;
+import org.apache.jackrabbit.oak.plugins.observation.FilteredHandler;
 import org.apache.jackrabbit.oak.plugins.observation.FilteringObserver;
+import org.apache.jackrabbit.oak.plugins.observation.SharedDiff;
 import org.apache.jackrabbit.oak.plugins.observation.filter.EventFilter;
 import org.apache.jackrabbit.oak.plugins.observation.filter.FilterConfigMBean;
 import org.apache.jackrabbit.oak.plugins.observation.filter.FilterProvider;
@@ -70,6 +77,7 @@ import org.apache.jackrabbit.oak.stats.StatisticManager;
 import org.apache.jackrabbit.oak.stats.TimerStats;
 import org.apache.jackrabbit.stats.TimeSeriesMax;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -129,6 +137,28 @@ class ChangeProcessor implements FilteringAwareObserver {
             .getInteger("oak.observation.full-queue.warn.interval", 30));
     static Clock clock = Clock.SIMPLE;
 
+    /**
+     * Whether events are delivered to the listeners on virtual threads instead
+     * of the shared thread pool, if the JVM supports them. Controlled by the
+     * command line property "oak.observation.virtualThreads".
+     */
+    static final boolean VIRTUAL_THREADS = Boolean.getBoolean("oak.observation.virtualThreads");
+
+    /**
+     * Whether commits are delayed by the time the listener needs to drain the
+     * queue above {@code DELAY_THRESHOLD} (see {@link CommitThrottle}), instead
+     * of linearly to the fill ratio. Controlled by the command line property
+     * "oak.observation.adaptiveThrottling".
+     */
+    static final boolean ADAPTIVE_THROTTLING = Boolean.getBoolean("oak.observation.adaptiveThrottling");
+
+    static {
+        if (VIRTUAL_THREADS && !VirtualThreads.isSupported()) {
+            LOG.warn("<clinit> oak.observation.virtualThreads is set, but virtual threads are not " +
+                    "supported by this JVM. Using the shared thread pool.");
+        }
+    }
+
     // OAK-4533: make DELAY_THRESHOLD and MAX_DELAY adjustable - using System.properties for now
     static {
         final String delayThresholdStr = System.getProperty("oak.commitRateLimiter.delayThreshold");
@@ -175,6 +205,40 @@ class ChangeProcessor implements FilteringAwareObserver {
     private final CommitRateLimiter commitRateLimiter;
     private final BlobAccessProvider blobAccessProvider;
 
+    /**
+     * The diff shared with the other listeners, with the statistics of this
+     * listener
+     */
+    private final SharedDiff sharedDiff = SharedDiff.getInstance().newView();
+
+    /**
+     * Tracks the drain rate of the queue, and computes the commit delay if
+     * adaptive throttling is enabled
+     */
+    private final CommitThrottle commitThrottle;
+
+    /**
+     * for statistics: the current delay of commits in milliseconds
+     */
+    private volatile long commitDelay;
+
+    /**
+     * The listener the events are delivered to in batches, or {@code null}
+     * if they are delivered to {@link #eventListener} per commit
+     */
+    private final BatchEventListener batchListener;
+
+    /**
+     * The events collected for the {@link #batchListener}. Only accessed
+     * from the thread delivering the changes of the background observer.
+     */
+    private final EventBatchImpl batch;
+
+    /**
+     * The time the first event of the current batch was collected
+     */
+    private long batchStart;
+
     /**
      * Lazy initialization via the {@link #start(Whiteboard)} method
      */
@@ -210,6 +274,20 @@ class ChangeProcessor implements FilteringAwareObserver {
             int queueLength,
             CommitRateLimiter commitRateLimiter,
             BlobAccessProvider blobAccessProvider) {
+        this(contentSession, namePathMapper, tracker, filter, statisticManager, queueLength,
+                commitRateLimiter, blobAccessProvider, null);
+    }
+
+    public ChangeProcessor(
+            ContentSession contentSession,
+            NamePathMapper namePathMapper,
+            ListenerTracker tracker,
+            FilterProvider filter,
+            StatisticManager statisticManager,
+            int queueLength,
+            CommitRateLimiter commitRateLimiter,
+            BlobAccessProvider blobAccessProvider,
+            @Nullable BatchEventListener batchListener) {
         this.contentSession = contentSession;
         this.namePathMapper = namePathMapper;
         this.tracker = tracker;
@@ -221,6 +299,9 @@ class ChangeProcessor implements FilteringAwareObserver {
         this.queueLength = queueLength;
         this.commitRateLimiter = commitRateLimiter;
         this.blobAccessProvider = blobAccessProvider;
+        this.commitThrottle = new CommitThrottle(queueLength, DELAY_THRESHOLD, MAX_DELAY, clock);
+        this.batchListener = batchListener;
+        this.batch = batchListener == null ? null : new EventBatchImpl(namePathMapper);
     }
 
     /**
@@ -255,6 +336,26 @@ class ChangeProcessor implements FilteringAwareObserver {
                 return prefilterSkipCount;
             }
 
+            @Override
+            public long getDiffComputedCount() {
+                return sharedDiff.getComputedCount();
+            }
+
+            @Override
+            public long getDiffSharedCount() {
+                return sharedDiff.getSharedCount();
+            }
+
+            @Override
+            public long getCommitDelay() {
+                return commitDelay;
+            }
+
+            @Override
+            public double getDrainRate() {
+                return commitThrottle.getDrainRate();
+            }
+
         };
     }
 
@@ -269,7 +370,7 @@ class ChangeProcessor implements FilteringAwareObserver {
         checkState(registration == null, "Change processor started already");
         final WhiteboardExecutor executor = new WhiteboardExecutor();
         executor.start(whiteboard);
-        final FilteringObserver filteringObserver = createObserver(executor);
+        final FilteringObserver filteringObserver = createObserver(getObserverExecutor(executor));
         listenerId = COUNTER.incrementAndGet() + "";
         Map<String, String> attrs = ImmutableMap.of(LISTENER_ID, listenerId);
         String name = tracker.toString();
@@ -306,7 +407,19 @@ class ChangeProcessor implements FilteringAwareObserver {
         );
     }
 
-    private FilteringObserver createObserver(final WhiteboardExecutor executor) {
+    private static Executor getObserverExecutor(WhiteboardExecutor executor) {
+        if (VIRTUAL_THREADS) {
+            // a new virtual thread for each delivery, so that a blocking
+            // listener doesn't hold on to a thread of the shared pool
+            Executor virtualThreads = VirtualThreads.newThreadPerTaskExecutor("oak-observation-");
+            if (virtualThreads != null) {
+                return virtualThreads;
+            }
+        }
+        return executor;
+    }
+
+    private FilteringObserver createObserver(final Executor executor) {
         FilteringDispatcher fd = new FilteringDispatcher(this);
         BackgroundObserver bo = new BackgroundObserver(fd, executor, queueLength) {
             private volatile long delay;
@@ -316,12 +429,17 @@ class ChangeProcessor implements FilteringAwareObserver {
 
             @Override
             protected void added(int newQueueSize) {
+                commitThrottle.added();
                 queueSizeChanged(newQueueSize);
             }
             
             @Override
             protected void removed(int newQueueSize, long created) {
+                commitThrottle.removed(newQueueSize);
                 queueSizeChanged(newQueueSize);
+                if (batchListener != null) {
+                    batchRemoved(newQueueSize);
+                }
             }
             
             private void queueSizeChanged(int newQueueSize) {
@@ -345,13 +463,25 @@ class ChangeProcessor implements FilteringAwareObserver {
                                 LOG.warn("Revision queue is becoming full. Further commits will be delayed.");
                             }
 
-                            // Linear backoff proportional to the number of items exceeding
-                            // DELAY_THRESHOLD. Offset by 1 to trigger the log message in the
-                            // else branch once the queue falls below DELAY_THRESHOLD again.
-                            int newDelay = 1 + (int) ((fillRatio - DELAY_THRESHOLD) / (1 - DELAY_THRESHOLD) * MAX_DELAY);
-                            if (newDelay > delay) {
-                                delay = newDelay;
-                                commitRateLimiter.setDelay(delay);
+                            if (ADAPTIVE_THROTTLING) {
+                                // Delay by the time needed to drain the items exceeding
+                                // DELAY_THRESHOLD, which decreases as the listener catches up
+                                int newDelay = commitThrottle.getDelay(newQueueSize);
+                                if (newDelay != delay) {
+                                    delay = newDelay;
+                                    commitDelay = delay;
+                                    commitRateLimiter.setDelay(delay);
+                                }
+                            } else {
+                                // Linear backoff proportional to the number of items exceeding
+                                // DELAY_THRESHOLD. Offset by 1 to trigger the log message in the
+                                // else branch once the queue falls below DELAY_THRESHOLD again.
+                                int newDelay = 1 + (int) ((fillRatio - DELAY_THRESHOLD) / (1 - DELAY_THRESHOLD) * MAX_DELAY);
+                                if (newDelay > delay) {
+                                    delay = newDelay;
+                                    commitDelay = delay;
+                                    commitRateLimiter.setDelay(delay);
+                                }
                             }
                         }
                     } else {
@@ -360,6 +490,7 @@ class ChangeProcessor implements FilteringAwareObserver {
                                 LOG.debug("Revision queue becoming empty. Unblocking commits");
                                 commitRateLimiter.setDelay(0);
                                 delay = 0;
+                                commitDelay = 0;
                             }
                             if (blocking) {
                                 LOG.debug("Revision queue becoming empty. Stop delaying commits.");
@@ -494,12 +625,16 @@ class ChangeProcessor implements FilteringAwareObserver {
             long start = PERF_LOGGER.start();
             FilterProvider provider = filterProvider.get();
             // FIXME don't rely on toString for session id
-            if (provider.includeCommit(contentSession.toString(), info)) {
+            if (batchListener != null) {
+                if (provider.includeCommit(contentSession.toString(), info)) {
+                    addToBatch(before, after, info, provider);
+                }
+            } else if (provider.includeCommit(contentSession.toString(), info)) {
                 EventFilter filter = provider.getFilter(before, after);
                 EventIterator events = new EventQueue(namePathMapper,
                         blobAccessProvider, info, before, after,
                         provider.getSubTrees(), Filters.all(filter, VISIBLE_FILTER), 
-                        provider.getEventAggregator());
+                        provider.getEventAggregator(), sharedDiff);
 
                 long time = System.nanoTime();
                 boolean hasEvents = events.hasNext();
@@ -528,6 +663,73 @@ class ChangeProcessor implements FilteringAwareObserver {
         }
     }
 
+    /**
+     * Collect the events of a commit for the {@link #batchListener}, and
+     * deliver the batch each time it is full.
+     */
+    private void addToBatch(NodeState before, NodeState after, CommitInfo info, FilterProvider provider) {
+        EventFilter filter = Filters.all(provider.getFilter(before, after), VISIBLE_FILTER);
+        EventGenerator generator = new EventGenerator(sharedDiff);
+        EventHandler handler = new FilteredHandler(filter, new BatchingHandler(batch, namePathMapper));
+        for (String path : provider.getSubTrees()) {
+            EventQueue.addHandler(before, after, path, handler, generator, sharedDiff);
+        }
+        batch.startCommit(info);
+        while (!generator.isDone()) {
+            if (batch.size() == 0) {
+                batchStart = clock.getTime();
+            }
+            long time = System.nanoTime();
+            generator.generate();
+            tracker.recordProducerTime(System.nanoTime() - time, TimeUnit.NANOSECONDS);
+            if (batch.size() >= batchListener.getMaxBatchSize()) {
+                // a failing listener should still get the rest of the commit
+                try {
+                    deliverBatch();
+                } catch (Exception e) {
+                    LOG.warn("Error while dispatching observation events for " + tracker, e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Deliver the collected events once no further changes are queued, or
+     * once the first event waited for the maximum delay.
+     */
+    private void batchRemoved(int newQueueSize) {
+        if (newQueueSize == 0 || clock.getTime() - batchStart >= batchListener.getMaxBatchDelay()) {
+            try {
+                deliverBatch();
+            } catch (Exception e) {
+                LOG.warn("Error while dispatching observation events for " + tracker, e);
+            }
+        }
+    }
+
+    private void deliverBatch() {
+        try {
+            if (batch.size() > 0 && runningMonitor.enterIf(running)) {
+                if (commitRateLimiter != null) {
+                    commitRateLimiter.beforeNonBlocking();
+                }
+                try {
+                    long t0 = System.nanoTime();
+                    batchListener.onEvents(batch);
+                    eventCount.mark(batch.size());
+                    eventDuration.update(System.nanoTime() - t0, TimeUnit.NANOSECONDS);
+                } finally {
+                    if (commitRateLimiter != null) {
+                        commitRateLimiter.afterNonBlocking();
+                    }
+                    runningMonitor.leave();
+                }
+            }
+        } finally {
+            batch.clear();
+        }
+    }
+
     private static class CountingIterator implements EventIterator {
         private final long t0 = System.nanoTime();
         private final EventIterator events;
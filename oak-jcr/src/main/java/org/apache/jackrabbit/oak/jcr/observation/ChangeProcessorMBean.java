@@ -30,4 +30,16 @@ public interface ChangeProcessorMBean {
     
     /** Returns the number of commits that skipped prefiltering, thus got included */
     int getPrefilterSkipCount();
+
+    /** Returns the number of node diffs that were computed for this listener */
+    long getDiffComputedCount();
+
+    /** Returns the number of node diffs that were shared with other listeners */
+    long getDiffSharedCount();
+
+    /** Returns the current delay of commits in milliseconds, because the queue of this listener is filling up */
+    long getCommitDelay();
+
+    /** Returns the number of changes per second this listener currently processes, or 0 if unknown */
+    double getDrainRate();
 }
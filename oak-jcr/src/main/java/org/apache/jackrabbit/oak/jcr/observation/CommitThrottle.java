@@ -0,0 +1,137 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.jackrabbit.oak.jcr.observation;
+
+import org.apache.jackrabbit.oak.stats.Clock;
+
+/**
+ * Computes the delay of commits from the fill ratio of an observation queue
+ * and the rate at which the listener drains it. Above the threshold, commits
+ * are delayed by the time the listener needs to drain the changes above the
+ * threshold, so that the delay grows with the fill ratio, and shrinks again
+ * as the listener catches up.
+ * <p>
+ * The drain rate is the exponentially weighted moving average of the time
+ * the listener needs per change. It is only sampled while the listener is
+ * busy, that is, from the time a change is available (added to an empty
+ * queue, or the previous change was delivered and the queue is not empty)
+ * until it is delivered, so that idle time doesn't count as slow draining.
+ * While the listener does not deliver a change that is available, the time
+ * it is waiting for is used instead.
+ */
+class CommitThrottle {
+
+    /**
+     * Weight of a new sample in the moving average
+     */
+    private static final double ALPHA = 0.1;
+
+    private final int queueLength;
+
+    private final double threshold;
+
+    private final int maxDelay;
+
+    private final Clock clock;
+
+    /**
+     * The time since when a change is available to the listener, or -1 if the
+     * queue is empty
+     */
+    private long busySince = -1;
+
+    /**
+     * Moving average of the milliseconds the listener needs per change, or
+     * 0 if unknown
+     */
+    private double interval;
+
+    /**
+     * @param queueLength the length of the queue
+     * @param threshold the fill ratio above which commits are delayed
+     * @param maxDelay the maximum delay in milliseconds
+     * @param clock the clock
+     */
+    CommitThrottle(int queueLength, double threshold, int maxDelay, Clock clock) {
+        this.queueLength = queueLength;
+        this.threshold = threshold;
+        this.maxDelay = maxDelay;
+        this.clock = clock;
+    }
+
+    /**
+     * Called when a change was added to the queue.
+     */
+    synchronized void added() {
+        if (busySince < 0) {
+            busySince = clock.getTime();
+        }
+    }
+
+    /**
+     * Called when a change was removed from the queue and delivered.
+     *
+     * @param newQueueSize the size of the queue after the change was removed
+     */
+    synchronized void removed(int newQueueSize) {
+        long now = clock.getTime();
+        if (busySince >= 0) {
+            long dt = now - busySince;
+            interval = interval == 0 ? dt : (1 - ALPHA) * interval + ALPHA * dt;
+        }
+        busySince = newQueueSize > 0 ? now : -1;
+    }
+
+    /**
+     * @return the number of changes the listener drains per second, or 0 if
+     *         unknown
+     */
+    synchronized double getDrainRate() {
+        double ms = currentInterval();
+        return ms == 0 ? 0 : 1000 / ms;
+    }
+
+    /**
+     * Get the delay for commits.
+     *
+     * @param queueSize the current size of the queue
+     * @return the delay in milliseconds, 0 if commits should not be delayed
+     */
+    synchronized int getDelay(int queueSize) {
+        double excess = queueSize - threshold * queueLength;
+        if (excess <= 0) {
+            return 0;
+        }
+        double ms = currentInterval();
+        if (ms == 0) {
+            // the drain rate is unknown: delay linear to the fill ratio
+            return 1 + (int) (excess / ((1 - threshold) * queueLength) * maxDelay);
+        }
+        return (int) Math.max(1, Math.min(maxDelay, Math.ceil(excess * ms)));
+    }
+
+    private double currentInterval() {
+        if (busySince < 0) {
+            return interval;
+        }
+        // a stalled listener drains slower than the average
+        return Math.max(interval, clock.getTime() - busySince);
+    }
+
+}
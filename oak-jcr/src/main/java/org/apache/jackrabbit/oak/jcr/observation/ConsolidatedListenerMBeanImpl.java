@@ -54,6 +54,7 @@ import org.apache.felix.scr.annotations.References;
 import org.apache.jackrabbit.api.jmx.EventListenerMBean;
 import org.apache.jackrabbit.oak.jcr.observation.jmx.ConsolidatedListenerMBean;
 import org.apache.jackrabbit.oak.osgi.OsgiWhiteboard;
+import org.apache.jackrabbit.oak.plugins.observation.SharedDiff;
 import org.apache.jackrabbit.oak.plugins.observation.filter.FilterConfigMBean;
 import org.apache.jackrabbit.oak.spi.commit.BackgroundObserverMBean;
 import org.apache.jackrabbit.oak.spi.commit.Observer;
@@ -183,6 +184,11 @@ public class ConsolidatedListenerMBeanImpl implements ConsolidatedListenerMBean
         return eventListeners.size();
     }
 
+    @Override
+    public double getDiffSharingRatio() {
+        return SharedDiff.getInstance().getSharingRatio();
+    }
+
     private Collection<BackgroundObserverMBean> collectNonJcrObservers() {
         List<BackgroundObserverMBean> observers = Lists.newArrayList();
 
@@ -353,7 +359,15 @@ public class ConsolidatedListenerMBeanImpl implements ConsolidatedListenerMBean
                 "paths",
                 "clusterExternal",
                 "clusterLocal",
-                "maxQueueSize"
+                "maxQueueSize",
+                "diffsComputed",
+                "diffsShared",
+                "avgQueueTimeMillis",
+                "maxQueueTimeMillis",
+                "avgProcessingTimeMillis",
+                "mergedChanges",
+                "commitDelayMillis",
+                "drainRate"
         };
 
         static final String[] FIELD_DESCRIPTIONS = FIELD_NAMES;
@@ -384,6 +398,14 @@ public class ConsolidatedListenerMBeanImpl implements ConsolidatedListenerMBean
                 SimpleType.BOOLEAN,
                 SimpleType.BOOLEAN,
                 SimpleType.INTEGER,
+                SimpleType.LONG,
+                SimpleType.LONG,
+                SimpleType.LONG,
+                SimpleType.LONG,
+                SimpleType.LONG,
+                SimpleType.LONG,
+                SimpleType.LONG,
+                SimpleType.DOUBLE,
         };
 
         static final CompositeType TYPE = createCompositeType();
@@ -435,6 +457,14 @@ public class ConsolidatedListenerMBeanImpl implements ConsolidatedListenerMBean
                     mbeans.filterConfigMBean != null && mbeans.filterConfigMBean.isIncludeClusterExternal(),
                     mbeans.filterConfigMBean != null && mbeans.filterConfigMBean.isIncludeClusterLocal(),
                     mbeans.observerMBean == null ? -1 : mbeans.observerMBean.getMaxQueueSize(),
+                    mbeans.changeProcessorMBean == null ? -1L : mbeans.changeProcessorMBean.getDiffComputedCount(),
+                    mbeans.changeProcessorMBean == null ? -1L : mbeans.changeProcessorMBean.getDiffSharedCount(),
+                    mbeans.observerMBean == null ? -1L : mbeans.observerMBean.getAverageQueueTimeMillis(),
+                    mbeans.observerMBean == null ? -1L : mbeans.observerMBean.getMaxQueueTimeMillis(),
+                    mbeans.observerMBean == null ? -1L : mbeans.observerMBean.getAverageProcessingTimeMillis(),
+                    mbeans.observerMBean == null ? -1L : mbeans.observerMBean.getMergedCount(),
+                    mbeans.changeProcessorMBean == null ? -1L : mbeans.changeProcessorMBean.getCommitDelay(),
+                    mbeans.changeProcessorMBean == null ? -1d : mbeans.changeProcessorMBean.getDrainRate(),
             };
             try {
                 return new CompositeDataSupport(TYPE, FIELD_NAMES, values);
@@ -452,6 +482,10 @@ public class ConsolidatedListenerMBeanImpl implements ConsolidatedListenerMBean
                 "queueSize",
                 "localEventCount",
                 "externalEventCount",
+                "avgQueueTimeMillis",
+                "maxQueueTimeMillis",
+                "avgProcessingTimeMillis",
+                "mergedChanges",
         };
 
         static final String[] FIELD_DESCRIPTIONS = FIELD_NAMES;
@@ -464,6 +498,10 @@ public class ConsolidatedListenerMBeanImpl implements ConsolidatedListenerMBean
                 SimpleType.INTEGER,
                 SimpleType.INTEGER,
                 SimpleType.INTEGER,
+                SimpleType.LONG,
+                SimpleType.LONG,
+                SimpleType.LONG,
+                SimpleType.LONG,
         };
 
         static final CompositeType TYPE = createCompositeType();
@@ -497,7 +535,10 @@ public class ConsolidatedListenerMBeanImpl implements ConsolidatedListenerMBean
                     mbean.getQueueSize(),
                     mbean.getLocalEventCount(),
                     mbean.getExternalEventCount(),
-
+                    mbean.getAverageQueueTimeMillis(),
+                    mbean.getMaxQueueTimeMillis(),
+                    mbean.getAverageProcessingTimeMillis(),
+                    mbean.getMergedCount(),
             };
             try {
                 return new CompositeDataSupport(TYPE, FIELD_NAMES, values);
@@ -0,0 +1,257 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.jackrabbit.oak.jcr.observation;
+
+import static org.apache.jackrabbit.oak.jcr.observation.EventFactory.USER_DATA;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.jackrabbit.oak.commons.PathUtils;
+import org.apache.jackrabbit.oak.jcr.observation.batch.EventBatch;
+import org.apache.jackrabbit.oak.namepath.NamePathMapper;
+import org.apache.jackrabbit.oak.spi.commit.CommitInfo;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * The {@link EventBatch} passed to batch listeners. The columns are arrays
+ * that grow as needed, and are reused for the following batches after
+ * {@link #clear()}.
+ */
+class EventBatchImpl implements EventBatch {
+
+    private static final int INITIAL_CAPACITY = 64;
+
+    private final NamePathMapper mapper;
+
+    private int size;
+
+    /**
+     * Incremented on {@link #clear()}, when the parent path ids become invalid
+     */
+    private int generation;
+
+    private int[] types = new int[INITIAL_CAPACITY];
+
+    private int[] parentPathIds = new int[INITIAL_CAPACITY];
+
+    private String[] names = new String[INITIAL_CAPACITY];
+
+    private String[] moveInfos = new String[INITIAL_CAPACITY];
+
+    private int[] commits = new int[INITIAL_CAPACITY];
+
+    private final Map<String, Integer> parentPathIdsByOakPath = new HashMap<>();
+
+    private String[] parentPaths = new String[INITIAL_CAPACITY];
+
+    private CommitInfo[] commitInfos = new CommitInfo[4];
+
+    private int commitCount;
+
+    /**
+     * The current commit, or {@code null} if it is added to
+     * {@link #commitInfos} already
+     */
+    private CommitInfo pendingCommit;
+
+    private CommitInfo currentCommit;
+
+    EventBatchImpl(@NotNull NamePathMapper mapper) {
+        this.mapper = mapper;
+    }
+
+    /**
+     * Start adding the events of a commit. The commit is only kept once an
+     * event of the commit is added.
+     */
+    void startCommit(@NotNull CommitInfo info) {
+        currentCommit = info;
+        pendingCommit = info;
+    }
+
+    /**
+     * @return the generation of the batch: parent path ids returned in
+     *         another generation are not valid
+     */
+    int getGeneration() {
+        return generation;
+    }
+
+    /**
+     * Get the id of a parent path, adding the path if needed.
+     *
+     * @param oakPath the Oak path
+     * @return the id
+     */
+    int getParentPathId(@NotNull String oakPath) {
+        Integer id = parentPathIdsByOakPath.get(oakPath);
+        if (id == null) {
+            id = parentPathIdsByOakPath.size();
+            if (id == parentPaths.length) {
+                parentPaths = Arrays.copyOf(parentPaths, id * 2);
+            }
+            parentPaths[id] = mapper.getJcrPath(oakPath);
+            parentPathIdsByOakPath.put(oakPath, id);
+        }
+        return id;
+    }
+
+    /**
+     * Add an event of the current commit.
+     *
+     * @param type the event type
+     * @param parentPathId the id of the parent path
+     * @param name the Oak name of the node or property
+     * @param moveInfo the JCR source path of a move, or the JCR name of the
+     *                 destination of a reorder, or {@code null}
+     */
+    void add(int type, int parentPathId, @NotNull String name, @Nullable String moveInfo) {
+        if (size == types.length) {
+            int capacity = size * 2;
+            types = Arrays.copyOf(types, capacity);
+            parentPathIds = Arrays.copyOf(parentPathIds, capacity);
+            names = Arrays.copyOf(names, capacity);
+            moveInfos = Arrays.copyOf(moveInfos, capacity);
+            commits = Arrays.copyOf(commits, capacity);
+        }
+        if (pendingCommit != null) {
+            // the first event of the commit
+            if (commitCount == commitInfos.length) {
+                commitInfos = Arrays.copyOf(commitInfos, commitCount * 2);
+            }
+            commitInfos[commitCount++] = pendingCommit;
+            pendingCommit = null;
+        }
+        types[size] = type;
+        parentPathIds[size] = parentPathId;
+        names[size] = mapper.getJcrName(name);
+        moveInfos[size] = moveInfo;
+        commits[size] = commitCount - 1;
+        size++;
+    }
+
+    /**
+     * Remove all events. Further events of the current commit can still be
+     * added.
+     */
+    void clear() {
+        Arrays.fill(names, 0, size, null);
+        Arrays.fill(moveInfos, 0, size, null);
+        Arrays.fill(parentPaths, 0, parentPathIdsByOakPath.size(), null);
+        parentPathIdsByOakPath.clear();
+        size = 0;
+        generation++;
+        Arrays.fill(commitInfos, 0, commitCount, null);
+        commitCount = 0;
+        pendingCommit = currentCommit;
+    }
+
+    //-------------------------------------------------------< EventBatch >--
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public int getType(int index) {
+        return types[checkIndex(index)];
+    }
+
+    @Override
+    public int getParentPathId(int index) {
+        return parentPathIds[checkIndex(index)];
+    }
+
+    @Override
+    public int getParentPathCount() {
+        return parentPathIdsByOakPath.size();
+    }
+
+    @NotNull
+    @Override
+    public String getParentPath(int parentPathId) {
+        if (parentPathId < 0 || parentPathId >= parentPathIdsByOakPath.size()) {
+            throw new IndexOutOfBoundsException("Parent path id: " + parentPathId);
+        }
+        return parentPaths[parentPathId];
+    }
+
+    @NotNull
+    @Override
+    public String getName(int index) {
+        return names[checkIndex(index)];
+    }
+
+    @NotNull
+    @Override
+    public String getPath(int index) {
+        return PathUtils.concat(parentPaths[getParentPathId(index)], names[index]);
+    }
+
+    @Nullable
+    @Override
+    public String getMoveInfo(int index) {
+        return moveInfos[checkIndex(index)];
+    }
+
+    @Override
+    public boolean isExternal(int index) {
+        return getCommitInfo(index).isExternal();
+    }
+
+    @Nullable
+    @Override
+    public String getUserID(int index) {
+        return getCommitInfo(index).getUserId();
+    }
+
+    @Nullable
+    @Override
+    public String getUserData(int index) {
+        CommitInfo info = getCommitInfo(index);
+        Object userData = info.isExternal() ? null : info.getInfo().get(USER_DATA);
+        return userData instanceof String ? (String) userData : null;
+    }
+
+    @Override
+    public long getDate(int index) {
+        return getCommitInfo(index).getDate();
+    }
+
+    @Override
+    public String toString() {
+        return "EventBatch{size=" + size + ", parentPaths=" + getParentPathCount() + ", commits=" + commitCount + "}";
+    }
+
+    private CommitInfo getCommitInfo(int index) {
+        return commitInfos[commits[checkIndex(index)]];
+    }
+
+    private int checkIndex(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", size: " + size);
+        }
+        return index;
+    }
+
+}
@@ -32,6 +32,7 @@ import org.apache.jackrabbit.oak.namepath.NamePathMapper;
 import org.apache.jackrabbit.oak.plugins.observation.EventGenerator;
 import org.apache.jackrabbit.oak.plugins.observation.EventHandler;
 import org.apache.jackrabbit.oak.plugins.observation.FilteredHandler;
+import org.apache.jackrabbit.oak.plugins.observation.SharedDiff;
 import org.apache.jackrabbit.oak.plugins.observation.filter.EventAggregator;
 import org.apache.jackrabbit.oak.plugins.observation.filter.EventFilter;
 import org.apache.jackrabbit.oak.spi.commit.CommitInfo;
@@ -56,20 +57,41 @@ class EventQueue implements EventIterator {
             @NotNull NodeState before, @NotNull NodeState after,
             @NotNull Iterable<String> basePaths, @NotNull EventFilter filter,
             @Nullable EventAggregator aggregator) {
-        this.generator = new EventGenerator();
+        this(mapper, blobAccessProvider, info, before, after, basePaths, filter, aggregator, null);
+    }
+
+    public EventQueue(
+            @NotNull NamePathMapper mapper,
+            @NotNull BlobAccessProvider blobAccessProvider, CommitInfo info,
+            @NotNull NodeState before, @NotNull NodeState after,
+            @NotNull Iterable<String> basePaths, @NotNull EventFilter filter,
+            @Nullable EventAggregator aggregator, @Nullable SharedDiff sharedDiff) {
+        this.generator = new EventGenerator(sharedDiff);
         EventFactory factory = new EventFactory(mapper, blobAccessProvider, info);
         EventHandler handler = new FilteredHandler(
                 filter, new QueueingHandler(this, factory, aggregator, before, after));
         for (String path : basePaths) {
-            addHandler(before, after, path, handler, generator);
+            addHandler(before, after, path, handler, generator, sharedDiff);
         }
     }
 
-    private static void addHandler(NodeState before, NodeState after, String path,
-            EventHandler handler, EventGenerator generator) {
+    static void addHandler(NodeState before, NodeState after, String path,
+            EventHandler handler, EventGenerator generator, SharedDiff sharedDiff) {
         for (String name : PathUtils.elements(path)) {
-            before = before.getChildNode(name);
-            after = after.getChildNode(name);
+            if (sharedDiff == null) {
+                before = before.getChildNode(name);
+                after = after.getChildNode(name);
+            } else {
+                // use the states of the shared diff, so that the diff
+                // of the subtree is shared with other listeners as well
+                NodeState[] states = sharedDiff.getChildNodes(before, after, name);
+                if (states == null) {
+                    // no changes below this path
+                    return;
+                }
+                before = states[0];
+                after = states[1];
+            }
             handler = handler.getChildHandler(name, before, after);
             if (handler == null) {
                 return;
@@ -39,6 +39,7 @@ import javax.jcr.RepositoryException;
 import javax.jcr.UnsupportedRepositoryOperationException;
 import javax.jcr.nodetype.NoSuchNodeTypeException;
 import javax.jcr.nodetype.NodeTypeIterator;
+import javax.jcr.observation.EventIterator;
 import javax.jcr.observation.EventJournal;
 import javax.jcr.observation.EventListener;
 import javax.jcr.observation.EventListenerIterator;
@@ -52,6 +53,8 @@ import org.apache.jackrabbit.oak.api.Root;
 import org.apache.jackrabbit.oak.api.blob.BlobAccessProvider;
 import org.apache.jackrabbit.oak.commons.PathUtils;
 import org.apache.jackrabbit.oak.jcr.delegate.SessionDelegate;
+import org.apache.jackrabbit.oak.jcr.observation.batch.BatchEventListener;
+import org.apache.jackrabbit.oak.jcr.observation.batch.EventBatch;
 import org.apache.jackrabbit.oak.jcr.session.SessionContext;
 import org.apache.jackrabbit.oak.namepath.NamePathMapper;
 import org.apache.jackrabbit.oak.plugins.nodetype.ReadOnlyNodeTypeManager;
@@ -162,9 +165,13 @@ public class ObservationManagerImpl implements JackrabbitObservationManager {
             // TODO sharing the namePathMapper across different thread might lead to lock contention.
             // If this turns out to be problematic we might create a dedicated snapshot for each
             // session. See OAK-1368.
+            BatchEventListener batchListener = null;
+            if (listener instanceof BatchEventListener) {
+                batchListener = new RefreshingBatchEventListener((BatchEventListener) listener);
+            }
             processor = new ChangeProcessor(sessionDelegate.getContentSession(), namePathMapper,
                     tracker, filterProvider, statisticManager, queueLength,
-                    commitRateLimiter, blobAccessProvider);
+                    commitRateLimiter, blobAccessProvider, batchListener);
             processors.put(listener, processor);
             processor.start(whiteboard);
         } else {
@@ -225,6 +232,11 @@ public class ObservationManagerImpl implements JackrabbitObservationManager {
         OakEventFilterImpl oakEventFilter = null;
         if (filter instanceof OakEventFilterImpl) {
             oakEventFilter = (OakEventFilterImpl) filter;
+            if (oakEventFilter.getAggregator() != null && listener instanceof BatchEventListener) {
+                // the events of a batch listener are not aggregated
+                throw new UnsupportedRepositoryOperationException(
+                        "Event aggregation is not supported for a BatchEventListener");
+            }
         }
 
         int eventTypes = filter.getEventTypes();
@@ -475,6 +487,39 @@ public class ObservationManagerImpl implements JackrabbitObservationManager {
         }
     }
 
+    /**
+     * Refreshes the session before each batch, as the {@link WarningListenerTracker}
+     * does before each delivery to an event listener.
+     */
+    private class RefreshingBatchEventListener implements BatchEventListener {
+        private final BatchEventListener listener;
+
+        RefreshingBatchEventListener(BatchEventListener listener) {
+            this.listener = listener;
+        }
+
+        @Override
+        public void onEvents(@NotNull EventBatch batch) {
+            sessionDelegate.refreshAtNextAccess();
+            listener.onEvents(batch);
+        }
+
+        @Override
+        public int getMaxBatchSize() {
+            return listener.getMaxBatchSize();
+        }
+
+        @Override
+        public long getMaxBatchDelay() {
+            return listener.getMaxBatchDelay();
+        }
+
+        @Override
+        public void onEvent(EventIterator events) {
+            listener.onEvent(events);
+        }
+    }
+
     private class WarningListenerTracker extends ListenerTracker {
         private final boolean enableWarning;
 
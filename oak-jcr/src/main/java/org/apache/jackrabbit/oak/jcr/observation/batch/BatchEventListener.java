@@ -0,0 +1,76 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.oak.jcr.observation.batch;
+
+import javax.jcr.observation.EventIterator;
+import javax.jcr.observation.EventListener;
+
+import org.jetbrains.annotations.NotNull;
+import org.osgi.annotation.versioning.ConsumerType;
+
+/**
+ * An event listener that receives events in batches instead of one
+ * {@link EventIterator} per commit. The events are passed in a compact,
+ * columnar {@link EventBatch}, and no {@link javax.jcr.observation.Event}
+ * objects are created. This is intended for listeners that receive a high
+ * volume of events, such as replication.
+ * <p>
+ * A batch listener is registered like any other event listener, through the
+ * {@link javax.jcr.observation.ObservationManager} and with the same filters.
+ * Oak then calls {@link #onEvents(EventBatch)} instead of
+ * {@link #onEvent(EventIterator)}, which is never called and can be left
+ * empty.
+ * <p>
+ * While the listener keeps up with the commits, the events of each commit
+ * are delivered as soon as they are available. While commits are queued for
+ * the listener, the events of several commits are collected in one batch,
+ * until the batch reaches {@link #getMaxBatchSize()} events, or its first
+ * event is older than {@link #getMaxBatchDelay()} milliseconds. The events of
+ * a commit that is larger than the maximum batch size are split across
+ * batches.
+ * <p>
+ * Event aggregation ({@link org.apache.jackrabbit.oak.jcr.observation.filter.OakEventFilter#withNodeTypeAggregate(String[], String[])})
+ * is not supported for batch listeners. Events that are still collected when
+ * the listener is removed are not delivered.
+ */
+@ConsumerType
+public interface BatchEventListener extends EventListener {
+
+    /**
+     * Receive a batch of events. The batch is only valid during this call:
+     * it is reused for the following batches.
+     *
+     * @param batch the events
+     */
+    void onEvents(@NotNull EventBatch batch);
+
+    /**
+     * @return the maximum number of events of a batch
+     */
+    default int getMaxBatchSize() {
+        return 1000;
+    }
+
+    /**
+     * @return the maximum number of milliseconds events are collected
+     *         before they are delivered
+     */
+    default long getMaxBatchDelay() {
+        return 1000;
+    }
+
+}
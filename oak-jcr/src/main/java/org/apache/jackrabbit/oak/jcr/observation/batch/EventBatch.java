@@ -0,0 +1,124 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.oak.jcr.observation.batch;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.osgi.annotation.versioning.ProviderType;
+
+/**
+ * A batch of events, possibly of several commits, in columnar form: the
+ * events are addressed by their index in the batch, from 0 to
+ * {@link #size()} - 1. Parent paths are stored once per batch and referenced
+ * by id, so that the events of a node share the same path.
+ * <p>
+ * Paths and names are JCR paths and names, mapped with the namespace
+ * mappings of the session of the listener.
+ */
+@ProviderType
+public interface EventBatch {
+
+    /**
+     * @return the number of events in this batch
+     */
+    int size();
+
+    /**
+     * @param index the index of the event
+     * @return the type of the event, for example
+     *         {@link javax.jcr.observation.Event#NODE_ADDED}
+     */
+    int getType(int index);
+
+    /**
+     * @param index the index of the event
+     * @return the id of the path of the parent node of the event: for node
+     *         events the parent of the node, for property events the node of
+     *         the property
+     */
+    int getParentPathId(int index);
+
+    /**
+     * @return the number of distinct parent paths in this batch. The ids of
+     *         the parent paths range from 0 to this number - 1.
+     */
+    int getParentPathCount();
+
+    /**
+     * @param parentPathId the id of a parent path
+     * @return the parent path
+     */
+    @NotNull
+    String getParentPath(int parentPathId);
+
+    /**
+     * @param index the index of the event
+     * @return the name of the node or the property of the event
+     */
+    @NotNull
+    String getName(int index);
+
+    /**
+     * Get the path of the node or the property of the event. This creates a
+     * new string on each call; consider using {@link #getParentPathId(int)}
+     * and {@link #getName(int)} instead.
+     *
+     * @param index the index of the event
+     * @return the path of the event
+     */
+    @NotNull
+    String getPath(int index);
+
+    /**
+     * @param index the index of the event
+     * @return for a {@link javax.jcr.observation.Event#NODE_MOVED} event of a
+     *         move, the path of the source of the move. For a
+     *         {@code NODE_MOVED} event of a reorder, the name of the node
+     *         the node was ordered before, or {@code null} if it was moved
+     *         to the end. {@code null} for all other events.
+     */
+    @Nullable
+    String getMoveInfo(int index);
+
+    /**
+     * @param index the index of the event
+     * @return {@code true} if the event is of a commit of another cluster
+     *         node
+     */
+    boolean isExternal(int index);
+
+    /**
+     * @param index the index of the event
+     * @return the user id of the commit of the event
+     */
+    @Nullable
+    String getUserID(int index);
+
+    /**
+     * @param index the index of the event
+     * @return the user data of the commit of the event
+     */
+    @Nullable
+    String getUserData(int index);
+
+    /**
+     * @param index the index of the event
+     * @return the time of the commit of the event
+     */
+    long getDate(int index);
+
+}
@@ -33,4 +33,12 @@ public interface ConsolidatedListenerMBean {
     int getListenersCount();
 
     int getObserversCount();
+
+    /**
+     * The ratio of the node diffs of all listeners that were shared with
+     * other listeners, instead of being computed again.
+     *
+     * @return the ratio, between 0 and 1
+     */
+    double getDiffSharingRatio();
 }
@@ -0,0 +1,109 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.jackrabbit.oak.jcr.observation;
+
+import static org.junit.Assert.assertEquals;
+
+import org.apache.jackrabbit.oak.stats.Clock;
+import org.junit.Test;
+
+public class CommitThrottleTest {
+
+    private final ManualClock clock = new ManualClock();
+
+    private final CommitThrottle throttle = new CommitThrottle(100, 0.8, 10000, clock);
+
+    @Test
+    public void unknownDrainRate() {
+        assertEquals(0, throttle.getDrainRate(), 0);
+        assertEquals(0, throttle.getDelay(80));
+        // linear to the fill ratio
+        assertEquals(5001, throttle.getDelay(90));
+    }
+
+    @Test
+    public void proportionalToDrainTime() {
+        drain(10, 10);
+        assertEquals(100, throttle.getDrainRate(), 0.001);
+        assertEquals(0, throttle.getDelay(80));
+        // the time to drain the 10 changes above the threshold
+        assertEquals(100, throttle.getDelay(90));
+        assertEquals(10, throttle.getDelay(81));
+
+        // the listener gets faster
+        drain(100, 1);
+        assertEquals(10, throttle.getDelay(90), 1);
+    }
+
+    @Test
+    public void stalledListener() {
+        // one more change is waiting for the listener
+        drain(10, 10, 1);
+        clock.time += 1000;
+        assertEquals(1, throttle.getDrainRate(), 0.001);
+        assertEquals(1000, throttle.getDelay(81));
+        assertEquals(10000, throttle.getDelay(100));
+    }
+
+    @Test
+    public void idleThenBurst() {
+        drain(10, 10);
+        // the queue is empty: idle time is not slow draining
+        clock.time += 60000;
+        assertEquals(100, throttle.getDrainRate(), 0.001);
+        assertEquals(10, throttle.getDelay(81));
+
+        // a burst of changes: the delay is based on the drain rate
+        for (int i = 1; i <= 90; i++) {
+            throttle.added();
+        }
+        assertEquals(100, throttle.getDelay(90));
+        clock.time += 10;
+        throttle.removed(89);
+        assertEquals(100, throttle.getDrainRate(), 0.001);
+        assertEquals(100, throttle.getDelay(90));
+    }
+
+    private void drain(int count, long intervalMillis) {
+        drain(count, intervalMillis, 0);
+    }
+
+    private void drain(int count, long intervalMillis, int remaining) {
+        // the changes are added at once, and the last one is delivered just now
+        for (int i = 0; i < count + remaining; i++) {
+            throttle.added();
+        }
+        for (int i = 0; i < count; i++) {
+            clock.time += intervalMillis;
+            throttle.removed(count + remaining - i - 1);
+        }
+    }
+
+    private static class ManualClock extends Clock {
+
+        long time;
+
+        @Override
+        public long getTime() {
+            return time;
+        }
+
+    }
+
+}
@@ -57,6 +57,7 @@ import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Predicate;
 
 import javax.jcr.AccessDeniedException;
@@ -69,6 +70,7 @@ import javax.jcr.PropertyType;
 import javax.jcr.ReferentialIntegrityException;
 import javax.jcr.RepositoryException;
 import javax.jcr.Session;
+import javax.jcr.UnsupportedRepositoryOperationException;
 import javax.jcr.Value;
 import javax.jcr.lock.LockException;
 import javax.jcr.nodetype.ConstraintViolationException;
@@ -101,6 +103,8 @@ import org.apache.jackrabbit.oak.api.PropertyState;
 import org.apache.jackrabbit.oak.commons.PathUtils;
 import org.apache.jackrabbit.oak.fixture.NodeStoreFixture;
 import org.apache.jackrabbit.oak.jcr.AbstractRepositoryTest;
+import org.apache.jackrabbit.oak.jcr.observation.batch.BatchEventListener;
+import org.apache.jackrabbit.oak.jcr.observation.batch.EventBatch;
 import org.apache.jackrabbit.oak.jcr.observation.filter.FilterFactory;
 import org.apache.jackrabbit.oak.jcr.observation.filter.OakEventFilter;
 import org.apache.jackrabbit.oak.plugins.observation.filter.ChangeSetFilterImpl;
@@ -648,6 +652,120 @@ public class ObservationTest extends AbstractRepositoryTest {
         assertTrue("Unexpected events: " + unexpected, unexpected.isEmpty());
     }
 
+    @Test
+    public void batchListener() throws Exception {
+        final Set<String> events = synchronizedSet(Sets.<String>newHashSet());
+        BatchEventListener listener = new BatchEventListener() {
+            @Override
+            public void onEvents(EventBatch batch) {
+                for (int i = 0; i < batch.size(); i++) {
+                    String moveInfo = batch.getMoveInfo(i);
+                    events.add(batch.getType(i) + ":" + batch.getPath(i)
+                            + (moveInfo == null ? "" : "<" + moveInfo)
+                            + (batch.isExternal(i) ? "" : "@" + batch.getUserID(i)));
+                    assertEquals(batch.getPath(i), PathUtils.concat(
+                            batch.getParentPath(batch.getParentPathId(i)), batch.getName(i)));
+                }
+            }
+
+            @Override
+            public void onEvent(EventIterator events) {
+                fail("onEvent must not be called for batch listeners");
+            }
+        };
+        observationManager.addEventListener(listener, ALL_EVENTS, TEST_PATH, true, null, null, false);
+        try {
+            Node n = getNode(TEST_PATH);
+            Session session = n.getSession();
+            n.addNode("a").setProperty("p", "v");
+            session.save();
+            session.move(TEST_PATH + "/a", TEST_PATH + "/b");
+            session.save();
+
+            String user = "@" + session.getUserID();
+            Set<String> expected = newHashSet(
+                    NODE_ADDED + ":" + TEST_PATH + "/a" + user,
+                    PROPERTY_ADDED + ":" + TEST_PATH + "/a/p" + user,
+                    PROPERTY_ADDED + ":" + TEST_PATH + "/a/jcr:primaryType" + user,
+                    NODE_MOVED + ":" + TEST_PATH + "/b<" + TEST_PATH + "/a" + user);
+            long end = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(TIME_OUT);
+            while (!events.containsAll(expected) && System.currentTimeMillis() < end) {
+                Thread.sleep(10);
+            }
+            assertTrue("Missing events: " + Sets.difference(expected, events), events.containsAll(expected));
+        } finally {
+            observationManager.removeEventListener(listener);
+        }
+    }
+
+    @Test
+    public void batchListenerFailure() throws Exception {
+        final AtomicInteger calls = new AtomicInteger();
+        final AtomicInteger received = new AtomicInteger();
+        BatchEventListener listener = new BatchEventListener() {
+            @Override
+            public void onEvents(EventBatch batch) {
+                received.addAndGet(batch.size());
+                if (calls.incrementAndGet() == 1) {
+                    throw new IllegalStateException("failed to process the first batch");
+                }
+            }
+
+            @Override
+            public int getMaxBatchSize() {
+                return 2;
+            }
+
+            @Override
+            public void onEvent(EventIterator events) {
+                fail("onEvent must not be called for batch listeners");
+            }
+        };
+        observationManager.addEventListener(listener, NODE_ADDED | PROPERTY_ADDED, TEST_PATH, true,
+                null, null, false);
+        try {
+            Node n = getNode(TEST_PATH);
+            Node a = n.addNode("a");
+            for (int i = 0; i < 5; i++) {
+                a.setProperty("p" + i, i);
+            }
+            n.getSession().save();
+
+            // the events after the failed batch are still delivered:
+            // the node, jcr:primaryType and the 5 properties
+            long end = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(TIME_OUT);
+            while (received.get() < 7 && System.currentTimeMillis() < end) {
+                Thread.sleep(10);
+            }
+            assertEquals(7, received.get());
+            assertTrue(calls.get() > 1);
+        } finally {
+            observationManager.removeEventListener(listener);
+        }
+    }
+
+    @Test
+    public void batchListenerAggregate() throws Exception {
+        BatchEventListener listener = new BatchEventListener() {
+            @Override
+            public void onEvents(EventBatch batch) {
+            }
+
+            @Override
+            public void onEvent(EventIterator events) {
+            }
+        };
+        JackrabbitEventFilter filter = new JackrabbitEventFilter()
+                .setAbsPath(TEST_PATH).setIsDeep(true).setEventTypes(ALL_EVENTS);
+        filter = FilterFactory.wrap(filter).withNodeTypeAggregate(new String[] {"nt:unstructured"}, new String[] {""});
+        try {
+            ((JackrabbitObservationManager) observationManager).addEventListener(listener, filter);
+            fail("Aggregation is not supported for batch listeners");
+        } catch (UnsupportedRepositoryOperationException e) {
+            // expected
+        }
+    }
+
     @Test
     public void testRename() throws RepositoryException, ExecutionException, InterruptedException {
         Node testNode = getNode(TEST_PATH);
@@ -35,6 +35,24 @@ public interface CopyOnReadStatsMBean {
 
     boolean isPrefetchEnabled();
 
+    /**
+     * Get the state of the prefetch of the index files, per index (only if
+     * prefetch is enabled).
+     *
+     * @return the status per index
+     */
+    TabularData getPrefetchStatus();
+
+    /**
+     * Whether all files of the given index were copied locally at least once
+     * (only if prefetch is enabled). This can be used to wait for an index to
+     * be warm, for example in health checks.
+     *
+     * @param indexPath the index path
+     * @return true if the index is ready
+     */
+    boolean isIndexReady(String indexPath);
+
     int getReaderLocalReadCount();
 
     int getReaderRemoteReadCount();
@@ -80,4 +98,24 @@ public interface CopyOnReadStatsMBean {
     String getGarbageCollectedSize();
 
     String getSkippedFromUploadSize();
+
+    /**
+     * Get the number of index file blocks read from the block cache. The
+     * block cache is used for index files that are read from the NodeStore.
+     *
+     * @return the hit count, or 0 if the block cache is disabled
+     */
+    long getBlockCacheHitCount();
+
+    /**
+     * Get the number of index file blocks that were not in the block cache
+     * and were read from the NodeStore.
+     *
+     * @return the miss count, or 0 if the block cache is disabled
+     */
+    long getBlockCacheMissCount();
+
+    String getBlockCacheSize();
+
+    String getBlockCacheMaxSize();
 }
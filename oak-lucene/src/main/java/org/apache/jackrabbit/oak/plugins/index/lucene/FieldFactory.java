@@ -31,6 +31,7 @@ import org.apache.jackrabbit.oak.plugins.index.search.FieldNames;
 import org.apache.jackrabbit.oak.plugins.index.search.spi.binary.BlobByteSource;
 import org.apache.jackrabbit.util.ISO8601;
 import org.apache.lucene.document.*;
+import org.apache.lucene.util.BytesRef;
 
 import static org.apache.lucene.document.Field.Store.NO;
 import static org.apache.lucene.document.Field.Store.YES;
@@ -95,6 +96,17 @@ public final class FieldFactory {
         return new StringField(FieldNames.PATH, path, YES);
     }
 
+    /**
+     * Create a doc values field for the path, so that the path of a document
+     * can be read without loading its stored fields.
+     *
+     * @param path the path
+     * @return the field
+     */
+    public static Field newPathDocValuesField(String path) {
+        return new BinaryDocValuesField(FieldNames.PATH, new BytesRef(path));
+    }
+
     public static Field newPropertyField(String name, String value,
             boolean tokenized, boolean stored) {
         if (tokenized) {
@@ -165,6 +165,10 @@ public class IndexAugmentorFactory {
         fulltextQueryTermsProviderMap = Collections.emptyMap();
     }
 
+    boolean hasIndexFieldProviders() {
+        return !indexFieldProviderMap.isEmpty();
+    }
+
     boolean isStateEmpty() {
         return indexFieldProviders.size() == 0 &&
                 indexFieldProviderMap.size() == 0 &&
@@ -28,6 +28,10 @@ import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
@@ -46,6 +50,7 @@ import org.apache.jackrabbit.guava.common.collect.ImmutableSet;
 import org.apache.jackrabbit.guava.common.collect.Sets;
 import org.apache.jackrabbit.guava.common.util.concurrent.Monitor;
 import org.apache.commons.io.FileUtils;
+import org.apache.jackrabbit.oak.plugins.index.lucene.directory.BlobBlockCache;
 import org.apache.jackrabbit.oak.plugins.index.lucene.directory.CopyOnReadDirectory;
 import org.apache.jackrabbit.oak.plugins.index.lucene.directory.CopyOnWriteDirectory;
 import org.apache.jackrabbit.oak.plugins.index.lucene.directory.DirectoryUtils;
@@ -59,6 +64,7 @@ import org.apache.lucene.store.FSDirectory;
 import org.apache.lucene.store.FilterDirectory;
 import org.apache.lucene.store.NoLockFactory;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -76,6 +82,18 @@ public class IndexCopier implements CopyOnReadStatsMBean, Closeable {
     private static final int MAX_FAILURE_ENTRIES = 10000;
     private static final String WORK_DIR_NAME = "indexWriterDir";
 
+    /**
+     * The maximum number of index files that are copied concurrently when
+     * prefetching (shared by all indexes).
+     */
+    private static final int PREFETCH_THREADS = Integer.getInteger("oak.lucene.prefetchThreads", 4);
+
+    /**
+     * The maximum download rate when prefetching index files, in bytes per
+     * second. If 0 (the default), the rate is not limited.
+     */
+    private static final long PREFETCH_MAX_BYTES_PER_SECOND = Long.getLong("oak.lucene.prefetchMaxBytesPerSecond", 0);
+
     private static final Logger log = LoggerFactory.getLogger(IndexCopier.class);
     private final Executor executor;
     private final File indexWorkDir;
@@ -110,6 +128,13 @@ public class IndexCopier implements CopyOnReadStatsMBean, Closeable {
     private final IndexRootDirectory indexRootDirectory;
     private final Set<String> validatedIndexPaths = Sets.newConcurrentHashSet();
     private final IndexSanityChecker.IndexSanityStatistics indexSanityStatistics = new IndexSanityChecker.IndexSanityStatistics();
+    private final ConcurrentMap<String, PrefetchStatus> prefetchStatus = newConcurrentMap();
+    private final Object prefetchThrottleLock = new Object();
+    private int prefetchThreads = PREFETCH_THREADS;
+    private long prefetchMaxBytesPerSecond = PREFETCH_MAX_BYTES_PER_SECOND;
+    private long nextPrefetchNanos;
+    private ExecutorService prefetchExecutor;
+    private volatile BlobBlockCache blockCache;
 
     public IndexCopier(Executor executor, File indexRootDir) throws IOException {
         this(executor, indexRootDir, false);
@@ -145,6 +170,12 @@ public class IndexCopier implements CopyOnReadStatsMBean, Closeable {
     @Override
     public void close() throws IOException {
         this.closed = true;
+        synchronized (this) {
+            if (prefetchExecutor != null) {
+                prefetchExecutor.shutdown();
+                prefetchExecutor = null;
+            }
+        }
     }
 
     public boolean isClosed() {
@@ -431,6 +462,170 @@ public class IndexCopier implements CopyOnReadStatsMBean, Closeable {
 
     }
 
+    //~------------------------------------------< Prefetch >
+
+    /**
+     * Set the maximum number of index files that are copied concurrently when
+     * prefetching. Needs to be called before the first index is opened.
+     *
+     * @param prefetchThreads the number of threads (1 to copy the files in
+     *            the thread that opens the index)
+     */
+    public void setPrefetchThreads(int prefetchThreads) {
+        this.prefetchThreads = prefetchThreads;
+    }
+
+    /**
+     * Limit the download rate when prefetching index files.
+     *
+     * @param maxBytesPerSecond the maximum rate, or 0 for no limit
+     */
+    public void setPrefetchMaxBytesPerSecond(long maxBytesPerSecond) {
+        this.prefetchMaxBytesPerSecond = maxBytesPerSecond;
+    }
+
+    /**
+     * Set the block cache whose statistics are reported.
+     *
+     * @param blockCache the cache, or null if disabled
+     */
+    public void setBlockCache(@Nullable BlobBlockCache blockCache) {
+        this.blockCache = blockCache;
+    }
+
+    /**
+     * Get the executor used to copy the files of an index concurrently.
+     *
+     * @return the executor, or null if the files are to be copied by the
+     *         calling thread
+     */
+    public synchronized Executor getPrefetchExecutor() {
+        if (prefetchThreads <= 1 || closed) {
+            return null;
+        }
+        if (prefetchExecutor == null) {
+            ThreadPoolExecutor executor = new ThreadPoolExecutor(prefetchThreads, prefetchThreads,
+                    60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), new ThreadFactory() {
+                private final AtomicInteger counter = new AtomicInteger();
+
+                @Override
+                public Thread newThread(@NotNull Runnable r) {
+                    Thread thread = new Thread(r, "oak-lucene-prefetch-" + counter.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+            executor.allowCoreThreadTimeOut(true);
+            prefetchExecutor = executor;
+        }
+        return prefetchExecutor;
+    }
+
+    /**
+     * Wait until the given number of bytes may be downloaded, according to
+     * the configured maximum download rate.
+     *
+     * @param bytes the number of bytes to download
+     */
+    public void throttlePrefetch(long bytes) throws InterruptedException {
+        long maxBytesPerSecond = prefetchMaxBytesPerSecond;
+        if (maxBytesPerSecond <= 0) {
+            return;
+        }
+        long waitNanos;
+        synchronized (prefetchThrottleLock) {
+            long now = System.nanoTime();
+            long start = Math.max(now, nextPrefetchNanos);
+            nextPrefetchNanos = start + (long) ((double) bytes * TimeUnit.SECONDS.toNanos(1) / maxBytesPerSecond);
+            waitNanos = start - now;
+        }
+        if (waitNanos > 0) {
+            TimeUnit.NANOSECONDS.sleep(waitNanos);
+        }
+    }
+
+    /**
+     * Record that the files of an index are about to be prefetched.
+     *
+     * @param indexPath the index path
+     * @param fileCount the number of files
+     * @param size the total size of the files
+     * @return the status, to be updated while copying
+     */
+    public PrefetchStatus startPrefetch(String indexPath, int fileCount, long size) {
+        PrefetchStatus old = prefetchStatus.get(indexPath);
+        PrefetchStatus status = new PrefetchStatus(indexPath, fileCount, size,
+                old != null && old.isReady());
+        prefetchStatus.put(indexPath, status);
+        return status;
+    }
+
+    /**
+     * The state of the prefetch of the files of one index.
+     */
+    public static class PrefetchStatus {
+        private final String indexPath;
+        private final int fileCount;
+        private final long size;
+        private final boolean wasReady;
+        private final long startTime = System.currentTimeMillis();
+        private final AtomicInteger copiedFileCount = new AtomicInteger();
+        private final AtomicLong copiedSize = new AtomicLong();
+        private volatile long endTime;
+
+        PrefetchStatus(String indexPath, int fileCount, long size, boolean wasReady) {
+            this.indexPath = indexPath;
+            this.fileCount = fileCount;
+            this.size = size;
+            this.wasReady = wasReady;
+        }
+
+        public void fileCopied(long fileSize) {
+            copiedFileCount.incrementAndGet();
+            copiedSize.addAndGet(fileSize);
+        }
+
+        public void done() {
+            endTime = System.currentTimeMillis();
+        }
+
+        public boolean isDone() {
+            return endTime != 0;
+        }
+
+        /**
+         * Whether all files of the index were available locally at least
+         * once (this version, or a previous version of the index).
+         */
+        public boolean isReady() {
+            return wasReady || isDone();
+        }
+
+        public String getIndexPath() {
+            return indexPath;
+        }
+
+        public int getFileCount() {
+            return fileCount;
+        }
+
+        public int getCopiedFileCount() {
+            return copiedFileCount.get();
+        }
+
+        public long getSize() {
+            return size;
+        }
+
+        public long getCopiedSize() {
+            return copiedSize.get();
+        }
+
+        public long getDuration() {
+            return (isDone() ? endTime : System.currentTimeMillis()) - startTime;
+        }
+    }
+
     private void updateMaxScheduled(int val) {
         synchronized (maxScheduledForCopyCount){
             int current = maxScheduledForCopyCount.get();
@@ -545,6 +740,34 @@ public class IndexCopier implements CopyOnReadStatsMBean, Closeable {
         return prefetchEnabled;
     }
 
+    @Override
+    public TabularData getPrefetchStatus() {
+        TabularDataSupport tds;
+        try {
+            TabularType tt = new TabularType(PrefetchStatusData.class.getName(),
+                    "Lucene Index Prefetch Status", PrefetchStatusData.TYPE, new String[]{"indexPath"});
+            tds = new TabularDataSupport(tt);
+            for (PrefetchStatus status : prefetchStatus.values()) {
+                tds.put(new CompositeDataSupport(PrefetchStatusData.TYPE,
+                        PrefetchStatusData.FIELD_NAMES,
+                        new Object[]{status.getIndexPath(), status.isReady(), status.isDone(),
+                                status.getCopiedFileCount() + "/" + status.getFileCount(),
+                                humanReadableByteCount(status.getCopiedSize()) + "/"
+                                        + humanReadableByteCount(status.getSize()),
+                                status.getDuration()}));
+            }
+        } catch (OpenDataException e) {
+            throw new IllegalStateException(e);
+        }
+        return tds;
+    }
+
+    @Override
+    public boolean isIndexReady(String indexPath) {
+        PrefetchStatus status = prefetchStatus.get(indexPath);
+        return status != null && status.isReady();
+    }
+
     @Override
     public int getReaderLocalReadCount() {
         return readerLocalReadCount.get();
@@ -679,6 +902,30 @@ public class IndexCopier implements CopyOnReadStatsMBean, Closeable {
         return humanReadableByteCount(garbageCollectedSize.get());
     }
 
+    @Override
+    public long getBlockCacheHitCount() {
+        BlobBlockCache blockCache = this.blockCache;
+        return blockCache == null ? 0 : blockCache.getHitCount();
+    }
+
+    @Override
+    public long getBlockCacheMissCount() {
+        BlobBlockCache blockCache = this.blockCache;
+        return blockCache == null ? 0 : blockCache.getMissCount();
+    }
+
+    @Override
+    public String getBlockCacheSize() {
+        BlobBlockCache blockCache = this.blockCache;
+        return humanReadableByteCount(blockCache == null ? 0 : blockCache.getSize());
+    }
+
+    @Override
+    public String getBlockCacheMaxSize() {
+        BlobBlockCache blockCache = this.blockCache;
+        return humanReadableByteCount(blockCache == null ? 0 : blockCache.getMaxSize());
+    }
+
     private static class IndexMappingData {
         static final String[] FIELD_NAMES = new String[]{
                 "jcrPath",
@@ -714,6 +961,50 @@ public class IndexCopier implements CopyOnReadStatsMBean, Closeable {
         }
     }
 
+    private static class PrefetchStatusData {
+        static final String[] FIELD_NAMES = new String[]{
+                "indexPath",
+                "ready",
+                "done",
+                "files",
+                "size",
+                "durationMillis",
+        };
+
+        static final String[] FIELD_DESCRIPTIONS = new String[]{
+                "Index Path",
+                "Whether all files were copied locally at least once",
+                "Whether the prefetch of the current version is done",
+                "Copied files / total files",
+                "Copied size / total size",
+                "Duration in milliseconds",
+        };
+
+        static final OpenType[] FIELD_TYPES = new OpenType[]{
+                SimpleType.STRING,
+                SimpleType.BOOLEAN,
+                SimpleType.BOOLEAN,
+                SimpleType.STRING,
+                SimpleType.STRING,
+                SimpleType.LONG,
+        };
+
+        static final CompositeType TYPE = createCompositeType();
+
+        static CompositeType createCompositeType() {
+            try {
+                return new CompositeType(
+                        PrefetchStatusData.class.getName(),
+                        "Composite data type for the Index Prefetch Status",
+                        PrefetchStatusData.FIELD_NAMES,
+                        PrefetchStatusData.FIELD_DESCRIPTIONS,
+                        PrefetchStatusData.FIELD_TYPES);
+            } catch (OpenDataException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+
     public interface COWDirectoryTracker {
         void registerOpenedDirectory(@NotNull CopyOnWriteDirectory directory);
         void registerReindexingLocalDirectory(@NotNull File dir);
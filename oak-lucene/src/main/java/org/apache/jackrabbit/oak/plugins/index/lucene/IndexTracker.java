@@ -20,6 +20,16 @@ import java.io.IOException;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.jackrabbit.guava.common.collect.ImmutableMap;
 import org.apache.jackrabbit.guava.common.collect.Iterables;
@@ -42,6 +52,10 @@ import org.apache.jackrabbit.oak.spi.mount.Mounts;
 import org.apache.jackrabbit.oak.spi.state.EqualsDiff;
 import org.apache.jackrabbit.oak.spi.state.NodeState;
 import org.apache.jackrabbit.oak.spi.state.NodeStateUtils;
+import org.apache.jackrabbit.oak.stats.StatisticsProvider;
+import org.apache.jackrabbit.oak.stats.StatsOptions;
+import org.apache.jackrabbit.oak.stats.TimerStats;
+import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -82,10 +96,55 @@ public class IndexTracker {
     private final NRTIndexFactory nrtFactory;
     private final BadIndexTracker badIndexTracker = new BadIndexTracker();
 
-    private NodeState root = EMPTY_NODE;
+    /**
+     * The number of threads used to open changed indexes concurrently.
+     */
+    private static final int REOPEN_THREADS = Integer.getInteger("oak.indexTracker.reopenThreads", 4);
+
+    static final String REOPEN_TIME = "LUCENE_INDEX_REOPEN_TIME";
+
+    /**
+     * The executor used to open changed indexes concurrently. Created when
+     * first needed, and shut down when the tracker is closed.
+     */
+    private ExecutorService reopenExecutor;
+
+    /**
+     * The executor used to search indexes concurrently (for indexes that
+     * have parallel search enabled). Created when first needed, and shut
+     * down when the tracker is closed. Guarded by the publish lock.
+     */
+    private ExecutorService searchExecutor;
+
+    /**
+     * Guards changes to the root and the indices (but not the opening of
+     * indexes). Changes are published by replacing the map.
+     */
+    private final Object publishLock = new Object();
+
+    /**
+     * The number of locks used to open indexes. A lock is picked by the hash
+     * of the index path, so that there is no need to remove the locks of
+     * indexes that were removed.
+     */
+    private static final int OPEN_LOCK_COUNT = 64;
+
+    /**
+     * Locks used to open a not yet opened index, by index path.
+     */
+    private final Object[] openLocks = new Object[OPEN_LOCK_COUNT];
+    {
+        for (int i = 0; i < openLocks.length; i++) {
+            openLocks[i] = new Object();
+        }
+    }
+
+    private volatile NodeState root = EMPTY_NODE;
 
     private AsyncIndexInfoService asyncIndexInfoService;
 
+    private StatisticsProvider statisticsProvider = StatisticsProvider.NOOP;
+
     private volatile Map<String, LuceneIndexNodeManager> indices = emptyMap();
 
     private volatile boolean refresh;
@@ -113,8 +172,25 @@ public class IndexTracker {
     }
 
     public synchronized void close() {
-        Map<String, LuceneIndexNodeManager> indices = this.indices;
-        this.indices = emptyMap();
+        closeIndexes();
+        if (reopenExecutor != null) {
+            reopenExecutor.shutdown();
+            reopenExecutor = null;
+        }
+        synchronized (publishLock) {
+            if (searchExecutor != null) {
+                searchExecutor.shutdown();
+                searchExecutor = null;
+            }
+        }
+    }
+
+    private synchronized void closeIndexes() {
+        Map<String, LuceneIndexNodeManager> indices;
+        synchronized (publishLock) {
+            indices = this.indices;
+            this.indices = emptyMap();
+        }
 
         for (Map.Entry<String, LuceneIndexNodeManager> entry : indices.entrySet()) {
             try {
@@ -127,8 +203,10 @@ public class IndexTracker {
 
     public synchronized void update(final NodeState root) {
         if (refresh) {
-            this.root = root;
-            close();
+            synchronized (publishLock) {
+                this.root = root;
+            }
+            closeIndexes();
             refresh = false;
             log.info("Refreshed the opened indexes");
         } else {
@@ -149,15 +227,22 @@ public class IndexTracker {
         return asyncIndexInfoService;
     }
 
+    public void setStatisticsProvider(StatisticsProvider statisticsProvider) {
+        this.statisticsProvider = checkNotNull(statisticsProvider);
+    }
+
     private synchronized void diffAndUpdate(final NodeState root) {
         if (asyncIndexInfoService != null && !asyncIndexInfoService.hasIndexerUpdatedForAnyLane(this.root, root)) {
             log.trace("No changed detected in async indexer state. Skipping further diff");
-            this.root = root;
+            synchronized (publishLock) {
+                this.root = root;
+            }
             return;
         }
 
+        NodeState before = this.root;
         Map<String, LuceneIndexNodeManager> original = indices;
-        final Map<String, LuceneIndexNodeManager> updates = newHashMap();
+        final Map<String, NodeState> changed = newHashMap();
 
         Set<String> indexPaths = Sets.newHashSet();
         indexPaths.addAll(original.keySet());
@@ -168,46 +253,158 @@ public class IndexTracker {
             editors.add(new SubtreeEditor(new DefaultEditor() {
                 @Override
                 public void leave(NodeState before, NodeState after) {
-                    try {
-                        if (isStatusChanged(before, after) || isIndexDefinitionChanged(before, after)) {
-                            long start = PERF_LOGGER.start();
-                            LuceneIndexNodeManager index = LuceneIndexNodeManager.open(path, root, after, readerFactory, nrtFactory);
-                            PERF_LOGGER.end(start, -1, "[{}] Index found to be updated. Reopening the LuceneIndexNode", path);
-                            updates.put(path, index); // index can be null
-                        }
-                    } catch (IOException e) {
-                        badIndexTracker.markBadPersistedIndex(path, e);
+                    if (isStatusChanged(before, after) || isIndexDefinitionChanged(before, after)) {
+                        changed.put(path, after);
                     }
                 }
             }, Iterables.toArray(PathUtils.elements(path), String.class)));
         }
 
-        EditorDiff.process(CompositeEditor.compose(editors), this.root, root);
-        this.root = root;
+        EditorDiff.process(CompositeEditor.compose(editors), before, root);
+
+        // the changed indexes are opened without holding the publish lock,
+        // so that queries can continue to use the current index nodes
+        Map<String, LuceneIndexNodeManager> updates = openAll(changed, root);
+
+        Map<String, LuceneIndexNodeManager> closed = newHashMap();
+        synchronized (publishLock) {
+            Map<String, LuceneIndexNodeManager> current = indices;
+            for (Map.Entry<String, LuceneIndexNodeManager> e : current.entrySet()) {
+                String path = e.getKey();
+                if (updates.containsKey(path)) {
+                    closed.put(path, e.getValue());
+                } else if (!original.containsKey(path) && isChanged(path, before, root)) {
+                    // opened concurrently by a query, based on the old root;
+                    // it will be opened again when needed
+                    closed.put(path, e.getValue());
+                }
+            }
+            if (!closed.isEmpty() || !updates.isEmpty()) {
+                indices = ImmutableMap.<String, LuceneIndexNodeManager>builder()
+                        .putAll(Maps.filterKeys(current, not(in(closed.keySet()))))
+                        .putAll(Maps.filterValues(updates, notNull()))
+                        .build();
+            }
+            this.root = root;
+        }
 
         if (!updates.isEmpty()) {
-            indices = ImmutableMap.<String, LuceneIndexNodeManager>builder()
-                    .putAll(Maps.filterKeys(original, not(in(updates.keySet()))))
-                    .putAll(Maps.filterValues(updates, notNull()))
-                    .build();
-
             badIndexTracker.markGoodIndexes(updates.keySet());
+        }
+
+        //This might take some time as close need to acquire the
+        //write lock which might be held by current running searches
+        //Given that Tracker is now invoked from a BackgroundObserver
+        //not a high concern
+        for (Map.Entry<String, LuceneIndexNodeManager> e : closed.entrySet()) {
+            closeQuietly(e.getKey(), e.getValue());
+        }
+    }
+
+    private static void closeQuietly(String path, LuceneIndexNodeManager index) {
+        try {
+            index.close();
+        } catch (IOException e) {
+            log.error("Failed to close Lucene index at " + path, e);
+        }
+    }
 
-            //This might take some time as close need to acquire the
-            //write lock which might be held by current running searches
-            //Given that Tracker is now invoked from a BackgroundObserver
-            //not a high concern
-            for (String path : updates.keySet()) {
-                LuceneIndexNodeManager index = original.get(path);
+    /**
+     * Open the given indexes, concurrently if there are multiple.
+     *
+     * @param changed the index paths and the index definition nodes
+     * @param root the root node state
+     * @return the opened indexes (the value is null if there is no index data
+     *         yet), without the indexes that could not be opened
+     */
+    private Map<String, LuceneIndexNodeManager> openAll(Map<String, NodeState> changed, NodeState root) {
+        Map<String, LuceneIndexNodeManager> updates = newHashMap();
+        if (changed.size() <= 1 || REOPEN_THREADS <= 1) {
+            for (Map.Entry<String, NodeState> e : changed.entrySet()) {
+                String path = e.getKey();
+                try {
+                    updates.put(path, reopen(path, root, e.getValue()));
+                } catch (IOException ex) {
+                    badIndexTracker.markBadPersistedIndex(path, ex);
+                }
+            }
+            return updates;
+        }
+        Executor executor = getReopenExecutor();
+        Map<String, Future<LuceneIndexNodeManager>> futures = newHashMap();
+        for (Map.Entry<String, NodeState> e : changed.entrySet()) {
+            FutureTask<LuceneIndexNodeManager> task = new FutureTask<>(
+                    () -> reopen(e.getKey(), root, e.getValue()));
+            executor.execute(task);
+            futures.put(e.getKey(), task);
+        }
+        boolean interrupted = false;
+        for (Map.Entry<String, Future<LuceneIndexNodeManager>> e : futures.entrySet()) {
+            String path = e.getKey();
+            while (true) {
                 try {
-                    if (index != null) {
-                        index.close();
+                    updates.put(path, e.getValue().get());
+                    break;
+                } catch (InterruptedException ex) {
+                    // the index needs to be published (or closed) in any case
+                    interrupted = true;
+                } catch (ExecutionException ex) {
+                    Throwable cause = ex.getCause();
+                    if (cause instanceof IOException) {
+                        badIndexTracker.markBadPersistedIndex(path, (IOException) cause);
+                    } else {
+                        log.error("Failed to open Lucene index at " + path, cause);
                     }
-                } catch (IOException e) {
-                    log.error("Failed to close Lucene index at " + path, e);
+                    break;
                 }
             }
         }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        return updates;
+    }
+
+    private LuceneIndexNodeManager reopen(String path, NodeState root, NodeState definition) throws IOException {
+        long start = PERF_LOGGER.start();
+        TimerStats.Context timer = statisticsProvider.getTimer(
+                REOPEN_TIME + ";" + path, StatsOptions.METRICS_ONLY).time();
+        try {
+            return LuceneIndexNodeManager.open(path, root, definition, readerFactory, nrtFactory, statisticsProvider,
+                    getSearchExecutor());
+        } finally {
+            timer.stop();
+            PERF_LOGGER.end(start, -1, "[{}] Index found to be updated. Reopening the LuceneIndexNode", path);
+        }
+    }
+
+    private synchronized Executor getReopenExecutor() {
+        if (reopenExecutor == null) {
+            ThreadPoolExecutor executor = new ThreadPoolExecutor(REOPEN_THREADS, REOPEN_THREADS,
+                    60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), new ThreadFactory() {
+                private final AtomicInteger counter = new AtomicInteger();
+
+                @Override
+                public Thread newThread(@NotNull Runnable r) {
+                    Thread thread = new Thread(r, "oak-lucene-index-reopen-" + counter.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+            executor.allowCoreThreadTimeOut(true);
+            reopenExecutor = executor;
+        }
+        return reopenExecutor;
+    }
+
+    private ExecutorService getSearchExecutor() {
+        // not synchronized on the tracker, which is locked while indexes are reopened
+        synchronized (publishLock) {
+            if (searchExecutor == null) {
+                searchExecutor = ParallelIndexSearcher.createExecutor();
+            }
+            return searchExecutor;
+        }
     }
 
     public void refresh() {
@@ -232,52 +429,78 @@ public class IndexTracker {
     }
 
     /**
-     * Get the index node, if the index is good.
+     * Get the index node, if the index is good. The index is opened if needed.
+     * Only one thread opens a given index, but different indexes can usually be
+     * opened concurrently (unless their paths map to the same lock).
      *
      * @param path the index path
      * @return the index node, or null if it's a bad (corrupt) index
      */
     @Nullable
-    private synchronized LuceneIndexNode findIndexNode(String path) {
-        // Retry the lookup from acquireIndexNode now that we're
-        // synchronized. The acquire() call is guaranteed to succeed
-        // since the close() method is also synchronized.
-        LuceneIndexNodeManager index = indices.get(path);
-        if (index != null) {
-            LuceneIndexNode indexNode = index.acquire();
-            return checkNotNull(indexNode);
-        }
+    private LuceneIndexNode findIndexNode(String path) {
+        Object openLock = openLocks[Math.floorMod(path.hashCode(), openLocks.length)];
+        synchronized (openLock) {
+            while (true) {
+                // Retry the lookup from acquireIndexNode now that we're
+                // synchronized. The acquire() call only fails if the index
+                // was replaced concurrently; in this case, retry.
+                LuceneIndexNodeManager index = indices.get(path);
+                if (index != null) {
+                    LuceneIndexNode indexNode = index.acquire();
+                    if (indexNode != null) {
+                        return indexNode;
+                    }
+                    continue;
+                }
 
-        if (badIndexTracker.isIgnoredBadIndex(path)){
-            return null;
-        }
+                if (badIndexTracker.isIgnoredBadIndex(path)){
+                    return null;
+                }
 
-        NodeState node = root;
-        for (String name : PathUtils.elements(path)) {
-            node = node.getChildNode(name);
-        }
+                NodeState root = this.root;
+                NodeState node = root;
+                for (String name : PathUtils.elements(path)) {
+                    node = node.getChildNode(name);
+                }
 
-        try {
-            if (isLuceneIndexNode(node)) {
-                index = LuceneIndexNodeManager.open(path, root, node, readerFactory, nrtFactory);
-                if (index != null) {
-                    LuceneIndexNode indexNode = index.acquire();
-                    checkNotNull(indexNode);
-                    indices = ImmutableMap.<String, LuceneIndexNodeManager>builder()
-                            .putAll(indices)
-                            .put(path, index)
-                            .build();
-                    badIndexTracker.markGoodIndex(path);
-                    return indexNode;
+                try {
+                    if (isLuceneIndexNode(node)) {
+                        index = LuceneIndexNodeManager.open(path, root, node, readerFactory, nrtFactory,
+                                statisticsProvider, getSearchExecutor());
+                        if (index == null) {
+                            return null;
+                        }
+                        LuceneIndexNode indexNode = index.acquire();
+                        checkNotNull(indexNode);
+                        synchronized (publishLock) {
+                            // only publish if the index was not changed in the meantime,
+                            // otherwise it might be outdated (updates of the tracker that
+                            // don't affect this index don't matter)
+                            if ((this.root == root || !isChanged(path, root, this.root))
+                                    && !indices.containsKey(path)) {
+                                indices = ImmutableMap.<String, LuceneIndexNodeManager>builder()
+                                        .putAll(indices)
+                                        .put(path, index)
+                                        .build();
+                                badIndexTracker.markGoodIndex(path);
+                                return indexNode;
+                            }
+                        }
+                        // retry with the new root
+                        indexNode.release();
+                        closeQuietly(path, index);
+                    } else {
+                        if (node.exists()) {
+                            log.warn("Cannot open Lucene Index at path {} as the index is not of type {}", path, TYPE_LUCENE);
+                        }
+                        return null;
+                    }
+                } catch (Throwable e) {
+                    badIndexTracker.markBadIndexForRead(path, e);
+                    return null;
                 }
-            } else if (node.exists()) {
-                log.warn("Cannot open Lucene Index at path {} as the index is not of type {}", path, TYPE_LUCENE);
             }
-        } catch (Throwable e) {
-            badIndexTracker.markBadIndexForRead(path, e);
         }
-
-        return null;
     }
 
     @Nullable
@@ -316,6 +539,12 @@ public class IndexTracker {
         return root;
     }
 
+    private static boolean isChanged(String path, NodeState beforeRoot, NodeState afterRoot) {
+        NodeState before = NodeStateUtils.getNode(beforeRoot, path);
+        NodeState after = NodeStateUtils.getNode(afterRoot, path);
+        return isStatusChanged(before, after) || isIndexDefinitionChanged(before, after);
+    }
+
     private static boolean isStatusChanged(NodeState before, NodeState after) {
         return !EqualsDiff.equals(before.getChildNode(STATUS_NODE), after.getChildNode(STATUS_NODE));
     }
@@ -0,0 +1,131 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.jackrabbit.oak.plugins.index.lucene;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.jackrabbit.oak.plugins.index.lucene.directory.LocalIndexDir;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import static org.apache.jackrabbit.oak.plugins.memory.EmptyNodeState.EMPTY_NODE;
+
+/**
+ * Opens a list of indexes in the background after startup, so that (with
+ * copy-on-read and prefetch enabled) the index files are copied locally before
+ * the first query needs them.
+ */
+class IndexWarmup implements Runnable {
+
+    private static final Logger log = LoggerFactory.getLogger(IndexWarmup.class);
+
+    private static final long WAIT_FOR_ROOT_MILLIS = TimeUnit.MINUTES.toMillis(5);
+
+    private final IndexTracker tracker;
+
+    private final List<String> indexPaths;
+
+    private volatile boolean stopped;
+
+    IndexWarmup(IndexTracker tracker, List<String> indexPaths) {
+        this.tracker = tracker;
+        this.indexPaths = indexPaths;
+    }
+
+    /**
+     * Get the indexes to warm up: the configured ones first (in the given
+     * order), and then, if enabled, the indexes that have a local copy from a
+     * previous run, the smallest first.
+     *
+     * @param configured the configured index paths
+     * @param includeRecent whether to include the indexes with a local copy
+     * @param indexCopier the index copier
+     * @return the index paths
+     */
+    static List<String> getIndexPaths(Collection<String> configured, boolean includeRecent,
+                                      IndexCopier indexCopier) {
+        Set<String> paths = new LinkedHashSet<>(configured);
+        if (includeRecent) {
+            try {
+                List<LocalIndexDir> dirs = new ArrayList<>(indexCopier.getIndexRootDirectory().getAllLocalIndexes());
+                dirs.sort(Comparator.comparingLong(LocalIndexDir::size));
+                for (LocalIndexDir dir : dirs) {
+                    paths.add(dir.getJcrPath());
+                }
+            } catch (IOException e) {
+                log.warn("Could not list the local index directories", e);
+            }
+        }
+        return new ArrayList<>(paths);
+    }
+
+    void stop() {
+        stopped = true;
+    }
+
+    @Override
+    public void run() {
+        if (!waitForRoot()) {
+            return;
+        }
+        long start = System.currentTimeMillis();
+        int opened = 0;
+        for (String path : indexPaths) {
+            if (stopped) {
+                log.info("Index warmup stopped");
+                return;
+            }
+            LuceneIndexNode indexNode = tracker.acquireIndexNode(path);
+            if (indexNode == null) {
+                log.info("Index {} not found or not usable, skipping warmup", path);
+                continue;
+            }
+            indexNode.release();
+            opened++;
+            log.debug("Warmed up index {}", path);
+        }
+        log.info("Warmed up {} of {} indexes in {} ms", opened, indexPaths.size(),
+                System.currentTimeMillis() - start);
+    }
+
+    private boolean waitForRoot() {
+        long end = System.currentTimeMillis() + WAIT_FOR_ROOT_MILLIS;
+        while (tracker.getRoot() == EMPTY_NODE) {
+            if (stopped || System.currentTimeMillis() > end) {
+                log.info("Index warmup skipped, as the repository content is not available");
+                return false;
+            }
+            try {
+                Thread.sleep(100);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+        return true;
+    }
+
+}
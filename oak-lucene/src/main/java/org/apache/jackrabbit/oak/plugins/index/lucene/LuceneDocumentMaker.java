@@ -50,6 +50,7 @@ import org.slf4j.LoggerFactory;
 import static org.apache.jackrabbit.oak.plugins.index.lucene.FieldFactory.newAncestorsField;
 import static org.apache.jackrabbit.oak.plugins.index.lucene.FieldFactory.newDepthField;
 import static org.apache.jackrabbit.oak.plugins.index.lucene.FieldFactory.newFulltextField;
+import static org.apache.jackrabbit.oak.plugins.index.lucene.FieldFactory.newPathDocValuesField;
 import static org.apache.jackrabbit.oak.plugins.index.lucene.FieldFactory.newPathField;
 import static org.apache.jackrabbit.oak.plugins.index.lucene.FieldFactory.newPropertyField;
 
@@ -214,6 +215,9 @@ public class LuceneDocumentMaker extends FulltextDocumentMaker<Document> {
     protected Document initDoc() {
         Document doc = new Document();
         doc.add(newPathField(path));
+        if (definition.getVersion().isAtLeast(IndexFormatVersion.V3)) {
+            doc.add(newPathDocValuesField(path));
+        }
         return doc;
     }
 
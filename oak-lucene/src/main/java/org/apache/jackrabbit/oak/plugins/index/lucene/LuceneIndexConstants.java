@@ -47,6 +47,32 @@ public interface LuceneIndexConstants extends FulltextIndexConstants {
      */
     String MERGE_POLICY_NAME = "mergePolicy";
 
+    /**
+     * Name of an ordered property of type long or date by which the documents
+     * of merged segments are sorted. Sorted queries with the same sort order
+     * can then stop collecting documents of such segments early.
+     */
+    String INDEX_SORT_PROPERTY = "indexSortProperty";
+
+    /**
+     * Whether the index sort order (see {@link #INDEX_SORT_PROPERTY}) is
+     * descending (by default it is ascending)
+     */
+    String INDEX_SORT_DESCENDING = "indexSortDescending";
+
+    /**
+     * The maximum number of query results (documents) that are cached for
+     * the current version of the index. By default (0), query results are not
+     * cached.
+     */
+    String RESULT_CACHE_SIZE = "resultCacheSize";
+
+    /**
+     * Whether the segments of the index are searched concurrently. This is
+     * useful for large indexes with many segments.
+     */
+    String PARALLEL_SEARCH = "parallelSearch";
+
     /**
      * Boolean property to indicate that LuceneIndex is being used in testMode
      * and it should participate in every test
@@ -22,6 +22,8 @@ package org.apache.jackrabbit.oak.plugins.index.lucene;
 import java.util.Collections;
 import java.util.Map;
 
+import javax.jcr.PropertyType;
+
 import org.apache.jackrabbit.guava.common.collect.ImmutableMap;
 import org.apache.jackrabbit.oak.plugins.index.lucene.util.CompressingCodec;
 import org.apache.jackrabbit.oak.plugins.index.lucene.util.TokenizerChain;
@@ -30,6 +32,7 @@ import org.apache.jackrabbit.oak.plugins.index.search.FieldNames;
 import org.apache.jackrabbit.oak.plugins.index.search.FulltextIndexConstants;
 import org.apache.jackrabbit.oak.plugins.index.search.IndexDefinition;
 import org.apache.jackrabbit.oak.plugins.index.search.IndexFormatVersion;
+import org.apache.jackrabbit.oak.plugins.index.search.PropertyDefinition;
 import org.apache.jackrabbit.oak.spi.state.ChildNodeEntry;
 import org.apache.jackrabbit.oak.spi.state.NodeState;
 import org.apache.lucene.analysis.Analyzer;
@@ -42,6 +45,11 @@ import org.apache.lucene.index.LogDocMergePolicy;
 import org.apache.lucene.index.MergePolicy;
 import org.apache.lucene.index.NoMergePolicy;
 import org.apache.lucene.index.TieredMergePolicy;
+import org.apache.lucene.index.sorter.NumericDocValuesSorter;
+import org.apache.lucene.index.sorter.Sorter;
+import org.apache.lucene.index.sorter.SortingMergePolicy;
+import org.apache.lucene.search.Sort;
+import org.apache.lucene.search.SortField;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 import org.slf4j.Logger;
@@ -65,6 +73,17 @@ public class LuceneIndexDefinition extends IndexDefinition {
 
     private final int maxFieldLength;
 
+    /**
+     * The doc values field by which merged segments are sorted, or null.
+     */
+    private final String indexSortField;
+
+    private final boolean indexSortDescending;
+
+    private final int resultCacheSize;
+
+    private final boolean parallelSearch;
+
     public LuceneIndexDefinition(NodeState root, NodeState defn, String indexPath) {
         this(root, getIndexDefinitionState(defn), determineIndexFormatVersion(defn), determineUniqueId(defn), indexPath);
     }
@@ -77,6 +96,11 @@ public class LuceneIndexDefinition extends IndexDefinition {
         this.analyzers = collectAnalyzers(defn);
         this.analyzer = createAnalyzer();
         this.codec = createCodec();
+        String indexSortProperty = getOptionalValue(defn, LuceneIndexConstants.INDEX_SORT_PROPERTY, null);
+        this.indexSortField = createIndexSortField(indexSortProperty);
+        this.indexSortDescending = getOptionalValue(defn, LuceneIndexConstants.INDEX_SORT_DESCENDING, false);
+        this.resultCacheSize = getOptionalValue(defn, LuceneIndexConstants.RESULT_CACHE_SIZE, 0);
+        this.parallelSearch = getOptionalValue(defn, LuceneIndexConstants.PARALLEL_SEARCH, false);
     }
 
     public static Builder newBuilder(NodeState root, NodeState defn, String indexPath){
@@ -135,6 +159,100 @@ public class LuceneIndexDefinition extends IndexDefinition {
         return analyzer;
     }
 
+    /**
+     * Get the doc values field of the index sort property. Only ordered long
+     * and date properties are stored as numeric doc values, so for any other
+     * property the index sort is ignored. Documents that don't have the
+     * property are sorted as if the value was 0, same as in sorted queries.
+     *
+     * @param indexSortProperty the configured property, or null
+     * @return the field name, or null if the index is not sorted
+     */
+    @Nullable
+    private String createIndexSortField(@Nullable String indexSortProperty) {
+        if (indexSortProperty == null) {
+            return null;
+        }
+        boolean numeric = false;
+        for (IndexingRule rule : getDefinedRules()) {
+            PropertyDefinition pd = rule.getConfig(indexSortProperty);
+            if (pd == null || !pd.ordered) {
+                continue;
+            }
+            if (pd.getType() != PropertyType.LONG && pd.getType() != PropertyType.DATE) {
+                log.warn("[{}] Ignoring {}: property {} of rule {} is ordered with type {}, expected Long or Date",
+                        getIndexPath(), LuceneIndexConstants.INDEX_SORT_PROPERTY, indexSortProperty,
+                        rule.getNodeTypeName(), PropertyType.nameFromValue(pd.getType()));
+                return null;
+            }
+            numeric = true;
+        }
+        if (!numeric) {
+            log.warn("[{}] Ignoring {}: property {} is not an ordered Long or Date property",
+                    getIndexPath(), LuceneIndexConstants.INDEX_SORT_PROPERTY, indexSortProperty);
+            return null;
+        }
+        return FieldNames.createDocValFieldName(indexSortProperty);
+    }
+
+    /**
+     * Get the sorter used to sort the documents of merged segments.
+     *
+     * @return the sorter, or null if no index sort order is configured
+     */
+    @Nullable
+    public Sorter getIndexSorter() {
+        if (indexSortField == null) {
+            return null;
+        }
+        return new NumericDocValuesSorter(indexSortField, !indexSortDescending);
+    }
+
+    /**
+     * Get the sorter used to sort the documents of merged segments, if the
+     * given sort order is the same as the index sort order. If yes, the
+     * collection of the top documents of a sorted segment can stop early.
+     *
+     * @param sort the sort order of a query
+     * @return the sorter, or null if the sort order doesn't match
+     */
+    @Nullable
+    public Sorter getIndexSorter(@NotNull Sort sort) {
+        if (indexSortField == null) {
+            return null;
+        }
+        SortField[] fields = sort.getSort();
+        if (fields.length != 1) {
+            return null;
+        }
+        SortField field = fields[0];
+        if (!indexSortField.equals(field.getField())
+                || field.getType() != SortField.Type.LONG
+                || field.getReverse() != indexSortDescending) {
+            return null;
+        }
+        return getIndexSorter();
+    }
+
+    /**
+     * Get the maximum number of query results that are cached for the current
+     * version of the index.
+     *
+     * @return the maximum number of results, or 0 if disabled
+     */
+    public int getResultCacheSize() {
+        return resultCacheSize;
+    }
+
+    /**
+     * Whether the segments of the index are searched concurrently.
+     *
+     * @return true if enabled
+     */
+    public boolean isParallelSearch() {
+        return parallelSearch;
+    }
+
     //~---------------------------------------------------< Analyzer >
 
     private Analyzer createAnalyzer() {
@@ -204,13 +322,11 @@ public class LuceneIndexDefinition extends IndexDefinition {
 
     private MergePolicy createMergePolicy() {
         String mmp = System.getProperty("oak.lucene.cmmp");
-        if (mmp != null) {
-            return new CommitMitigatingTieredMergePolicy();
-        }
-
         String mergePolicyName = getOptionalValue(definition, LuceneIndexConstants.MERGE_POLICY_NAME, null);
         MergePolicy mergePolicy = null;
-        if (mergePolicyName != null) {
+        if (mmp != null) {
+            mergePolicy = new CommitMitigatingTieredMergePolicy();
+        } else if (mergePolicyName != null) {
             if (mergePolicyName.equalsIgnoreCase("no")) {
                 mergePolicy = NoMergePolicy.COMPOUND_FILES;
             } else if (mergePolicyName.equalsIgnoreCase("mitigated")) {
@@ -226,6 +342,10 @@ public class LuceneIndexDefinition extends IndexDefinition {
         if (mergePolicy == null) {
             mergePolicy = new TieredMergePolicy();
         }
+        Sorter sorter = getIndexSorter();
+        if (sorter != null) {
+            mergePolicy = new SortingMergePolicy(mergePolicy, sorter);
+        }
         return mergePolicy;
     }
 }
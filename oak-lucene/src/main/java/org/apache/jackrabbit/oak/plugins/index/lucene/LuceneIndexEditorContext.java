@@ -25,6 +25,7 @@ import org.apache.jackrabbit.oak.plugins.index.lucene.util.FacetsConfigProvider;
 import org.apache.jackrabbit.oak.plugins.index.lucene.writer.LuceneIndexWriter;
 import org.apache.jackrabbit.oak.plugins.index.search.ExtractedTextCache;
 import org.apache.jackrabbit.oak.plugins.index.search.IndexDefinition;
+import org.apache.jackrabbit.oak.plugins.index.search.PropertyDefinition;
 import org.apache.jackrabbit.oak.plugins.index.search.spi.editor.FulltextIndexEditorContext;
 import org.apache.jackrabbit.oak.plugins.index.search.spi.editor.FulltextIndexWriterFactory;
 import org.apache.jackrabbit.oak.spi.state.NodeBuilder;
@@ -63,6 +64,26 @@ public class LuceneIndexEditorContext extends FulltextIndexEditorContext impleme
             definition, rule, path);
     }
 
+    /**
+     * Documents with facets update the (lazily created) facets config, and
+     * index field providers make no thread safety promise, so in both cases
+     * documents are built in the indexing thread.
+     */
+    @Override
+    protected boolean canBuildDocumentsConcurrently() {
+        if (augmentorFactory != null && augmentorFactory.hasIndexFieldProviders()) {
+            return false;
+        }
+        for (IndexDefinition.IndexingRule rule : definition.getDefinedRules()) {
+            for (PropertyDefinition pd : rule.getProperties()) {
+                if (pd.facet) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
     @Override
     public LuceneIndexWriter getWriter() {
         return (LuceneIndexWriter)super.getWriter();
@@ -34,6 +34,7 @@ import org.apache.jackrabbit.oak.plugins.index.lucene.property.LuceneIndexProper
 import org.apache.jackrabbit.oak.plugins.index.lucene.property.PropertyIndexUpdateCallback;
 import org.apache.jackrabbit.oak.plugins.index.lucene.property.PropertyQuery;
 import org.apache.jackrabbit.oak.plugins.index.lucene.writer.DefaultIndexWriterFactory;
+import org.apache.jackrabbit.oak.plugins.index.lucene.writer.LargeMergeScheduler;
 import org.apache.jackrabbit.oak.plugins.index.lucene.writer.LuceneIndexWriterConfig;
 import org.apache.jackrabbit.oak.plugins.index.search.CompositePropertyUpdateCallback;
 import org.apache.jackrabbit.oak.plugins.index.search.ExtractedTextCache;
@@ -83,6 +84,7 @@ public class LuceneIndexEditorProvider implements IndexEditorProvider {
     private IndexingQueue indexingQueue;
     private boolean nrtIndexingEnabled;
     private LuceneIndexWriterConfig writerConfig = new LuceneIndexWriterConfig();
+    private LargeMergeScheduler largeMergeScheduler;
 
     private final LuceneIndexMBean mbean;
     private final StatisticsProvider statisticsProvider;
@@ -230,7 +232,7 @@ public class LuceneIndexEditorProvider implements IndexEditorProvider {
 
                 writerFactory = new DefaultIndexWriterFactory(mountInfoProvider,
                         newDirectoryFactory(blobDeletionCallback, cowDirectoryCleanupCallback),
-                        writerConfig);
+                        writerConfig, largeMergeScheduler);
             }
 
             LuceneIndexEditorContext context = new LuceneIndexEditorContext(root, definition, indexDefinition, callback,
@@ -299,6 +301,10 @@ public class LuceneIndexEditorProvider implements IndexEditorProvider {
         this.writerConfig = writerConfig;
     }
 
+    public void setLargeMergeScheduler(@Nullable LargeMergeScheduler largeMergeScheduler) {
+        this.largeMergeScheduler = largeMergeScheduler;
+    }
+
     GarbageCollectableBlobStore getBlobStore() {
         return blobStore;
     }
@@ -34,6 +34,10 @@ public interface LuceneIndexMBean extends IndexMBean {
 
     TabularData getBadPersistedIndexStats();
 
+    @Description("Statistics of the query result caches, for indexes where the result cache is enabled. " +
+            "The statistics are reset when the index is updated")
+    TabularData getResultCacheStats();
+
     boolean isFailing();
 
     @Description("Determines the set of index paths up to given maxLevel. This can be used to determine the value for" +
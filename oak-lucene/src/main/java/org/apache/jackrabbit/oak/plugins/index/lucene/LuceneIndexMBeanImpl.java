@@ -160,6 +160,34 @@ public class LuceneIndexMBeanImpl extends AnnotatedStandardMBean implements Luce
         throw new IOException("could not fetch stats for index at path " + path);
     }
 
+    @Override
+    public TabularData getResultCacheStats() {
+        TabularDataSupport tds;
+        try {
+            TabularType tt = new TabularType(LuceneIndexMBeanImpl.class.getName(),
+                    "Lucene Query Result Cache Stats", ResultCacheStats.TYPE, new String[]{"path"});
+            tds = new TabularDataSupport(tt);
+            Set<String> indexes = indexTracker.getIndexNodePaths();
+            for (String path : indexes) {
+                LuceneIndexNode indexNode = null;
+                try {
+                    indexNode = indexTracker.acquireIndexNode(path);
+                    LuceneQueryResultCache cache = indexNode != null ? indexNode.getResultCache() : null;
+                    if (cache != null) {
+                        tds.put(new ResultCacheStats(path, cache).toCompositeData());
+                    }
+                } finally {
+                    if (indexNode != null) {
+                        indexNode.release();
+                    }
+                }
+            }
+        } catch (OpenDataException e) {
+            throw new IllegalStateException(e);
+        }
+        return tds;
+    }
+
     @Override
     public TabularData getBadIndexStats() {
         TabularDataSupport tds;
@@ -790,6 +818,71 @@ public class LuceneIndexMBeanImpl extends AnnotatedStandardMBean implements Luce
         }
     }
 
+    private static class ResultCacheStats {
+        static final String[] FIELD_NAMES = new String[]{
+                "path",
+                "entryCount",
+                "maxSize",
+                "hitCount",
+                "missCount"
+        };
+
+        static final String[] FIELD_DESCRIPTIONS = new String[]{
+                "Path",
+                "Number of cached batches of results",
+                "Maximum number of cached results",
+                "Number of cache hits for the current version of the index",
+                "Number of cache misses for the current version of the index"
+        };
+
+        @SuppressWarnings("rawtypes")
+        static final OpenType[] FIELD_TYPES = new OpenType[]{
+                SimpleType.STRING,
+                SimpleType.LONG,
+                SimpleType.INTEGER,
+                SimpleType.LONG,
+                SimpleType.LONG
+        };
+
+        static final CompositeType TYPE = createCompositeType();
+
+        static CompositeType createCompositeType() {
+            try {
+                return new CompositeType(
+                        ResultCacheStats.class.getName(),
+                        "Composite data type for Lucene query result cache statistics",
+                        ResultCacheStats.FIELD_NAMES,
+                        ResultCacheStats.FIELD_DESCRIPTIONS,
+                        ResultCacheStats.FIELD_TYPES);
+            } catch (OpenDataException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        private final String path;
+        private final LuceneQueryResultCache cache;
+
+        ResultCacheStats(String path, LuceneQueryResultCache cache) {
+            this.path = path;
+            this.cache = cache;
+        }
+
+        CompositeDataSupport toCompositeData() {
+            Object[] values = new Object[]{
+                    path,
+                    cache.getEntryCount(),
+                    cache.getMaxSize(),
+                    cache.getHitCount(),
+                    cache.getMissCount()
+            };
+            try {
+                return new CompositeDataSupport(TYPE, FIELD_NAMES, values);
+            } catch (OpenDataException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+
     private static class BadIndexStats {
         static final String[] FIELD_NAMES = new String[]{
                 "path",
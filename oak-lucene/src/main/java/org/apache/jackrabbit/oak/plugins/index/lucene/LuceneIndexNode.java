@@ -56,4 +56,12 @@ public interface LuceneIndexNode extends IndexNode {
     LuceneIndexWriter getLocalWriter() throws IOException;
 
     void refreshReadersOnWriteIfRequired();
+
+    /**
+     * Get the query result cache of this version of the index.
+     *
+     * @return the cache, or null if disabled
+     */
+    @Nullable
+    LuceneQueryResultCache getResultCache();
 }
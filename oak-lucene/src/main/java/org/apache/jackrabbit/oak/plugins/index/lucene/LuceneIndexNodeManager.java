@@ -19,6 +19,7 @@ package org.apache.jackrabbit.oak.plugins.index.lucene;
 import java.io.IOException;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Semaphore;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
@@ -35,6 +36,9 @@ import org.apache.jackrabbit.oak.plugins.index.lucene.reader.LuceneIndexReaderFa
 import org.apache.jackrabbit.oak.plugins.index.lucene.writer.LuceneIndexWriter;
 import org.apache.jackrabbit.oak.plugins.index.search.update.ReaderRefreshPolicy;
 import org.apache.jackrabbit.oak.spi.state.NodeState;
+import org.apache.jackrabbit.oak.stats.StatisticsProvider;
+import org.apache.jackrabbit.oak.stats.StatsOptions;
+import org.apache.jackrabbit.oak.stats.TimerStats;
 import org.apache.lucene.index.IndexReader;
 import org.apache.lucene.index.MultiReader;
 import org.apache.lucene.search.IndexSearcher;
@@ -70,11 +74,26 @@ public class LuceneIndexNodeManager {
     static LuceneIndexNodeManager open(String indexPath, NodeState root, NodeState defnNodeState,
                                        LuceneIndexReaderFactory readerFactory, @Nullable NRTIndexFactory nrtFactory)
             throws IOException {
+        return open(indexPath, root, defnNodeState, readerFactory, nrtFactory, StatisticsProvider.NOOP);
+    }
+
+    static LuceneIndexNodeManager open(String indexPath, NodeState root, NodeState defnNodeState,
+                                       LuceneIndexReaderFactory readerFactory, @Nullable NRTIndexFactory nrtFactory,
+                                       StatisticsProvider statisticsProvider)
+            throws IOException {
+        return open(indexPath, root, defnNodeState, readerFactory, nrtFactory, statisticsProvider, null);
+    }
+
+    static LuceneIndexNodeManager open(String indexPath, NodeState root, NodeState defnNodeState,
+                                       LuceneIndexReaderFactory readerFactory, @Nullable NRTIndexFactory nrtFactory,
+                                       StatisticsProvider statisticsProvider, @Nullable ExecutorService searchExecutor)
+            throws IOException {
         LuceneIndexDefinition definition = new LuceneIndexDefinition(root, defnNodeState, indexPath);
         List<LuceneIndexReader> readers = readerFactory.createReaders(definition, defnNodeState, indexPath);
         NRTIndex nrtIndex = nrtFactory != null ? nrtFactory.createIndex(definition) : null;
         if (!readers.isEmpty() || (nrtIndex != null && !hasAsyncIndexerRun(root, indexPath, defnNodeState))){
-            return new LuceneIndexNodeManager(PathUtils.getName(indexPath), definition, readers, nrtIndex);
+            return new LuceneIndexNodeManager(PathUtils.getName(indexPath), definition, readers, nrtIndex,
+                    statisticsProvider, searchExecutor);
         }
         return null;
     }
@@ -112,6 +131,10 @@ public class LuceneIndexNodeManager {
 
     private final Semaphore refreshLock = new Semaphore(1);
 
+    private final StatisticsProvider statisticsProvider;
+
+    private final ExecutorService searchExecutor;
+
     private final Runnable refreshCallback = new Runnable() {
         @Override
         public void run() {
@@ -131,11 +154,26 @@ public class LuceneIndexNodeManager {
 
     LuceneIndexNodeManager(String name, LuceneIndexDefinition definition, List<LuceneIndexReader> readers, @Nullable NRTIndex nrtIndex)
             throws IOException {
+        this(name, definition, readers, nrtIndex, StatisticsProvider.NOOP);
+    }
+
+    LuceneIndexNodeManager(String name, LuceneIndexDefinition definition, List<LuceneIndexReader> readers,
+                           @Nullable NRTIndex nrtIndex, StatisticsProvider statisticsProvider)
+            throws IOException {
+        this(name, definition, readers, nrtIndex, statisticsProvider, null);
+    }
+
+    LuceneIndexNodeManager(String name, LuceneIndexDefinition definition, List<LuceneIndexReader> readers,
+                           @Nullable NRTIndex nrtIndex, StatisticsProvider statisticsProvider,
+                           @Nullable ExecutorService searchExecutor)
+            throws IOException {
         checkArgument(!readers.isEmpty() || nrtIndex != null);
         this.name = name;
         this.definition = definition;
         this.readers = readers;
         this.nrtIndex = nrtIndex;
+        this.statisticsProvider = statisticsProvider;
+        this.searchExecutor = searchExecutor;
         this.searcherHolder = createHolder(getNRTReaders());
         this.refreshPolicy = nrtIndex != null ? nrtIndex.getRefreshPolicy() : ReaderRefreshPolicy.NEVER;
     }
@@ -262,7 +300,18 @@ public class LuceneIndexNodeManager {
     }
 
     private SearcherHolder createHolder(List<LuceneIndexReader> newNRTReaders) {
-        return new SearcherHolder(new IndexSearcher(createReader(newNRTReaders)), newNRTReaders);
+        int resultCacheSize = definition.getResultCacheSize();
+        LuceneQueryResultCache resultCache = resultCacheSize > 0 ? new LuceneQueryResultCache(resultCacheSize) : null;
+        return new SearcherHolder(createSearcher(createReader(newNRTReaders)), newNRTReaders, resultCache);
+    }
+
+    private IndexSearcher createSearcher(IndexReader reader) {
+        if (definition.isParallelSearch() && searchExecutor != null) {
+            TimerStats sliceTime = statisticsProvider.getTimer(
+                    ParallelIndexSearcher.SLICE_TIME + ";" + definition.getIndexPath(), StatsOptions.METRICS_ONLY);
+            return new ParallelIndexSearcher(reader, searchExecutor, sliceTime);
+        }
+        return new IndexSearcher(reader);
     }
 
     private void closeReaders(Iterable<LuceneIndexReader> readers) {
@@ -294,10 +343,13 @@ public class LuceneIndexNodeManager {
         final List<LuceneIndexReader> nrtReaders;
         final int searcherId = SEARCHER_ID_COUNTER.incrementAndGet();
         final LuceneIndexStatistics indexStatistics;
+        final LuceneQueryResultCache resultCache;
 
-        public SearcherHolder(IndexSearcher searcher, List<LuceneIndexReader> nrtReaders) {
+        public SearcherHolder(IndexSearcher searcher, List<LuceneIndexReader> nrtReaders,
+                              @Nullable LuceneQueryResultCache resultCache) {
             this.searcher = searcher;
             this.nrtReaders = nrtReaders;
+            this.resultCache = resultCache;
             this.indexStatistics = new LuceneIndexStatistics(searcher.getIndexReader());
         }
 
@@ -371,6 +423,11 @@ public class LuceneIndexNodeManager {
             return LuceneIndexNodeManager.this.getLocalWriter();
         }
 
+        @Override
+        public LuceneQueryResultCache getResultCache() {
+            return holder.resultCache;
+        }
+
         @Override
         public void refreshReadersOnWriteIfRequired() {
             LuceneIndexNodeManager.this.refreshReadersOnWriteIfRequired();
@@ -21,6 +21,7 @@ package org.apache.jackrabbit.oak.plugins.index.lucene;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.Arrays;
 import java.util.Dictionary;
 import java.util.Hashtable;
 import java.util.List;
@@ -40,6 +41,7 @@ import org.apache.felix.scr.annotations.Activate;
 import org.apache.felix.scr.annotations.Component;
 import org.apache.felix.scr.annotations.Deactivate;
 import org.apache.felix.scr.annotations.Property;
+import org.apache.felix.scr.annotations.PropertyUnbounded;
 import org.apache.felix.scr.annotations.Reference;
 import org.apache.felix.scr.annotations.ReferenceCardinality;
 import org.apache.felix.scr.annotations.ReferencePolicy;
@@ -57,6 +59,7 @@ import org.apache.jackrabbit.oak.plugins.index.IndexPathService;
 import org.apache.jackrabbit.oak.plugins.index.fulltext.PreExtractedTextProvider;
 import org.apache.jackrabbit.oak.plugins.index.importer.IndexImporterProvider;
 import org.apache.jackrabbit.oak.plugins.index.lucene.directory.ActiveDeletedBlobCollectorFactory;
+import org.apache.jackrabbit.oak.plugins.index.lucene.directory.BlobBlockCache;
 import org.apache.jackrabbit.oak.plugins.index.lucene.directory.BufferedOakDirectory;
 import org.apache.jackrabbit.oak.plugins.index.lucene.directory.LuceneIndexFileSystemStatistics;
 import org.apache.jackrabbit.oak.plugins.index.lucene.directory.LuceneIndexImporter;
@@ -67,7 +70,9 @@ import org.apache.jackrabbit.oak.plugins.index.lucene.hybrid.LuceneJournalProper
 import org.apache.jackrabbit.oak.plugins.index.lucene.hybrid.NRTIndexFactory;
 import org.apache.jackrabbit.oak.plugins.index.lucene.property.PropertyIndexCleaner;
 import org.apache.jackrabbit.oak.plugins.index.lucene.reader.DefaultIndexReaderFactory;
+import org.apache.jackrabbit.oak.plugins.index.lucene.writer.LargeMergeScheduler;
 import org.apache.jackrabbit.oak.plugins.index.search.ExtractedTextCache;
+import org.apache.jackrabbit.oak.plugins.index.search.PersistentExtractedTextCache;
 import org.apache.jackrabbit.oak.plugins.index.search.IndexDefinition;
 import org.apache.jackrabbit.oak.plugins.index.search.TextExtractionStatsMBean;
 import org.apache.jackrabbit.oak.spi.blob.GarbageCollectableBlobStore;
@@ -186,6 +191,60 @@ public class LuceneIndexProviderService {
     )
     private static final String PROP_PREFETCH_INDEX_FILES = "prefetchIndexFiles";
 
+    @Property(
+            value = {},
+            unbounded = PropertyUnbounded.ARRAY,
+            label = "Warmup Indexes",
+            description = "Paths of the indexes that are opened in the background after startup (when CopyOnRead " +
+                    "is enabled), so that their files are copied locally before the first query"
+    )
+    private static final String PROP_WARMUP_INDEX_PATHS = "warmupIndexPaths";
+
+    private static final boolean PROP_WARMUP_RECENT_INDEXES_DEFAULT = false;
+    @Property(
+            boolValue = PROP_WARMUP_RECENT_INDEXES_DEFAULT,
+            label = "Warmup Recently Used Indexes",
+            description = "Also open the indexes in the background after startup that have a local copy from " +
+                    "a previous run (the smallest first)"
+    )
+    private static final String PROP_WARMUP_RECENT_INDEXES = "warmupRecentIndexes";
+
+    private static final int PROP_BLOCK_CACHE_SIZE_DEFAULT = 0;
+    @Property(
+            intValue = PROP_BLOCK_CACHE_SIZE_DEFAULT,
+            label = "Block cache size (MB)",
+            description = "Size in MB of the heap cache for the blocks of index files read from the NodeStore " +
+                    "(shared by all indexes). This is mainly useful if CopyOnRead is disabled. When set to 0 then " +
+                    "cache would be disabled"
+    )
+    private static final String PROP_BLOCK_CACHE_SIZE = "blockCacheSizeInMB";
+
+    private static final int PROP_LARGE_MERGE_SIZE_DEFAULT = 0;
+    @Property(
+            intValue = PROP_LARGE_MERGE_SIZE_DEFAULT,
+            label = "Large merge size (MB)",
+            description = "Segment merges of async indexes of at least this size (in MB) are only done within " +
+                    "the large merge time window, or within the large merge budget. When set to 0, or if neither " +
+                    "a window nor a budget is configured, merges are not deferred"
+    )
+    private static final String PROP_LARGE_MERGE_SIZE = "largeMergeSizeInMB";
+
+    @Property(
+            value = "",
+            label = "Large merge time window",
+            description = "Time window for large merges, in the form HH:mm-HH:mm (local time), for example " +
+                    "22:00-06:00"
+    )
+    private static final String PROP_LARGE_MERGE_WINDOW = "largeMergeWindow";
+
+    private static final int PROP_LARGE_MERGE_BUDGET_DEFAULT = 0;
+    @Property(
+            intValue = PROP_LARGE_MERGE_BUDGET_DEFAULT,
+            label = "Large merge budget (MB per hour)",
+            description = "Size in MB of the large merges per hour that are done outside of the time window"
+    )
+    private static final String PROP_LARGE_MERGE_BUDGET = "largeMergeBudgetInMBPerHour";
+
     private static final int PROP_EXTRACTED_TEXT_CACHE_SIZE_DEFAULT = 20;
     @Property(
             intValue = PROP_EXTRACTED_TEXT_CACHE_SIZE_DEFAULT,
@@ -212,6 +271,23 @@ public class LuceneIndexProviderService {
     )
     private static final String PROP_PRE_EXTRACTED_TEXT_ALWAYS_USE = "alwaysUsePreExtractedCache";
 
+    private static final int PROP_EXTRACTED_TEXT_PERSISTENT_CACHE_SIZE_DEFAULT = 0;
+    @Property(
+            intValue = PROP_EXTRACTED_TEXT_PERSISTENT_CACHE_SIZE_DEFAULT,
+            label = "Persistent extracted text cache size (MB)",
+            description = "Size in MB of the persistent (disk) cache for extracted text, keyed by the content " +
+                    "identity of the binary. It survives restarts and reindexing. When set to 0 then " +
+                    "the persistent cache would be disabled"
+    )
+    private static final String PROP_EXTRACTED_TEXT_PERSISTENT_CACHE_SIZE = "extractedTextPersistentCacheSizeInMB";
+
+    @Property(
+            label = "Persistent extracted text cache directory",
+            description = "Directory of the persistent extracted text cache. It can be shared by multiple " +
+                    "cluster nodes. If not set, the directory 'extractedText' in the local index directory is used"
+    )
+    private static final String PROP_EXTRACTED_TEXT_PERSISTENT_CACHE_DIR = "extractedTextPersistentCacheDir";
+
     private static final int PROP_BOOLEAN_CLAUSE_LIMIT_DEFAULT = 1024;
     @Property(
             intValue = PROP_BOOLEAN_CLAUSE_LIMIT_DEFAULT,
@@ -345,12 +421,18 @@ public class LuceneIndexProviderService {
 
     private IndexCopier indexCopier;
 
+    private BlobBlockCache blockCache;
+
+    private LargeMergeScheduler largeMergeScheduler;
+
     private ActiveDeletedBlobCollectorFactory.ActiveDeletedBlobCollector activeDeletedBlobCollector;
 
     private File indexDir;
 
     private ExecutorService executorService;
 
+    private IndexWarmup indexWarmup;
+
     private int threadPoolSize;
 
     private ExtractedTextCache extractedTextCache;
@@ -396,6 +478,8 @@ public class LuceneIndexProviderService {
         threadPoolSize = PropertiesUtil.toInteger(config.get(PROP_THREAD_POOL_SIZE), PROP_THREAD_POOL_SIZE_DEFAULT);
         initializeIndexDir(bundleContext, config);
         initializeExtractedTextCache(bundleContext, config, statisticsProvider);
+        initializeBlockCache(config);
+        initializeLargeMergeScheduler(config);
         tracker = createTracker(bundleContext, config);
         indexProvider = new LuceneIndexProvider(tracker, augmentorFactory);
         initializeActiveBlobCollector(whiteboard, config);
@@ -405,6 +489,7 @@ public class LuceneIndexProviderService {
         regs.add(bundleContext.registerService(QueryIndexProvider.class.getName(), indexProvider, null));
         registerObserver(bundleContext, config);
         registerLocalIndexObserver(bundleContext, tracker, config);
+        initializeIndexWarmup(config);
 
         registerIndexInfoProvider(bundleContext);
         registerIndexImporterProvider(bundleContext);
@@ -430,6 +515,11 @@ public class LuceneIndexProviderService {
 
     @Deactivate
     private void deactivate() throws InterruptedException, IOException {
+        if (indexWarmup != null) {
+            indexWarmup.stop();
+            indexWarmup = null;
+        }
+
         for (ServiceRegistration reg : regs) {
             reg.unregister();
         }
@@ -464,6 +554,12 @@ public class LuceneIndexProviderService {
             indexCopier.close();
         }
 
+        if (blockCache != null) {
+            blockCache.invalidateAll();
+            blockCache = null;
+        }
+        largeMergeScheduler = null;
+
         if (executorService != null){
             executorService.shutdown();
             executorService.awaitTermination(1, TimeUnit.MINUTES);
@@ -532,6 +628,7 @@ public class LuceneIndexProviderService {
                     mountInfoProvider, activeDeletedBlobCollector, mBean, statisticsProvider);
         }
         editorProvider.setBlobStore(blobStore);
+        editorProvider.setLargeMergeScheduler(largeMergeScheduler);
         editorProvider.withAsyncIndexesSizeStatsUpdate(asyncIndexesSizeStatsUpdate);
 
         if (hybridIndex){
@@ -557,12 +654,14 @@ public class LuceneIndexProviderService {
             if (hybridIndex) {
                 nrtIndexFactory = new NRTIndexFactory(indexCopier, statisticsProvider);
             }
-            tracker = new IndexTracker(new DefaultIndexReaderFactory(mountInfoProvider, indexCopier), nrtIndexFactory);
+            indexCopier.setBlockCache(blockCache);
+            tracker = new IndexTracker(new DefaultIndexReaderFactory(mountInfoProvider, indexCopier, blockCache), nrtIndexFactory);
         } else {
-            tracker = new IndexTracker(new DefaultIndexReaderFactory(mountInfoProvider, null));
+            tracker = new IndexTracker(new DefaultIndexReaderFactory(mountInfoProvider, null, blockCache));
         }
 
         tracker.setAsyncIndexInfoService(asyncIndexInfoService);
+        tracker.setStatisticsProvider(statisticsProvider);
         return tracker;
     }
 
@@ -587,6 +686,22 @@ public class LuceneIndexProviderService {
 
     }
 
+    private void initializeIndexWarmup(Map<String, ?> config) {
+        if (indexCopier == null) {
+            return;
+        }
+        List<String> indexPaths = IndexWarmup.getIndexPaths(
+                Arrays.asList(PropertiesUtil.toStringArray(config.get(PROP_WARMUP_INDEX_PATHS), new String[0])),
+                PropertiesUtil.toBoolean(config.get(PROP_WARMUP_RECENT_INDEXES), PROP_WARMUP_RECENT_INDEXES_DEFAULT),
+                indexCopier);
+        if (indexPaths.isEmpty()) {
+            return;
+        }
+        log.info("Warming up {} indexes in the background", indexPaths.size());
+        indexWarmup = new IndexWarmup(tracker, indexPaths);
+        getExecutorService().execute(indexWarmup);
+    }
+
     ExecutorService getExecutorService(){
         if (executorService == null){
             executorService = createExecutor();
@@ -725,6 +840,40 @@ public class LuceneIndexProviderService {
             log.info("Extracted text caching enabled with maxSize {} MB, expiry time {} secs",
                     cacheSizeInMB, cacheExpiryInSecs);
         }
+
+        int persistentCacheSizeInMB = PropertiesUtil.toInteger(config.get(PROP_EXTRACTED_TEXT_PERSISTENT_CACHE_SIZE),
+                PROP_EXTRACTED_TEXT_PERSISTENT_CACHE_SIZE_DEFAULT);
+        if (persistentCacheSizeInMB > 0) {
+            String dirPath = PropertiesUtil.toString(config.get(PROP_EXTRACTED_TEXT_PERSISTENT_CACHE_DIR), null);
+            File dir = dirPath != null ? new File(dirPath) : new File(indexDir, "extractedText");
+            try {
+                extractedTextCache.setPersistentCache(
+                        new PersistentExtractedTextCache(dir, persistentCacheSizeInMB * ONE_MB));
+            } catch (IOException e) {
+                log.warn("Could not initialize the persistent extracted text cache at {}", dir.getAbsolutePath(), e);
+            }
+        }
+    }
+
+    private void initializeBlockCache(Map<String, ?> config) {
+        int cacheSizeInMB = PropertiesUtil.toInteger(config.get(PROP_BLOCK_CACHE_SIZE),
+                PROP_BLOCK_CACHE_SIZE_DEFAULT);
+        if (cacheSizeInMB > 0) {
+            blockCache = new BlobBlockCache(cacheSizeInMB * ONE_MB);
+            CacheStats stats = blockCache.getCacheStats();
+            oakRegs.add(registerMBean(whiteboard,
+                    CacheStatsMBean.class, stats,
+                    CacheStatsMBean.TYPE, stats.getName()));
+        }
+    }
+
+    private void initializeLargeMergeScheduler(Map<String, ?> config) {
+        int sizeInMB = PropertiesUtil.toInteger(config.get(PROP_LARGE_MERGE_SIZE), PROP_LARGE_MERGE_SIZE_DEFAULT);
+        String window = PropertiesUtil.toString(config.get(PROP_LARGE_MERGE_WINDOW), null);
+        int budgetInMB = PropertiesUtil.toInteger(config.get(PROP_LARGE_MERGE_BUDGET),
+                PROP_LARGE_MERGE_BUDGET_DEFAULT);
+        largeMergeScheduler = LargeMergeScheduler.create(sizeInMB * ONE_MB, window, budgetInMB * ONE_MB,
+                statisticsProvider);
     }
 
     private void registerExtractedTextProvider(PreExtractedTextProvider provider){
@@ -61,7 +61,7 @@ import org.apache.jackrabbit.oak.plugins.index.lucene.reader.LuceneIndexReader;
 import org.apache.jackrabbit.oak.plugins.index.lucene.spi.FulltextQueryTermsProvider;
 import org.apache.jackrabbit.oak.plugins.index.lucene.util.FacetHelper;
 import org.apache.jackrabbit.oak.plugins.index.lucene.util.MoreLikeThisHelper;
-import org.apache.jackrabbit.oak.plugins.index.lucene.util.PathStoredFieldVisitor;
+import org.apache.jackrabbit.oak.plugins.index.lucene.util.PathReader;
 import org.apache.jackrabbit.oak.plugins.index.lucene.util.SpellcheckHelper;
 import org.apache.jackrabbit.oak.plugins.index.lucene.util.SuggestHelper;
 import org.apache.jackrabbit.oak.plugins.index.search.IndexNode;
@@ -96,6 +96,8 @@ import org.apache.lucene.index.IndexReader;
 import org.apache.lucene.index.IndexableField;
 import org.apache.lucene.index.MultiFields;
 import org.apache.lucene.index.Term;
+import org.apache.lucene.index.sorter.EarlyTerminatingSortingCollector;
+import org.apache.lucene.index.sorter.Sorter;
 import org.apache.lucene.queryparser.classic.ParseException;
 import org.apache.lucene.queryparser.classic.QueryParser;
 import org.apache.lucene.queryparser.classic.QueryParserBase;
@@ -104,6 +106,7 @@ import org.apache.lucene.queryparser.flexible.standard.StandardQueryParser;
 import org.apache.lucene.queryparser.flexible.standard.config.StandardQueryConfigHandler;
 import org.apache.lucene.search.BooleanClause;
 import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.FieldDoc;
 import org.apache.lucene.search.IndexSearcher;
 import org.apache.lucene.search.MatchAllDocsQuery;
 import org.apache.lucene.search.NumericRangeQuery;
@@ -115,6 +118,7 @@ import org.apache.lucene.search.SortField;
 import org.apache.lucene.search.TermQuery;
 import org.apache.lucene.search.TermRangeQuery;
 import org.apache.lucene.search.TopDocs;
+import org.apache.lucene.search.TopFieldCollector;
 import org.apache.lucene.search.TotalHitCountCollector;
 import org.apache.lucene.search.WildcardQuery;
 import org.apache.lucene.search.highlight.Highlighter;
@@ -270,6 +274,8 @@ public class LucenePropertyIndex extends FulltextIndex {
             private final Set<String> seenPaths = Sets.newHashSet();
             private ScoreDoc lastDoc;
             private int nextBatchSize = LUCENE_QUERY_BATCH_SIZE;
+            // the number of documents returned by the searches up to lastDoc
+            private int loadedCount;
             private boolean noDocs = false;
             private IndexSearcher indexSearcher;
             private int indexNodeId = -1;
@@ -290,15 +296,9 @@ public class LucenePropertyIndex extends FulltextIndex {
                 return rewoundCount;
             }
 
-            private FulltextResultRow convertToRow(ScoreDoc doc, IndexSearcher searcher, Map<String, String> excerpts,
+            private FulltextResultRow convertToRow(ScoreDoc doc, @Nullable String path, Map<String, String> excerpts,
                                                    FacetProvider facetProvider,
-                                                   String explanation) throws IOException {
-                IndexReader reader = searcher.getIndexReader();
-                //TODO Look into usage of field cache for retrieving the path
-                //instead of reading via reader if no of docs in index are limited
-                PathStoredFieldVisitor visitor = new PathStoredFieldVisitor();
-                reader.document(doc.doc, visitor);
-                String path = visitor.getPath();
+                                                   String explanation) {
                 if (path != null) {
                     if ("".equals(path)) {
                         path = "/";
@@ -350,6 +350,10 @@ public class LucenePropertyIndex extends FulltextIndex {
                         Query query = (Query) luceneRequestFacade.getLuceneRequest();
 
                         TopDocs docs;
+                        Sorter indexSorter = sort == null ? null : indexNode.getDefinition().getIndexSorter(sort);
+                        // the results of similarity searches are re-ranked, so they are not cached
+                        LuceneQueryResultCache resultCache = indexNode.getDefinition().hasFunctionDefined() ?
+                                null : indexNode.getResultCache();
                         long start = PERF_LOGGER.start();
                         long startLoop = System.currentTimeMillis();
                         for (int repeated = 0;; repeated++) {
@@ -363,10 +367,23 @@ public class LucenePropertyIndex extends FulltextIndex {
                                     }
                                 }
                             }
-                            if (lastDoc != null) {
+                            if (lastDoc == null) {
+                                loadedCount = 0;
+                            }
+                            int offset = loadedCount;
+                            int batchSize = nextBatchSize;
+                            LuceneQueryResultCache.Entry cached = resultCache == null ?
+                                    null : resultCache.get(query, sort, offset, batchSize);
+                            if (cached != null) {
+                                LOG.debug("using the cached {} entries at offset {} for query {}", batchSize, offset, query);
+                                docs = cached.getTopDocs();
+                            } else if (lastDoc != null) {
                                 LOG.debug("loading the next {} entries for query {}", nextBatchSize, query);
                                 if (sort == null) {
                                     docs = searcher.searchAfter(lastDoc, query, nextBatchSize);
+                                } else if (indexSorter != null) {
+                                    docs = searchSorted(searcher, query, (FieldDoc) lastDoc, loadedCount,
+                                            nextBatchSize, sort, indexSorter);
                                 } else {
                                     docs = searcher.searchAfter(lastDoc, query, nextBatchSize, sort);
                                 }
@@ -374,10 +391,13 @@ public class LucenePropertyIndex extends FulltextIndex {
                                 LOG.debug("loading the first {} entries for query {}", nextBatchSize, query);
                                 if (sort == null) {
                                     docs = searcher.search(query, nextBatchSize);
+                                } else if (indexSorter != null) {
+                                    docs = searchSorted(searcher, query, null, 0, nextBatchSize, sort, indexSorter);
                                 } else {
                                     docs = searcher.search(query, nextBatchSize, sort);
                                 }
                             }
+                            loadedCount += docs.scoreDocs.length;
                             PERF_LOGGER.end(start, -1, "{} ...", docs.scoreDocs.length);
                             nextBatchSize = (int) Math.min(nextBatchSize * 2L, 100000);
 
@@ -449,7 +469,10 @@ public class LucenePropertyIndex extends FulltextIndex {
                                 }
                             }
 
-                            for (ScoreDoc doc : docs.scoreDocs) {
+                            String[] paths = cached == null ?
+                                    PathReader.readPaths(searcher.getIndexReader(), docs.scoreDocs) : null;
+                            for (int i = 0; i < docs.scoreDocs.length; i++) {
+                                ScoreDoc doc = docs.scoreDocs[i];
                                 Map<String, String> excerpts = null;
                                 if (addExcerpt) {
                                     excerpts = getExcerpt(query, excerptFields, analyzer, searcher, doc, mergedFieldInfos);
@@ -460,12 +483,16 @@ public class LucenePropertyIndex extends FulltextIndex {
                                     explanation = searcher.explain(query, doc.doc).toString();
                                 }
 
-                                FulltextResultRow row = convertToRow(doc, searcher, excerpts, facetProvider, explanation);
+                                String path = cached != null ? cached.getPath(i) : paths[i];
+                                FulltextResultRow row = convertToRow(doc, path, excerpts, facetProvider, explanation);
                                 if (row != null) {
                                     queue.add(row);
                                 }
                                 lastDocToRecord = doc;
                             }
+                            if (cached == null && resultCache != null) {
+                                resultCache.put(query, sort, offset, batchSize, docs, paths);
+                            }
 
                             if (earlyStop) {
                                 noDocs = true;
@@ -593,6 +620,30 @@ public class LucenePropertyIndex extends FulltextIndex {
         return new FulltextPathCursor(itr, rItr, plan, settings, sizeEstimator);
     }
 
+    /**
+     * Search the top documents using a sort order that is the same as the
+     * index sort order. For segments that are sorted (merged segments), the
+     * collection stops after the first {@code offset + n} matching documents:
+     * within such a segment, a later document can not be in the next batch, as
+     * at least n not yet returned documents sort before it.
+     *
+     * @param searcher the searcher
+     * @param query the query
+     * @param after the last document of the previous batch, or null
+     * @param offset the number of documents returned up to (and including) after
+     * @param n the batch size
+     * @param sort the sort order
+     * @param indexSorter the index sorter for this sort order
+     * @return the top documents
+     */
+    static TopDocs searchSorted(IndexSearcher searcher, Query query, @Nullable FieldDoc after, int offset,
+                                int n, Sort sort, Sorter indexSorter) throws IOException {
+        TopFieldCollector collector = TopFieldCollector.create(sort, n, after, true, false, false, false);
+        int numDocsToCollect = (int) Math.min((long) offset + n, Integer.MAX_VALUE);
+        searcher.search(query, new EarlyTerminatingSortingCollector(collector, indexSorter, numDocsToCollect));
+        return collector.topDocs();
+    }
+
     private static Query addDescendantClauseIfRequired(Query query, IndexPlan plan) {
         Filter filter = plan.getFilter();
 
@@ -1834,6 +1885,11 @@ public class LucenePropertyIndex extends FulltextIndex {
             getIndexNode().refreshReadersOnWriteIfRequired();
         }
 
+        @Override
+        public @Nullable LuceneQueryResultCache getResultCache() {
+            return getIndexNode().getResultCache();
+        }
+
     }
 
     static abstract class LuceneResultRowIterator extends AbstractIterator<FulltextResultRow> implements IteratorRewoundStateProvider {
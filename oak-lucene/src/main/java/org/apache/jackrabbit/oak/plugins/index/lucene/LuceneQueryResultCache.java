@@ -0,0 +1,223 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.jackrabbit.oak.plugins.index.lucene;
+
+import java.util.Objects;
+
+import org.apache.jackrabbit.guava.common.cache.Cache;
+import org.apache.jackrabbit.guava.common.cache.CacheBuilder;
+import org.apache.jackrabbit.guava.common.cache.Weigher;
+import org.apache.lucene.search.FieldDoc;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.Sort;
+import org.apache.lucene.search.TopDocs;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * A cache for the results of Lucene queries, for one generation of an index
+ * (one index searcher). When the index is reopened or refreshed, a new cache
+ * is used, so that the cached entries never need to be invalidated.
+ * <p>
+ * An entry is one batch of search results: the document ids, scores and
+ * (untransformed) paths. As the document ids are only valid for the searcher
+ * that returned them, the cache must not be used with other searchers.
+ * Access rights are checked later on, so that the cached entries can be
+ * shared by all sessions.
+ */
+public class LuceneQueryResultCache {
+
+    /**
+     * Batches larger than this fraction of the cache size are not cached.
+     */
+    private static final int MAX_ENTRY_FRACTION = 4;
+
+    private static final Weigher<Key, Entry> WEIGHER = new Weigher<Key, Entry>() {
+        @Override
+        public int weigh(@NotNull Key key, @NotNull Entry value) {
+            return value.paths.length + 1;
+        }
+    };
+
+    private final Cache<Key, Entry> cache;
+
+    private final int maxSize;
+
+    /**
+     * Create a cache.
+     *
+     * @param maxSize the maximum number of cached results (documents)
+     */
+    LuceneQueryResultCache(int maxSize) {
+        this.maxSize = maxSize;
+        this.cache = CacheBuilder.newBuilder()
+                .weigher(WEIGHER)
+                .maximumWeight(maxSize)
+                .recordStats()
+                .build();
+    }
+
+    /**
+     * Get a cached batch of search results.
+     *
+     * @param query the query
+     * @param sort the sort order, or null
+     * @param offset the number of results of the previous batches
+     * @param n the batch size
+     * @return the entry, or null if not cached
+     */
+    @Nullable
+    Entry get(Query query, @Nullable Sort sort, int offset, int n) {
+        return cache.getIfPresent(new Key(query, sort, offset, n));
+    }
+
+    /**
+     * Cache a batch of search results.
+     *
+     * @param query the query
+     * @param sort the sort order, or null
+     * @param offset the number of results of the previous batches
+     * @param n the batch size
+     * @param docs the search results
+     * @param paths the paths of the documents (the same order as the results)
+     */
+    void put(Query query, @Nullable Sort sort, int offset, int n, TopDocs docs, String[] paths) {
+        if (paths.length > maxSize / MAX_ENTRY_FRACTION) {
+            return;
+        }
+        cache.put(new Key(query, sort, offset, n), new Entry(docs, paths));
+    }
+
+    public long getHitCount() {
+        return cache.stats().hitCount();
+    }
+
+    public long getMissCount() {
+        return cache.stats().missCount();
+    }
+
+    public long getEntryCount() {
+        return cache.size();
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * A cached batch of search results.
+     */
+    static class Entry {
+
+        private final int totalHits;
+        private final float maxScore;
+        private final int[] docIds;
+        private final float[] scores;
+        private final String[] paths;
+
+        /**
+         * The sort values of the last document, which is needed to search
+         * after it, or null if the results are not sorted.
+         */
+        private final Object[] lastFields;
+
+        Entry(TopDocs docs, String[] paths) {
+            ScoreDoc[] scoreDocs = docs.scoreDocs;
+            this.totalHits = docs.totalHits;
+            this.maxScore = docs.getMaxScore();
+            this.docIds = new int[scoreDocs.length];
+            this.scores = new float[scoreDocs.length];
+            for (int i = 0; i < scoreDocs.length; i++) {
+                docIds[i] = scoreDocs[i].doc;
+                scores[i] = scoreDocs[i].score;
+            }
+            this.paths = paths;
+            ScoreDoc last = scoreDocs.length == 0 ? null : scoreDocs[scoreDocs.length - 1];
+            this.lastFields = last instanceof FieldDoc ? ((FieldDoc) last).fields : null;
+        }
+
+        /**
+         * Get the search results. A new instance is returned for each call, as
+         * the caller might re-order them.
+         *
+         * @return the search results
+         */
+        TopDocs getTopDocs() {
+            ScoreDoc[] scoreDocs = new ScoreDoc[docIds.length];
+            for (int i = 0; i < scoreDocs.length; i++) {
+                if (i == scoreDocs.length - 1 && lastFields != null) {
+                    scoreDocs[i] = new FieldDoc(docIds[i], scores[i], lastFields);
+                } else {
+                    scoreDocs[i] = new ScoreDoc(docIds[i], scores[i]);
+                }
+            }
+            return new TopDocs(totalHits, scoreDocs, maxScore);
+        }
+
+        /**
+         * Get the path of the given search result.
+         *
+         * @param index the index within the search results
+         * @return the path, or null if the document doesn't have a path
+         */
+        @Nullable
+        String getPath(int index) {
+            return paths[index];
+        }
+
+    }
+
+    private static class Key {
+
+        private final Query query;
+        private final Sort sort;
+        private final int offset;
+        private final int n;
+        private final int hash;
+
+        Key(Query query, @Nullable Sort sort, int offset, int n) {
+            this.query = query;
+            this.sort = sort;
+            this.offset = offset;
+            this.n = n;
+            this.hash = Objects.hash(query, sort, offset, n);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) obj;
+            return hash == other.hash && offset == other.offset && n == other.n
+                    && query.equals(other.query) && Objects.equals(sort, other.sort);
+        }
+
+    }
+
+}
@@ -0,0 +1,175 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.jackrabbit.oak.plugins.index.lucene;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.jackrabbit.oak.stats.TimerStats;
+import org.apache.lucene.index.AtomicReaderContext;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.search.FieldDoc;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.Sort;
+import org.apache.lucene.search.TopDocs;
+import org.apache.lucene.search.TopFieldDocs;
+import org.apache.lucene.search.Weight;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * An index searcher that searches groups of segments (slices) concurrently,
+ * for the searches that support it (top documents, with or without sort
+ * order). The executor is shared by all indexes, and owned by the
+ * {@link IndexTracker}. If all threads are busy and the queue is full (or the
+ * executor was shut down), the slice is searched in the calling thread.
+ * <p>
+ * Adjacent segments are grouped into slices, so that small segments don't
+ * each need their own task. The time to search each slice is recorded.
+ */
+class ParallelIndexSearcher extends IndexSearcher {
+
+    /**
+     * The name of the timer for the time needed to search a slice (suffixed
+     * with ";" and the index path).
+     */
+    static final String SLICE_TIME = "LUCENE_SEARCH_SLICE_TIME";
+
+    private static final int SEARCH_THREADS = Integer.getInteger("oak.lucene.searchThreads",
+            Runtime.getRuntime().availableProcessors());
+
+    private static final int SEARCH_QUEUE_SIZE = Integer.getInteger("oak.lucene.searchQueueSize", 1000);
+
+    static final int MAX_DOCS_PER_SLICE = Integer.getInteger("oak.lucene.maxDocsPerSlice", 250_000);
+
+    static final int MAX_SEGMENTS_PER_SLICE = 5;
+
+    private final TimerStats sliceTime;
+
+    ParallelIndexSearcher(IndexReader reader, ExecutorService executor, TimerStats sliceTime) {
+        super(reader, executor);
+        this.sliceTime = sliceTime;
+    }
+
+    /**
+     * This is called from the constructor, so it can't use the fields.
+     */
+    @Override
+    protected LeafSlice[] slices(List<AtomicReaderContext> leaves) {
+        List<AtomicReaderContext[]> groups = groupLeaves(leaves);
+        LeafSlice[] slices = new LeafSlice[groups.size()];
+        for (int i = 0; i < slices.length; i++) {
+            slices[i] = new LeafSlice(groups.get(i));
+        }
+        return slices;
+    }
+
+    /**
+     * Group adjacent segments into slices. The order of the segments is kept,
+     * as collectors expect the documents in increasing order.
+     *
+     * @param leaves the segments
+     * @return the groups
+     */
+    static List<AtomicReaderContext[]> groupLeaves(List<AtomicReaderContext> leaves) {
+        List<AtomicReaderContext[]> groups = new ArrayList<>();
+        List<AtomicReaderContext> group = new ArrayList<>();
+        long docCount = 0;
+        for (AtomicReaderContext leaf : leaves) {
+            group.add(leaf);
+            docCount += leaf.reader().maxDoc();
+            if (docCount >= MAX_DOCS_PER_SLICE || group.size() >= MAX_SEGMENTS_PER_SLICE) {
+                groups.add(group.toArray(new AtomicReaderContext[0]));
+                group.clear();
+                docCount = 0;
+            }
+        }
+        if (!group.isEmpty()) {
+            groups.add(group.toArray(new AtomicReaderContext[0]));
+        }
+        return groups;
+    }
+
+    /**
+     * Search a slice for the top documents. With an executor, this is only
+     * called for the slices (not for the whole index).
+     */
+    @Override
+    protected TopDocs search(List<AtomicReaderContext> leaves, Weight weight, ScoreDoc after, int nDocs)
+            throws IOException {
+        TimerStats.Context timer = sliceTime.time();
+        try {
+            return super.search(leaves, weight, after, nDocs);
+        } finally {
+            timer.stop();
+        }
+    }
+
+    /**
+     * Search a slice for the top documents in sort order.
+     */
+    @Override
+    protected TopFieldDocs search(List<AtomicReaderContext> leaves, Weight weight, FieldDoc after, int nDocs,
+                                  Sort sort, boolean fillFields, boolean doDocScores, boolean doMaxScore)
+            throws IOException {
+        TimerStats.Context timer = sliceTime.time();
+        try {
+            return super.search(leaves, weight, after, nDocs, sort, fillFields, doDocScores, doMaxScore);
+        } finally {
+            timer.stop();
+        }
+    }
+
+    /**
+     * Create the executor used to search slices.
+     *
+     * @return the executor (the caller needs to shut it down)
+     */
+    static ExecutorService createExecutor() {
+        ThreadPoolExecutor e = new ThreadPoolExecutor(SEARCH_THREADS, SEARCH_THREADS,
+                60, TimeUnit.SECONDS, new ArrayBlockingQueue<>(SEARCH_QUEUE_SIZE), new ThreadFactory() {
+            private final AtomicInteger counter = new AtomicInteger();
+
+            @Override
+            public Thread newThread(@NotNull Runnable r) {
+                Thread thread = new Thread(r, "oak-lucene-search-" + counter.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        }, new RejectedExecutionHandler() {
+            @Override
+            public void rejectedExecution(Runnable r, ThreadPoolExecutor executor) {
+                // unlike CallerRunsPolicy, also run the task if the executor
+                // was shut down, as the searcher waits for the result
+                r.run();
+            }
+        });
+        e.allowCoreThreadTimeOut(true);
+        return e;
+    }
+
+}
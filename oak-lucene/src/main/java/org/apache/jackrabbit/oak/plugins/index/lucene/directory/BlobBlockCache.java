@@ -0,0 +1,143 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.jackrabbit.oak.plugins.index.lucene.directory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.concurrent.ExecutionException;
+
+import org.apache.jackrabbit.guava.common.cache.Cache;
+import org.apache.jackrabbit.guava.common.cache.CacheBuilder;
+import org.apache.jackrabbit.guava.common.cache.Weigher;
+import org.apache.jackrabbit.guava.common.primitives.Ints;
+import org.apache.jackrabbit.oak.api.Blob;
+import org.apache.jackrabbit.oak.cache.CacheStats;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A size bounded cache for the blocks (blobs) of index files that are stored
+ * in the NodeStore. The data is kept in heap buffers, so that the configured
+ * maximum size bounds the memory that is actually used. The cache is owned by
+ * the component that creates it (for example the index provider service), and
+ * passed to the {@link OakDirectory} instances that should use it; as each
+ * block of a file is stored in its own blob, the content identity of the blob
+ * is used as the key.
+ * <p>
+ * The cached buffers are never modified. Readers need to use a
+ * {@link ByteBuffer#duplicate() duplicate}, so that they don't share the
+ * position.
+ */
+public class BlobBlockCache {
+
+    private static final Logger log = LoggerFactory.getLogger(BlobBlockCache.class);
+
+    private static final Weigher<String, ByteBuffer> WEIGHER = new Weigher<String, ByteBuffer>() {
+        @Override
+        public int weigh(@NotNull String key, @NotNull ByteBuffer value) {
+            // the overhead of the key and the entry is small compared to the block
+            return value.capacity() + key.length() * 2 + 64;
+        }
+    };
+
+    private final Cache<String, ByteBuffer> cache;
+
+    private final CacheStats cacheStats;
+
+    public BlobBlockCache(long maxSizeInBytes) {
+        cache = CacheBuilder.newBuilder()
+                .weigher(WEIGHER)
+                .maximumWeight(maxSizeInBytes)
+                .recordStats()
+                .build();
+        cacheStats = new CacheStats(cache, "LuceneBlockCache", WEIGHER, maxSizeInBytes);
+        log.info("Lucene block cache enabled with a maximum size of {} bytes", maxSizeInBytes);
+    }
+
+    /**
+     * Get the content of the given blob, from the cache if possible.
+     *
+     * @param blob the blob
+     * @return the (read-only) content, or null if the blob can not be cached
+     *         (because it doesn't have a content identity)
+     */
+    @Nullable
+    ByteBuffer getBlock(Blob blob) throws IOException {
+        String id = blob.getContentIdentity();
+        if (id == null) {
+            return null;
+        }
+        try {
+            return cache.get(id, () -> load(blob));
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException(e.getCause());
+        }
+    }
+
+    private static ByteBuffer load(Blob blob) throws IOException {
+        int length = Ints.checkedCast(blob.length());
+        byte[] data = new byte[length];
+        try (InputStream in = blob.getNewStream()) {
+            int pos = 0;
+            while (pos < length) {
+                int n = in.read(data, pos, length - pos);
+                if (n < 0) {
+                    throw new IOException("Unexpected end of blob " + blob.getContentIdentity()
+                            + " at " + pos + " of " + length);
+                }
+                pos += n;
+            }
+        }
+        return ByteBuffer.wrap(data).asReadOnlyBuffer();
+    }
+
+    /**
+     * Discard all cached blocks.
+     */
+    public void invalidateAll() {
+        cache.invalidateAll();
+    }
+
+    public CacheStats getCacheStats() {
+        return cacheStats;
+    }
+
+    public long getHitCount() {
+        return cache.stats().hitCount();
+    }
+
+    public long getMissCount() {
+        return cache.stats().missCount();
+    }
+
+    public long getSize() {
+        return cacheStats.estimateCurrentWeight();
+    }
+
+    public long getMaxSize() {
+        return cacheStats.getMaxTotalWeight();
+    }
+
+}
@@ -20,13 +20,20 @@
 package org.apache.jackrabbit.oak.plugins.index.lucene.directory;
 
 import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.stream.Collectors;
@@ -165,27 +172,87 @@ public class CopyOnReadDirectory extends FilterDirectory {
 
     private void prefetchIndexFiles() throws IOException {
         long start = PERF_LOGGER.start();
-        long totalSize = 0;
-        int copyCount = 0;
-        List<String> copiedFileNames = Lists.newArrayList();
+        Map<String, Long> remoteFiles = new HashMap<>();
+        long remoteSize = 0;
         for (String name : remote.listAll()) {
             if (IndexCopier.REMOTE_ONLY.contains(name)) {
                 continue;
             }
+            long length = remote.fileLength(name);
+            remoteFiles.put(name, length);
+            remoteSize += length;
+        }
+        // the smallest files first, so that a slow download of a large file
+        // doesn't delay all others
+        List<String> names = new ArrayList<>(remoteFiles.keySet());
+        names.sort(Comparator.comparing(remoteFiles::get));
+
+        IndexCopier.PrefetchStatus status = indexCopier.startPrefetch(indexPath, names.size(), remoteSize);
+        Executor prefetchExecutor = indexCopier.getPrefetchExecutor();
+        List<FutureTask<Long>> tasks = new ArrayList<>(names.size());
+        for (String name : names) {
             CORFileReference fileRef = new CORFileReference(name);
             files.putIfAbsent(name, fileRef);
-            long fileSize = copyFilesToLocal(fileRef, false, false);
+            FutureTask<Long> task = new FutureTask<>(() -> prefetchFile(fileRef, remoteFiles.get(name), status));
+            tasks.add(task);
+            if (prefetchExecutor == null) {
+                task.run();
+            } else {
+                prefetchExecutor.execute(task);
+            }
+        }
+
+        long totalSize = 0;
+        int copyCount = 0;
+        List<String> copiedFileNames = Lists.newArrayList();
+        for (int i = 0; i < tasks.size(); i++) {
+            long fileSize = getPrefetchResult(tasks.get(i));
             if (fileSize > 0) {
                 copyCount++;
                 totalSize += fileSize;
-                copiedFileNames.add(name);
+                copiedFileNames.add(names.get(i));
             }
         }
 
         local.sync(copiedFileNames);
+        status.done();
         PERF_LOGGER.end(start, -1, "[{}] Copied {} files totaling {}", indexPath, copyCount, humanReadableByteCount(totalSize));
     }
 
+    private long prefetchFile(CORFileReference fileRef, long length, IndexCopier.PrefetchStatus status)
+            throws IOException {
+        if (!local.fileExists(fileRef.name)) {
+            try {
+                indexCopier.throttlePrefetch(length);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while prefetching " + fileRef.name);
+            }
+        }
+        long fileSize = copyFilesToLocal(fileRef, false, false);
+        status.fileCopied(length);
+        return fileSize;
+    }
+
+    private static long getPrefetchResult(FutureTask<Long> task) throws IOException {
+        try {
+            return task.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for the prefetch of index files");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IOException(cause);
+        }
+    }
+
     private long copyFilesToLocal(CORFileReference reference, boolean sync, boolean logDuration) {
         String name = reference.name;
         boolean success = false;
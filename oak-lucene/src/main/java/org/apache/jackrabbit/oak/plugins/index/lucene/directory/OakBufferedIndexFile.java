@@ -20,6 +20,7 @@ import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.SequenceInputStream;
+import java.nio.ByteBuffer;
 import java.util.List;
 
 import org.apache.jackrabbit.guava.common.io.ByteStreams;
@@ -31,6 +32,7 @@ import org.apache.jackrabbit.oak.commons.StringUtils;
 import org.apache.jackrabbit.oak.spi.state.NodeBuilder;
 import org.apache.lucene.store.DataInput;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 import static org.apache.jackrabbit.guava.common.base.Preconditions.checkElementIndex;
 import static org.apache.jackrabbit.guava.common.base.Preconditions.checkNotNull;
@@ -96,10 +98,22 @@ class OakBufferedIndexFile implements OakIndexFile {
     private int index = -1;
 
     /**
-     * The data of the currently loaded blob.
+     * The data of the currently loaded blob (allocated on first use).
      */
     private byte[] blob;
 
+    /**
+     * The data of the currently loaded blob if it was read from the block
+     * cache (read-only, with a position independent of other readers), or
+     * null if the data is in the blob array.
+     */
+    private ByteBuffer cachedBlob;
+
+    /**
+     * The shared block cache, or null if disabled.
+     */
+    private final BlobBlockCache blockCache;
+
     /**
      * The unique key that is used to make the content unique (to allow removing binaries from the blob store without risking to remove binaries that are still needed).
      */
@@ -117,13 +131,18 @@ class OakBufferedIndexFile implements OakIndexFile {
 
     public OakBufferedIndexFile(String name, NodeBuilder file, String dirDetails,
                                 @NotNull BlobFactory blobFactory) {
+        this(name, file, dirDetails, blobFactory, null);
+    }
+
+    public OakBufferedIndexFile(String name, NodeBuilder file, String dirDetails,
+                                @NotNull BlobFactory blobFactory, @Nullable BlobBlockCache blockCache) {
         this.name = name;
         this.file = file;
         this.dirDetails = dirDetails;
         this.blobSize = determineBlobSize(file);
         this.uniqueKey = readUniqueKey(file);
-        this.blob = new byte[blobSize];
         this.blobFactory = checkNotNull(blobFactory);
+        this.blockCache = blockCache;
 
         PropertyState property = file.getProperty(JCR_DATA);
         if (property != null && property.getType() == BINARIES) {
@@ -148,7 +167,7 @@ class OakBufferedIndexFile implements OakIndexFile {
         this.dirDetails = that.dirDetails;
         this.blobSize = that.blobSize;
         this.uniqueKey = that.uniqueKey;
-        this.blob = new byte[blobSize];
+        this.blockCache = that.blockCache;
 
         this.position = that.position;
         this.length = that.length;
@@ -164,9 +183,18 @@ class OakBufferedIndexFile implements OakIndexFile {
             checkState(!blobModified);
 
             int n = (int) Math.min(blobSize, length - (long)i * blobSize);
+            if (blockCache != null) {
+                ByteBuffer block = blockCache.getBlock(data.get(i));
+                if (block != null) {
+                    cachedBlob = block.duplicate();
+                    index = i;
+                    return;
+                }
+            }
+            cachedBlob = null;
             InputStream stream = data.get(i).getNewStream();
             try {
-                ByteStreams.readFully(stream, blob, 0, n);
+                ByteStreams.readFully(stream, getBlobArray(), 0, n);
             } finally {
                 stream.close();
             }
@@ -174,6 +202,26 @@ class OakBufferedIndexFile implements OakIndexFile {
         }
     }
 
+    private byte[] getBlobArray() {
+        if (blob == null) {
+            blob = new byte[blobSize];
+        }
+        return blob;
+    }
+
+    /**
+     * Copy the data of the current blob from the block cache to the blob
+     * array, so that it can be modified.
+     */
+    private void detachCachedBlob() {
+        if (cachedBlob != null) {
+            int n = (int) Math.min(blobSize, length - (long)index * blobSize);
+            cachedBlob.position(0);
+            cachedBlob.get(getBlobArray(), 0, n);
+            cachedBlob = null;
+        }
+    }
+
     private void flushBlob() throws IOException {
         if (blobModified) {
             int n = (int) Math.min(blobSize, length - (long)index * blobSize);
@@ -213,12 +261,13 @@ class OakBufferedIndexFile implements OakIndexFile {
     @Override
     public void close() {
         this.blob = null;
+        this.cachedBlob = null;
         this.data = null;
     }
 
     @Override
     public boolean isClosed() {
-        return blob == null && data == null;
+        return data == null;
     }
 
     @Override
@@ -251,7 +300,12 @@ class OakBufferedIndexFile implements OakIndexFile {
             loadBlob(i);
 
             int l = Math.min(len, blobSize - o);
-            System.arraycopy(blob, o, b, offset, l);
+            if (cachedBlob != null) {
+                cachedBlob.position(o);
+                cachedBlob.get(b, offset, l);
+            } else {
+                System.arraycopy(blob, o, b, offset, l);
+            }
 
             offset += l;
             len -= l;
@@ -283,10 +337,12 @@ class OakBufferedIndexFile implements OakIndexFile {
                     // and either: l is the blockSize, or
                     // we write at least to the end of the file
                     flushBlob();
+                    cachedBlob = null;
                     index = i;
                 }
             }
-            System.arraycopy(b, offset, blob, o, l);
+            detachCachedBlob();
+            System.arraycopy(b, offset, getBlobArray(), o, l);
             blobModified = true;
 
             offset += l;
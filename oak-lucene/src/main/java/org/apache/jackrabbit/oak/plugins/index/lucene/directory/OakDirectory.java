@@ -85,6 +85,7 @@ public class OakDirectory extends Directory {
     private final String indexName;
     private final BlobFactory blobFactory;
     private final BlobDeletionCallback blobDeletionCallback;
+    private BlobBlockCache blockCache;
     private volatile boolean dirty;
 
     public OakDirectory(NodeBuilder builder, LuceneIndexDefinition definition, boolean readOnly) {
@@ -138,6 +139,17 @@ public class OakDirectory extends Directory {
         this.streamingWriteEnabled = streamingWriteEnabled;
     }
 
+    /**
+     * Use the given cache for the blocks of the files that are read.
+     *
+     * @param blockCache the cache, or null to read the blobs directly
+     * @return this
+     */
+    public OakDirectory withBlockCache(@Nullable BlobBlockCache blockCache) {
+        this.blockCache = blockCache;
+        return this;
+    }
+
     @Override
     public String[] listAll() throws IOException {
         return fileNames.toArray(new String[fileNames.size()]);
@@ -232,7 +244,7 @@ public class OakDirectory extends Directory {
             throws IOException {
         NodeBuilder file = directoryBuilder.getChildNode(name);
         if (file.exists()) {
-            return new OakIndexInput(name, file, indexName, blobFactory);
+            return new OakIndexInput(name, file, indexName, blobFactory, blockCache);
         } else {
             String msg = String.format("[%s] %s", indexName, name);
             throw new FileNotFoundException(msg);
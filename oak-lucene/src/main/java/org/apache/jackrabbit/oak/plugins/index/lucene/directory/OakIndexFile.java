@@ -22,6 +22,7 @@ import org.apache.jackrabbit.oak.api.PropertyState;
 import org.apache.jackrabbit.oak.spi.state.NodeBuilder;
 import org.apache.lucene.store.DataInput;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 import static org.apache.jackrabbit.JcrConstants.JCR_DATA;
 import static org.apache.jackrabbit.oak.api.Type.BINARY;
@@ -34,6 +35,12 @@ public interface OakIndexFile {
 
     static OakIndexFile getOakIndexFile(String name, NodeBuilder file, String dirDetails,
                                         @NotNull BlobFactory blobFactory, boolean streamingWriteEnabled) {
+        return getOakIndexFile(name, file, dirDetails, blobFactory, streamingWriteEnabled, null);
+    }
+
+    static OakIndexFile getOakIndexFile(String name, NodeBuilder file, String dirDetails,
+                                        @NotNull BlobFactory blobFactory, boolean streamingWriteEnabled,
+                                        @Nullable BlobBlockCache blockCache) {
 
         boolean useStreaming;
         PropertyState property = file.getProperty(JCR_DATA);
@@ -45,7 +52,7 @@ public interface OakIndexFile {
 
         return useStreaming ?
                 new OakStreamingIndexFile(name, file, dirDetails, blobFactory) :
-                new OakBufferedIndexFile(name, file, dirDetails, blobFactory);
+                new OakBufferedIndexFile(name, file, dirDetails, blobFactory, blockCache);
     }
 
     /**
@@ -23,6 +23,7 @@ import org.apache.jackrabbit.oak.spi.state.NodeBuilder;
 import org.apache.lucene.store.AlreadyClosedException;
 import org.apache.lucene.store.IndexInput;
 import org.apache.lucene.util.WeakIdentityMap;
+import org.jetbrains.annotations.Nullable;
 
 import static org.apache.jackrabbit.oak.plugins.index.lucene.directory.OakIndexFile.getOakIndexFile;
 
@@ -35,9 +36,14 @@ class OakIndexInput extends IndexInput {
 
     public OakIndexInput(String name, NodeBuilder file, String dirDetails,
                          BlobFactory blobFactory) {
+        this(name, file, dirDetails, blobFactory, null);
+    }
+
+    public OakIndexInput(String name, NodeBuilder file, String dirDetails,
+                         BlobFactory blobFactory, @Nullable BlobBlockCache blockCache) {
         super(name);
         this.dirDetails = dirDetails;
-        this.file = getOakIndexFile(name, file, dirDetails, blobFactory);
+        this.file = getOakIndexFile(name, file, dirDetails, blobFactory, false, blockCache);
         clones = WeakIdentityMap.newConcurrentHashMap();
     }
 
@@ -27,6 +27,7 @@ import java.util.List;
 import org.apache.jackrabbit.guava.common.collect.ImmutableList;
 import org.apache.jackrabbit.oak.plugins.index.lucene.IndexCopier;
 import org.apache.jackrabbit.oak.plugins.index.lucene.LuceneIndexDefinition;
+import org.apache.jackrabbit.oak.plugins.index.lucene.directory.BlobBlockCache;
 import org.apache.jackrabbit.oak.plugins.index.lucene.directory.OakDirectory;
 import org.apache.jackrabbit.oak.plugins.index.lucene.writer.MultiplexersLucene;
 import org.apache.jackrabbit.oak.plugins.index.search.FulltextIndexConstants;
@@ -43,10 +44,17 @@ import static org.apache.jackrabbit.oak.plugins.index.lucene.LuceneIndexConstant
 public class DefaultIndexReaderFactory implements LuceneIndexReaderFactory {
     private final IndexCopier cloner;
     private final MountInfoProvider mountInfoProvider;
+    private final BlobBlockCache blockCache;
 
     public DefaultIndexReaderFactory(MountInfoProvider mountInfoProvider, @Nullable IndexCopier cloner) {
+        this(mountInfoProvider, cloner, null);
+    }
+
+    public DefaultIndexReaderFactory(MountInfoProvider mountInfoProvider, @Nullable IndexCopier cloner,
+                                     @Nullable BlobBlockCache blockCache) {
         this.cloner = cloner;
         this.mountInfoProvider = mountInfoProvider;
+        this.blockCache = blockCache;
     }
 
     @Override
@@ -93,7 +101,8 @@ public class DefaultIndexReaderFactory implements LuceneIndexReaderFactory {
         Directory directory = null;
         NodeState data = defnNodeState.getChildNode(indexDataNodeName);
         if (data.exists()) {
-            directory = new OakDirectory(new ReadOnlyBuilder(defnNodeState), indexDataNodeName, definition, true);
+            directory = new OakDirectory(new ReadOnlyBuilder(defnNodeState), indexDataNodeName, definition, true)
+                    .withBlockCache(blockCache);
             if (cloner != null) {
                 directory = cloner.wrapForRead(indexPath, definition, directory, indexDataNodeName);
             }
@@ -108,7 +117,8 @@ public class DefaultIndexReaderFactory implements LuceneIndexReaderFactory {
         if (directory != null) {
             Directory suggestDirectory = null;
             if (definition.isSuggestEnabled()) {
-                suggestDirectory = new OakDirectory(new ReadOnlyBuilder(defnNodeState), suggestDataNodeName, definition, true);
+                suggestDirectory = new OakDirectory(new ReadOnlyBuilder(defnNodeState), suggestDataNodeName, definition, true)
+                        .withBlockCache(blockCache);
                 if (cloner != null && definition.getUniqueId() != null) {
                     suggestDirectory = cloner.wrapForRead(indexPath, definition, suggestDirectory, suggestDataNodeName);
                 }
@@ -0,0 +1,95 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.jackrabbit.oak.plugins.index.lucene.util;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+import org.apache.jackrabbit.oak.plugins.index.search.FieldNames;
+import org.apache.lucene.index.AtomicReader;
+import org.apache.lucene.index.AtomicReaderContext;
+import org.apache.lucene.index.BinaryDocValues;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.ReaderUtil;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.util.Bits;
+import org.apache.lucene.util.BytesRef;
+
+/**
+ * Reads the paths of search results. If the segment of a document contains
+ * the path doc values field (index format version 3 and newer), the path is
+ * read from there. Otherwise, the stored path field is loaded, which requires
+ * decompressing a block of stored fields per document.
+ */
+public final class PathReader {
+
+    private PathReader() {
+    }
+
+    /**
+     * Read the paths of the given documents. The documents are read in the
+     * order of the document ids, so that each segment is only accessed once.
+     *
+     * @param reader the index reader
+     * @param docs the documents
+     * @return the paths, in the same order as the documents (null for
+     *         documents without path)
+     */
+    public static String[] readPaths(IndexReader reader, ScoreDoc[] docs) throws IOException {
+        String[] paths = new String[docs.length];
+        if (docs.length == 0) {
+            return paths;
+        }
+        Integer[] order = new Integer[docs.length];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, Comparator.comparingInt(i -> docs[i].doc));
+
+        List<AtomicReaderContext> leaves = reader.leaves();
+        AtomicReaderContext leaf = null;
+        BinaryDocValues docValues = null;
+        Bits docsWithPath = null;
+        BytesRef bytes = new BytesRef();
+        for (int i : order) {
+            int doc = docs[i].doc;
+            if (leaf == null || doc >= leaf.docBase + leaf.reader().maxDoc()) {
+                leaf = leaves.get(ReaderUtil.subIndex(doc, leaves));
+                AtomicReader leafReader = leaf.reader();
+                docValues = leafReader.getBinaryDocValues(FieldNames.PATH);
+                docsWithPath = docValues == null ? null : leafReader.getDocsWithField(FieldNames.PATH);
+            }
+            int localDoc = doc - leaf.docBase;
+            if (docsWithPath != null && docsWithPath.get(localDoc)) {
+                docValues.get(localDoc, bytes);
+                paths[i] = bytes.utf8ToString();
+            } else {
+                // an older segment, or a document that was added with an
+                // older index format version
+                PathStoredFieldVisitor visitor = new PathStoredFieldVisitor();
+                leaf.reader().document(localDoc, visitor);
+                paths[i] = visitor.getPath();
+            }
+        }
+        return paths;
+    }
+
+}
@@ -25,7 +25,6 @@ import static org.apache.jackrabbit.oak.plugins.index.lucene.writer.IndexWriterU
 
 import java.io.IOException;
 import java.util.Calendar;
-import java.util.Iterator;
 import java.util.List;
 
 import org.apache.jackrabbit.oak.api.PropertyState;
@@ -47,6 +46,7 @@ import org.apache.lucene.index.IndexableField;
 import org.apache.lucene.search.PrefixQuery;
 import org.apache.lucene.store.Directory;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -64,6 +64,7 @@ class DefaultIndexWriter implements LuceneIndexWriter {
     private final String suggestDirName;
     private final boolean reindex;
     private final LuceneIndexWriterConfig writerConfig;
+    private final LargeMergeScheduler largeMergeScheduler;
     private volatile IndexWriter writer;
     private Directory directory;
     private long genAtStart = -1;
@@ -72,6 +73,13 @@ class DefaultIndexWriter implements LuceneIndexWriter {
     public DefaultIndexWriter(LuceneIndexDefinition definition, NodeBuilder definitionBuilder,
                               DirectoryFactory directoryFactory, String dirName, String suggestDirName,
                               boolean reindex, LuceneIndexWriterConfig writerConfig) {
+        this(definition, definitionBuilder, directoryFactory, dirName, suggestDirName, reindex, writerConfig, null);
+    }
+
+    public DefaultIndexWriter(LuceneIndexDefinition definition, NodeBuilder definitionBuilder,
+                              DirectoryFactory directoryFactory, String dirName, String suggestDirName,
+                              boolean reindex, LuceneIndexWriterConfig writerConfig,
+                              @Nullable LargeMergeScheduler largeMergeScheduler) {
         this.definition = definition;
         this.definitionBuilder = definitionBuilder;
         this.directoryFactory = directoryFactory;
@@ -79,13 +87,12 @@ class DefaultIndexWriter implements LuceneIndexWriter {
         this.suggestDirName = suggestDirName;
         this.reindex = reindex;
         this.writerConfig = writerConfig;
+        this.largeMergeScheduler = largeMergeScheduler;
     }
 
     @Override
     public void updateDocument(String path, Iterable<? extends IndexableField> doc) throws IOException {
-        Iterator<? extends IndexableField> f = doc.iterator();
-        String fieldName = f.hasNext() ? f.next().name() : null;
-        boolean containsOnlyPath = FieldNames.PATH.equals(fieldName) && !f.hasNext();
+        boolean containsOnlyPath = containsOnlyPath(doc);
         boolean isPropertyRegexMatchingEnabled = definition.getPropertyRegex() != null;
         if (reindex) {
             if (containsOnlyPath && isPropertyRegexMatchingEnabled) {
@@ -133,6 +140,12 @@ class DefaultIndexWriter implements LuceneIndexWriter {
             getWriter();
         }
 
+        if (writer == null && !reindex && largeMergeScheduler != null
+                && largeMergeScheduler.isMergeCheckDue(definition.getIndexPath())) {
+            log.debug("Checking for deferred merges although no index changes were detected in current cycle");
+            getWriter().maybeMerge();
+        }
+
         if (writer != null) {
             if (log.isTraceEnabled()) {
                 trackIndexSizeInfo(writer, definition, directory);
@@ -170,7 +183,9 @@ class DefaultIndexWriter implements LuceneIndexWriter {
                     final long start = PERF_LOGGER.start();
                     directory = directoryFactory.newInstance(definition, definitionBuilder, dirName, reindex);
                     IndexWriterConfig config = getIndexWriterConfig(definition, directoryFactory.remoteDirectory(), writerConfig);
-                    config.setMergePolicy(definition.getMergePolicy());
+                    // while reindexing, all merges are needed
+                    config.setMergePolicy(reindex || largeMergeScheduler == null ? definition.getMergePolicy() :
+                            largeMergeScheduler.wrap(definition.getMergePolicy(), definition.getIndexPath()));
                     writer = localRefWriter = new IndexWriter(directory, config);
                     genAtStart = getLatestGeneration(directory);
                     log.trace("IndexWriterConfig for index [{}] is {}", definition.getIndexPath(), config);
@@ -254,6 +269,21 @@ class DefaultIndexWriter implements LuceneIndexWriter {
         }
     }
 
+    /**
+     * Whether the document only contains the path (the path field, and
+     * depending on the index format version, the path doc values field).
+     */
+    private static boolean containsOnlyPath(Iterable<? extends IndexableField> doc) {
+        boolean path = false;
+        for (IndexableField f : doc) {
+            if (!FieldNames.PATH.equals(f.name())) {
+                return false;
+            }
+            path = true;
+        }
+        return path;
+    }
+
     private static long getLatestGeneration(Directory directory) throws IOException {
         if (DirectoryReader.indexExists(directory)) {
             List<IndexCommit> commits = DirectoryReader.listCommits(directory);
@@ -29,6 +29,7 @@ import org.apache.jackrabbit.oak.plugins.index.search.IndexDefinition;
 import org.apache.jackrabbit.oak.spi.commit.CommitInfo;
 import org.apache.jackrabbit.oak.spi.mount.MountInfoProvider;
 import org.apache.jackrabbit.oak.spi.state.NodeBuilder;
+import org.jetbrains.annotations.Nullable;
 
 import static org.apache.jackrabbit.guava.common.base.Preconditions.checkNotNull;
 
@@ -36,12 +37,24 @@ public class DefaultIndexWriterFactory implements LuceneIndexWriterFactory {
     private final MountInfoProvider mountInfoProvider;
     private final DirectoryFactory directoryFactory;
     private final LuceneIndexWriterConfig writerConfig;
+    private final LargeMergeScheduler largeMergeScheduler;
 
     public DefaultIndexWriterFactory(MountInfoProvider mountInfoProvider,
                                      DirectoryFactory directoryFactory, LuceneIndexWriterConfig writerConfig) {
+        this(mountInfoProvider, directoryFactory, writerConfig, null);
+    }
+
+    /**
+     * @param largeMergeScheduler the scheduler that defers large merges, or
+     *            null to not defer merges
+     */
+    public DefaultIndexWriterFactory(MountInfoProvider mountInfoProvider,
+                                     DirectoryFactory directoryFactory, LuceneIndexWriterConfig writerConfig,
+                                     @Nullable LargeMergeScheduler largeMergeScheduler) {
         this.mountInfoProvider = checkNotNull(mountInfoProvider);
         this.directoryFactory = checkNotNull(directoryFactory);
         this.writerConfig = checkNotNull(writerConfig);
+        this.largeMergeScheduler = largeMergeScheduler;
     }
 
     @Override
@@ -55,10 +68,10 @@ public class DefaultIndexWriterFactory implements LuceneIndexWriterFactory {
 
         if (mountInfoProvider.hasNonDefaultMounts()){
             return new MultiplexingIndexWriter(directoryFactory, mountInfoProvider, definition,
-                    definitionBuilder, reindex, writerConfig);
+                    definitionBuilder, reindex, writerConfig, largeMergeScheduler);
         }
         return new DefaultIndexWriter(definition, definitionBuilder, directoryFactory,
                 FulltextIndexConstants.INDEX_DATA_CHILD_NAME,
-                LuceneIndexConstants.SUGGEST_DATA_CHILD_NAME, reindex, writerConfig);
+                LuceneIndexConstants.SUGGEST_DATA_CHILD_NAME, reindex, writerConfig, largeMergeScheduler);
     }
 }
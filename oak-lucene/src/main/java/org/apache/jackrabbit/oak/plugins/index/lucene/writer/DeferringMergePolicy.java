@@ -0,0 +1,134 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.jackrabbit.oak.plugins.index.lucene.writer;
+
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.MergePolicy;
+import org.apache.lucene.index.SegmentCommitInfo;
+import org.apache.lucene.index.SegmentInfos;
+
+/**
+ * A merge policy that asks the {@link LargeMergeScheduler} whether the merges
+ * found by the wrapped policy may run now. Forced merges are not affected.
+ * <p>
+ * The policy is used by one index writer. Deferred merges are reported to the
+ * scheduler once per writer, even though the same merge is found each time
+ * merges are checked. Merges are reported as done when the index writer asks
+ * whether the merged segment should use the compound file format, which is
+ * after the documents are merged.
+ */
+class DeferringMergePolicy extends MergePolicy {
+
+    private final MergePolicy in;
+
+    private final LargeMergeScheduler scheduler;
+
+    private final String indexPath;
+
+    /**
+     * The merges that were reported as deferred (the segment names).
+     */
+    private final Set<String> deferred = new HashSet<>();
+
+    DeferringMergePolicy(MergePolicy in, LargeMergeScheduler scheduler, String indexPath) {
+        this.in = in;
+        this.scheduler = scheduler;
+        this.indexPath = indexPath;
+    }
+
+    @Override
+    public MergeSpecification findMerges(MergeTrigger mergeTrigger, SegmentInfos segmentInfos)
+            throws IOException {
+        MergeSpecification spec = in.findMerges(mergeTrigger, segmentInfos);
+        if (spec == null) {
+            return null;
+        }
+        MergeSpecification allowed = new MergeSpecification();
+        long reserved = 0;
+        for (OneMerge merge : spec.merges) {
+            long size = getSize(merge);
+            if (scheduler.allowMerge(size, reserved)) {
+                allowed.add(merge);
+                if (scheduler.isLarge(size)) {
+                    reserved += size;
+                }
+            } else if (deferred.add(getKey(merge))) {
+                scheduler.deferred(indexPath, size);
+            }
+        }
+        return allowed.merges.isEmpty() ? null : allowed;
+    }
+
+    @Override
+    public MergeSpecification findForcedMerges(SegmentInfos segmentInfos, int maxSegmentCount,
+                                               Map<SegmentCommitInfo, Boolean> segmentsToMerge)
+            throws IOException {
+        return in.findForcedMerges(segmentInfos, maxSegmentCount, segmentsToMerge);
+    }
+
+    @Override
+    public MergeSpecification findForcedDeletesMerges(SegmentInfos segmentInfos) throws IOException {
+        return in.findForcedDeletesMerges(segmentInfos);
+    }
+
+    @Override
+    public boolean useCompoundFile(SegmentInfos infos, SegmentCommitInfo mergedInfo) throws IOException {
+        if (IndexWriter.SOURCE_MERGE.equals(mergedInfo.info.getDiagnostics().get(IndexWriter.SOURCE))) {
+            scheduler.merged(indexPath, mergedInfo.sizeInBytes());
+        }
+        return in.useCompoundFile(infos, mergedInfo);
+    }
+
+    @Override
+    public void setIndexWriter(IndexWriter writer) {
+        in.setIndexWriter(writer);
+    }
+
+    @Override
+    public void close() {
+        in.close();
+    }
+
+    @Override
+    public String toString() {
+        return "DeferringMergePolicy(" + in + ")";
+    }
+
+    private static String getKey(OneMerge merge) {
+        StringBuilder buff = new StringBuilder();
+        for (SegmentCommitInfo info : merge.segments) {
+            buff.append(info.info.name).append(' ');
+        }
+        return buff.toString();
+    }
+
+    private static long getSize(OneMerge merge) throws IOException {
+        long size = 0;
+        for (SegmentCommitInfo info : merge.segments) {
+            size += info.sizeInBytes();
+        }
+        return size;
+    }
+
+}
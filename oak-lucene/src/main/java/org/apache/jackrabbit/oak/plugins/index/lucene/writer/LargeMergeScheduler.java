@@ -0,0 +1,280 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.jackrabbit.oak.plugins.index.lucene.writer;
+
+import java.util.Calendar;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.apache.jackrabbit.oak.stats.Clock;
+import org.apache.jackrabbit.oak.stats.MeterStats;
+import org.apache.jackrabbit.oak.stats.StatisticsProvider;
+import org.apache.jackrabbit.oak.stats.StatsOptions;
+import org.apache.lucene.index.MergePolicy;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import static org.apache.jackrabbit.guava.common.base.Preconditions.checkArgument;
+
+/**
+ * Decides when large segment merges of async indexes may run. Large merges
+ * rewrite many index files, which are then stored in the NodeStore by the
+ * indexing cycle. To avoid doing that during peak hours, large merges are only
+ * done within a time window (for example at night), or as long as the merge
+ * throughput budget is not used up. Deferred merges are found again by the
+ * merge policy in a later indexing cycle. Once large merges may run again, the
+ * next indexing cycle also checks for merges in indexes that have deferred
+ * merges but no changes.
+ * <p>
+ * The budget is charged when a merge was actually done, not when the merge
+ * policy finds it. Small merges, forced merges, and merges while reindexing
+ * are not affected.
+ * <p>
+ * An instance is created by the index provider service, and passed to the
+ * index writer factory.
+ */
+public class LargeMergeScheduler {
+
+    private static final Logger log = LoggerFactory.getLogger(LargeMergeScheduler.class);
+
+    static final String MERGED_BYTES = "LUCENE_MERGED_BYTES";
+
+    static final String DEFERRED_BYTES = "LUCENE_MERGE_DEFERRED_BYTES";
+
+    private static final Pattern WINDOW = Pattern.compile("(\\d{1,2}):(\\d{2})-(\\d{1,2}):(\\d{2})");
+
+    private static final long ONE_HOUR = TimeUnit.HOURS.toMillis(1);
+
+    private final long largeMergeBytes;
+
+    /**
+     * The start and end of the time window, in minutes of the day, or -1 if
+     * there is no window.
+     */
+    private final int windowStart;
+    private final int windowEnd;
+
+    private final long budgetBytesPerHour;
+
+    private final Clock clock;
+
+    private final MeterStats mergedMeter;
+
+    private final MeterStats deferredMeter;
+
+    private final AtomicLong mergedBytes = new AtomicLong();
+
+    private final AtomicLong deferredBytes = new AtomicLong();
+
+    /**
+     * The indexes with deferred merges (index path, size of the smallest
+     * deferred merge).
+     */
+    private final ConcurrentHashMap<String, Long> deferredIndexes = new ConcurrentHashMap<>();
+
+    private long availableBudget;
+
+    private long lastBudgetUpdate;
+
+    LargeMergeScheduler(long largeMergeBytes, @Nullable String window, long budgetBytesPerHour,
+                        StatisticsProvider statisticsProvider, Clock clock) {
+        checkArgument(largeMergeBytes > 0, "largeMergeBytes must be positive: %s", largeMergeBytes);
+        this.largeMergeBytes = largeMergeBytes;
+        if (window == null || window.trim().isEmpty()) {
+            windowStart = windowEnd = -1;
+        } else {
+            Matcher m = WINDOW.matcher(window.trim());
+            checkArgument(m.matches(), "Invalid time window, expected HH:mm-HH:mm: %s", window);
+            windowStart = toMinuteOfDay(m.group(1), m.group(2));
+            windowEnd = toMinuteOfDay(m.group(3), m.group(4));
+        }
+        this.budgetBytesPerHour = budgetBytesPerHour;
+        this.clock = clock;
+        this.mergedMeter = statisticsProvider.getMeter(MERGED_BYTES, StatsOptions.DEFAULT);
+        this.deferredMeter = statisticsProvider.getMeter(DEFERRED_BYTES, StatsOptions.DEFAULT);
+        this.availableBudget = budgetBytesPerHour;
+        this.lastBudgetUpdate = clock.getTime();
+    }
+
+    /**
+     * Create a scheduler. Large merges are only deferred if a time window or
+     * a throughput budget is set.
+     *
+     * @param largeMergeBytes the minimum size of a large merge, or 0 to
+     *            disable
+     * @param window the time window (HH:mm-HH:mm, local time, may span
+     *            midnight), or null
+     * @param budgetBytesPerHour the number of bytes of large merges allowed
+     *            per hour outside of the window, or 0
+     * @param statisticsProvider the statistics provider
+     * @return the scheduler, or null if disabled
+     */
+    @Nullable
+    public static LargeMergeScheduler create(long largeMergeBytes, @Nullable String window,
+                                             long budgetBytesPerHour,
+                                             StatisticsProvider statisticsProvider) {
+        boolean hasWindow = window != null && !window.trim().isEmpty();
+        if (largeMergeBytes <= 0 || (!hasWindow && budgetBytesPerHour <= 0)) {
+            return null;
+        }
+        log.info("Large merges (at least {} bytes) are deferred to the time window {} " +
+                "or a budget of {} bytes per hour", largeMergeBytes, window, budgetBytesPerHour);
+        return new LargeMergeScheduler(largeMergeBytes, window, budgetBytesPerHour,
+                statisticsProvider, Clock.SIMPLE);
+    }
+
+    /**
+     * Wrap the merge policy of an index writer.
+     *
+     * @param policy the merge policy
+     * @param indexPath the index path
+     * @return the merge policy to use
+     */
+    @NotNull
+    public MergePolicy wrap(@NotNull MergePolicy policy, String indexPath) {
+        return new DeferringMergePolicy(policy, this, indexPath);
+    }
+
+    /**
+     * Check whether a merge may run now. This doesn't use the budget.
+     *
+     * @param bytes the size of the segments to merge
+     * @param reservedBytes the size of the large merges that were already
+     *            allowed, but didn't run yet
+     * @return whether the merge may run
+     */
+    synchronized boolean allowMerge(long bytes, long reservedBytes) {
+        if (bytes < largeMergeBytes || isInWindow()) {
+            return true;
+        }
+        if (budgetBytesPerHour <= 0) {
+            return false;
+        }
+        updateBudget();
+        // a merge that is larger than the budget can run once the full
+        // budget is available; the budget is then negative for a while
+        return availableBudget - reservedBytes >= Math.min(bytes, budgetBytesPerHour);
+    }
+
+    /**
+     * Whether the given merge is large (outside of the window, it uses the
+     * budget).
+     *
+     * @param bytes the size of the segments to merge
+     * @return whether it is large
+     */
+    boolean isLarge(long bytes) {
+        return bytes >= largeMergeBytes;
+    }
+
+    /**
+     * Record that a merge was done. Large merges outside of the window are
+     * charged to the budget.
+     *
+     * @param indexPath the index path
+     * @param bytes the size of the merged segment
+     */
+    synchronized void merged(String indexPath, long bytes) {
+        if (bytes >= largeMergeBytes) {
+            log.debug("[{}] Merged a segment of {} bytes", indexPath, bytes);
+            if (!isInWindow() && budgetBytesPerHour > 0) {
+                updateBudget();
+                availableBudget -= bytes;
+            }
+        }
+        mergedBytes.addAndGet(bytes);
+        mergedMeter.mark(bytes);
+    }
+
+    /**
+     * Record that a merge was deferred. Each merge is only reported once per
+     * index writer.
+     *
+     * @param indexPath the index path
+     * @param bytes the size of the segments to merge
+     */
+    void deferred(String indexPath, long bytes) {
+        log.debug("[{}] Deferring a merge of {} bytes", indexPath, bytes);
+        deferredIndexes.merge(indexPath, bytes, Math::min);
+        deferredBytes.addAndGet(bytes);
+        deferredMeter.mark(bytes);
+    }
+
+    /**
+     * Whether merges need to be checked for the given index, even if it has
+     * no changes: it has deferred merges, and large merges may run now. If
+     * yes, the index is no longer marked as having deferred merges (the merge
+     * policy marks it again if they are still deferred).
+     *
+     * @param indexPath the index path
+     * @return whether merges need to be checked
+     */
+    boolean isMergeCheckDue(String indexPath) {
+        Long bytes = deferredIndexes.get(indexPath);
+        if (bytes == null || !allowMerge(bytes, 0)) {
+            return false;
+        }
+        return deferredIndexes.remove(indexPath, bytes);
+    }
+
+    public long getMergedBytes() {
+        return mergedBytes.get();
+    }
+
+    public long getDeferredBytes() {
+        return deferredBytes.get();
+    }
+
+    private boolean isInWindow() {
+        if (windowStart < 0) {
+            return false;
+        }
+        Calendar cal = Calendar.getInstance();
+        cal.setTimeInMillis(clock.getTime());
+        int minute = cal.get(Calendar.HOUR_OF_DAY) * 60 + cal.get(Calendar.MINUTE);
+        if (windowStart <= windowEnd) {
+            return minute >= windowStart && minute < windowEnd;
+        }
+        // spans midnight
+        return minute >= windowStart || minute < windowEnd;
+    }
+
+    private void updateBudget() {
+        long now = clock.getTime();
+        long elapsed = now - lastBudgetUpdate;
+        if (elapsed > 0) {
+            availableBudget = Math.min(budgetBytesPerHour,
+                    availableBudget + (long) ((double) elapsed * budgetBytesPerHour / ONE_HOUR));
+            lastBudgetUpdate = now;
+        }
+    }
+
+    private static int toMinuteOfDay(String hours, String minutes) {
+        int h = Integer.parseInt(hours);
+        int m = Integer.parseInt(minutes);
+        checkArgument(h < 24 && m < 60, "Invalid time %s:%s", hours, minutes);
+        return h * 60 + m;
+    }
+
+}
@@ -29,6 +29,7 @@ import org.apache.jackrabbit.oak.spi.mount.Mount;
 import org.apache.jackrabbit.oak.spi.mount.MountInfoProvider;
 import org.apache.jackrabbit.oak.spi.state.NodeBuilder;
 import org.apache.lucene.index.IndexableField;
+import org.jetbrains.annotations.Nullable;
 
 import static org.apache.jackrabbit.guava.common.collect.Iterables.concat;
 import static java.util.Collections.singleton;
@@ -41,18 +42,27 @@ class MultiplexingIndexWriter implements LuceneIndexWriter {
     private final NodeBuilder definitionBuilder;
     private final boolean reindex;
     private final LuceneIndexWriterConfig writerConfig;
+    private final LargeMergeScheduler largeMergeScheduler;
 
     private final Map<Mount, DefaultIndexWriter> writers = Maps.newHashMap();
 
     public MultiplexingIndexWriter(DirectoryFactory directoryFactory, MountInfoProvider mountInfoProvider,
                                    LuceneIndexDefinition definition, NodeBuilder definitionBuilder,
                                    boolean reindex, LuceneIndexWriterConfig writerConfig) {
+        this(directoryFactory, mountInfoProvider, definition, definitionBuilder, reindex, writerConfig, null);
+    }
+
+    public MultiplexingIndexWriter(DirectoryFactory directoryFactory, MountInfoProvider mountInfoProvider,
+                                   LuceneIndexDefinition definition, NodeBuilder definitionBuilder,
+                                   boolean reindex, LuceneIndexWriterConfig writerConfig,
+                                   @Nullable LargeMergeScheduler largeMergeScheduler) {
         this.mountInfoProvider = mountInfoProvider;
         this.definition = definition;
         this.definitionBuilder = definitionBuilder;
         this.reindex = reindex;
         this.directoryFactory = directoryFactory;
         this.writerConfig = writerConfig;
+        this.largeMergeScheduler = largeMergeScheduler;
     }
 
     @Override
@@ -111,6 +121,6 @@ class MultiplexingIndexWriter implements LuceneIndexWriter {
         String dirName = MultiplexersLucene.getIndexDirName(m);
         String suggestDirName = MultiplexersLucene.getSuggestDirName(m);
         return new DefaultIndexWriter(definition, definitionBuilder, directoryFactory, dirName,
-            suggestDirName, reindex, writerConfig);
+            suggestDirName, reindex, writerConfig, largeMergeScheduler);
     }
 }
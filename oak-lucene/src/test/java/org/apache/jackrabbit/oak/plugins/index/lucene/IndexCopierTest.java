@@ -25,8 +25,10 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Random;
 import java.util.Set;
 import java.util.concurrent.BlockingQueue;
@@ -40,6 +42,7 @@ import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicReference;
 
+import javax.management.openmbean.CompositeData;
 import javax.management.openmbean.TabularData;
 
 import org.apache.jackrabbit.guava.common.collect.Lists;
@@ -184,6 +187,35 @@ public class IndexCopierTest {
 
     }
 
+    @Test
+    public void parallelPrefetch() throws Exception{
+        Directory baseDir = new RAMDirectory();
+        LuceneIndexDefinition defn = new LuceneIndexDefinition(root, builder.getNodeState(), "/foo");
+        IndexCopier c1 = new RAMIndexCopier(baseDir, newDirectExecutorService(), getWorkDir(), true);
+        closer.register(c1);
+        c1.setPrefetchThreads(3);
+        assertFalse(c1.isIndexReady("/foo"));
+
+        Directory remote = new RAMDirectory();
+        Map<String, byte[]> data = new HashMap<>();
+        for (int i = 0; i < 10; i++) {
+            data.put("t" + i, writeFile(remote, "t" + i));
+        }
+
+        Directory wrapped = c1.wrapForRead("/foo", defn, remote, INDEX_DATA_CHILD_NAME);
+        assertTrue(c1.isIndexReady("/foo"));
+        assertEquals(10, c1.getDownloadCount());
+        for (Map.Entry<String, byte[]> e : data.entrySet()) {
+            assertTrue(baseDir.fileExists(e.getKey()));
+            readAndAssert(wrapped, e.getKey(), e.getValue());
+        }
+        assertEquals(0, c1.getReaderRemoteReadCount());
+
+        CompositeData status = (CompositeData) c1.getPrefetchStatus().get(new Object[]{"/foo"});
+        assertEquals(Boolean.TRUE, status.get("ready"));
+        assertEquals("10/10", status.get("files"));
+    }
+
     @Test
     public void nonExistentFile() throws Exception{
         Directory baseDir = new RAMDirectory();
@@ -56,7 +56,9 @@ import static org.apache.jackrabbit.oak.plugins.index.search.FieldNames.PATH;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 import static org.mockito.Mockito.doReturn;
@@ -110,6 +112,36 @@ public class IndexNodeManagerTest {
         assertEquals(1, docs.totalHits);
     }
 
+    @Test
+    public void resultCachePerSearcher() throws Exception{
+        NodeState defn = createNRTIndex();
+        LuceneIndexNodeManager nodeManager = LuceneIndexNodeManager.open("/foo", root, defn, readerFactory, nrtFactory);
+        LuceneIndexNode node = nodeManager.acquire();
+        assertNull(node.getResultCache());
+        node.release();
+
+        NodeBuilder defnBuilder = defn.builder();
+        defnBuilder.setProperty(LuceneIndexConstants.RESULT_CACHE_SIZE, 1000);
+        nodeManager = LuceneIndexNodeManager.open("/foo", root, defnBuilder.getNodeState(), readerFactory, nrtFactory);
+        node = nodeManager.acquire();
+        LuceneQueryResultCache cache = node.getResultCache();
+        assertNotNull(cache);
+        assertEquals(1000, cache.getMaxSize());
+        node.release();
+
+        node = nodeManager.acquire();
+        assertSame(cache, node.getResultCache());
+        node.getLocalWriter().updateDocument("/content/en", newDoc("/content/en"));
+        node.refreshReadersOnWriteIfRequired();
+        node.release();
+
+        // a new searcher uses a new cache
+        node = nodeManager.acquire();
+        assertNotNull(node.getResultCache());
+        assertNotSame(cache, node.getResultCache());
+        node.release();
+    }
+
     @Test
     public void nullIndex_NonFreshIndex() throws Exception{
         NodeBuilder builder = createNRTIndex().builder();
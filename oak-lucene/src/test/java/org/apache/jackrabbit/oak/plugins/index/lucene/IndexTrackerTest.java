@@ -19,8 +19,11 @@
 
 package org.apache.jackrabbit.oak.plugins.index.lucene;
 
+import java.io.IOException;
 import java.util.Collections;
+import java.util.List;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.jackrabbit.guava.common.collect.ImmutableSet;
 import org.apache.jackrabbit.oak.api.CommitFailedException;
@@ -29,6 +32,9 @@ import org.apache.jackrabbit.oak.commons.PathUtils;
 import org.apache.jackrabbit.oak.plugins.index.AsyncIndexInfoService;
 import org.apache.jackrabbit.oak.plugins.index.IndexUpdateProvider;
 import org.apache.jackrabbit.oak.plugins.index.TrackingCorruptIndexHandler;
+import org.apache.jackrabbit.oak.plugins.index.lucene.reader.DefaultIndexReaderFactory;
+import org.apache.jackrabbit.oak.plugins.index.lucene.reader.LuceneIndexReader;
+import org.apache.jackrabbit.oak.plugins.index.lucene.reader.LuceneIndexReaderFactory;
 import org.apache.jackrabbit.oak.plugins.index.search.BadIndexTracker;
 import org.apache.jackrabbit.oak.plugins.index.search.IndexDefinition;
 import org.apache.jackrabbit.oak.plugins.memory.ArrayBasedBlob;
@@ -36,8 +42,12 @@ import org.apache.jackrabbit.oak.plugins.memory.ModifiedNodeState;
 import org.apache.jackrabbit.oak.plugins.memory.PropertyStates;
 import org.apache.jackrabbit.oak.spi.commit.CommitInfo;
 import org.apache.jackrabbit.oak.spi.commit.EditorHook;
+import org.apache.jackrabbit.oak.spi.mount.MountInfoProvider;
+import org.apache.jackrabbit.oak.spi.mount.Mounts;
 import org.apache.jackrabbit.oak.spi.state.NodeBuilder;
 import org.apache.jackrabbit.oak.spi.state.NodeState;
+import org.apache.jackrabbit.oak.stats.StatisticsProvider;
+import org.apache.jackrabbit.oak.stats.TimerStats;
 import org.junit.Before;
 import org.junit.Test;
 
@@ -46,12 +56,17 @@ import static org.apache.jackrabbit.oak.plugins.index.lucene.util.LuceneIndexHel
 import static org.apache.jackrabbit.oak.InitialContentHelper.INITIAL_CONTENT;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 @SuppressWarnings("UnusedAssignment")
@@ -288,6 +303,93 @@ public class IndexTrackerTest {
         assertEquals(indexNodeId, indexNodeId2);
     }
 
+    @Test
+    public void reopenChangedIndexes() throws Exception{
+        StatisticsProvider statisticsProvider = mock(StatisticsProvider.class);
+        TimerStats timer = mock(TimerStats.class);
+        when(timer.time()).thenReturn(mock(TimerStats.Context.class));
+        when(statisticsProvider.getTimer(anyString(), any())).thenReturn(timer);
+        tracker.setStatisticsProvider(statisticsProvider);
+
+        createIndex("foo");
+        createIndex("bar");
+        createIndex("baz");
+        NodeState before = builder.getNodeState();
+        builder.setProperty("foo", "x");
+        builder.setProperty("bar", "x");
+        builder.setProperty("baz", "x");
+        NodeState indexed = hook.processCommit(before, builder.getNodeState(), CommitInfo.EMPTY);
+        tracker.update(indexed);
+
+        int fooId = getIndexNodeId("/oak:index/foo");
+        int barId = getIndexNodeId("/oak:index/bar");
+        int bazId = getIndexNodeId("/oak:index/baz");
+        assertEquals(3, tracker.getIndexNodePaths().size());
+
+        // only foo and bar are changed, and opened concurrently
+        before = indexed;
+        builder = indexed.builder();
+        builder.setProperty("foo", "y");
+        builder.setProperty("bar", "y");
+        indexed = hook.processCommit(before, builder.getNodeState(), CommitInfo.EMPTY);
+        tracker.update(indexed);
+
+        assertEquals(3, tracker.getIndexNodePaths().size());
+        assertNotEquals(fooId, getIndexNodeId("/oak:index/foo"));
+        assertNotEquals(barId, getIndexNodeId("/oak:index/bar"));
+        assertEquals(bazId, getIndexNodeId("/oak:index/baz"));
+        verify(statisticsProvider).getTimer(eq(IndexTracker.REOPEN_TIME + ";/oak:index/foo"), any());
+        verify(statisticsProvider).getTimer(eq(IndexTracker.REOPEN_TIME + ";/oak:index/bar"), any());
+        verify(statisticsProvider, never()).getTimer(eq(IndexTracker.REOPEN_TIME + ";/oak:index/baz"), any());
+    }
+
+    @Test
+    public void publishDespiteUnrelatedUpdates() throws Exception{
+        createIndex("foo");
+        NodeState before = builder.getNodeState();
+        builder.setProperty("foo", "x");
+        NodeState indexed = hook.processCommit(before, builder.getNodeState(), CommitInfo.EMPTY);
+        NodeState unrelated = indexed.builder().setProperty("bar", "y").getNodeState();
+
+        // the root of the tracker changes while the index is opened
+        AtomicInteger opened = new AtomicInteger();
+        LuceneIndexReaderFactory readerFactory = new LuceneIndexReaderFactory() {
+            private final LuceneIndexReaderFactory delegate =
+                    new DefaultIndexReaderFactory(Mounts.defaultMountInfoProvider(), null);
+
+            @Override
+            public List<LuceneIndexReader> createReaders(LuceneIndexDefinition definition,
+                                                         NodeState definitionState,
+                                                         String indexPath) throws IOException {
+                opened.incrementAndGet();
+                tracker.update(unrelated);
+                return delegate.createReaders(definition, definitionState, indexPath);
+            }
+
+            @Override
+            public MountInfoProvider getMountInfoProvider() {
+                return delegate.getMountInfoProvider();
+            }
+        };
+        tracker = new IndexTracker(readerFactory);
+        tracker.update(indexed);
+
+        getIndexNodeId("/oak:index/foo");
+        assertEquals(1, opened.get());
+        assertEquals(1, tracker.getIndexNodePaths().size());
+        tracker.close();
+    }
+
+    private int getIndexNodeId(String path) {
+        LuceneIndexNode indexNode = tracker.acquireIndexNode(path);
+        assertNotNull(indexNode);
+        try {
+            return indexNode.getIndexNodeId();
+        } finally {
+            indexNode.release();
+        }
+    }
+
     private NodeState corruptIndex(String indexPath) {
         NodeBuilder dir = TestUtil.child(builder, PathUtils.concat(indexPath, ":data"));
         for (String name : dir.getChildNodeNames()){
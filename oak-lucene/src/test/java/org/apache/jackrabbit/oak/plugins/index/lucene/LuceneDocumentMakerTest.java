@@ -21,13 +21,20 @@ package org.apache.jackrabbit.oak.plugins.index.lucene;
 
 import org.apache.jackrabbit.oak.api.Type;
 import org.apache.jackrabbit.oak.plugins.index.lucene.util.LuceneIndexDefinitionBuilder;
+import org.apache.jackrabbit.oak.plugins.index.search.FieldNames;
+import org.apache.jackrabbit.oak.plugins.index.search.IndexFormatVersion;
 import org.apache.jackrabbit.oak.spi.state.NodeBuilder;
 import org.apache.jackrabbit.oak.spi.state.NodeState;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.index.FieldInfo;
+import org.apache.lucene.index.IndexableField;
+import org.apache.lucene.util.BytesRef;
 import org.junit.Test;
 
 import static java.util.Arrays.asList;
 import static org.apache.jackrabbit.oak.InitialContentHelper.INITIAL_CONTENT;
 import static org.apache.jackrabbit.oak.plugins.memory.EmptyNodeState.EMPTY_NODE;
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
 
@@ -62,4 +69,34 @@ public class LuceneDocumentMakerTest {
         assertNull(docMaker.makeDocument(test.getNodeState()));
     }
 
+    @Test
+    public void pathDocValues() throws Exception{
+        builder.indexRule("nt:base").property("foo").propertyIndex();
+
+        LuceneIndexDefinition defn = LuceneIndexDefinition.newBuilder(root, builder.build(), "/foo").build();
+        LuceneDocumentMaker docMaker = new LuceneDocumentMaker(defn,
+                defn.getApplicableIndexingRule("nt:base"), "/x");
+        NodeBuilder test = EMPTY_NODE.builder();
+        test.setProperty("foo", "bar");
+        Document doc = docMaker.makeDocument(test.getNodeState());
+        assertNull(getPathDocValues(doc));
+
+        NodeBuilder defnBuilder = builder.build().builder();
+        defnBuilder.setProperty(LuceneIndexConstants.COMPAT_MODE, 3);
+        defn = LuceneIndexDefinition.newBuilder(root, defnBuilder.getNodeState(), "/foo").build();
+        assertEquals(IndexFormatVersion.V3, defn.getVersion());
+        docMaker = new LuceneDocumentMaker(defn, defn.getApplicableIndexingRule("nt:base"), "/x");
+        doc = docMaker.makeDocument(test.getNodeState());
+        assertEquals(new BytesRef("/x"), getPathDocValues(doc));
+    }
+
+    private static BytesRef getPathDocValues(Document doc) {
+        for (IndexableField f : doc.getFields(FieldNames.PATH)) {
+            if (f.fieldType().docValueType() == FieldInfo.DocValuesType.BINARY) {
+                return f.binaryValue();
+            }
+        }
+        return null;
+    }
+
 }
\ No newline at end of file
@@ -32,6 +32,7 @@ import org.apache.jackrabbit.oak.plugins.index.lucene.util.LuceneIndexDefinition
 import org.apache.jackrabbit.oak.plugins.index.lucene.util.TokenizerChain;
 import org.apache.jackrabbit.oak.plugins.index.lucene.writer.CommitMitigatingTieredMergePolicy;
 import org.apache.jackrabbit.oak.plugins.index.search.Aggregate;
+import org.apache.jackrabbit.oak.plugins.index.search.FieldNames;
 import org.apache.jackrabbit.oak.plugins.index.search.FulltextIndexConstants;
 import org.apache.jackrabbit.oak.plugins.index.search.IndexDefinition;
 import org.apache.jackrabbit.oak.plugins.index.search.IndexDefinition.IndexingRule;
@@ -44,6 +45,9 @@ import org.apache.lucene.index.LogByteSizeMergePolicy;
 import org.apache.lucene.index.LogDocMergePolicy;
 import org.apache.lucene.index.NoMergePolicy;
 import org.apache.lucene.index.TieredMergePolicy;
+import org.apache.lucene.index.sorter.SortingMergePolicy;
+import org.apache.lucene.search.Sort;
+import org.apache.lucene.search.SortField;
 import org.junit.Test;
 
 import static org.apache.jackrabbit.guava.common.collect.ImmutableSet.of;
@@ -170,6 +174,48 @@ public class LuceneIndexDefinitionTest {
         assertEquals(simple.getName(), defn.getCodec().getName());
     }
 
+    @Test
+    public void indexSortConfig() throws Exception{
+        LuceneIndexDefinition defn = new LuceneIndexDefinition(root, builder.getNodeState(), "/foo");
+        assertNull(defn.getIndexSorter());
+
+        NodeBuilder prop = TestUtil.child(builder.child(INDEX_RULES), "nt:base/properties/lastModified")
+                .setProperty(PROP_NAME, "jcr:lastModified")
+                .setProperty(FulltextIndexConstants.PROP_TYPE, PropertyType.TYPENAME_DATE)
+                .setProperty(FulltextIndexConstants.PROP_ORDERED, true);
+        builder.setProperty(LuceneIndexConstants.INDEX_SORT_PROPERTY, "jcr:lastModified");
+        builder.setProperty(LuceneIndexConstants.INDEX_SORT_DESCENDING, true);
+        defn = new LuceneIndexDefinition(root, builder.getNodeState(), "/foo");
+        assertNotNull(defn.getIndexSorter());
+        assertEquals(SortingMergePolicy.class, defn.getMergePolicy().getClass());
+
+        String field = FieldNames.createDocValFieldName("jcr:lastModified");
+        assertNotNull(defn.getIndexSorter(new Sort(new SortField(field, SortField.Type.LONG, true))));
+        assertNull(defn.getIndexSorter(new Sort(new SortField(field, SortField.Type.LONG, false))));
+        assertNull(defn.getIndexSorter(new Sort(new SortField(field, SortField.Type.STRING, true))));
+        assertNull(defn.getIndexSorter(new Sort(new SortField(field, SortField.Type.LONG, true),
+                new SortField("other", SortField.Type.LONG, true))));
+
+        // not sorted by doc values
+        prop.setProperty(FulltextIndexConstants.PROP_ORDERED, false);
+        defn = new LuceneIndexDefinition(root, builder.getNodeState(), "/foo");
+        assertNull(defn.getIndexSorter());
+        assertNull(defn.getIndexSorter(new Sort(new SortField(field, SortField.Type.LONG, true))));
+        assertEquals(TieredMergePolicy.class, defn.getMergePolicy().getClass());
+
+        // sorted doc values, not numeric
+        prop.setProperty(FulltextIndexConstants.PROP_ORDERED, true);
+        prop.setProperty(FulltextIndexConstants.PROP_TYPE, PropertyType.TYPENAME_STRING);
+        defn = new LuceneIndexDefinition(root, builder.getNodeState(), "/foo");
+        assertNull(defn.getIndexSorter());
+
+        // not indexed at all
+        prop.setProperty(FulltextIndexConstants.PROP_TYPE, PropertyType.TYPENAME_LONG);
+        builder.setProperty(LuceneIndexConstants.INDEX_SORT_PROPERTY, "jcr:created");
+        defn = new LuceneIndexDefinition(root, builder.getNodeState(), "/foo");
+        assertNull(defn.getIndexSorter());
+    }
+
     @Test
     public void mergePolicyConfig() throws Exception{
         LuceneIndexDefinition defn = new LuceneIndexDefinition(root, builder.getNodeState(), "/foo");
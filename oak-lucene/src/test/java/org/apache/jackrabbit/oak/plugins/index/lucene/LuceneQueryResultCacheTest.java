@@ -0,0 +1,87 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.jackrabbit.oak.plugins.index.lucene;
+
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.FieldDoc;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.Sort;
+import org.apache.lucene.search.SortField;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.search.TopDocs;
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class LuceneQueryResultCacheTest {
+
+    @Test
+    public void cacheBatches() {
+        LuceneQueryResultCache cache = new LuceneQueryResultCache(100);
+        Sort sort = new Sort(new SortField("value", SortField.Type.LONG));
+        ScoreDoc[] scoreDocs = new ScoreDoc[]{
+                new FieldDoc(3, 1.0f, new Object[]{10L}),
+                new FieldDoc(1, 0.5f, new Object[]{20L})
+        };
+        TopDocs docs = new TopDocs(7, scoreDocs, 1.0f);
+        cache.put(new TermQuery(new Term("type", "a")), sort, 0, 2, docs, new String[]{"/a", "/b"});
+
+        assertNull(cache.get(new TermQuery(new Term("type", "b")), sort, 0, 2));
+        assertNull(cache.get(new TermQuery(new Term("type", "a")), null, 0, 2));
+        assertNull(cache.get(new TermQuery(new Term("type", "a")), sort, 2, 2));
+        assertNull(cache.get(new TermQuery(new Term("type", "a")), sort, 0, 4));
+
+        LuceneQueryResultCache.Entry entry = cache.get(new TermQuery(new Term("type", "a")), sort, 0, 2);
+        assertNotNull(entry);
+        TopDocs cached = entry.getTopDocs();
+        assertEquals(7, cached.totalHits);
+        assertEquals(2, cached.scoreDocs.length);
+        assertEquals(3, cached.scoreDocs[0].doc);
+        assertEquals(0.5f, cached.scoreDocs[1].score, 0f);
+        // the last document is needed to continue the search
+        assertTrue(cached.scoreDocs[1] instanceof FieldDoc);
+        assertArrayEquals(new Object[]{20L}, ((FieldDoc) cached.scoreDocs[1]).fields);
+        assertEquals("/a", entry.getPath(0));
+        assertEquals("/b", entry.getPath(1));
+
+        assertEquals(1, cache.getHitCount());
+        assertEquals(4, cache.getMissCount());
+        assertEquals(1, cache.getEntryCount());
+    }
+
+    @Test
+    public void largeBatchNotCached() {
+        LuceneQueryResultCache cache = new LuceneQueryResultCache(100);
+        ScoreDoc[] scoreDocs = new ScoreDoc[50];
+        String[] paths = new String[scoreDocs.length];
+        for (int i = 0; i < scoreDocs.length; i++) {
+            scoreDocs[i] = new ScoreDoc(i, 1.0f);
+            paths[i] = "/" + i;
+        }
+        TermQuery query = new TermQuery(new Term("type", "a"));
+        cache.put(query, null, 0, 50, new TopDocs(50, scoreDocs, 1.0f), paths);
+        assertNull(cache.get(query, null, 0, 50));
+        assertEquals(0, cache.getEntryCount());
+    }
+
+}
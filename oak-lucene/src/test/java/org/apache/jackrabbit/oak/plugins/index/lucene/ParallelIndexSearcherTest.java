@@ -0,0 +1,161 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.jackrabbit.oak.plugins.index.lucene;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+
+import org.apache.jackrabbit.oak.stats.TimerStats;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.NumericDocValuesField;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.index.AtomicReaderContext;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.NoMergePolicy;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.Sort;
+import org.apache.lucene.search.SortField;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.search.TopDocs;
+import org.apache.lucene.search.TotalHitCountCollector;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.RAMDirectory;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.apache.jackrabbit.oak.plugins.index.lucene.LuceneIndexConstants.ANALYZER;
+import static org.apache.jackrabbit.oak.plugins.index.lucene.LuceneIndexConstants.VERSION;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.atLeast;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class ParallelIndexSearcherTest {
+
+    private DirectoryReader reader;
+
+    private final ExecutorService executor = ParallelIndexSearcher.createExecutor();
+
+    @Before
+    public void setUp() throws Exception {
+        Directory dir = new RAMDirectory();
+        IndexWriterConfig config = new IndexWriterConfig(VERSION, ANALYZER);
+        config.setMergePolicy(NoMergePolicy.COMPOUND_FILES);
+        IndexWriter writer = new IndexWriter(dir, config);
+        Random r = new Random(1);
+        for (int i = 0; i < 2000; i++) {
+            Document doc = new Document();
+            doc.add(new StringField("type", i % 3 == 0 ? "a" : "b", Field.Store.NO));
+            doc.add(new NumericDocValuesField("value", r.nextInt(500)));
+            writer.addDocument(doc);
+            if (i % 100 == 99) {
+                writer.commit();
+            }
+        }
+        writer.close();
+        reader = DirectoryReader.open(dir);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        reader.close();
+        executor.shutdown();
+    }
+
+    @Test
+    public void sameResultAsSequentialSearch() throws Exception {
+        TimerStats sliceTime = mock(TimerStats.class);
+        when(sliceTime.time()).thenReturn(mock(TimerStats.Context.class));
+        IndexSearcher sequential = new IndexSearcher(reader);
+        IndexSearcher parallel = new ParallelIndexSearcher(reader, executor, sliceTime);
+        Query query = new TermQuery(new Term("type", "a"));
+        Sort sort = new Sort(new SortField("value", SortField.Type.LONG, true));
+
+        assertEquals(getDocs(sequential.search(query, 100)), getDocs(parallel.search(query, 100)));
+        assertEquals(getDocs(sequential.search(query, 100, sort)), getDocs(parallel.search(query, 100, sort)));
+
+        ScoreDoc after = sequential.search(query, 50, sort).scoreDocs[49];
+        assertEquals(getDocs(sequential.searchAfter(after, query, 100, sort)),
+                getDocs(parallel.searchAfter(after, query, 100, sort)));
+
+        // 20 segments of 100 documents, in slices of 5 segments
+        verify(sliceTime, atLeast(4)).time();
+    }
+
+    @Test
+    public void collectorSearchNotTimed() throws Exception {
+        TimerStats sliceTime = mock(TimerStats.class);
+        when(sliceTime.time()).thenReturn(mock(TimerStats.Context.class));
+        IndexSearcher parallel = new ParallelIndexSearcher(reader, executor, sliceTime);
+        TotalHitCountCollector collector = new TotalHitCountCollector();
+        parallel.search(new TermQuery(new Term("type", "a")), collector);
+        assertEquals(667, collector.getTotalHits());
+        // the whole index is searched sequentially: not a slice
+        verify(sliceTime, never()).time();
+    }
+
+    @Test
+    public void shutDownExecutor() throws Exception {
+        TimerStats sliceTime = mock(TimerStats.class);
+        when(sliceTime.time()).thenReturn(mock(TimerStats.Context.class));
+        ExecutorService closed = ParallelIndexSearcher.createExecutor();
+        closed.shutdown();
+        // the slices are searched in the calling thread
+        IndexSearcher parallel = new ParallelIndexSearcher(reader, closed, sliceTime);
+        Query query = new TermQuery(new Term("type", "a"));
+        assertEquals(getDocs(new IndexSearcher(reader).search(query, 100)), getDocs(parallel.search(query, 100)));
+    }
+
+    @Test
+    public void slices() throws Exception {
+        List<AtomicReaderContext[]> slices = ParallelIndexSearcher.groupLeaves(reader.leaves());
+        assertEquals(reader.leaves().size() / ParallelIndexSearcher.MAX_SEGMENTS_PER_SLICE, slices.size());
+        int expectedDocBase = 0;
+        for (AtomicReaderContext[] slice : slices) {
+            assertTrue(slice.length <= ParallelIndexSearcher.MAX_SEGMENTS_PER_SLICE);
+            // adjacent segments, in order
+            for (AtomicReaderContext leaf : slice) {
+                assertEquals(expectedDocBase, leaf.docBase);
+                expectedDocBase += leaf.reader().maxDoc();
+            }
+        }
+        assertEquals(reader.maxDoc(), expectedDocBase);
+    }
+
+    private static List<Integer> getDocs(TopDocs docs) {
+        List<Integer> list = new ArrayList<>();
+        for (ScoreDoc doc : docs.scoreDocs) {
+            list.add(doc.doc);
+        }
+        return list;
+    }
+
+}
@@ -0,0 +1,122 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.jackrabbit.oak.plugins.index.lucene;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.NumericDocValuesField;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.index.TieredMergePolicy;
+import org.apache.lucene.index.sorter.NumericDocValuesSorter;
+import org.apache.lucene.index.sorter.Sorter;
+import org.apache.lucene.index.sorter.SortingMergePolicy;
+import org.apache.lucene.search.FieldDoc;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.Sort;
+import org.apache.lucene.search.SortField;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.search.TopDocs;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.RAMDirectory;
+import org.junit.Test;
+
+import static org.apache.jackrabbit.oak.plugins.index.lucene.LuceneIndexConstants.ANALYZER;
+import static org.apache.jackrabbit.oak.plugins.index.lucene.LuceneIndexConstants.VERSION;
+import static org.junit.Assert.assertEquals;
+
+public class SortedSegmentSearchTest {
+
+    @Test
+    public void sameResultAsFullSearch() throws Exception {
+        assertSameResult(false);
+    }
+
+    @Test
+    public void documentsWithoutSortField() throws Exception {
+        // documents without the field sort as 0, in the sorted segments and
+        // in the query
+        assertSameResult(true);
+    }
+
+    private static void assertSameResult(boolean withMissing) throws Exception {
+        Sorter sorter = new NumericDocValuesSorter("value", false);
+        Sort sort = new Sort(new SortField("value", SortField.Type.LONG, true));
+        Directory dir = new RAMDirectory();
+        IndexWriterConfig config = new IndexWriterConfig(VERSION, ANALYZER);
+        config.setMergePolicy(new SortingMergePolicy(new TieredMergePolicy(), sorter));
+        IndexWriter writer = new IndexWriter(dir, config);
+        Random r = new Random(1);
+        for (int i = 0; i < 2000; i++) {
+            Document doc = new Document();
+            doc.add(new StringField("type", i % 3 == 0 ? "a" : "b", Field.Store.NO));
+            if (!withMissing || i % 7 != 0) {
+                // some duplicate values, and negative values that sort
+                // after the documents without a value
+                doc.add(new NumericDocValuesField("value", r.nextInt(500) - (withMissing ? 100 : 0)));
+            }
+            writer.addDocument(doc);
+            if (i % 300 == 299) {
+                writer.commit();
+            }
+            if (i == 1500) {
+                // merged and sorted segments, and newer unsorted segments
+                writer.forceMerge(2);
+            }
+        }
+        writer.close();
+
+        DirectoryReader reader = DirectoryReader.open(dir);
+        IndexSearcher searcher = new IndexSearcher(reader);
+        Query query = new TermQuery(new Term("type", "a"));
+
+        List<Integer> expected = new ArrayList<>();
+        for (ScoreDoc doc : searcher.search(query, 2000, sort).scoreDocs) {
+            expected.add(doc.doc);
+        }
+
+        List<Integer> actual = new ArrayList<>();
+        FieldDoc after = null;
+        int batchSize = 50;
+        while (true) {
+            TopDocs docs = LucenePropertyIndex.searchSorted(searcher, query, after, actual.size(),
+                    batchSize, sort, sorter);
+            if (docs.scoreDocs.length == 0) {
+                break;
+            }
+            for (ScoreDoc doc : docs.scoreDocs) {
+                actual.add(doc.doc);
+            }
+            after = (FieldDoc) docs.scoreDocs[docs.scoreDocs.length - 1];
+            batchSize *= 2;
+        }
+        assertEquals(expected, actual);
+        reader.close();
+    }
+
+}
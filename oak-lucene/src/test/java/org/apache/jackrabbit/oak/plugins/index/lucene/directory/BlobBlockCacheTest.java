@@ -0,0 +1,166 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.jackrabbit.oak.plugins.index.lucene.directory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.jackrabbit.oak.api.Type;
+import org.apache.jackrabbit.oak.plugins.memory.ArrayBasedBlob;
+import org.apache.jackrabbit.oak.spi.state.NodeBuilder;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.apache.jackrabbit.JcrConstants.JCR_DATA;
+import static org.apache.jackrabbit.oak.plugins.memory.EmptyNodeState.EMPTY_NODE;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+public class BlobBlockCacheTest {
+
+    private final Random rnd = new Random(1);
+
+    private final AtomicInteger blobCount = new AtomicInteger();
+
+    private final BlobFactory blobFactory = in -> {
+        String id = "blob" + blobCount.incrementAndGet();
+        return new ArrayBasedBlob(IOUtils.toByteArray(in)) {
+            @Override
+            public String getContentIdentity() {
+                return id;
+            }
+        };
+    };
+
+    private BlobBlockCache cache;
+
+    @Before
+    public void setup() {
+        cache = new BlobBlockCache(1024 * 1024);
+    }
+
+    @After
+    public void cleanup() {
+        cache.invalidateAll();
+    }
+
+    @Test
+    public void readThroughCache() throws Exception {
+        NodeBuilder file = EMPTY_NODE.builder();
+        byte[] data = writeFile(file, OakBufferedIndexFile.DEFAULT_BLOB_SIZE * 3 + 100);
+
+        OakIndexInput input = new OakIndexInput("test", file, "/foo", blobFactory, cache);
+        assertArrayEquals(data, read(input, 0, data.length));
+        assertEquals(4, cache.getMissCount());
+
+        // a clone has its own position, and reads the blocks from the cache
+        OakIndexInput clone = input.clone();
+        int pos = OakBufferedIndexFile.DEFAULT_BLOB_SIZE - 10;
+        input.seek(10);
+        byte[] fromClone = read(clone, pos, 20);
+        assertEquals(10, input.getFilePointer());
+        assertArrayEquals(copy(data, pos, 20), fromClone);
+        assertArrayEquals(copy(data, 10, 20), read(input, 10, 20));
+        assertEquals(4, cache.getMissCount());
+        assertTrue(cache.getHitCount() >= 2);
+
+        // a new input for the same file reads from the cache as well
+        OakIndexInput other = new OakIndexInput("test", file, "/foo", blobFactory, cache);
+        assertArrayEquals(data, read(other, 0, data.length));
+        assertEquals(4, cache.getMissCount());
+        input.close();
+        other.close();
+    }
+
+    @Test
+    public void rewriteCachedBlock() throws Exception {
+        NodeBuilder file = EMPTY_NODE.builder();
+        byte[] data = writeFile(file, OakBufferedIndexFile.DEFAULT_BLOB_SIZE + 100);
+        assertArrayEquals(data, read(new OakIndexInput("test", file, "/foo", blobFactory, cache), 0, data.length));
+
+        // modify a part of the first block, which is in the cache
+        OakIndexFile out = OakIndexFile.getOakIndexFile("test", file, "/foo", blobFactory, false, cache);
+        byte[] change = new byte[] {1, 2, 3};
+        out.seek(50);
+        out.writeBytes(change, 0, change.length);
+        out.flush();
+        System.arraycopy(change, 0, data, 50, change.length);
+
+        assertArrayEquals(data, read(new OakIndexInput("test", file, "/foo", blobFactory, cache), 0, data.length));
+    }
+
+    @Test
+    public void disabled() throws Exception {
+        NodeBuilder file = EMPTY_NODE.builder();
+        byte[] data = writeFile(file, 1000);
+        assertArrayEquals(data, read(new OakIndexInput("test", file, "/foo", blobFactory), 0, data.length));
+        assertEquals(0, cache.getMissCount());
+    }
+
+    @Test
+    public void heapBuffers() throws Exception {
+        NodeBuilder file = EMPTY_NODE.builder();
+        writeFile(file, 1000);
+        ByteBuffer block = cache.getBlock(file.getProperty(JCR_DATA).getValue(Type.BINARIES).iterator().next());
+        assertNotNull(block);
+        assertFalse(block.isDirect());
+        assertTrue(block.isReadOnly());
+        assertEquals(1000, block.remaining());
+    }
+
+    @Test
+    public void separateInstances() throws Exception {
+        NodeBuilder file = EMPTY_NODE.builder();
+        byte[] data = writeFile(file, 1000);
+        BlobBlockCache other = new BlobBlockCache(1024 * 1024);
+        assertArrayEquals(data, read(new OakIndexInput("test", file, "/foo", blobFactory, other), 0, data.length));
+        assertEquals(1, other.getMissCount());
+        assertEquals(0, cache.getMissCount());
+    }
+
+    private byte[] writeFile(NodeBuilder file, int length) throws IOException {
+        byte[] data = new byte[length];
+        rnd.nextBytes(data);
+        OakIndexOutput out = new OakIndexOutput("test", file, "/foo", blobFactory, false);
+        out.writeBytes(data, data.length);
+        out.close();
+        return data;
+    }
+
+    private static byte[] read(OakIndexInput input, long pos, int len) throws IOException {
+        byte[] result = new byte[len];
+        input.seek(pos);
+        input.readBytes(result, 0, len);
+        return result;
+    }
+
+    private static byte[] copy(byte[] data, int pos, int len) {
+        byte[] result = new byte[len];
+        System.arraycopy(data, pos, result, 0, len);
+        return result;
+    }
+
+}
@@ -99,8 +99,8 @@ public class InvalidIndexDefinitionTest extends AbstractQueryTest {
     @Test(expected = IllegalArgumentException.class)
     public void invalidCompatMode() throws CommitFailedException {
         Tree def = createIndexNodeAndData();
-        // 3 results in IllegalArgumentException: Unknown version : 3
-        def.setProperty(LuceneIndexConstants.COMPAT_MODE, 3);
+        // 4 results in IllegalArgumentException: Unknown version : 4
+        def.setProperty(LuceneIndexConstants.COMPAT_MODE, 4);
         root.commit();
     }
     
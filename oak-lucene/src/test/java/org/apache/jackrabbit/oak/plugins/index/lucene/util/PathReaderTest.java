@@ -0,0 +1,82 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.jackrabbit.oak.plugins.index.lucene.util;
+
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.NoMergePolicy;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.RAMDirectory;
+import org.junit.Test;
+
+import static org.apache.jackrabbit.oak.plugins.index.lucene.FieldFactory.newPathDocValuesField;
+import static org.apache.jackrabbit.oak.plugins.index.lucene.FieldFactory.newPathField;
+import static org.apache.jackrabbit.oak.plugins.index.lucene.LuceneIndexConstants.ANALYZER;
+import static org.apache.jackrabbit.oak.plugins.index.lucene.LuceneIndexConstants.VERSION;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class PathReaderTest {
+
+    @Test
+    public void mixedSegments() throws Exception {
+        Directory dir = new RAMDirectory();
+        IndexWriterConfig config = new IndexWriterConfig(VERSION, ANALYZER);
+        config.setMergePolicy(NoMergePolicy.COMPOUND_FILES);
+        IndexWriter writer = new IndexWriter(dir, config);
+        // a segment of an older index format version, without doc values
+        for (int i = 0; i < 10; i++) {
+            Document doc = new Document();
+            doc.add(newPathField("/old/" + i));
+            writer.addDocument(doc);
+        }
+        writer.commit();
+        for (int i = 0; i < 10; i++) {
+            Document doc = new Document();
+            doc.add(newPathField("/new/" + i));
+            doc.add(newPathDocValuesField("/new/" + i));
+            writer.addDocument(doc);
+        }
+        writer.commit();
+        // a document without path
+        Document doc = new Document();
+        doc.add(new StringField("foo", "bar", Field.Store.NO));
+        writer.addDocument(doc);
+        writer.close();
+
+        DirectoryReader reader = DirectoryReader.open(dir);
+        assertEquals(3, reader.leaves().size());
+        ScoreDoc[] docs = new ScoreDoc[]{
+                new ScoreDoc(15, 1f),
+                new ScoreDoc(3, 1f),
+                new ScoreDoc(20, 1f),
+                new ScoreDoc(10, 1f),
+                new ScoreDoc(0, 1f)
+        };
+        String[] paths = PathReader.readPaths(reader, docs);
+        assertArrayEquals(new String[]{"/new/5", "/old/3", null, "/new/0", "/old/0"}, paths);
+        reader.close();
+    }
+
+}
@@ -0,0 +1,183 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.jackrabbit.oak.plugins.index.lucene.writer;
+
+import java.util.Calendar;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.jackrabbit.oak.stats.Clock;
+import org.apache.jackrabbit.oak.stats.StatisticsProvider;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.MergePolicy;
+import org.apache.lucene.index.SerialMergeScheduler;
+import org.apache.lucene.index.TieredMergePolicy;
+import org.apache.lucene.store.RAMDirectory;
+import org.junit.Test;
+
+import static org.apache.jackrabbit.oak.plugins.index.lucene.LuceneIndexConstants.ANALYZER;
+import static org.apache.jackrabbit.oak.plugins.index.lucene.LuceneIndexConstants.VERSION;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class LargeMergeSchedulerTest {
+
+    private static final long MB = 1024 * 1024;
+
+    private final Clock.Virtual clock = new Clock.Virtual();
+
+    @Test
+    public void window() throws Exception {
+        LargeMergeScheduler scheduler = new LargeMergeScheduler(10 * MB, "22:00-06:00", 0,
+                StatisticsProvider.NOOP, clock);
+
+        setTime(12, 0);
+        assertTrue(scheduler.allowMerge(MB, 0));
+        assertFalse(scheduler.allowMerge(100 * MB, 0));
+
+        setTime(23, 30);
+        assertTrue(scheduler.allowMerge(100 * MB, 0));
+        setTime(5, 59);
+        assertTrue(scheduler.allowMerge(100 * MB, 0));
+        setTime(6, 0);
+        assertFalse(scheduler.allowMerge(100 * MB, 0));
+
+        scheduler.merged("/oak:index/foo", 100 * MB);
+        scheduler.deferred("/oak:index/foo", 200 * MB);
+        assertEquals(100 * MB, scheduler.getMergedBytes());
+        assertEquals(200 * MB, scheduler.getDeferredBytes());
+    }
+
+    @Test
+    public void budget() throws Exception {
+        setTime(12, 0);
+        LargeMergeScheduler scheduler = new LargeMergeScheduler(10 * MB, null, 100 * MB,
+                StatisticsProvider.NOOP, clock);
+
+        assertTrue(scheduler.allowMerge(60 * MB, 0));
+        // the budget is only charged once the merge is done
+        assertTrue(scheduler.allowMerge(60 * MB, 0));
+        assertFalse(scheduler.allowMerge(60 * MB, 60 * MB));
+        scheduler.merged("/oak:index/foo", 60 * MB);
+        assertFalse(scheduler.allowMerge(60 * MB, 0));
+
+        // after half an hour, 50 MB were added to the budget
+        clock.waitUntil(clock.getTime() + TimeUnit.MINUTES.toMillis(30));
+        assertTrue(scheduler.allowMerge(60 * MB, 0));
+        scheduler.merged("/oak:index/foo", 60 * MB);
+        assertFalse(scheduler.allowMerge(40 * MB, 0));
+
+        // small merges are not charged
+        scheduler.merged("/oak:index/foo", MB);
+        assertTrue(scheduler.allowMerge(30 * MB, 0));
+
+        // a merge larger than the budget needs the full budget
+        clock.waitUntil(clock.getTime() + TimeUnit.MINUTES.toMillis(30));
+        assertFalse(scheduler.allowMerge(200 * MB, 0));
+        clock.waitUntil(clock.getTime() + TimeUnit.HOURS.toMillis(2));
+        assertTrue(scheduler.allowMerge(200 * MB, 0));
+        scheduler.merged("/oak:index/foo", 200 * MB);
+        assertFalse(scheduler.allowMerge(20 * MB, 0));
+    }
+
+    @Test
+    public void mergeCheckWhenWindowOpens() throws Exception {
+        LargeMergeScheduler scheduler = new LargeMergeScheduler(10 * MB, "22:00-06:00", 0,
+                StatisticsProvider.NOOP, clock);
+        setTime(12, 0);
+        assertFalse(scheduler.isMergeCheckDue("/oak:index/foo"));
+        scheduler.deferred("/oak:index/foo", 100 * MB);
+        assertFalse(scheduler.isMergeCheckDue("/oak:index/foo"));
+
+        setTime(22, 0);
+        assertFalse(scheduler.isMergeCheckDue("/oak:index/bar"));
+        assertTrue(scheduler.isMergeCheckDue("/oak:index/foo"));
+        // until merges are deferred again
+        assertFalse(scheduler.isMergeCheckDue("/oak:index/foo"));
+    }
+
+    @Test
+    public void deferredOnceAndChargedWhenMerged() throws Exception {
+        setTime(12, 0);
+        LargeMergeScheduler scheduler = new LargeMergeScheduler(1, "22:00-06:00", 0,
+                StatisticsProvider.NOOP, clock);
+        TieredMergePolicy tiered = new TieredMergePolicy();
+        tiered.setSegmentsPerTier(2);
+        tiered.setMaxMergeAtOnce(2);
+        IndexWriterConfig config = new IndexWriterConfig(VERSION, ANALYZER);
+        config.setMergePolicy(scheduler.wrap(tiered, "/oak:index/foo"));
+        config.setMergeScheduler(new SerialMergeScheduler());
+        IndexWriter writer = new IndexWriter(new RAMDirectory(), config);
+        for (int i = 0; i < 10; i++) {
+            Document doc = new Document();
+            doc.add(new StringField("id", "" + i, Field.Store.NO));
+            writer.addDocument(doc);
+            writer.commit();
+        }
+        long deferred = scheduler.getDeferredBytes();
+        assertTrue(deferred > 0);
+        assertEquals(0, scheduler.getMergedBytes());
+
+        // the same merges are found again, but not reported again
+        writer.maybeMerge();
+        assertEquals(deferred, scheduler.getDeferredBytes());
+
+        setTime(23, 0);
+        assertTrue(scheduler.isMergeCheckDue("/oak:index/foo"));
+        writer.maybeMerge();
+        assertTrue(scheduler.getMergedBytes() > 0);
+        writer.close();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void invalidWindow() {
+        new LargeMergeScheduler(10 * MB, "22-06", 0, StatisticsProvider.NOOP, clock);
+    }
+
+    @Test
+    public void create() {
+        assertNull(LargeMergeScheduler.create(10 * MB, null, 0, StatisticsProvider.NOOP));
+        assertNull(LargeMergeScheduler.create(0, "22:00-06:00", 0, StatisticsProvider.NOOP));
+
+        LargeMergeScheduler scheduler = LargeMergeScheduler.create(10 * MB, "22:00-06:00", 0,
+                StatisticsProvider.NOOP);
+        assertNotNull(scheduler);
+        MergePolicy policy = new TieredMergePolicy();
+        assertTrue(scheduler.wrap(policy, "/oak:index/foo") instanceof DeferringMergePolicy);
+    }
+
+    private void setTime(int hour, int minute) throws InterruptedException {
+        Calendar cal = Calendar.getInstance();
+        cal.setTimeInMillis(clock.getTime());
+        cal.set(Calendar.HOUR_OF_DAY, hour);
+        cal.set(Calendar.MINUTE, minute);
+        cal.set(Calendar.SECOND, 0);
+        if (cal.getTimeInMillis() <= clock.getTime()) {
+            cal.add(Calendar.DAY_OF_MONTH, 1);
+        }
+        clock.waitUntil(cal.getTimeInMillis());
+    }
+
+}
@@ -65,6 +65,19 @@ public class ElasticIndexDefinition extends IndexDefinition {
     public static final String QUERY_FETCH_SIZES = "queryFetchSizes";
     public static final Long[] QUERY_FETCH_SIZES_DEFAULT = new Long[]{10L, 100L, 1000L};
 
+    /**
+     * Whether the next page of results is requested while the current one is being consumed.
+     */
+    public static final String QUERY_PREFETCH = "queryPrefetch";
+    public static final boolean QUERY_PREFETCH_DEFAULT = false;
+
+    /**
+     * Whether the pages of results after the first one are read from a point in time, so that they are consistent
+     * for long scans. The point in time is only opened if a second page is needed.
+     */
+    public static final String QUERY_POINT_IN_TIME = "queryPointInTime";
+    public static final boolean QUERY_POINT_IN_TIME_DEFAULT = false;
+
     public static final String TRACK_TOTAL_HITS = "trackTotalHits";
     public static final Integer TRACK_TOTAL_HITS_DEFAULT = 10000;
 
@@ -140,6 +153,8 @@ public class ElasticIndexDefinition extends IndexDefinition {
     public final int numberOfShards;
     public final int numberOfReplicas;
     public final int[] queryFetchSizes;
+    public final boolean queryPrefetch;
+    public final boolean queryPointInTime;
     public final Integer trackTotalHits;
     public final String dynamicMapping;
     public final boolean failOnError;
@@ -165,6 +180,8 @@ public class ElasticIndexDefinition extends IndexDefinition {
         this.similarityTagsBoost = getOptionalValue(defn, SIMILARITY_TAGS_BOOST, SIMILARITY_TAGS_BOOST_DEFAULT);
         this.queryFetchSizes = Arrays.stream(getOptionalValues(defn, QUERY_FETCH_SIZES, Type.LONGS, Long.class, QUERY_FETCH_SIZES_DEFAULT))
                 .mapToInt(Long::intValue).toArray();
+        this.queryPrefetch = getOptionalValue(defn, QUERY_PREFETCH, QUERY_PREFETCH_DEFAULT);
+        this.queryPointInTime = getOptionalValue(defn, QUERY_POINT_IN_TIME, QUERY_POINT_IN_TIME_DEFAULT);
         this.trackTotalHits = getOptionalValue(defn, TRACK_TOTAL_HITS, TRACK_TOTAL_HITS_DEFAULT);
         this.dynamicMapping = getOptionalValue(defn, DYNAMIC_MAPPING, DYNAMIC_MAPPING_DEFAULT);
         this.failOnError = getOptionalValue(defn, FAIL_ON_ERROR,
@@ -41,6 +41,8 @@ public class ElasticMetricHandler {
     private static final String QUERY_SERVER_TIME = "ELASTIC_QUERY_SERVER_TIME";
     private static final String QUERY_TOTAL_TIME = "ELASTIC_QUERY_TOTAL_TIME";
 
+    private static final String QUERY_FETCH_WAIT_TIME = "ELASTIC_QUERY_FETCH_WAIT_TIME";
+
     private static final String QUERY_TIMED_OUT_RATE = "ELASTIC_QUERY_TIMED_OUT_RATE";
     private static final String QUERY_FAILED_RATE = "ELASTIC_QUERY_FAILED_RATE";
 
@@ -48,6 +50,11 @@ public class ElasticMetricHandler {
     private static final String INDEX_SIZE = "ELASTIC_INDEX_SIZE";
     private static final String INDEX_WITH_REPLICAS_SIZE = "ELASTIC_INDEX_WITH_REPLICAS_SIZE";
 
+    private static final String BULK_DOCUMENTS_RATE = "ELASTIC_BULK_DOCUMENTS_RATE";
+    private static final String BULK_TIME = "ELASTIC_BULK_TIME";
+    private static final String BULK_BACKOFF_RATE = "ELASTIC_BULK_BACKOFF_RATE";
+    private static final String BULK_ACTIONS_LIMIT = "ELASTIC_BULK_ACTIONS_LIMIT";
+
     private final BiFunction<String, Map<String, String>, MeterStats> meter;
     private final BiFunction<String, Map<String, String>, HistogramStats> histogram;
     private final BiFunction<String, Map<String, String>, TimerStats> timer;
@@ -109,6 +116,17 @@ public class ElasticMetricHandler {
         timer.apply(QUERY_TOTAL_TIME, labels).update(totalTimeMs, TimeUnit.MILLISECONDS);
     }
 
+    /**
+     * Measures the time a query consumer waited for results to be fetched from Elastic
+     *
+     * @param index the index passed as metric label
+     * @param waitTimeMs the time the consumer was blocked
+     */
+    public void measureFetchWait(String index, long waitTimeMs) {
+        Map<String, String> labels = Collections.singletonMap("index", index);
+        timer.apply(QUERY_FETCH_WAIT_TIME, labels).update(waitTimeMs, TimeUnit.MILLISECONDS);
+    }
+
     /**
      * Tracks the number of document in an index
      *
@@ -132,4 +150,23 @@ public class ElasticMetricHandler {
         histogram.apply(INDEX_SIZE, labels).update(primarySize);
         histogram.apply(INDEX_WITH_REPLICAS_SIZE, labels).update(storeSize);
     }
+
+    /**
+     * Measures a bulk request sent to Elastic
+     *
+     * @param index the index passed as metric label
+     * @param actions the number of actions of the request, tracked as throughput
+     * @param timeMs the time until the response was received
+     * @param backoff {@code true} if the request caused a backoff (rejections, failures or high latency)
+     * @param actionsLimit the current limit of actions per request
+     */
+    public void measureBulk(String index, int actions, long timeMs, boolean backoff, int actionsLimit) {
+        Map<String, String> labels = Collections.singletonMap("index", index);
+        meter.apply(BULK_DOCUMENTS_RATE, labels).mark(actions);
+        timer.apply(BULK_TIME, labels).update(timeMs, TimeUnit.MILLISECONDS);
+        histogram.apply(BULK_ACTIONS_LIMIT, labels).update(actionsLimit);
+        if (backoff) {
+            meter.apply(BULK_BACKOFF_RATE, labels).mark();
+        }
+    }
 }
@@ -0,0 +1,128 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.oak.plugins.index.elastic.index;
+
+/**
+ * Sizes the bulk requests sent to Elastic, and the number of concurrent
+ * requests, based on the observed responses. The sizes are adapted using
+ * additive increase / multiplicative decrease (AIMD): after a request with
+ * the full number of actions that returned within the target latency, the
+ * number of actions is increased by a fixed step, and once the maximum is
+ * reached, the concurrency is increased by one. If a request was rejected
+ * (HTTP 429), failed, or was slower than the target latency, the concurrency
+ * is halved, or, with a single request, the number of actions is halved.
+ */
+class AdaptiveBulkSizer {
+
+    /**
+     * The minimum number of actions of a bulk request.
+     */
+    static final int MIN_ACTIONS = 10;
+
+    private final int minActions;
+
+    private final int maxActions;
+
+    private final int maxConcurrency;
+
+    private final long targetLatencyMs;
+
+    private final int step;
+
+    private int actions;
+
+    private int concurrency = 1;
+
+    private long backoffCount;
+
+    /**
+     * @param initialActions the initial number of actions per request
+     * @param maxActions the maximum number of actions per request
+     * @param maxConcurrency the maximum number of concurrent requests
+     * @param targetLatencyMs the maximum latency of a request, before the
+     *                        sizes are decreased
+     */
+    AdaptiveBulkSizer(int initialActions, int maxActions, int maxConcurrency, long targetLatencyMs) {
+        this.maxActions = Math.max(1, maxActions);
+        this.minActions = Math.min(MIN_ACTIONS, this.maxActions);
+        this.maxConcurrency = Math.max(1, maxConcurrency);
+        this.targetLatencyMs = targetLatencyMs;
+        this.step = Math.max(1, this.maxActions / 20);
+        this.actions = Math.max(minActions, Math.min(initialActions, this.maxActions));
+    }
+
+    /**
+     * Update the sizes after a bulk request returned.
+     *
+     * @param numActions the number of actions of the request
+     * @param latencyMs the time it took until the response was received
+     * @param rejected whether the request, or some of its actions, were
+     *                 rejected or failed
+     */
+    synchronized void onResponse(int numActions, long latencyMs, boolean rejected) {
+        if (rejected || latencyMs > targetLatencyMs) {
+            backoffCount++;
+            if (concurrency > 1) {
+                concurrency = Math.max(1, concurrency / 2);
+            } else {
+                actions = Math.max(minActions, actions / 2);
+            }
+        } else if (numActions >= actions) {
+            // only full requests show that larger ones are fine
+            if (actions < maxActions) {
+                actions = Math.min(maxActions, actions + step);
+            } else if (concurrency < maxConcurrency) {
+                concurrency++;
+            }
+        }
+    }
+
+    /**
+     * @return the current number of actions per request
+     */
+    synchronized int getActions() {
+        return actions;
+    }
+
+    /**
+     * @return the current number of concurrent requests
+     */
+    synchronized int getConcurrency() {
+        return concurrency;
+    }
+
+    /**
+     * @return the maximum number of concurrent requests
+     */
+    int getMaxConcurrency() {
+        return maxConcurrency;
+    }
+
+    /**
+     * @return how often the sizes were decreased
+     */
+    synchronized long getBackoffCount() {
+        return backoffCount;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "AdaptiveBulkSizer{actions=" + actions + ", concurrency=" + concurrency +
+                ", backoffCount=" + backoffCount + "}";
+    }
+
+}
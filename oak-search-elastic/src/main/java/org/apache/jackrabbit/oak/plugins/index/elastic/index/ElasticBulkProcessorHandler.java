@@ -20,6 +20,7 @@ import org.apache.jackrabbit.oak.api.PropertyState;
 import org.apache.jackrabbit.oak.api.Type;
 import org.apache.jackrabbit.oak.plugins.index.elastic.ElasticConnection;
 import org.apache.jackrabbit.oak.plugins.index.elastic.ElasticIndexDefinition;
+import org.apache.jackrabbit.oak.plugins.index.elastic.ElasticMetricHandler;
 import org.apache.jackrabbit.oak.plugins.index.search.IndexDefinition;
 import org.apache.jackrabbit.oak.spi.commit.CommitInfo;
 import org.apache.jackrabbit.oak.spi.state.NodeBuilder;
@@ -35,11 +36,14 @@ import org.elasticsearch.client.RequestOptions;
 import org.elasticsearch.common.Strings;
 import org.elasticsearch.common.unit.ByteSizeValue;
 import org.elasticsearch.core.TimeValue;
+import org.elasticsearch.rest.RestStatus;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.util.LinkedHashSet;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
@@ -48,6 +52,7 @@ import java.util.concurrent.Phaser;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.BiConsumer;
 import java.util.stream.Collectors;
 
@@ -61,6 +66,18 @@ class ElasticBulkProcessorHandler {
 
     private static final int BULK_PROCESSOR_CONCURRENCY =
         Integer.getInteger("oak.indexer.elastic.bulkProcessorConcurrency", 1);
+    /**
+     * Whether the number of actions per bulk request and the number of concurrent requests are adapted
+     * to the observed latency and rejections, see {@link AdaptiveBulkSizer}. The number of actions of the
+     * index definition is used as the initial value.
+     */
+    private static final boolean ADAPTIVE_BULK = Boolean.getBoolean("oak.indexer.elastic.adaptiveBulk");
+    private static final int ADAPTIVE_BULK_MAX_CONCURRENCY =
+        Integer.getInteger("oak.indexer.elastic.adaptiveBulkMaxConcurrency", 4);
+    private static final int ADAPTIVE_BULK_MAX_ACTIONS_FACTOR =
+        Integer.getInteger("oak.indexer.elastic.adaptiveBulkMaxActionsFactor", 4);
+    private static final long ADAPTIVE_BULK_TARGET_LATENCY_MS =
+        Long.getLong("oak.indexer.elastic.adaptiveBulkTargetLatencyMs", 2000);
     private static final String SYNC_MODE_PROPERTY = "sync-mode";
     private static final String SYNC_RT_MODE = "rt";
 
@@ -70,6 +87,8 @@ class ElasticBulkProcessorHandler {
     private final NodeBuilder definitionBuilder;
     protected final BulkProcessor bulkProcessor;
     private final boolean waitForESAcknowledgement;
+    private final ElasticMetricHandler metricHandler;
+    private final AdaptiveBulkSizer bulkSizer;
 
     /**
      * Coordinates communication between bulk processes. It has a main controller registered at creation time and
@@ -90,18 +109,53 @@ class ElasticBulkProcessorHandler {
      */
     private final ConcurrentHashMap<Long, Boolean> updatesMap = new ConcurrentHashMap<>();
 
+    /**
+     * Start times (in nanoseconds) of the bulk requests in flight, by execution id
+     */
+    private final ConcurrentHashMap<Long, Long> bulkStartTimes = new ConcurrentHashMap<>();
+
+    /**
+     * Number of actions added since the last bulk request was sent
+     */
+    private final AtomicInteger pendingActions = new AtomicInteger();
+
+    /**
+     * Number of bulk requests in flight. Waiting threads are notified when a request returns.
+     */
+    private final AtomicInteger inFlight = new AtomicInteger();
+
     protected long totalOperations;
 
     private ElasticBulkProcessorHandler(@NotNull ElasticConnection elasticConnection,
                                         @NotNull String indexName,
                                         @NotNull ElasticIndexDefinition indexDefinition,
                                         @NotNull NodeBuilder definitionBuilder,
-                                        boolean waitForESAcknowledgement) {
+                                        boolean waitForESAcknowledgement,
+                                        @Nullable ElasticMetricHandler metricHandler) {
+        this(elasticConnection, indexName, indexDefinition, definitionBuilder, waitForESAcknowledgement, metricHandler,
+                ADAPTIVE_BULK ? new AdaptiveBulkSizer(indexDefinition.bulkActions,
+                        indexDefinition.bulkActions * ADAPTIVE_BULK_MAX_ACTIONS_FACTOR,
+                        ADAPTIVE_BULK_MAX_CONCURRENCY, ADAPTIVE_BULK_TARGET_LATENCY_MS) : null);
+    }
+
+    /**
+     * Creates a handler that sizes the bulk requests with the given sizer, or, if null, uses the fixed number of
+     * actions of the index definition.
+     */
+    ElasticBulkProcessorHandler(@NotNull ElasticConnection elasticConnection,
+                                @NotNull String indexName,
+                                @NotNull ElasticIndexDefinition indexDefinition,
+                                @NotNull NodeBuilder definitionBuilder,
+                                boolean waitForESAcknowledgement,
+                                @Nullable ElasticMetricHandler metricHandler,
+                                @Nullable AdaptiveBulkSizer bulkSizer) {
         this.elasticConnection = elasticConnection;
         this.indexName = indexName;
         this.indexDefinition = indexDefinition;
         this.definitionBuilder = definitionBuilder;
         this.waitForESAcknowledgement = waitForESAcknowledgement;
+        this.metricHandler = metricHandler;
+        this.bulkSizer = bulkSizer;
         this.bulkProcessor = initBulkProcessor();
     }
 
@@ -116,10 +170,24 @@ class ElasticBulkProcessorHandler {
                                                                       @NotNull ElasticIndexDefinition indexDefinition,
                                                                       @NotNull NodeBuilder definitionBuilder, CommitInfo commitInfo,
                                                                       boolean waitForESAcknowledgement) {
+        return getBulkProcessorHandler(elasticConnection, indexName, indexDefinition, definitionBuilder, commitInfo,
+                waitForESAcknowledgement, null);
+    }
+
+    /**
+     * Returns an ElasticBulkProcessorHandler instance based on the index definition configuration, that reports
+     * the bulk requests to the given metric handler.
+     */
+    public static ElasticBulkProcessorHandler getBulkProcessorHandler(@NotNull ElasticConnection elasticConnection,
+                                                                      @NotNull String indexName,
+                                                                      @NotNull ElasticIndexDefinition indexDefinition,
+                                                                      @NotNull NodeBuilder definitionBuilder, CommitInfo commitInfo,
+                                                                      boolean waitForESAcknowledgement,
+                                                                      @Nullable ElasticMetricHandler metricHandler) {
         PropertyState async = indexDefinition.getDefinitionNodeState().getProperty("async");
 
         if (async != null) {
-            return new ElasticBulkProcessorHandler(elasticConnection, indexName, indexDefinition, definitionBuilder, waitForESAcknowledgement);
+            return new ElasticBulkProcessorHandler(elasticConnection, indexName, indexDefinition, definitionBuilder, waitForESAcknowledgement, metricHandler);
         }
 
         // commit-info has priority over configuration in index definition
@@ -136,17 +204,24 @@ class ElasticBulkProcessorHandler {
         }
 
         if (SYNC_RT_MODE.equals(syncMode)) {
-            return new RealTimeBulkProcessorHandler(elasticConnection, indexName, indexDefinition, definitionBuilder, waitForESAcknowledgement);
+            return new RealTimeBulkProcessorHandler(elasticConnection, indexName, indexDefinition, definitionBuilder, waitForESAcknowledgement, metricHandler);
         }
 
-        return new ElasticBulkProcessorHandler(elasticConnection, indexName, indexDefinition, definitionBuilder, waitForESAcknowledgement);
+        return new ElasticBulkProcessorHandler(elasticConnection, indexName, indexDefinition, definitionBuilder, waitForESAcknowledgement, metricHandler);
     }
 
     private BulkProcessor initBulkProcessor() {
-        return BulkProcessor.builder(requestConsumer(),
-                new OakBulkProcessorListener(), this.indexName + "-bulk-processor")
-                .setBulkActions(indexDefinition.bulkActions)
-                .setConcurrentRequests(BULK_PROCESSOR_CONCURRENCY)
+        BulkProcessor.Builder builder = BulkProcessor.builder(requestConsumer(),
+                new OakBulkProcessorListener(), this.indexName + "-bulk-processor");
+        if (bulkSizer == null) {
+            builder.setBulkActions(indexDefinition.bulkActions)
+                    .setConcurrentRequests(BULK_PROCESSOR_CONCURRENCY);
+        } else {
+            // requests are flushed in add() using the current number of actions and concurrency of the sizer
+            builder.setBulkActions(-1)
+                    .setConcurrentRequests(bulkSizer.getMaxConcurrency());
+        }
+        return builder
                 .setBulkSize(new ByteSizeValue(indexDefinition.bulkSizeBytes))
                 .setFlushInterval(TimeValue.timeValueMillis(indexDefinition.bulkFlushIntervalMs))
                 .setBackoffPolicy(BackoffPolicy.exponentialBackoff(
@@ -174,6 +249,58 @@ class ElasticBulkProcessorHandler {
 
         bulkProcessor.add(request);
         totalOperations++;
+
+        if (bulkSizer != null && pendingActions.incrementAndGet() >= bulkSizer.getActions()) {
+            awaitBulkSlot();
+            bulkProcessor.flush();
+        }
+    }
+
+    /**
+     * Waits until fewer bulk requests are in flight than the current concurrency of the sizer.
+     */
+    private void awaitBulkSlot() throws IOException {
+        synchronized (inFlight) {
+            while (inFlight.get() >= bulkSizer.getConcurrency()) {
+                try {
+                    inFlight.wait(100);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("Interrupted while waiting for bulk requests to return");
+                }
+                checkFailures();
+            }
+        }
+    }
+
+    private void bulkStarted(long executionId) {
+        bulkStartTimes.put(executionId, System.nanoTime());
+        pendingActions.set(0);
+        inFlight.incrementAndGet();
+    }
+
+    private void bulkCompleted(long executionId, int numActions, boolean rejected) {
+        Long start = bulkStartTimes.remove(executionId);
+        long latencyMs = start == null ? 0 : TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        boolean backoff = rejected;
+        int actionsLimit = indexDefinition.bulkActions;
+        if (bulkSizer != null) {
+            long backoffCount = bulkSizer.getBackoffCount();
+            bulkSizer.onResponse(numActions, latencyMs, rejected);
+            backoff = bulkSizer.getBackoffCount() != backoffCount;
+            actionsLimit = bulkSizer.getActions();
+            if (backoff) {
+                LOG.debug("Backing off after bulk request with id {} ({} actions, {} ms, rejected: {}): {}",
+                        executionId, numActions, latencyMs, rejected, bulkSizer);
+            }
+        }
+        if (metricHandler != null) {
+            metricHandler.measureBulk(indexName, numActions, latencyMs, backoff, actionsLimit);
+        }
+        synchronized (inFlight) {
+            inFlight.decrementAndGet();
+            inFlight.notifyAll();
+        }
     }
 
     public boolean close() throws IOException {
@@ -211,6 +338,7 @@ class ElasticBulkProcessorHandler {
         public void beforeBulk(long executionId, BulkRequest bulkRequest) {
             // register new bulk party
             phaser.register();
+            bulkStarted(executionId);
 
             // init update status
             updatesMap.put(executionId, Boolean.FALSE);
@@ -237,6 +365,7 @@ class ElasticBulkProcessorHandler {
                     LOG.error("Error decoding bulk response", e);
                 }
             }
+            boolean rejected = false;
             if (bulkResponse.hasFailures()) { // check if some operations failed to execute
                 Set<String> failedDocSet = new LinkedHashSet<>();
                 NodeBuilder status = definitionBuilder.child(IndexDefinition.STATUS_NODE);
@@ -254,6 +383,10 @@ class ElasticBulkProcessorHandler {
                 for (BulkItemResponse bulkItemResponse : bulkResponse) {
                     if (bulkItemResponse.isFailed()) {
                         BulkItemResponse.Failure failure = bulkItemResponse.getFailure();
+                        if (failure.getStatus() == RestStatus.TOO_MANY_REQUESTS) {
+                            // still rejected after the retries of the bulk processor
+                            rejected = true;
+                        }
                         if (indexDefinition.failOnError && failure.getCause() != null) {
                             suppressedExceptions.add(failure.getCause());
                         }
@@ -282,6 +415,7 @@ class ElasticBulkProcessorHandler {
             } else {
                 updatesMap.put(executionId, Boolean.TRUE);
             }
+            bulkCompleted(executionId, bulkRequest.numberOfActions(), rejected);
             phaser.arriveAndDeregister();
         }
 
@@ -289,6 +423,7 @@ class ElasticBulkProcessorHandler {
         public void afterBulk(long executionId, BulkRequest bulkRequest, Throwable throwable) {
             LOG.error("ElasticIndex Update Bulk Failure : Bulk with id {} threw an error", executionId, throwable);
             suppressedExceptions.add(throwable);
+            bulkCompleted(executionId, bulkRequest.numberOfActions(), true);
             phaser.arriveAndDeregister();
         }
     }
@@ -307,8 +442,9 @@ class ElasticBulkProcessorHandler {
                                              @NotNull String indexName,
                                              @NotNull ElasticIndexDefinition indexDefinition,
                                              @NotNull NodeBuilder definitionBuilder,
-                                             boolean waitForESAcknowledgement) {
-            super(elasticConnection, indexName, indexDefinition, definitionBuilder, waitForESAcknowledgement);
+                                             boolean waitForESAcknowledgement,
+                                             @Nullable ElasticMetricHandler metricHandler) {
+            super(elasticConnection, indexName, indexDefinition, definitionBuilder, waitForESAcknowledgement, metricHandler);
         }
 
         @Override
@@ -16,9 +16,12 @@
  */
 package org.apache.jackrabbit.oak.plugins.index.elastic.query.async;
 
+import co.elastic.clients.elasticsearch.ElasticsearchAsyncClient;
 import co.elastic.clients.elasticsearch._types.FieldValue;
 import co.elastic.clients.elasticsearch._types.query_dsl.Query;
 import co.elastic.clients.elasticsearch._types.SortOptions;
+import co.elastic.clients.elasticsearch._types.SortOrder;
+import co.elastic.clients.elasticsearch._types.Time;
 import co.elastic.clients.elasticsearch.core.SearchRequest;
 import co.elastic.clients.elasticsearch.core.SearchResponse;
 import co.elastic.clients.elasticsearch.core.search.Highlight;
@@ -39,6 +42,7 @@ import org.jetbrains.annotations.NotNull;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.lang.ref.Cleaner;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashSet;
@@ -46,6 +50,7 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Set;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.Semaphore;
 import java.util.concurrent.atomic.AtomicBoolean;
@@ -57,6 +62,12 @@ import java.util.function.Predicate;
  * Class to iterate over Elastic results of a given {@link IndexPlan}.
  * The results are produced asynchronously into an internal unbounded {@link BlockingQueue}. To avoid too many calls to
  * Elastic the results are loaded in chunks (using search_after strategy) and loaded only when needed.
+ * <p>
+ * If {@code queryPrefetch} is enabled in the index definition, the next chunk is requested as soon as the consumer
+ * starts reading the last one, so that at most two chunks are buffered. If {@code queryPointInTime} is enabled, the
+ * chunks after the first one are read from a point in time, so that the results of long scans are consistent. The
+ * point in time is only opened if a second chunk is needed, and closed when the scan ends, or once the iterator is
+ * no longer used (the query API has no way to close a cursor).
  */
 public class ElasticResultRowAsyncIterator implements Iterator<FulltextResultRow>, ElasticResponseListener.SearchHitListener {
 
@@ -64,6 +75,13 @@ public class ElasticResultRowAsyncIterator implements Iterator<FulltextResultRow
     // this is an internal special message to notify the consumer the result set has been completely returned
     private static final FulltextResultRow POISON_PILL =
             new FulltextResultRow("___OAK_POISON_PILL___", 0d, Collections.emptyMap(), null, null);
+    // the point in time is kept alive for this time after each request
+    private static final Time POINT_IN_TIME_KEEP_ALIVE = Time.of(t -> t.time("1m"));
+    // the tiebreaker of point in time requests, added explicitly so that the number of sort values is known
+    private static final SortOptions POINT_IN_TIME_TIEBREAKER =
+            SortOptions.of(so -> so.field(f -> f.field("_shard_doc").order(SortOrder.Asc)));
+    // closes the point in time of iterators that are no longer reachable
+    private static final Cleaner CLEANER = Cleaner.create();
 
     private final BlockingQueue<FulltextResultRow> queue = new LinkedBlockingQueue<>();
 
@@ -77,6 +95,9 @@ public class ElasticResultRowAsyncIterator implements Iterator<FulltextResultRow
     private final ElasticResponseHandler elasticResponseHandler;
     private final ElasticFacetProvider elasticFacetProvider;
     private final AtomicReference<Throwable> errorRef = new AtomicReference<>();
+    // the point in time (null if disabled), and the action that closes it
+    private final PointInTime pointInTime;
+    private final Cleaner.Cleanable pointInTimeCleanable;
 
     private FulltextResultRow nextRow;
 
@@ -94,6 +115,13 @@ public class ElasticResultRowAsyncIterator implements Iterator<FulltextResultRow
         this.estimator = estimator;
         this.metricHandler = metricHandler;
         this.elasticFacetProvider = elasticRequestHandler.getAsyncFacetProvider(elasticResponseHandler);
+        if (indexNode.getDefinition().queryPointInTime) {
+            this.pointInTime = new PointInTime(indexNode.getConnection().getAsyncClient());
+            this.pointInTimeCleanable = CLEANER.register(this, pointInTime);
+        } else {
+            this.pointInTime = null;
+            this.pointInTimeCleanable = null;
+        }
         this.elasticQueryScanner = initScanner();
     }
 
@@ -101,12 +129,22 @@ public class ElasticResultRowAsyncIterator implements Iterator<FulltextResultRow
     public boolean hasNext() {
         // if nextRow is not null it means the caller invoked hasNext() before without calling next()
         if (nextRow == null) {
-            if (queue.isEmpty()) {
+            boolean empty = queue.isEmpty();
+            if (empty) {
                 // this triggers, when needed, the scan of the next results chunk
                 elasticQueryScanner.scan();
+            } else {
+                elasticQueryScanner.prefetch(queue.size());
             }
             try {
-                nextRow = queue.take();
+                if (empty) {
+                    long start = System.currentTimeMillis();
+                    nextRow = queue.take();
+                    metricHandler.measureFetchWait(indexNode.getDefinition().getIndexPath(),
+                            System.currentTimeMillis() - start);
+                } else {
+                    nextRow = queue.take();
+                }
             } catch (InterruptedException e) {
                 throw new IllegalStateException("Error reading next result from Elastic", e);
             }
@@ -191,6 +229,7 @@ public class ElasticResultRowAsyncIterator implements Iterator<FulltextResultRow
 
         private final Query query;
         private final @NotNull List<SortOptions> sorts;
+        private final @NotNull List<SortOptions> pointInTimeSorts;
         private final Highlight highlight;
         private final SourceConfig sourceConfig;
 
@@ -200,8 +239,12 @@ public class ElasticResultRowAsyncIterator implements Iterator<FulltextResultRow
         private int scannedRows;
         private int requests;
         private boolean fullScan;
+        private final boolean prefetch;
         private long searchStartTime;
 
+        // number of hits of the last chunk, used to decide when to prefetch the next one
+        private volatile int lastChunkSize;
+
         // reference to the last document sort values for search_after queries
         private List<FieldValue> lastHitSortValues;
 
@@ -211,7 +254,10 @@ public class ElasticResultRowAsyncIterator implements Iterator<FulltextResultRow
         ElasticQueryScanner(List<ElasticResponseListener> listeners) {
             this.query = elasticRequestHandler.baseQuery();
             this.sorts = elasticRequestHandler.baseSorts();
+            this.pointInTimeSorts = new ArrayList<>(sorts);
+            pointInTimeSorts.add(POINT_IN_TIME_TIEBREAKER);
             this.highlight = elasticRequestHandler.highlight();
+            this.prefetch = indexNode.getDefinition().queryPrefetch;
 
             Set<String> sourceFieldsSet = new HashSet<>();
             AtomicBoolean needsAggregations = new AtomicBoolean(false);
@@ -233,34 +279,17 @@ public class ElasticResultRowAsyncIterator implements Iterator<FulltextResultRow
             listeners.forEach(register);
             this.sourceConfig = SourceConfig.of(fn -> fn.filter(f -> f.includes(new ArrayList<>(sourceFieldsSet))));
 
-            SearchRequest searchReq = SearchRequest.of(builder -> {
-                        builder
-                                .index(indexNode.getDefinition().getIndexAlias())
-                                .trackTotalHits(thb -> thb.count(indexNode.getDefinition().trackTotalHits))
-                                .sort(sorts)
-                                .source(sourceConfig)
-                                .query(query)
-                                .highlight(highlight)
-                                // use a smaller size when the query contains aggregations. This improves performance
-                                // when the client is only interested in insecure facets
-                                .size(needsAggregations.get() ? Math.min(SMALL_RESULT_SET_SIZE, getFetchSize(requests)) : getFetchSize(requests));
-
-                        if (needsAggregations.get()) {
-                            builder.aggregations(elasticRequestHandler.aggregations());
-                        }
-
-                        return builder;
-                    }
-            );
+            // use a smaller size when the query contains aggregations. This improves performance
+            // when the client is only interested in insecure facets
+            int size = needsAggregations.get() ? Math.min(SMALL_RESULT_SET_SIZE, getFetchSize(requests)) : getFetchSize(requests);
 
-            LOG.trace("Kicking initial search for query {}", searchReq);
             semaphore.tryAcquire();
 
             searchStartTime = System.currentTimeMillis();
             requests++;
 
             indexNode.getConnection().getAsyncClient()
-                    .search(searchReq, ObjectNode.class)
+                    .search(initialRequest(size, needsAggregations.get()), ObjectNode.class)
                     .whenComplete(((searchResponse, throwable) -> {
                         if (throwable != null) {
                             onFailure(throwable);
@@ -269,14 +298,64 @@ public class ElasticResultRowAsyncIterator implements Iterator<FulltextResultRow
             metricHandler.markQuery(indexNode.getDefinition().getIndexPath(), true);
         }
 
+        private SearchRequest initialRequest(int size, boolean needsAggregations) {
+            SearchRequest searchReq = SearchRequest.of(builder -> {
+                        requestBase(builder, null).size(size);
+                        if (needsAggregations) {
+                            builder.aggregations(elasticRequestHandler.aggregations());
+                        }
+                        return builder;
+                    }
+            );
+            LOG.trace("Kicking initial search for query {}", searchReq);
+            return searchReq;
+        }
+
+        private SearchRequest searchAfterRequest(int size) {
+            String pit = pointInTime == null ? null : pointInTime.getId();
+            List<FieldValue> searchAfter = lastHitSortValues;
+            if (pit != null && searchAfter.size() < pointInTimeSorts.size()) {
+                // the previous chunk was not read from the point in time: as the path is a unique tiebreaker,
+                // any tiebreaker value works, as long as the last hit itself is excluded
+                searchAfter = new ArrayList<>(searchAfter);
+                searchAfter.add(FieldValue.of(Long.MAX_VALUE));
+            }
+            List<FieldValue> values = searchAfter;
+            return SearchRequest.of(s -> requestBase(s, pit)
+                    .searchAfter(values)
+                    .size(size)
+            );
+        }
+
+        /**
+         * Sets the options shared by all requests of a query: the index or point in time, the query, sorting and
+         * the returned fields.
+         */
+        private SearchRequest.Builder requestBase(SearchRequest.Builder builder, String pit) {
+            if (pit != null) {
+                builder.pit(p -> p.id(pit).keepAlive(POINT_IN_TIME_KEEP_ALIVE))
+                        .sort(pointInTimeSorts);
+            } else {
+                builder.index(indexNode.getDefinition().getIndexAlias())
+                        .sort(sorts);
+            }
+            return builder
+                    .trackTotalHits(thb -> thb.count(indexNode.getDefinition().trackTotalHits))
+                    .source(sourceConfig)
+                    .query(query)
+                    .highlight(highlight);
+        }
+
         /**
          * Handle the response action notifying the registered listeners. Depending on the listeners' configuration
          * it could keep loading chunks or wait for a {@code #scan} call to resume scanning.
          * <p>
          * Some code in this method relies on structure that are not thread safe. We need to make sure
-         * these data structures are modified before releasing the semaphore.
+         * these data structures are modified before releasing the semaphore. The method is synchronized, so that
+         * the hits of a chunk are emitted after the ones of the previous chunk, even if the next chunk was
+         * requested (prefetched) while the previous one was still being emitted.
          */
-        public void onSuccess(SearchResponse<ObjectNode> searchResponse) {
+        public synchronized void onSuccess(SearchResponse<ObjectNode> searchResponse) {
             long searchTotalTime = System.currentTimeMillis() - searchStartTime;
 
             List<Hit<ObjectNode>> searchHits = searchResponse.hits().hits();
@@ -287,6 +366,11 @@ public class ElasticResultRowAsyncIterator implements Iterator<FulltextResultRow
                 long totalHits = searchResponse.hits().total().value();
                 LOG.debug("Processing search response that took {} to read {}/{} docs", searchResponse.took(), hitsSize, totalHits);
                 lastHitSortValues = searchHits.get(hitsSize - 1).sort();
+                if (pointInTime != null && searchResponse.pitId() != null) {
+                    // the id of the point in time can change between requests
+                    pointInTime.update(searchResponse.pitId());
+                }
+                lastChunkSize = hitsSize;
                 scannedRows += hitsSize;
                 if (searchResponse.hits().total().relation() == TotalHitsRelation.Eq) {
                     anyDataLeft.set(totalHits > scannedRows);
@@ -321,7 +405,8 @@ public class ElasticResultRowAsyncIterator implements Iterator<FulltextResultRow
                 if (!anyDataLeft.get()) {
                     LOG.trace("No data left: closing scanner, notifying listeners");
                     close();
-                } else if (fullScan) {
+                } else if (fullScan || prefetch && queue.size() <= hitsSize) {
+                    // with prefetch, the next chunk is requested if the previous chunks were consumed
                     scan();
                 }
             } else {
@@ -330,7 +415,7 @@ public class ElasticResultRowAsyncIterator implements Iterator<FulltextResultRow
             }
         }
 
-        public void onFailure(Throwable t) {
+        public synchronized void onFailure(Throwable t) {
             metricHandler.measureFailedQuery(indexNode.getDefinition().getIndexPath(),
                     System.currentTimeMillis() - searchStartTime);
             // Check in case errorRef is already set - this seems unlikely since we close the scanner once we hit failure.
@@ -351,32 +436,44 @@ public class ElasticResultRowAsyncIterator implements Iterator<FulltextResultRow
          */
         private void scan() {
             if (semaphore.tryAcquire() && anyDataLeft.get()) {
-                final SearchRequest searchReq = SearchRequest.of(s -> s
-                        .index(indexNode.getDefinition().getIndexAlias())
-                        .trackTotalHits(thb -> thb.count(indexNode.getDefinition().trackTotalHits))
-                        .sort(sorts)
-                        .source(sourceConfig)
-                        .searchAfter(lastHitSortValues)
-                        .query(query)
-                        .highlight(highlight)
-                        .size(getFetchSize(requests++))
-                );
-                LOG.trace("Kicking new search after query {}", searchReq);
-
+                int size = getFetchSize(requests++);
                 searchStartTime = System.currentTimeMillis();
-                indexNode.getConnection().getAsyncClient()
-                        .search(searchReq, ObjectNode.class)
-                        .whenComplete(((searchResponse, throwable) -> {
-                            if (throwable != null) {
-                                onFailure(throwable);
-                            } else onSuccess(searchResponse);
-                        }));
+                ElasticsearchAsyncClient client = indexNode.getConnection().getAsyncClient();
+                CompletableFuture<SearchResponse<ObjectNode>> response;
+                if (pointInTime != null && pointInTime.getId() == null) {
+                    // the point in time is only opened once a second chunk is needed
+                    response = client.openPointInTime(o -> o
+                                    .index(indexNode.getDefinition().getIndexAlias())
+                                    .keepAlive(POINT_IN_TIME_KEEP_ALIVE))
+                            .thenCompose(pit -> {
+                                pointInTime.update(pit.id());
+                                return client.search(searchAfterRequest(size), ObjectNode.class);
+                            });
+                } else {
+                    response = client.search(searchAfterRequest(size), ObjectNode.class);
+                }
+                response.whenComplete(((searchResponse, throwable) -> {
+                    if (throwable != null) {
+                        onFailure(throwable);
+                    } else onSuccess(searchResponse);
+                }));
                 metricHandler.markQuery(indexNode.getDefinition().getIndexPath(), false);
             } else {
                 LOG.trace("Scanner is closing or still processing data from the previous scan");
             }
         }
 
+        /**
+         * Requests the next chunk in advance, if prefetch is enabled and the consumer started reading the last chunk.
+         *
+         * @param buffered the number of results not yet consumed
+         */
+        private void prefetch(int buffered) {
+            if (prefetch && buffered <= lastChunkSize) {
+                scan();
+            }
+        }
+
         /* picks the size in the fetch array at index=requests or the last if out of bound */
         private int getFetchSize(int requestId) {
             int[] queryFetchSizes = indexNode.getDefinition().queryFetchSizes;
@@ -390,6 +487,55 @@ public class ElasticResultRowAsyncIterator implements Iterator<FulltextResultRow
             for (ElasticResponseListener l : allListeners) {
                 l.endData();
             }
+            if (pointInTimeCleanable != null) {
+                pointInTimeCleanable.clean();
+            }
+        }
+    }
+
+    /**
+     * The point in time of a scan. It must not reference the iterator, so that it can be closed once the iterator
+     * is no longer reachable. Once closed, a point in time that is opened later is closed right away, and not used.
+     */
+    private static class PointInTime implements Runnable {
+
+        private final ElasticsearchAsyncClient client;
+        private String id;
+        private boolean closed;
+
+        PointInTime(ElasticsearchAsyncClient client) {
+            this.client = client;
+        }
+
+        synchronized String getId() {
+            return id;
+        }
+
+        synchronized void update(String id) {
+            if (closed) {
+                close(id);
+            } else {
+                this.id = id;
+            }
+        }
+
+        @Override
+        public synchronized void run() {
+            closed = true;
+            if (id != null) {
+                close(id);
+                id = null;
+            }
+        }
+
+        private void close(String pit) {
+            client.closePointInTime(c -> c.id(pit))
+                    .whenComplete((r, t) -> {
+                        if (t != null) {
+                            // the point in time expires after the keep alive time anyway
+                            LOG.debug("Error closing point in time {}", pit, t);
+                        }
+                    });
         }
     }
 }
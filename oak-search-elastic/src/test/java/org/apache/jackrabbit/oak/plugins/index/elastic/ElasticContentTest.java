@@ -41,6 +41,7 @@ import static org.mockito.ArgumentMatchers.anyBoolean;
 import static org.mockito.ArgumentMatchers.anyLong;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.atLeastOnce;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.reset;
 import static org.mockito.Mockito.spy;
@@ -232,6 +233,32 @@ public class ElasticContentTest extends ElasticAbstractQueryTest {
         verify(spyMetricHandler, times(1)).markQuery(anyString(), anyBoolean());
     }
 
+    @Test
+    public void indexWithPrefetchAndPointInTime() throws Exception {
+        IndexDefinitionBuilder builder = createIndex("a").noAsync();
+        builder.getBuilderTree().setProperty("queryFetchSizes", List.of(2L), Type.LONGS);
+        builder.getBuilderTree().setProperty("queryPrefetch", true);
+        builder.getBuilderTree().setProperty("queryPointInTime", true);
+        builder.indexRule("nt:base").property("a").propertyIndex();
+        setIndex("a_" + UUID.randomUUID(), builder);
+        root.commit();
+
+        Tree content = root.getTree("/").addChild("content");
+        List<String> results = IntStream.range(0, 9)
+                .mapToObj(n -> {
+                    content.addChild("child_" + n).setProperty("a", "text");
+                    return "/content/child_" + n;
+                })
+                .collect(Collectors.toList());
+        root.commit(Map.of("sync-mode", "rt"));
+
+        reset(spyMetricHandler);
+        assertQuery("select [jcr:path] from [nt:base] where [a] = 'text'", results);
+        // chunks are prefetched, but not more than needed
+        verify(spyMetricHandler, times(5)).markQuery(anyString(), anyBoolean());
+        verify(spyMetricHandler, atLeastOnce()).measureFetchWait(anyString(), anyLong());
+    }
+
     @Test
     public void indexWithLowTrackTotalHits() throws Exception {
         BiConsumer<String, Iterable<Long>> buildIndex = (p, fetchSizes) -> {
@@ -0,0 +1,132 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.oak.plugins.index.elastic.index;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class AdaptiveBulkSizerTest {
+
+    @Test
+    public void growsWhenUnconstrained() {
+        AdaptiveBulkSizer sizer = new AdaptiveBulkSizer(250, 1000, 4, 2000);
+        SimulatedCluster cluster = new SimulatedCluster(Integer.MAX_VALUE, 1);
+        cluster.run(sizer, 100);
+        assertEquals(1000, sizer.getActions());
+        assertEquals(4, sizer.getConcurrency());
+        assertEquals(0, sizer.getBackoffCount());
+    }
+
+    @Test
+    public void backsOffWhenRejected() {
+        AdaptiveBulkSizer sizer = new AdaptiveBulkSizer(250, 1000, 4, 2000);
+        // the cluster accepts at most 1500 actions in flight
+        SimulatedCluster cluster = new SimulatedCluster(1500, 1);
+        cluster.run(sizer, 500);
+        assertTrue(sizer.getBackoffCount() > 0);
+        // after converging, most requests are accepted, and the throughput
+        // is close to the capacity of the cluster
+        cluster.reset();
+        cluster.run(sizer, 500);
+        assertTrue("rejected: " + cluster.rejected, cluster.rejected < 100);
+        assertTrue("throughput: " + cluster.averageInFlight(), cluster.averageInFlight() > 500);
+    }
+
+    @Test
+    public void backsOffWhenSlow() {
+        AdaptiveBulkSizer sizer = new AdaptiveBulkSizer(1000, 1000, 1, 2000);
+        // 4 ms per action: requests with more than 500 actions are too slow
+        SimulatedCluster cluster = new SimulatedCluster(Integer.MAX_VALUE, 4);
+        cluster.run(sizer, 500);
+        assertTrue(sizer.getActions() <= 500 + 50);
+        assertTrue(sizer.getActions() >= 250);
+    }
+
+    @Test
+    public void minActions() {
+        AdaptiveBulkSizer sizer = new AdaptiveBulkSizer(100, 1000, 4, 2000);
+        for (int i = 0; i < 100; i++) {
+            sizer.onResponse(sizer.getActions(), 0, true);
+        }
+        assertEquals(1, sizer.getConcurrency());
+        assertEquals(AdaptiveBulkSizer.MIN_ACTIONS, sizer.getActions());
+    }
+
+    @Test
+    public void partialRequests() {
+        AdaptiveBulkSizer sizer = new AdaptiveBulkSizer(100, 1000, 4, 2000);
+        // requests flushed before they are full (for example by size or interval) don't grow the sizes
+        for (int i = 0; i < 100; i++) {
+            sizer.onResponse(50, 10, false);
+        }
+        assertEquals(100, sizer.getActions());
+        assertEquals(1, sizer.getConcurrency());
+    }
+
+    /**
+     * A bulk endpoint that rejects requests if too many actions are in flight,
+     * and whose latency grows with the number of actions of a request.
+     */
+    private static class SimulatedCluster {
+
+        private final int capacity;
+
+        private final int msPerAction;
+
+        int rejected;
+
+        long inFlightSum;
+
+        int rounds;
+
+        SimulatedCluster(int capacity, int msPerAction) {
+            this.capacity = capacity;
+            this.msPerAction = msPerAction;
+        }
+
+        void run(AdaptiveBulkSizer sizer, int numRounds) {
+            for (int i = 0; i < numRounds; i++) {
+                // one round: the current number of concurrent requests, with the current number of actions
+                int actions = sizer.getActions();
+                int concurrency = sizer.getConcurrency();
+                long inFlight = (long) actions * concurrency;
+                boolean reject = inFlight > capacity;
+                rounds++;
+                if (reject) {
+                    rejected++;
+                } else {
+                    inFlightSum += inFlight;
+                }
+                for (int r = 0; r < concurrency; r++) {
+                    sizer.onResponse(actions, 10 + (long) actions * msPerAction, reject);
+                }
+            }
+        }
+
+        void reset() {
+            rejected = 0;
+            inFlightSum = 0;
+            rounds = 0;
+        }
+
+        double averageInFlight() {
+            return rounds == 0 ? 0 : (double) inFlightSum / rounds;
+        }
+    }
+}
@@ -16,13 +16,26 @@
  */
 package org.apache.jackrabbit.oak.plugins.index.elastic.index;
 
+import org.apache.jackrabbit.oak.api.PropertyState;
 import org.apache.jackrabbit.oak.plugins.index.elastic.ElasticConnection;
 import org.apache.jackrabbit.oak.plugins.index.elastic.ElasticIndexDefinition;
+import org.apache.jackrabbit.oak.plugins.index.elastic.util.ElasticIndexDefinitionBuilder;
+import org.apache.jackrabbit.oak.plugins.index.search.IndexDefinition;
 import org.apache.jackrabbit.oak.plugins.memory.MultiStringPropertyState;
 import org.apache.jackrabbit.oak.plugins.memory.StringPropertyState;
 import org.apache.jackrabbit.oak.spi.commit.CommitInfo;
 import org.apache.jackrabbit.oak.spi.state.NodeBuilder;
 import org.apache.jackrabbit.oak.spi.state.NodeState;
+import org.elasticsearch.action.ActionListener;
+import org.elasticsearch.action.DocWriteRequest;
+import org.elasticsearch.action.bulk.BulkItemResponse;
+import org.elasticsearch.action.bulk.BulkRequest;
+import org.elasticsearch.action.bulk.BulkResponse;
+import org.elasticsearch.action.index.IndexRequest;
+import org.elasticsearch.action.index.IndexResponse;
+import org.elasticsearch.common.util.concurrent.EsRejectedExecutionException;
+import org.elasticsearch.index.shard.ShardId;
+import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 import org.mockito.Mock;
@@ -30,9 +43,19 @@ import org.mockito.MockitoAnnotations;
 
 import java.util.Arrays;
 import java.util.Collections;
-
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+
+import static org.apache.jackrabbit.oak.plugins.memory.EmptyNodeState.EMPTY_NODE;
 import static org.hamcrest.CoreMatchers.instanceOf;
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
 import static org.mockito.Mockito.eq;
 import static org.mockito.Mockito.when;
 
@@ -53,6 +76,8 @@ public class ElasticBulkProcessorHandlerTest {
     @Mock
     private CommitInfo commitInfo;
 
+    private FakeBulkEndpoint endpoint;
+
     @Before
     public void setUp() {
         MockitoAnnotations.initMocks(this);
@@ -60,6 +85,13 @@ public class ElasticBulkProcessorHandlerTest {
         when(commitInfo.getInfo()).thenReturn(Collections.emptyMap());
     }
 
+    @After
+    public void tearDown() {
+        if (endpoint != null) {
+            endpoint.executor.shutdownNow();
+        }
+    }
+
     @Test
     public void defaultMode() {
         when(definitionNodeStateMock.getProperty(eq("async"))).thenReturn(null);
@@ -102,4 +134,114 @@ public class ElasticBulkProcessorHandlerTest {
 
         assertThat(bulkProcessorHandler, instanceOf(ElasticBulkProcessorHandler.RealTimeBulkProcessorHandler.class));
     }
+
+    @Test
+    public void adaptiveBulkRejections() throws Exception {
+        AdaptiveBulkSizer sizer = new AdaptiveBulkSizer(20, 40, 2, TimeUnit.MINUTES.toMillis(1));
+        endpoint = new FakeBulkEndpoint(20, 2);
+        NodeBuilder definitionBuilder = EMPTY_NODE.builder();
+        ElasticBulkProcessorHandler handler = newHandler(definitionBuilder, sizer);
+        for (int i = 0; i < 200; i++) {
+            handler.add(newRequest(i));
+        }
+        // the bulk processor doesn't count the actions itself (bulkActions = -1),
+        // the first request is sent by add() once the initial number of actions is reached
+        assertEquals(20, (int) endpoint.requestSizes.get(0));
+        assertTrue(handler.close());
+
+        // both rejected requests backed off, and all actions were sent once (no retries)
+        assertEquals(2, sizer.getBackoffCount());
+        assertEquals(200, endpoint.requestSizes.stream().mapToInt(Integer::intValue).sum());
+        for (int size : endpoint.requestSizes) {
+            assertTrue("size " + size, size <= 40);
+        }
+        PropertyState failed = definitionBuilder.getChildNode(IndexDefinition.STATUS_NODE)
+                .getProperty(IndexDefinition.FAILED_DOC_PATHS);
+        assertEquals(endpoint.requestSizes.get(0) + endpoint.requestSizes.get(1), failed.count());
+    }
+
+    @Test
+    public void adaptiveBulkSlowEndpoint() throws Exception {
+        // each response is slower than the target latency
+        AdaptiveBulkSizer sizer = new AdaptiveBulkSizer(20, 40, 2, 10);
+        endpoint = new FakeBulkEndpoint(50, 0);
+        ElasticBulkProcessorHandler handler = newHandler(EMPTY_NODE.builder(), sizer);
+        for (int i = 0; i < 100; i++) {
+            handler.add(newRequest(i));
+        }
+        // the bulk processor allows two concurrent requests, but the sizer only one:
+        // add() waits until the request in flight returned
+        assertTrue(endpoint.requestSizes.size() >= 2);
+        assertEquals(1, endpoint.maxInFlight.get());
+        assertTrue(handler.close());
+
+        assertEquals(1, sizer.getConcurrency());
+        assertEquals(AdaptiveBulkSizer.MIN_ACTIONS, sizer.getActions());
+        assertEquals(endpoint.requestSizes.size(), sizer.getBackoffCount());
+        assertEquals(100, endpoint.requestSizes.stream().mapToInt(Integer::intValue).sum());
+    }
+
+    private ElasticBulkProcessorHandler newHandler(NodeBuilder definitionBuilder, AdaptiveBulkSizer sizer) {
+        NodeBuilder defn = new ElasticIndexDefinitionBuilder().build().builder();
+        defn.setProperty(ElasticIndexDefinition.BULK_ACTIONS, 20L);
+        defn.setProperty(ElasticIndexDefinition.BULK_RETRIES, 0L);
+        defn.setProperty(ElasticIndexDefinition.BULK_FLUSH_INTERVAL_MS, TimeUnit.MINUTES.toMillis(1));
+        defn.setProperty(ElasticIndexDefinition.FAIL_ON_ERROR, false);
+        NodeState state = defn.getNodeState();
+        ElasticIndexDefinition definition = new ElasticIndexDefinition(state, state, "/oak:index/test", "prefix");
+        FakeBulkEndpoint endpoint = this.endpoint;
+        return new ElasticBulkProcessorHandler(elasticConnectionMock, "index", definition, definitionBuilder,
+                true, null, sizer) {
+            @Override
+            protected BiConsumer<BulkRequest, ActionListener<BulkResponse>> requestConsumer() {
+                return endpoint;
+            }
+        };
+    }
+
+    private static IndexRequest newRequest(int i) {
+        return new IndexRequest("index").id("/content/n" + i).source(Collections.singletonMap("foo", "bar"));
+    }
+
+    /**
+     * A bulk endpoint that responds after a fixed delay. All actions of the first requests are rejected with
+     * HTTP 429, as a busy Elasticsearch cluster does.
+     */
+    private static class FakeBulkEndpoint implements BiConsumer<BulkRequest, ActionListener<BulkResponse>> {
+
+        final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor();
+        final List<Integer> requestSizes = new CopyOnWriteArrayList<>();
+        final AtomicInteger maxInFlight = new AtomicInteger();
+        private final AtomicInteger inFlight = new AtomicInteger();
+        private final AtomicInteger rejectedRequests;
+        private final long latencyMs;
+
+        FakeBulkEndpoint(long latencyMs, int rejectedRequests) {
+            this.latencyMs = latencyMs;
+            this.rejectedRequests = new AtomicInteger(rejectedRequests);
+        }
+
+        @Override
+        public void accept(BulkRequest request, ActionListener<BulkResponse> listener) {
+            maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+            requestSizes.add(request.numberOfActions());
+            boolean rejected = rejectedRequests.getAndDecrement() > 0;
+            executor.schedule(() -> {
+                List<DocWriteRequest<?>> requests = request.requests();
+                BulkItemResponse[] items = new BulkItemResponse[requests.size()];
+                for (int i = 0; i < items.length; i++) {
+                    DocWriteRequest<?> r = requests.get(i);
+                    if (rejected) {
+                        items[i] = BulkItemResponse.failure(i, r.opType(), new BulkItemResponse.Failure(
+                                r.index(), "_doc", r.id(), new EsRejectedExecutionException("rejected")));
+                    } else {
+                        items[i] = BulkItemResponse.success(i, r.opType(), new IndexResponse(
+                                new ShardId(r.index(), "uuid", 0), "_doc", r.id(), 1, 1, 1, true));
+                    }
+                }
+                inFlight.decrementAndGet();
+                listener.onResponse(new BulkResponse(items, latencyMs));
+            }, latencyMs, TimeUnit.MILLISECONDS);
+        }
+    }
 }
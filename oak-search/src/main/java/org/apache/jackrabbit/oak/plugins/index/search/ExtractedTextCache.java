@@ -28,11 +28,13 @@ import java.io.IOException;
 import java.util.Map.Entry;
 import java.util.Properties;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Future;
 import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionHandler;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
@@ -75,6 +77,7 @@ public class ExtractedTextCache {
     private static final String EMPTY_STRING = "";
     private static final Logger log = LoggerFactory.getLogger(ExtractedTextCache.class);
     private volatile PreExtractedTextProvider extractedTextProvider;
+    private volatile PersistentExtractedTextCache persistentCache;
     private int textExtractionCount;
     private long totalBytesRead;
     private long totalTextSize;
@@ -90,6 +93,7 @@ public class ExtractedTextCache {
     private final CacheStats cacheStats;
     private final boolean alwaysUsePreExtractedCache;
     private volatile ExecutorService executorService;
+    private ExecutorService documentBuilderExecutor;
     private volatile int timeoutCount;
     private long extractionTimeoutMillis = EXTRACTION_TIMEOUT_SECONDS * 1000;
 
@@ -152,6 +156,13 @@ public class ExtractedTextCache {
         if (cache != null && id != null && result == null) {
             result = cache.getIfPresent(id);
         }
+        PersistentExtractedTextCache persistent = persistentCache;
+        if (persistent != null && id != null && result == null) {
+            result = persistent.get(id);
+            if (result != null && cache != null) {
+                cache.put(id, result);
+            }
+        }
         if (result == null && id != null) {
             result = timeoutMap.get(id);
         }
@@ -160,11 +171,18 @@ public class ExtractedTextCache {
 
     public void put(@NotNull Blob blob, @NotNull ExtractedText extractedText) {
         String id = blob.getContentIdentity();
-        if (cache != null && id != null) {
-            if (extractedText.getExtractionResult() == ExtractionResult.SUCCESS
-                    || !CACHE_ONLY_SUCCESS) {
-                cache.put(id, getText(extractedText));
-            }
+        if (id == null || (extractedText.getExtractionResult() != ExtractionResult.SUCCESS
+                && CACHE_ONLY_SUCCESS)) {
+            return;
+        }
+        String text = getText(extractedText);
+        if (cache != null) {
+            cache.put(id, text);
+        }
+        PersistentExtractedTextCache persistent = persistentCache;
+        // errors are not persisted, so that extraction is retried after a restart
+        if (persistent != null && extractedText.getExtractionResult() == ExtractionResult.SUCCESS) {
+            persistent.put(id, text);
         }
     }
 
@@ -244,6 +262,29 @@ public class ExtractedTextCache {
             public int getTimeoutCount() {
                 return timeoutCount;
             }
+
+            @Override
+            public boolean isPersistentCacheEnabled() {
+                return persistentCache != null;
+            }
+
+            @Override
+            public long getPersistentCacheHitCount() {
+                PersistentExtractedTextCache persistent = persistentCache;
+                return persistent == null ? 0 : persistent.getHitCount();
+            }
+
+            @Override
+            public long getPersistentCacheMissCount() {
+                PersistentExtractedTextCache persistent = persistentCache;
+                return persistent == null ? 0 : persistent.getMissCount();
+            }
+
+            @Override
+            public String getPersistentCacheSize() {
+                PersistentExtractedTextCache persistent = persistentCache;
+                return IOUtils.humanReadableByteCount(persistent == null ? 0 : persistent.getSize());
+            }
         };
     }
 
@@ -260,6 +301,22 @@ public class ExtractedTextCache {
         return extractedTextProvider;
     }
 
+    /**
+     * Set the persistent cache, which is consulted if the text is not in the
+     * in-memory cache, and which stores all extracted text (so that it
+     * survives restarts and reindexing).
+     *
+     * @param persistentCache the persistent cache, or null to disable
+     */
+    public void setPersistentCache(@Nullable PersistentExtractedTextCache persistentCache) {
+        this.persistentCache = persistentCache;
+    }
+
+    @Nullable
+    public PersistentExtractedTextCache getPersistentCache() {
+        return persistentCache;
+    }
+
     public void resetCache(){
         if (cache != null){
             cache.invalidateAll();
@@ -300,6 +357,43 @@ public class ExtractedTextCache {
         // don't clean the persistent map on purpose, so we don't re-try
         // after restarting the service or so
         closeExecutorService();
+        closeDocumentBuilderExecutor();
+    }
+
+    /**
+     * Get the executor used to build the documents of async fulltext indexes
+     * in parallel. It is shared by all indexes, created on first use and shut
+     * down when the cache is closed. If the queue is full (or the executor
+     * was shut down), tasks run in the calling thread.
+     *
+     * @param threads the number of (daemon) threads
+     * @param queueSize the maximum number of queued tasks
+     * @return the executor
+     */
+    public synchronized ExecutorService getDocumentBuilderExecutor(int threads, int queueSize) {
+        if (documentBuilderExecutor == null) {
+            ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads,
+                    60, TimeUnit.SECONDS, new ArrayBlockingQueue<>(Math.max(1, queueSize)), new ThreadFactory() {
+                private final AtomicInteger counter = new AtomicInteger();
+
+                @Override
+                public Thread newThread(@NotNull Runnable r) {
+                    Thread thread = new Thread(r, "oak-document-builder-" + counter.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            }, new RejectedExecutionHandler() {
+                @Override
+                public void rejectedExecution(Runnable r, ThreadPoolExecutor executor) {
+                    // the indexing thread waits for the document, so the
+                    // task must run even if the executor was shut down
+                    r.run();
+                }
+            });
+            executor.allowCoreThreadTimeOut(true);
+            documentBuilderExecutor = executor;
+        }
+        return documentBuilderExecutor;
     }
 
     public void process(String name, Callable<Void> callable) throws Throwable {
@@ -389,6 +483,13 @@ public class ExtractedTextCache {
         }
     }
 
+    private synchronized void closeDocumentBuilderExecutor() {
+        if (documentBuilderExecutor != null) {
+            documentBuilderExecutor.shutdown();
+            documentBuilderExecutor = null;
+        }
+    }
+
     private synchronized void loadTimeoutMap() {
         if (indexDir == null || !indexDir.exists()) {
             return;
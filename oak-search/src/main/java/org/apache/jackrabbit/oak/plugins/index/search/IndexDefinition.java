@@ -28,8 +28,10 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.Optional;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.regex.Pattern;
 import java.util.stream.Stream;
 
@@ -54,6 +56,7 @@ import org.apache.jackrabbit.oak.namepath.NamePathMapper;
 import org.apache.jackrabbit.oak.plugins.index.IndexConstants;
 import org.apache.jackrabbit.oak.plugins.index.search.util.ConfigUtil;
 import org.apache.jackrabbit.oak.plugins.index.search.util.FunctionIndexProcessor;
+import org.apache.jackrabbit.oak.plugins.index.statistics.PropertyStatistics;
 import org.apache.jackrabbit.oak.plugins.memory.PropertyStates;
 import org.apache.jackrabbit.oak.plugins.nodetype.ReadOnlyNodeTypeManager;
 import org.apache.jackrabbit.oak.plugins.tree.factories.RootFactory;
@@ -220,6 +223,8 @@ public class IndexDefinition implements Aggregate.AggregateMapper {
 
     private final NodeState root;
 
+    private final Map<String, Optional<PropertyStatistics>> propertyStatistics = new ConcurrentHashMap<>();
+
     private final IndexFormatVersion version;
 
     private final String funcName;
@@ -519,6 +524,23 @@ public class IndexDefinition implements Aggregate.AggregateMapper {
         return definition;
     }
 
+    /**
+     * Get the selectivity statistics of a property, as collected by the
+     * indexer. The statistics are read from the index definition in the
+     * repository (and not from the stored copy of the definition).
+     *
+     * @param propertyName the property name
+     * @return the statistics, or null if not available
+     */
+    @Nullable
+    public PropertyStatistics getPropertyStatistics(String propertyName) {
+        if (root == null || !PathUtils.isAbsolute(indexPath)) {
+            return null;
+        }
+        return propertyStatistics.computeIfAbsent(propertyName, name -> Optional.ofNullable(
+                PropertyStatistics.read(NodeStateUtils.getNode(root, indexPath), name))).orElse(null);
+    }
+
     public boolean isEnabled() {
         if (useIfExists == null) {
             return true;
@@ -32,7 +32,13 @@ public enum IndexFormatVersion {
     /**
      * Index confirming to Oak version upto 1.0.9
      */
-    V2(2);
+    V2(2),
+    /**
+     * Index that additionally stores the path of each document as a binary
+     * doc values field, so that the paths of query results can be read
+     * without loading the stored fields
+     */
+    V3(3);
 
     private final int version;
 
@@ -60,6 +66,7 @@ public enum IndexFormatVersion {
         switch(version){
             case 1 : return V1;
             case 2 : return V2;
+            case 3 : return V3;
             default : throw new IllegalArgumentException("Unknown version : " + version);
         }
     }
@@ -0,0 +1,282 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.jackrabbit.oak.plugins.index.search;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import org.apache.jackrabbit.oak.commons.StringUtils;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import static org.apache.jackrabbit.guava.common.base.Preconditions.checkArgument;
+
+/**
+ * A persistent store for extracted text, keyed by the content identity of the
+ * binary. Each entry is stored as a compressed file. Once the total size of the
+ * files exceeds the configured maximum, the least recently used entries are
+ * removed.
+ * <p>
+ * Texts larger than {@link #MAX_TEXT_SIZE} bytes (UTF-8) are not stored.
+ * <p>
+ * Entries are written to a temporary file first and then renamed, so that the
+ * directory can be shared by multiple cluster nodes (for example on a network
+ * file system): a reader only sees complete entries, and concurrent writers of
+ * the same entry write the same content. Each cluster node only evicts entries
+ * based on its own view of the directory.
+ */
+public class PersistentExtractedTextCache {
+
+    private static final Logger log = LoggerFactory.getLogger(PersistentExtractedTextCache.class);
+
+    private static final int FORMAT_VERSION = 1;
+
+    private static final String FILE_SUFFIX = ".txt.gz";
+
+    private static final String TEMP_SUFFIX = ".tmp";
+
+    /**
+     * The maximum size of a text, in bytes. Larger texts are not stored, and
+     * entries with a larger length are considered corrupt.
+     */
+    static final int MAX_TEXT_SIZE = Integer.getInteger("oak.extracted.persistentCache.maxTextSize",
+            16 * 1024 * 1024);
+
+    private final File dir;
+
+    private final long maxSize;
+
+    private final AtomicLong hitCount = new AtomicLong();
+
+    private final AtomicLong missCount = new AtomicLong();
+
+    /**
+     * The known entries (file name to file size), in access order.
+     */
+    private final LinkedHashMap<String, Long> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+    private long size;
+
+    public PersistentExtractedTextCache(@NotNull File dir, long maxSize) throws IOException {
+        checkArgument(maxSize > 0, "maxSize must be positive: %s", maxSize);
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            throw new IOException("Could not create the directory " + dir.getAbsolutePath());
+        }
+        this.dir = dir;
+        this.maxSize = maxSize;
+        load();
+        log.info("Persistent extracted text cache at {} with {} entries, size {} (max {})",
+                dir.getAbsolutePath(), entries.size(), size, maxSize);
+    }
+
+    /**
+     * Get the extracted text of the given binary.
+     *
+     * @param contentIdentity the content identity of the binary
+     * @return the text, or null if not found
+     */
+    @Nullable
+    public String get(@NotNull String contentIdentity) {
+        String name = getFileName(contentIdentity);
+        File file = getFile(name);
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+                new GZIPInputStream(new FileInputStream(file))))) {
+            if (in.readInt() != FORMAT_VERSION || !contentIdentity.equals(in.readUTF())) {
+                // a different version or a hash collision
+                missCount.incrementAndGet();
+                return null;
+            }
+            int length = in.readInt();
+            if (length < 0 || length > MAX_TEXT_SIZE) {
+                throw new IOException("Corrupt entry, text length " + length);
+            }
+            byte[] text = new byte[length];
+            in.readFully(text);
+            hitCount.incrementAndGet();
+            accessed(name, file);
+            return new String(text, StandardCharsets.UTF_8);
+        } catch (FileNotFoundException e) {
+            missCount.incrementAndGet();
+            return null;
+        } catch (IOException e) {
+            log.warn("Could not read the extracted text of {} from {}", contentIdentity, file, e);
+            missCount.incrementAndGet();
+            return null;
+        }
+    }
+
+    /**
+     * Store the extracted text of the given binary.
+     *
+     * @param contentIdentity the content identity of the binary
+     * @param text the text
+     */
+    public void put(@NotNull String contentIdentity, @NotNull String text) {
+        String name = getFileName(contentIdentity);
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > MAX_TEXT_SIZE) {
+            log.debug("The extracted text of {} is too large to be stored: {} bytes", contentIdentity, bytes.length);
+            return;
+        }
+        File file = getFile(name);
+        File temp = new File(file.getParentFile(), name + "." + Thread.currentThread().getId() + TEMP_SUFFIX);
+        try {
+            if (!file.getParentFile().isDirectory() && !file.getParentFile().mkdirs()) {
+                throw new IOException("Could not create the directory " + file.getParentFile());
+            }
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                    new GZIPOutputStream(new FileOutputStream(temp))))) {
+                out.writeInt(FORMAT_VERSION);
+                out.writeUTF(contentIdentity);
+                out.writeInt(bytes.length);
+                out.write(bytes);
+            }
+            Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+            added(name, file.length());
+        } catch (IOException e) {
+            log.warn("Could not store the extracted text of {} in {}", contentIdentity, file, e);
+            if (temp.exists() && !temp.delete()) {
+                log.debug("Could not delete {}", temp);
+            }
+        }
+    }
+
+    public long getHitCount() {
+        return hitCount.get();
+    }
+
+    public long getMissCount() {
+        return missCount.get();
+    }
+
+    public synchronized long getSize() {
+        return size;
+    }
+
+    public long getMaxSize() {
+        return maxSize;
+    }
+
+    public synchronized int getEntryCount() {
+        return entries.size();
+    }
+
+    private synchronized void accessed(String name, File file) {
+        // the modification time is used for the access order after a restart
+        if (!file.setLastModified(System.currentTimeMillis())) {
+            log.trace("Could not update the last modified time of {}", file);
+        }
+        if (entries.get(name) == null) {
+            // written by another cluster node
+            long length = file.length();
+            entries.put(name, length);
+            size += length;
+            evict();
+        }
+    }
+
+    private synchronized void added(String name, long length) {
+        Long old = entries.put(name, length);
+        size += length - (old == null ? 0 : old);
+        evict();
+    }
+
+    private void evict() {
+        Iterator<Map.Entry<String, Long>> it = entries.entrySet().iterator();
+        while (size > maxSize && it.hasNext()) {
+            Map.Entry<String, Long> e = it.next();
+            File file = getFile(e.getKey());
+            if (file.exists() && !file.delete()) {
+                log.debug("Could not delete {}", file);
+            }
+            size -= e.getValue();
+            it.remove();
+        }
+    }
+
+    /**
+     * Read the existing entries, the least recently modified first, and
+     * remove left over temporary files.
+     */
+    private synchronized void load() {
+        List<File> files = new ArrayList<>();
+        File[] subDirs = dir.listFiles(File::isDirectory);
+        if (subDirs != null) {
+            for (File subDir : subDirs) {
+                File[] list = subDir.listFiles();
+                if (list == null) {
+                    continue;
+                }
+                for (File f : list) {
+                    if (f.getName().endsWith(FILE_SUFFIX)) {
+                        files.add(f);
+                    } else if (f.getName().endsWith(TEMP_SUFFIX) && !f.delete()) {
+                        log.debug("Could not delete {}", f);
+                    }
+                }
+            }
+        }
+        files.sort(Comparator.comparingLong(File::lastModified));
+        for (File f : files) {
+            long length = f.length();
+            entries.put(f.getName(), length);
+            size += length;
+        }
+        evict();
+    }
+
+    private File getFile(String name) {
+        return new File(new File(dir, name.substring(0, 2)), name);
+    }
+
+    static String getFileName(String contentIdentity) {
+        try {
+            MessageDigest md = MessageDigest.getInstance("SHA-256");
+            byte[] hash = md.digest(contentIdentity.getBytes(StandardCharsets.UTF_8));
+            return StringUtils.convertBytesToHex(hash) + FILE_SUFFIX;
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+}
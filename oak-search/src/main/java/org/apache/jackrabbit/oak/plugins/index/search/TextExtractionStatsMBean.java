@@ -79,4 +79,28 @@ public interface TextExtractionStatsMBean {
      * @return timeout count
      */
     int getTimeoutCount();
+
+    /**
+     * Check whether the persistent extracted text cache is enabled
+     * @return {@code true} if enabled, {@code false} otherwise
+     */
+    boolean isPersistentCacheEnabled();
+
+    /**
+     * Number of lookups that found the text in the persistent cache
+     * @return the hit count
+     */
+    long getPersistentCacheHitCount();
+
+    /**
+     * Number of lookups that did not find the text in the persistent cache
+     * @return the miss count
+     */
+    long getPersistentCacheMissCount();
+
+    /**
+     * Size of the persistent cache on disk
+     * @return the size
+     */
+    String getPersistentCacheSize();
 }
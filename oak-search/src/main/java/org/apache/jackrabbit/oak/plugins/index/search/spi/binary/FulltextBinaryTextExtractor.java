@@ -228,21 +228,21 @@ public class FulltextBinaryTextExtractor {
 
   //~-------------------------------------------< Tika >
 
-  public TikaConfig getTikaConfig(){
+  public synchronized TikaConfig getTikaConfig(){
     if (tikaConfig == null) {
       tikaConfig = initializeTikaConfig(definition);
     }
     return tikaConfig.config;
   }
 
-  private Parser getParser() {
+  private synchronized Parser getParser() {
     if (parser == null){
       parser = initializeTikaParser(definition);
     }
     return parser;
   }
 
-  private boolean isSupportedMediaType(String type) {
+  private synchronized boolean isSupportedMediaType(String type) {
     if (supportedMediaTypes == null) {
       supportedMediaTypes = getParser().getSupportedTypes(new ParseContext());
       nonIndexedMediaType = getNonIndexedMediaTypes();
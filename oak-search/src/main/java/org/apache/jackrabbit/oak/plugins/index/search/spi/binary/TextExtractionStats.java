@@ -38,14 +38,14 @@ class TextExtractionStats {
     private long totalTime;
     private long totalTextLength;
 
-    public void addStats(long timeInMillis, long bytesRead, int textLength) {
+    public synchronized void addStats(long timeInMillis, long bytesRead, int textLength) {
         count++;
         totalBytesRead += bytesRead;
         totalTime += timeInMillis;
         totalTextLength += textLength;
     }
 
-    public void log(boolean reindex) {
+    public synchronized void log(boolean reindex) {
         if (log.isDebugEnabled()) {
             log.debug("Text extraction stats {}", this);
         } else if (anyParsingDone() && (reindex || isTakingLotsOfTime())) {
@@ -53,7 +53,7 @@ class TextExtractionStats {
         }
     }
 
-    public void collectStats(ExtractedTextCache cache){
+    public synchronized void collectStats(ExtractedTextCache cache){
         cache.addStats(count, totalTime, totalBytesRead, totalTextLength);
     }
 
@@ -66,7 +66,7 @@ class TextExtractionStats {
     }
 
     @Override
-    public String toString() {
+    public synchronized String toString() {
         return String.format(" %d (Time Taken %s, Bytes Read %s, Extracted text size %s)",
                 count,
                 timeInWords(totalTime),
@@ -0,0 +1,222 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.jackrabbit.oak.plugins.index.search.spi.editor;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+
+import org.apache.jackrabbit.oak.api.CommitFailedException;
+import org.apache.jackrabbit.oak.api.PropertyState;
+import org.apache.jackrabbit.oak.spi.state.NodeState;
+import org.apache.jackrabbit.oak.stats.CounterStats;
+import org.apache.jackrabbit.oak.stats.StatisticsProvider;
+import org.apache.jackrabbit.oak.stats.StatsOptions;
+import org.apache.jackrabbit.oak.stats.TimerStats;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Builds the documents of an indexing cycle in a thread pool (including text
+ * extraction), while the diff continues in the indexing thread. Documents and
+ * deletes are passed to the {@link FulltextIndexWriter} in the order they were
+ * submitted, so that the writer sees the same sequence of operations as when
+ * documents are built inline. All methods must be called from the indexing
+ * thread.
+ * <p>
+ * The document makers must not use state that is changed by the indexing
+ * thread (see {@link FulltextIndexEditorContext#canBuildDocumentsConcurrently()}).
+ * The executor is owned by the {@link
+ * org.apache.jackrabbit.oak.plugins.index.search.ExtractedTextCache}.
+ */
+class DocumentBuildPipeline<D> {
+
+    private static final Logger log = LoggerFactory.getLogger(DocumentBuildPipeline.class);
+
+    /**
+     * The number of threads used to build documents. If 0 (the default),
+     * documents are built inline.
+     */
+    static final String THREADS_PROPERTY = "oak.indexer.documentBuilderThreads";
+
+    /**
+     * The maximum number of pending operations per index. If reached, the
+     * indexing thread waits for the oldest document.
+     */
+    static final int MAX_QUEUE_SIZE = Integer.getInteger("oak.indexer.documentBuilderQueueSize", 256);
+
+    static final String QUEUE_SIZE = "FULLTEXT_DOCUMENT_QUEUE_SIZE";
+    static final String BUILD_TIME = "FULLTEXT_DOCUMENT_BUILD_TIME";
+    static final String WAIT_TIME = "FULLTEXT_DOCUMENT_WAIT_TIME";
+    static final String WRITE_TIME = "FULLTEXT_DOCUMENT_WRITE_TIME";
+
+    private final FulltextIndexEditorContext<D> context;
+    private final Executor executor;
+    private final int maxQueueSize;
+    private final ArrayDeque<Operation<D>> queue = new ArrayDeque<>();
+
+    private final CounterStats queueSize;
+    private final TimerStats buildTime;
+    private final TimerStats waitTime;
+    private final TimerStats writeTime;
+
+    DocumentBuildPipeline(FulltextIndexEditorContext<D> context, Executor executor,
+                          int maxQueueSize, StatisticsProvider statisticsProvider) {
+        this.context = context;
+        this.executor = executor;
+        this.maxQueueSize = Math.max(1, maxQueueSize);
+        this.queueSize = statisticsProvider.getCounterStats(QUEUE_SIZE, StatsOptions.DEFAULT);
+        this.buildTime = statisticsProvider.getTimer(BUILD_TIME, StatsOptions.METRICS_ONLY);
+        this.waitTime = statisticsProvider.getTimer(WAIT_TIME, StatsOptions.METRICS_ONLY);
+        this.writeTime = statisticsProvider.getTimer(WRITE_TIME, StatsOptions.METRICS_ONLY);
+    }
+
+    /**
+     * Get the number of configured document builder threads.
+     *
+     * @return the number of threads, 0 if disabled
+     */
+    static int getConfiguredThreads() {
+        return Integer.getInteger(THREADS_PROPERTY, 0);
+    }
+
+    /**
+     * Build a document in the background, and queue it to be written.
+     *
+     * @param path the path of the node
+     * @param maker the document maker (created in the indexing thread)
+     * @param state the node state
+     * @param isUpdate whether it is an update
+     * @param propertiesModified the modified properties (not changed afterwards)
+     */
+    void updateDocument(String path, DocumentMaker<D> maker, NodeState state,
+                        boolean isUpdate, List<PropertyState> propertiesModified) throws CommitFailedException {
+        FutureTask<D> task = new FutureTask<>(() -> {
+            TimerStats.Context ctx = buildTime.time();
+            try {
+                return maker.makeDocument(state, isUpdate, propertiesModified);
+            } finally {
+                ctx.stop();
+            }
+        });
+        add(new Operation<>(path, task));
+        executor.execute(task);
+        drain(false);
+    }
+
+    /**
+     * Queue the removal of all documents of the given subtree.
+     *
+     * @param path the root of the subtree
+     */
+    void deleteDocuments(String path) throws CommitFailedException {
+        add(new Operation<>(path, null));
+        drain(false);
+    }
+
+    /**
+     * Wait for all pending documents, and write them.
+     */
+    void flush() throws CommitFailedException {
+        drain(true);
+    }
+
+    int getQueueSize() {
+        return queue.size();
+    }
+
+    private void add(Operation<D> op) {
+        queue.add(op);
+        queueSize.inc();
+    }
+
+    /**
+     * Write completed operations in order, waiting for the oldest one if
+     * the queue is full (or if all operations are to be written).
+     */
+    private void drain(boolean all) throws CommitFailedException {
+        while (!queue.isEmpty()) {
+            Operation<D> op = queue.peek();
+            if (!all && queue.size() <= maxQueueSize && !op.isDone()) {
+                break;
+            }
+            queue.poll();
+            queueSize.dec();
+            if (op.document == null) {
+                FulltextIndexEditor.deleteDocuments(context, op.path);
+            } else {
+                D doc = getDocument(op);
+                if (doc != null) {
+                    TimerStats.Context ctx = writeTime.time();
+                    try {
+                        FulltextIndexEditor.writeDocument(context, op.path, doc);
+                    } finally {
+                        ctx.stop();
+                    }
+                }
+            }
+        }
+    }
+
+    private D getDocument(Operation<D> op) throws CommitFailedException {
+        TimerStats.Context ctx = waitTime.time();
+        try {
+            return op.document.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw FulltextIndexEditor.indexingFailed(context, op.path, new IOException(e));
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw FulltextIndexEditor.indexingFailed(context, op.path, (IOException) cause);
+            } else if (cause instanceof IllegalArgumentException) {
+                log.warn("Failed to index the node [{}]", op.path, cause);
+                return null;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw FulltextIndexEditor.indexingFailed(context, op.path, new IOException(cause));
+        } finally {
+            ctx.stop();
+        }
+    }
+
+    /**
+     * A pending update (if the document is set) or delete.
+     */
+    private static class Operation<D> {
+        final String path;
+        final FutureTask<D> document;
+
+        Operation(String path, FutureTask<D> document) {
+            this.path = path;
+            this.document = document;
+        }
+
+        boolean isDone() {
+            return document == null || document.isDone();
+        }
+    }
+
+}
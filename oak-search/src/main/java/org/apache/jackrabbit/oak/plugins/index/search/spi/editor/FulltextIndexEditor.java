@@ -136,11 +136,12 @@ public class FulltextIndexEditor<D> implements IndexEditor, Aggregate.AggregateR
       throws CommitFailedException {
     if (propertiesChanged || !before.exists()) {
       String path = getPath();
-      if (addOrUpdate(path, after, before.exists())) {
-        long indexed = context.incIndexedNodes();
-        if (indexed % 1000 == 0) {
-          log.debug("[{}] => Indexed {} nodes...", getIndexName(), indexed);
-        }
+      DocumentBuildPipeline<D> pipeline = context.getDocumentBuildPipeline();
+      if (pipeline == null) {
+        addOrUpdate(path, after, before.exists());
+      } else if (isIndexable()) {
+        pipeline.updateDocument(path, context.newDocumentMaker(indexingRule, path),
+            after, before.exists(), propertiesModified);
       }
     }
 
@@ -149,6 +150,11 @@ public class FulltextIndexEditor<D> implements IndexEditor, Aggregate.AggregateR
     }
 
     if (parent == null) {
+      DocumentBuildPipeline<D> pipeline = context.getDocumentBuildPipeline();
+      if (pipeline != null) {
+        pipeline.flush();
+      }
+
       PropertyUpdateCallback callback = context.getPropertyUpdateCallback();
       if (callback != null) {
         callback.done();
@@ -221,16 +227,11 @@ public class FulltextIndexEditor<D> implements IndexEditor, Aggregate.AggregateR
     if (!isDeleted) {
       // tree deletion is handled on the parent node
       String path = concat(getPath(), name);
-      try {
-        FulltextIndexWriter<D> writer = context.getWriter();
-        // Remove all index entries in the removed subtree
-        writer.deleteDocuments(path);
-        this.context.indexUpdate();
-      } catch (IOException e) {
-        CommitFailedException ce = new CommitFailedException("Fulltext", 5, "Failed to remove the index entries of"
-            + " the removed subtree " + path + "for index " + context.getIndexingContext().getIndexPath(), e);
-        context.getIndexingContext().indexUpdateFailed(ce);
-        throw ce;
+      DocumentBuildPipeline<D> pipeline = context.getDocumentBuildPipeline();
+      if (pipeline == null) {
+        deleteDocuments(context, path);
+      } else {
+        pipeline.deleteDocuments(path);
       }
     }
 
@@ -245,28 +246,59 @@ public class FulltextIndexEditor<D> implements IndexEditor, Aggregate.AggregateR
     return context;
   }
 
-  private boolean addOrUpdate(String path, NodeState state, boolean isUpdate)
+  private void addOrUpdate(String path, NodeState state, boolean isUpdate)
       throws CommitFailedException {
     try {
       D d = makeDocument(path, state, isUpdate);
       if (d != null) {
-        if (log.isTraceEnabled()) {
-          log.trace("[{}] Indexed document for {} is {}", getIndexName(), path, d);
-        }
-        context.indexUpdate();
-        context.getWriter().updateDocument(path, d);
-        return true;
+        writeDocument(context, path, d);
       }
     } catch (IOException e) {
-      log.warn("Failed to index the node [{}] due to {}", path, e.getMessage());
-      CommitFailedException ce = new CommitFailedException("Fulltext", 3,
-          "Failed to index the node " + path, e);
-      context.getIndexingContext().indexUpdateFailed(ce);
-      throw ce;
+      throw indexingFailed(context, path, e);
     } catch (IllegalArgumentException ie) {
       log.warn("Failed to index the node [{}]", path, ie);
     }
-    return false;
+  }
+
+  static <D> void writeDocument(FulltextIndexEditorContext<D> context, String path, D d)
+      throws CommitFailedException {
+    String indexName = context.getDefinition().getIndexName();
+    if (log.isTraceEnabled()) {
+      log.trace("[{}] Indexed document for {} is {}", indexName, path, d);
+    }
+    context.indexUpdate();
+    try {
+      context.getWriter().updateDocument(path, d);
+    } catch (IOException e) {
+      throw indexingFailed(context, path, e);
+    }
+    long indexed = context.incIndexedNodes();
+    if (indexed % 1000 == 0) {
+      log.debug("[{}] => Indexed {} nodes...", indexName, indexed);
+    }
+  }
+
+  static <D> void deleteDocuments(FulltextIndexEditorContext<D> context, String path)
+      throws CommitFailedException {
+    try {
+      FulltextIndexWriter<D> writer = context.getWriter();
+      // Remove all index entries in the removed subtree
+      writer.deleteDocuments(path);
+      context.indexUpdate();
+    } catch (IOException e) {
+      CommitFailedException ce = new CommitFailedException("Fulltext", 5, "Failed to remove the index entries of"
+          + " the removed subtree " + path + "for index " + context.getIndexingContext().getIndexPath(), e);
+      context.getIndexingContext().indexUpdateFailed(ce);
+      throw ce;
+    }
+  }
+
+  static CommitFailedException indexingFailed(FulltextIndexEditorContext<?> context, String path, IOException e) {
+    log.warn("Failed to index the node [{}] due to {}", path, e.getMessage());
+    CommitFailedException ce = new CommitFailedException("Fulltext", 3,
+        "Failed to index the node " + path, e);
+    context.getIndexingContext().indexUpdateFailed(ce);
+    return ce;
   }
 
   private D makeDocument(String path, NodeState state, boolean isUpdate) throws IOException {
@@ -40,6 +40,7 @@ import org.apache.jackrabbit.oak.spi.state.NodeBuilder;
 import org.apache.jackrabbit.oak.spi.state.NodeState;
 import org.apache.jackrabbit.oak.spi.state.NodeStateUtils;
 import org.apache.jackrabbit.oak.stats.Clock;
+import org.apache.jackrabbit.oak.stats.StatisticsProvider;
 import org.apache.jackrabbit.util.ISO8601;
 import org.jetbrains.annotations.Nullable;
 import org.slf4j.Logger;
@@ -93,6 +94,10 @@ public abstract class FulltextIndexEditorContext<D> {
 
   private PropertyUpdateCallback propertyUpdateCallback;
 
+  private DocumentBuildPipeline<D> documentBuildPipeline;
+
+  private boolean documentBuildPipelineChecked;
+
   protected FulltextIndexEditorContext(NodeState root, NodeBuilder definition,
                                        @Nullable IndexDefinition indexDefinition,
                                        IndexUpdateCallback updateCallback,
@@ -135,6 +140,42 @@ public abstract class FulltextIndexEditorContext<D> {
     return writer;
   }
 
+  /**
+   * Get the pipeline used to build documents in parallel, if enabled. This is
+   * only used for async indexing, and only if document builder threads are
+   * configured (system property "oak.indexer.documentBuilderThreads"), and
+   * if documents can be built concurrently.
+   *
+   * @return the pipeline, or null if documents are built inline
+   */
+  @Nullable
+  DocumentBuildPipeline<D> getDocumentBuildPipeline() {
+    if (!documentBuildPipelineChecked) {
+      documentBuildPipelineChecked = true;
+      int threads = DocumentBuildPipeline.getConfiguredThreads();
+      if (threads > 0 && asyncIndexing && extractedTextCache != null && canBuildDocumentsConcurrently()) {
+        StatisticsProvider statisticsProvider = extractedTextCache.getStatisticsProvider();
+        documentBuildPipeline = new DocumentBuildPipeline<>(this,
+                extractedTextCache.getDocumentBuilderExecutor(threads, threads * DocumentBuildPipeline.MAX_QUEUE_SIZE),
+                DocumentBuildPipeline.MAX_QUEUE_SIZE,
+                statisticsProvider == null ? StatisticsProvider.NOOP : statisticsProvider);
+      }
+    }
+    return documentBuildPipeline;
+  }
+
+  /**
+   * Whether the document makers of this index can be used from other threads
+   * while the indexing thread continues. This is not the case if building a
+   * document uses state that is lazily initialized or changed by the indexing
+   * thread.
+   *
+   * @return true if documents can be built concurrently
+   */
+  protected boolean canBuildDocumentsConcurrently() {
+    return true;
+  }
+
   public IndexingContext getIndexingContext() {
     return indexingContext;
   }
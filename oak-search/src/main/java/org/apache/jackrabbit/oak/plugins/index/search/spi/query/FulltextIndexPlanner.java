@@ -39,6 +39,7 @@ import org.apache.jackrabbit.oak.api.Type;
 import org.apache.jackrabbit.oak.commons.PathUtils;
 import org.apache.jackrabbit.oak.plugins.index.IndexConstants;
 import org.apache.jackrabbit.oak.plugins.index.IndexSelectionPolicy;
+import org.apache.jackrabbit.oak.plugins.index.property.ValuePattern;
 import org.apache.jackrabbit.oak.plugins.index.property.ValuePatternUtil;
 import org.apache.jackrabbit.oak.plugins.index.search.IndexDefinition;
 import org.apache.jackrabbit.oak.plugins.index.search.IndexDefinition.IndexingRule;
@@ -864,7 +865,15 @@ public class FulltextIndexPlanner {
                 }
             }
 
-            if (weight > 1) {
+            long estimated = estimateFromStatistics(key, pr);
+            if (estimated >= 0) {
+                // collected statistics are more accurate than the weight,
+                // but there can't be more matches than documents with this field
+                estimated = Math.min(estimated, docCntForField);
+                if (estimated < minNumDocs) {
+                    minNumDocs = (int) estimated;
+                }
+            } else if (weight > 1) {
                 // use it to scale down the doc count - in broad strokes, we can think of weight
                 // as number of terms for the field with all terms getting equal share of
                 // the documents in this field
@@ -912,6 +921,29 @@ public class FulltextIndexPlanner {
         return minNumDocs;
     }
 
+    /**
+     * Estimate the number of documents that match an equality (or "in")
+     * restriction, using the property statistics collected by the indexer.
+     *
+     * @param propertyName the property name
+     * @param pr the restriction (may be null)
+     * @return the estimated number of documents, or -1 if unknown
+     */
+    private long estimateFromStatistics(String propertyName, PropertyRestriction pr) {
+        if (pr == null || pr.isNotNullRestriction()) {
+            return -1;
+        }
+        Set<String> values = ValuePatternUtil.getValues(pr, new ValuePattern());
+        if (values == null) {
+            return -1;
+        }
+        PropertyStatistics statistics = definition.getPropertyStatistics(propertyName);
+        if (statistics == null) {
+            return -1;
+        }
+        return Math.min(Integer.MAX_VALUE, statistics.estimateCount(values));
+    }
+
     private static boolean isEqualityRestriction(PropertyRestriction pr) {
         return pr.first != null && pr.first == pr.last;
     }
@@ -0,0 +1,130 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.jackrabbit.oak.plugins.index.search;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.jackrabbit.oak.plugins.index.fulltext.ExtractedText;
+import org.apache.jackrabbit.oak.plugins.index.fulltext.ExtractedText.ExtractionResult;
+import org.apache.jackrabbit.oak.plugins.memory.ArrayBasedBlob;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class PersistentExtractedTextCacheTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder(new File("target"));
+
+    @Test
+    public void storeAndReload() throws Exception {
+        File dir = temporaryFolder.newFolder();
+        PersistentExtractedTextCache cache = new PersistentExtractedTextCache(dir, FileUtils.ONE_MB);
+        assertNull(cache.get("a"));
+        cache.put("a", "hello world");
+        cache.put("b", "");
+        assertEquals("hello world", cache.get("a"));
+        assertEquals("", cache.get("b"));
+        assertEquals(2, cache.getHitCount());
+        assertEquals(1, cache.getMissCount());
+        assertEquals(2, cache.getEntryCount());
+
+        // a new instance (after a restart, or on another cluster node) sees the entries
+        cache = new PersistentExtractedTextCache(dir, FileUtils.ONE_MB);
+        assertEquals(2, cache.getEntryCount());
+        assertEquals("hello world", cache.get("a"));
+    }
+
+    @Test
+    public void evictLeastRecentlyUsed() throws Exception {
+        Random r = new Random(1);
+        PersistentExtractedTextCache cache = new PersistentExtractedTextCache(temporaryFolder.newFolder(), 10000);
+        for (int i = 0; i < 100; i++) {
+            // random text doesn't compress well
+            StringBuilder buff = new StringBuilder();
+            for (int j = 0; j < 1000; j++) {
+                buff.append((char) ('a' + r.nextInt(26)));
+            }
+            cache.put("id" + i, buff.toString());
+            // keep the first entry in use
+            assertEquals(1000, cache.get("id0").length());
+            assertTrue(cache.getSize() <= 10000);
+        }
+        assertTrue(cache.getEntryCount() < 100);
+        assertNull(cache.get("id1"));
+        assertEquals(1000, cache.get("id99").length());
+    }
+
+    @Test
+    public void usedByExtractedTextCache() throws Exception {
+        File dir = temporaryFolder.newFolder();
+        ExtractedTextCache cache = new ExtractedTextCache(FileUtils.ONE_MB, 100);
+        cache.setPersistentCache(new PersistentExtractedTextCache(dir, FileUtils.ONE_MB));
+        ArrayBasedBlob blob = new ArrayBasedBlob("hello".getBytes()) {
+            @Override
+            public String getContentIdentity() {
+                return "a";
+            }
+        };
+        cache.put(blob, new ExtractedText(ExtractionResult.SUCCESS, "test hello"));
+
+        // a new, empty in-memory cache
+        cache = new ExtractedTextCache(FileUtils.ONE_MB, 100);
+        cache.setPersistentCache(new PersistentExtractedTextCache(dir, FileUtils.ONE_MB));
+        assertEquals("test hello", cache.get("/a", "foo", blob, false));
+        assertEquals(1, cache.getStatsMBean().getPersistentCacheHitCount());
+        assertTrue(cache.getStatsMBean().isPersistentCacheEnabled());
+    }
+
+    @Test
+    public void errorNotPersisted() throws Exception {
+        File dir = temporaryFolder.newFolder();
+        PersistentExtractedTextCache persistent = new PersistentExtractedTextCache(dir, FileUtils.ONE_MB);
+        ExtractedTextCache cache = new ExtractedTextCache(FileUtils.ONE_MB, 100);
+        cache.setPersistentCache(persistent);
+        ArrayBasedBlob blob = new ArrayBasedBlob("hello".getBytes()) {
+            @Override
+            public String getContentIdentity() {
+                return "a";
+            }
+        };
+        cache.put(blob, new ExtractedText(ExtractionResult.ERROR, "test hello"));
+        assertEquals(0, persistent.getEntryCount());
+        assertNull(persistent.get("a"));
+    }
+
+    @Test
+    public void largeTextNotStored() throws Exception {
+        PersistentExtractedTextCache cache = new PersistentExtractedTextCache(temporaryFolder.newFolder(),
+                FileUtils.ONE_GB);
+        char[] text = new char[PersistentExtractedTextCache.MAX_TEXT_SIZE + 1];
+        Arrays.fill(text, 'a');
+        cache.put("a", new String(text));
+        assertEquals(0, cache.getEntryCount());
+        assertNull(cache.get("a"));
+    }
+
+}
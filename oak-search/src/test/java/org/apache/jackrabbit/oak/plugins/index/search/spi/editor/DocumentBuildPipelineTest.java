@@ -0,0 +1,194 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.jackrabbit.oak.plugins.index.search.spi.editor;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.apache.jackrabbit.oak.api.CommitFailedException;
+import org.apache.jackrabbit.oak.plugins.index.IndexUpdateCallback;
+import org.apache.jackrabbit.oak.plugins.index.IndexingContext;
+import org.apache.jackrabbit.oak.plugins.index.search.ExtractedTextCache;
+import org.apache.jackrabbit.oak.plugins.index.search.IndexDefinition;
+import org.apache.jackrabbit.oak.spi.commit.CommitInfo;
+import org.apache.jackrabbit.oak.spi.state.NodeBuilder;
+import org.apache.jackrabbit.oak.stats.StatisticsProvider;
+import org.junit.After;
+import org.junit.Test;
+
+import static org.apache.jackrabbit.oak.plugins.memory.EmptyNodeState.EMPTY_NODE;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class DocumentBuildPipelineTest {
+
+    private final ExecutorService executor = Executors.newFixedThreadPool(4);
+
+    private final List<String> operations = Collections.synchronizedList(new ArrayList<>());
+
+    @After
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void writeInSubmitOrder() throws Exception {
+        TestContext context = newContext();
+        DocumentBuildPipeline<String> pipeline = new DocumentBuildPipeline<>(context, executor, 8,
+                StatisticsProvider.NOOP);
+        List<String> expected = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            String path = "/n" + i;
+            if (i % 10 == 5) {
+                pipeline.deleteDocuments(path);
+                expected.add("delete " + path);
+            } else {
+                // documents with lower numbers take longer to build
+                int delay = (100 - i) % 7;
+                pipeline.updateDocument(path, (state, isUpdate, props) -> {
+                    sleep(delay);
+                    return "doc" + path;
+                }, EMPTY_NODE, false, Collections.emptyList());
+                expected.add("update " + path + " doc" + path);
+            }
+            assertTrue(pipeline.getQueueSize() <= 8);
+        }
+        pipeline.flush();
+        assertEquals(0, pipeline.getQueueSize());
+        assertEquals(expected, operations);
+        assertEquals(90, context.getIndexedNodes());
+    }
+
+    @Test
+    public void skipInvalidDocument() throws Exception {
+        TestContext context = newContext();
+        DocumentBuildPipeline<String> pipeline = new DocumentBuildPipeline<>(context, executor, 8,
+                StatisticsProvider.NOOP);
+        pipeline.updateDocument("/a", (state, isUpdate, props) -> {
+            throw new IllegalArgumentException("invalid");
+        }, EMPTY_NODE, false, Collections.emptyList());
+        pipeline.updateDocument("/b", (state, isUpdate, props) -> null,
+                EMPTY_NODE, false, Collections.emptyList());
+        pipeline.updateDocument("/c", (state, isUpdate, props) -> "doc",
+                EMPTY_NODE, false, Collections.emptyList());
+        pipeline.flush();
+        assertEquals(Collections.singletonList("update /c doc"), operations);
+        assertEquals(1, context.getIndexedNodes());
+    }
+
+    @Test
+    public void failOnIOException() throws Exception {
+        TestContext context = newContext();
+        DocumentBuildPipeline<String> pipeline = new DocumentBuildPipeline<>(context, executor, 8,
+                StatisticsProvider.NOOP);
+        pipeline.updateDocument("/a", (state, isUpdate, props) -> {
+            throw new IOException("failed");
+        }, EMPTY_NODE, false, Collections.emptyList());
+        try {
+            pipeline.flush();
+            fail();
+        } catch (CommitFailedException e) {
+            assertEquals(3, e.getCode());
+            assertTrue(e.getCause() instanceof IOException);
+        }
+    }
+
+    @Test
+    public void closedExecutor() throws Exception {
+        ExtractedTextCache cache = new ExtractedTextCache(0, 0);
+        Executor closed = cache.getDocumentBuilderExecutor(1, 1);
+        cache.close();
+        TestContext context = newContext();
+        // tasks that are rejected are run in the indexing thread
+        DocumentBuildPipeline<String> pipeline = new DocumentBuildPipeline<>(context, closed, 8,
+                StatisticsProvider.NOOP);
+        List<String> expected = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            String path = "/n" + i;
+            pipeline.updateDocument(path, (state, isUpdate, props) -> "doc" + path,
+                    EMPTY_NODE, false, Collections.emptyList());
+            expected.add("update " + path + " doc" + path);
+        }
+        pipeline.flush();
+        assertEquals(expected, operations);
+    }
+
+    private TestContext newContext() {
+        NodeBuilder definition = EMPTY_NODE.builder();
+        IndexingContext indexingContext = mock(IndexingContext.class);
+        when(indexingContext.getIndexPath()).thenReturn("/oak:index/test");
+        when(indexingContext.getCommitInfo()).thenReturn(CommitInfo.EMPTY);
+        IndexDefinition defn = new IndexDefinition(EMPTY_NODE, definition.getNodeState(), "/oak:index/test");
+        return new TestContext(definition, defn, indexingContext, new TestWriter());
+    }
+
+    private static void sleep(int millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private class TestWriter implements FulltextIndexWriter<String> {
+
+        @Override
+        public void updateDocument(String path, String doc) {
+            operations.add("update " + path + " " + doc);
+        }
+
+        @Override
+        public void deleteDocuments(String path) {
+            operations.add("delete " + path);
+        }
+
+        @Override
+        public boolean close(long timestamp) {
+            return !operations.isEmpty();
+        }
+    }
+
+    private static class TestContext extends FulltextIndexEditorContext<String> {
+
+        TestContext(NodeBuilder definition, IndexDefinition indexDefinition,
+                    IndexingContext indexingContext, FulltextIndexWriter<String> writer) {
+            super(EMPTY_NODE, definition, indexDefinition, IndexUpdateCallback.NOOP, (defn, builder, info, reindex) -> writer,
+                    null, indexingContext, true);
+        }
+
+        @Override
+        public IndexDefinition.Builder newDefinitionBuilder() {
+            return new IndexDefinition.Builder();
+        }
+
+        @Override
+        public DocumentMaker<String> newDocumentMaker(IndexDefinition.IndexingRule rule, String path) {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+}
@@ -51,6 +51,14 @@ import org.slf4j.LoggerFactory;
  * the background observer thread has yet to process are optionally
  * (see {@code alwaysCollapseExternalEvents} and {@code oak.observation.alwaysCollapseExternal})
  * automatically merged to just one change.
+ * <p>
+ * With adaptive compaction (see {@code oak.observation.adaptiveCompaction}),
+ * once the queue is filled above a threshold, each further change is merged
+ * into the last queued change, until that change covers a maximum number of
+ * commits. The queue then fills up more slowly, and each delivered change
+ * still covers a bounded number of commits, instead of one change that covers
+ * all commits since the queue got full. As with a full queue, the local
+ * commit information of merged changes is lost.
  */
 public class BackgroundObserver implements Observer, Closeable {
 
@@ -92,13 +100,39 @@ public class BackgroundObserver implements Observer, Closeable {
     private final boolean alwaysCollapseExternalEvents =
             Boolean.parseBoolean(System.getProperty("oak.observation.alwaysCollapseExternal", "false"));
 
+    /**
+     * Whether consecutive changes are merged once the queue is filled above
+     * the {@code compactionThreshold}.
+     */
+    private final boolean adaptiveCompaction =
+            Boolean.getBoolean("oak.observation.adaptiveCompaction");
+
+    /**
+     * Fill ratio of the queue above which changes are merged.
+     */
+    private final double compactionThreshold =
+            Double.parseDouble(System.getProperty("oak.observation.compactionThreshold", "0.5"));
+
+    /**
+     * Maximum number of commits merged into one change.
+     */
+    private final int maxMergedChanges =
+            Integer.getInteger("oak.observation.maxMergedChanges", 100);
+
     private static class ContentChange {
         private final NodeState root;
         private final CommitInfo info;
-        private final long created = System.currentTimeMillis();
+        private final long created;
+        /** the number of commits covered by this change */
+        private final int commits;
         ContentChange(NodeState root, CommitInfo info) {
+            this(root, info, 1, System.currentTimeMillis());
+        }
+        ContentChange(NodeState root, CommitInfo info, int commits, long created) {
             this.root = root;
             this.info = info;
+            this.commits = commits;
+            this.created = created;
         }
     }
 
@@ -113,6 +147,20 @@ public class BackgroundObserver implements Observer, Closeable {
      */
     private volatile NotifyingFutureTask currentTask = NotifyingFutureTask.completed();
 
+    /**
+     * Delivery statistics, only updated by the background task
+     */
+    private volatile long deliveredCount;
+    private volatile long totalQueueTimeMillis;
+    private volatile long maxQueueTimeMillis;
+    private volatile long totalProcessingTimeMillis;
+
+    /**
+     * Number of changes merged into a queued change, only updated while
+     * holding the lock of this observer
+     */
+    private volatile long mergedCount;
+
     /**
      * Completion handler: set the current task to the next task and schedules that one
      * on the background thread.
@@ -124,7 +172,9 @@ public class BackgroundObserver implements Observer, Closeable {
                 try {
                     ContentChange change = queue.poll();
                     if (change != null && change != STOP) {
+                        long start = System.currentTimeMillis();
                         observer.contentChanged(change.root, change.info);
+                        delivered(start - change.created, System.currentTimeMillis() - start);
                         removed(queue.size(), change.created);
                         currentTask.onComplete(completionHandler);
                     }
@@ -192,6 +242,15 @@ public class BackgroundObserver implements Observer, Closeable {
      */
     protected void removed(int queueSize, long created) { }
 
+    private void delivered(long queueTimeMillis, long processingTimeMillis) {
+        deliveredCount++;
+        totalQueueTimeMillis += queueTimeMillis;
+        totalProcessingTimeMillis += processingTimeMillis;
+        if (queueTimeMillis > maxQueueTimeMillis) {
+            maxQueueTimeMillis = queueTimeMillis;
+        }
+    }
+
     /**
      * @return  The max queue length used for this observer's queue
      */
@@ -245,6 +304,33 @@ public class BackgroundObserver implements Observer, Closeable {
                 }));
             }
 
+            @Override
+            public long getDeliveredCount() {
+                return deliveredCount;
+            }
+
+            @Override
+            public long getAverageQueueTimeMillis() {
+                long count = deliveredCount;
+                return count == 0 ? 0 : totalQueueTimeMillis / count;
+            }
+
+            @Override
+            public long getMaxQueueTimeMillis() {
+                return maxQueueTimeMillis;
+            }
+
+            @Override
+            public long getAverageProcessingTimeMillis() {
+                long count = deliveredCount;
+                return count == 0 ? 0 : totalProcessingTimeMillis / count;
+            }
+
+            @Override
+            public long getMergedCount() {
+                return mergedCount;
+            }
+
             @Override
             public int getExternalEventCount() {
                 return size(filter(queue, new Predicate<ContentChange>() {
@@ -280,6 +366,17 @@ public class BackgroundObserver implements Observer, Closeable {
 
         ContentChange change = new ContentChange(root, info);
 
+        if (adaptiveCompaction && last != null && last.commits < maxMergedChanges
+                && queue.size() >= compactionThreshold * maxQueueLength
+                && queue.remove(last)) {
+            // The queue is filling up: merge this change into the last one,
+            // which is still in the queue. The merged change covers the
+            // commits of both, and is delivered as an external change.
+            change = new ContentChange(root, CommitInfo.EMPTY_EXTERNAL,
+                    last.commits + 1, last.created);
+            mergedCount++;
+        }
+
         // Try to add this change to the queue without blocking
         boolean full = !queue.offer(change);
 
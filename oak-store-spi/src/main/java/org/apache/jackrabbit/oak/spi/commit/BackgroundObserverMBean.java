@@ -30,5 +30,34 @@ public interface BackgroundObserverMBean {
 
     int getExternalEventCount();
 
+    /**
+     * @return the number of changes delivered to the observer
+     */
+    long getDeliveredCount();
+
+    /**
+     * @return the average time in milliseconds a change was in the queue
+     *         before it was delivered
+     */
+    long getAverageQueueTimeMillis();
+
+    /**
+     * @return the maximum time in milliseconds a change was in the queue
+     *         before it was delivered
+     */
+    long getMaxQueueTimeMillis();
+
+    /**
+     * @return the average time in milliseconds the observer took to process
+     *         a change
+     */
+    long getAverageProcessingTimeMillis();
+
+    /**
+     * @return the number of changes that were merged into a queued change,
+     *         because the queue was filling up
+     */
+    long getMergedCount();
+
     String getClassName();
 }